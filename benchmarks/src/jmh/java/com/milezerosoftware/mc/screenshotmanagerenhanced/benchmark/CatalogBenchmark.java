@@ -0,0 +1,108 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.benchmark;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog.CatalogEntry;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog.CatalogQuery;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog.ScreenshotCatalog;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler.ScreenshotMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Querying a catalog snapshot of generated entries.
+ *
+ * <p>
+ * The entries cycle through 4 worlds, 3 dimensions and 7 biomes, one capture
+ * per minute. {@link #filtered} matches one entry in 84; {@link #dateRange}
+ * selects one day.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CatalogBenchmark {
+
+    private static final long START = 1_700_000_000_000L;
+    private static final String[] WORLDS = { "Survival", "Creative", "Server X", "Hardcore" };
+    private static final String[] DIMENSIONS = { "Overworld", "The Nether", "The End" };
+    private static final String[] BIOMES = { "Plains", "Badlands", "Forest", "Desert", "Jungle", "Taiga", "Ocean" };
+
+    @Param({ "10000", "100000" })
+    public int entries;
+
+    private Path root;
+    private ScreenshotCatalog catalog;
+    private final CatalogQuery filtered = CatalogQuery.ALL.withWorld("Server X").withDimension("The Nether")
+            .withBiome("Badlands");
+    private final CatalogQuery dateRange = CatalogQuery.ALL.between(START, START + TimeUnit.DAYS.toMillis(1));
+
+    @Setup
+    public void setUp() throws Throwable {
+        List<CatalogEntry> list = new ArrayList<>(entries);
+        for (int i = 0; i < entries; i++) {
+            list.add(new CatalogEntry("World/" + i + ".png", 1_000_000 + i, START + i * 60_000L, START + i * 60_000L,
+                    new ScreenshotMetadata(WORLDS[i % 4], DIMENSIONS[i % 3], "x: 0, y: 64, z: 0", "1.00 d",
+                            "Player", "Normal", "Survival", "1.21.10", BIOMES[i % 7], "0.10 d")));
+        }
+
+        root = Files.createTempDirectory("catalog-benchmark");
+        Path stateDir = Files.createDirectories(root.resolve(".sme"));
+        Class<?> catalogFile = Class.forName(
+                "com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog.CatalogFile");
+        MethodHandle write = MethodHandles.privateLookupIn(catalogFile, MethodHandles.lookup()).findStatic(
+                catalogFile, "write", MethodType.methodType(void.class, Path.class, List.class, Map.class));
+        write.invoke(stateDir.resolve("catalog-1.bin"), list, new HashMap<String, Long>());
+
+        catalog = new ScreenshotCatalog(root);
+        catalog.size(); // Load outside the measurement
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        catalog.close();
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /** World, dimension and biome filter over the whole catalog. */
+    @Benchmark
+    public List<CatalogEntry> filtered() throws Exception {
+        return catalog.query(filtered);
+    }
+
+    /** One day of captures, found by binary search. */
+    @Benchmark
+    public List<CatalogEntry> dateRange() throws Exception {
+        return catalog.query(dateRange);
+    }
+
+    /** Opening a catalog: mapping the snapshot and decoding its dictionary. */
+    @Benchmark
+    public int open() throws Exception {
+        try (ScreenshotCatalog opened = new ScreenshotCatalog(root)) {
+            return opened.size();
+        }
+    }
+}
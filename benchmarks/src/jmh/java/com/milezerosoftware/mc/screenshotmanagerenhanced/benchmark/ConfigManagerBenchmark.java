@@ -0,0 +1,78 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.benchmark;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ConfigManager;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ModConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ConfigManager#getInstance()} as called by every screenshot, capture
+ * tick and writer task, with several threads reading at once.
+ *
+ * <p>
+ * {@code contended} has eight threads only reading. The {@code publishing}
+ * group adds a thread that keeps reloading the file and publishing a new
+ * snapshot, as the file watcher does after an edit, while three threads read.
+ * ({@link ConfigManager#update} saves to the game's config directory, which
+ * needs Fabric Loader.)
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConfigManagerBenchmark {
+
+    private Path configFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        configFile = Files.createTempFile("sme-bench", ".json");
+        Files.delete(configFile);
+        ConfigManager.load(configFile);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(configFile);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public ModConfig uncontended() {
+        return ConfigManager.getInstance();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public ModConfig contended() {
+        return ConfigManager.getInstance();
+    }
+
+    @Benchmark
+    @Group("publishing")
+    @GroupThreads(3)
+    public ModConfig read() {
+        return ConfigManager.getInstance();
+    }
+
+    @Benchmark
+    @Group("publishing")
+    @GroupThreads(1)
+    public void reload() {
+        ConfigManager.load(configFile);
+    }
+}
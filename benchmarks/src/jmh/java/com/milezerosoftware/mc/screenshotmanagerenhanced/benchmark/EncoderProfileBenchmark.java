@@ -0,0 +1,70 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.benchmark;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.ByteBufferPixelSource;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PixelSource;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.ScreenshotEncoder;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.ScreenshotEncoders;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.EncoderProfile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded encode time of each {@link EncoderProfile}, with the output
+ * size printed once per trial. Results are summarised in
+ * {@code docs/encoder-profiles.md}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EncoderProfileBenchmark {
+
+    @Param({ "P1080", "K4" })
+    public SyntheticScreenshot.Resolution resolution;
+
+    @Param({ "STANDARD_PNG", "FAST_PNG", "COMPACT_PNG", "QOI" })
+    public EncoderProfile profile;
+
+    private PixelSource source;
+    private ScreenshotEncoder encoder;
+    private final CountingOutputStream sink = new CountingOutputStream();
+
+    @Setup
+    public void setUp() throws IOException {
+        source = new ByteBufferPixelSource(SyntheticScreenshot.render(resolution.width, resolution.height, 42),
+                resolution.width, resolution.height, 4);
+        encoder = ScreenshotEncoders.create(profile, false, (long) resolution.width * resolution.height);
+
+        System.out.printf("%n%s %s output size: %,d B%n", resolution, profile, encode());
+    }
+
+    @Benchmark
+    public long encode() throws IOException {
+        sink.count = 0;
+        encoder.encode(source, sink);
+        return sink.count;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
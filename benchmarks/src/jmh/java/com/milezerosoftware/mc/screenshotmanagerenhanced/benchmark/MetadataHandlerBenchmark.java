@@ -0,0 +1,180 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.benchmark;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ItxtChunkWriter;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The steps of embedding XMP metadata into a screenshot written by vanilla,
+ * against {@link PngFixtures} of each capture size.
+ *
+ * <p>
+ * The chunk scan, the iTXt writer and the streaming splice are measured
+ * separately as well as together. {@code writeMetadata} includes the file
+ * stability polling that runs when no write event arrives, and is reported in
+ * milliseconds.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MetadataHandlerBenchmark {
+
+    private static final String XMP_KEYWORD = "XML:com.adobe.xmp";
+
+    @Param({ "P720", "P1080", "K4", "K8" })
+    public SyntheticScreenshot.Resolution resolution;
+
+    private byte[] png;
+    private String xmp;
+    private final MetadataHandler.ScreenshotMetadata metadata = new MetadataHandler.ScreenshotMetadata(
+            "My Survival World", "The Nether", "x: -1204, y: 64, z: 3311", "412.37 d", "Steve", "Hard",
+            "survival", "1.21.10", "Crimson Forest", "3.18 d");
+    private final CountingOutputStream sink = new CountingOutputStream();
+
+    @Setup
+    public void setUp() {
+        png = PngFixtures.png(resolution);
+        xmp = MetadataHandler.buildXmp(metadata);
+    }
+
+    /** Scans the chunk headers up to the first IDAT, reading each from disk. */
+    @Benchmark
+    public long findChunkPosition(SourceFixture fixture) throws IOException {
+        return MetadataHandler.findChunkPosition(fixture.channel, "IDAT");
+    }
+
+    @Benchmark
+    public long writeItxtChunk() throws IOException {
+        sink.count = 0;
+        ItxtChunkWriter.acquire().startChunk(XMP_KEYWORD).text(xmp).finishChunk().writeTo(sink);
+        return sink.count;
+    }
+
+    /** The XmpBuilder chain with the summary, as built for each screenshot. */
+    @Benchmark
+    public String buildXmp() {
+        return MetadataHandler.buildXmp(metadata);
+    }
+
+    /** XMP and iTXt chunk as embedded at encode time. */
+    @Benchmark
+    public byte[] createXmpChunk() {
+        return MetadataHandler.createXmpChunk(metadata);
+    }
+
+    /** Streams the fixture into a copy with the chunk spliced in. */
+    @Benchmark
+    public long writePngWithXmp(SourceFixture fixture) throws IOException {
+        MetadataHandler.writePngWithXmp(fixture.file, fixture.output,
+                ItxtChunkWriter.acquire().startChunk(XMP_KEYWORD).text(xmp).finishChunk());
+        return fixture.output.length();
+    }
+
+    /** Streams the file into a copy with the chunk and replaces it. */
+    @Benchmark
+    public long embedMetadata(DiskFixture fixture) throws IOException {
+        MetadataHandler.embedMetadata(fixture.file, metadata);
+        return fixture.file.length();
+    }
+
+    /** The polling path: stability checks, then {@link #embedMetadata}. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long writeMetadata(DiskFixture fixture) throws Exception {
+        MetadataHandler.writeMetadata(fixture.file, metadata);
+        return fixture.file.length();
+    }
+
+    /**
+     * The fixture on disk, written once, with an open channel on it and a
+     * file to splice into.
+     */
+    @State(Scope.Thread)
+    public static class SourceFixture {
+        private Path dir;
+        Path file;
+        File output;
+        FileChannel channel;
+
+        @Setup(Level.Trial)
+        public void writeFixture(MetadataHandlerBenchmark benchmark) throws IOException {
+            dir = Files.createTempDirectory("sme-bench");
+            file = Files.write(dir.resolve("source.png"), benchmark.png);
+            output = dir.resolve("output.png").toFile();
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        }
+
+        @TearDown(Level.Trial)
+        public void deleteDirectory() throws IOException {
+            channel.close();
+            delete(dir);
+        }
+    }
+
+    /**
+     * A fresh copy of the fixture on disk for every invocation, since
+     * embedding replaces the file.
+     */
+    @State(Scope.Thread)
+    public static class DiskFixture {
+        private Path dir;
+        File file;
+
+        @Setup(Level.Trial)
+        public void createDirectory() throws IOException {
+            dir = Files.createTempDirectory("sme-bench");
+            file = dir.resolve("screenshot.png").toFile();
+        }
+
+        @Setup(Level.Invocation)
+        public void writeFixture(MetadataHandlerBenchmark benchmark) throws IOException {
+            Files.write(file.toPath(), benchmark.png);
+        }
+
+        @TearDown(Level.Trial)
+        public void deleteDirectory() throws IOException {
+            delete(dir);
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.benchmark;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Reading embedded metadata back from {@link PngFixtures} of each capture
+ * size, against reading the whole file.
+ *
+ * <p>
+ * {@link #readAll} scans a folder of 16 worlds with 64 copies of the fixture
+ * each, with one thread and with one per core, to show how the scan scales.
+ * The files are in the page cache after the first iteration, so it measures
+ * the CPU and system call side of the scan rather than the drive.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MetadataReadBenchmark {
+
+    private static final int WORLDS = 16;
+    private static final int FILES_PER_WORLD = 64;
+
+    @Param({ "P720", "P1080", "K4" })
+    public SyntheticScreenshot.Resolution resolution;
+
+    /** Scan threads; {@code 0} for one per core. */
+    @Param({ "1", "0" })
+    public int parallelism;
+
+    private Path root;
+    private Path file;
+
+    @Setup
+    public void setUp() throws Exception {
+        byte[] png = PngFixtures.png(resolution);
+        ByteArrayOutputStream withXmp = new ByteArrayOutputStream(png.length + 2048);
+        withXmp.write(png, 0, 33); // Signature and IHDR
+        withXmp.write(MetadataHandler.createXmpChunk(new MetadataHandler.ScreenshotMetadata(
+                "My Survival World", "The Nether", "x: -1204, y: 64, z: 3311", "412.37 d", "Steve", "Hard",
+                "survival", "1.21.10", "Crimson Forest", "3.18 d")));
+        withXmp.write(png, 33, png.length - 33);
+
+        root = Files.createTempDirectory("sme-read-bench");
+        for (int w = 0; w < WORLDS; w++) {
+            Path world = Files.createDirectories(root.resolve("World " + w));
+            for (int i = 0; i < FILES_PER_WORLD; i++) {
+                Files.write(world.resolve(i + ".png"), withXmp.toByteArray());
+            }
+        }
+        file = root.resolve("World 0").resolve("0.png");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /** Header-only read of one file. */
+    @Benchmark
+    public MetadataHandler.ScreenshotMetadata readMetadata() throws Exception {
+        return MetadataHandler.readMetadata(file);
+    }
+
+    /** What a reader that loads the file before parsing it pays. */
+    @Benchmark
+    public int readAllBytes() throws Exception {
+        return Files.readAllBytes(file).length;
+    }
+
+    /** Parallel scan of the whole folder, in milliseconds. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int readAll() {
+        AtomicInteger count = new AtomicInteger();
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        MetadataHandler.readAll(root, threads, (path, metadata) -> count.incrementAndGet());
+        return count.get();
+    }
+}
@@ -0,0 +1,91 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.benchmark;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.PathTemplate;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ScreenshotPathGenerator;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.GroupingMode;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ModConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of resolving one screenshot folder for each grouping mode: the
+ * compiled {@link PathTemplate} against the previous {@code SimpleDateFormat}
+ * and nested {@code File} implementation, kept here as {@link #legacy}. The
+ * gc profiler's {@code gc.alloc.rate.norm} gives the allocation per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PathTemplateBenchmark {
+
+    @Param({ "DATE", "WORLD", "WORLD_DIMENSION", "WORLD_DATE", "WORLD_DIMENSION_DATE", "WORLD_DATE_DIMENSION",
+            "NONE", "CUSTOM" })
+    public GroupingMode mode;
+
+    private final File root = new File("screenshots");
+    private final String dimension = "minecraft:the_nether";
+    private final PathTemplate.Values values = new PathTemplate.Values("My_Survival_World", dimension,
+            "play.example.com", "2025-01-30_14.02.11", "birch_forest");
+    private ModConfig config;
+    private PathTemplate template;
+    private final StringBuilder builder = new StringBuilder(128);
+
+    @Setup
+    public void setUp() {
+        config = new ModConfig();
+        config.groupingMode = mode;
+        template = ScreenshotPathGenerator.getTemplate(config);
+    }
+
+    /** The folder as a {@link File}, as the screenshot hook needs it. */
+    @Benchmark
+    public File template() {
+        return ScreenshotPathGenerator.getScreenshotDirectory(root, config, "My Survival World", values,
+                System.currentTimeMillis());
+    }
+
+    /** Rendering alone, into a reused builder. */
+    @Benchmark
+    public int templateRender() {
+        builder.setLength(0);
+        template.appendTo(builder, values, System.currentTimeMillis());
+        return builder.length();
+    }
+
+    /** The previous implementation; {@code CUSTOM} has no equivalent there. */
+    @Benchmark
+    public File legacy() {
+        return legacy(root, mode == GroupingMode.CUSTOM ? GroupingMode.WORLD_DIMENSION_DATE : mode,
+                "My_Survival_World", dimension, new Date());
+    }
+
+    private static File legacy(File screenshotsDir, GroupingMode mode, String safeWorldId, String dimension,
+            Date date) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        String dateStr = dateFormat.format(date);
+        String safeDimension = dimension.replace(":", "_");
+
+        return switch (mode) {
+            case DATE -> new File(screenshotsDir, dateStr);
+            case WORLD, ADAPTIVE -> new File(screenshotsDir, safeWorldId);
+            case WORLD_DIMENSION -> new File(new File(screenshotsDir, safeWorldId), safeDimension);
+            case WORLD_DATE -> new File(new File(screenshotsDir, safeWorldId), dateStr);
+            case WORLD_DIMENSION_DATE ->
+                new File(new File(new File(screenshotsDir, safeWorldId), safeDimension), dateStr);
+            case WORLD_DATE_DIMENSION ->
+                new File(new File(new File(screenshotsDir, safeWorldId), dateStr), safeDimension);
+            case NONE, CUSTOM -> screenshotsDir;
+        };
+    }
+}
@@ -0,0 +1,98 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.benchmark;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.ByteBufferPixelSource;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.ParallelPngEncoder;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PixelSource;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PngEncoder;
+import org.lwjgl.stb.STBIWriteCallback;
+import org.lwjgl.stb.STBImageWrite;
+import org.lwjgl.system.MemoryUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall time of encoding a screenshot to PNG: vanilla's stb_image_write (as
+ * called by {@code NativeImage.writeTo}) against the single-threaded and the
+ * parallel encoder. All three read the same off-heap RGBA buffer and write
+ * into a counting sink, so disk speed is excluded.
+ *
+ * <p>
+ * Output sizes are printed once per trial, since JMH only reports time.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PngEncodeBenchmark {
+
+    @Param({ "P1080", "K4", "K8" })
+    public SyntheticScreenshot.Resolution resolution;
+
+    private ByteBuffer pixels;
+    private PixelSource source;
+    private STBIWriteCallback stbCallback;
+    private final CountingOutputStream sink = new CountingOutputStream();
+
+    @Setup
+    public void setUp() throws IOException {
+        pixels = SyntheticScreenshot.render(resolution.width, resolution.height, 42);
+        source = new ByteBufferPixelSource(pixels, resolution.width, resolution.height, 4);
+        stbCallback = STBIWriteCallback.create((context, data, size) -> sink.count += size);
+
+        System.out.printf("%n%s output size: vanilla %,d B, single-threaded %,d B, parallel %,d B%n",
+                resolution, vanilla(), singleThreaded(), parallel());
+    }
+
+    @TearDown
+    public void tearDown() {
+        stbCallback.free();
+    }
+
+    @Benchmark
+    public long vanilla() {
+        sink.count = 0;
+        STBImageWrite.nstbi_write_png_to_func(stbCallback.address(), 0L, resolution.width, resolution.height, 4,
+                MemoryUtil.memAddress(pixels), 0);
+        return sink.count;
+    }
+
+    @Benchmark
+    public long singleThreaded() throws IOException {
+        sink.count = 0;
+        new PngEncoder().encode(source, sink);
+        return sink.count;
+    }
+
+    @Benchmark
+    public long parallel() throws IOException {
+        sink.count = 0;
+        new ParallelPngEncoder().encode(source, sink);
+        return sink.count;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.benchmark;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.ByteBufferPixelSource;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PngEncoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Encoded PNG fixtures of {@link SyntheticScreenshot}s, as vanilla would
+ * leave them on disk before metadata is embedded: IHDR, 64 KiB IDAT chunks,
+ * IEND.
+ *
+ * <p>
+ * Encoding an 8K fixture takes a few seconds, so each resolution is encoded
+ * once per JVM and shared by all benchmarks in the fork.
+ * </p>
+ */
+public final class PngFixtures {
+
+    private static final Map<SyntheticScreenshot.Resolution, byte[]> CACHE = new EnumMap<>(
+            SyntheticScreenshot.Resolution.class);
+
+    private PngFixtures() {
+    }
+
+    /**
+     * Gets the encoded fixture for a resolution.
+     *
+     * @param resolution The resolution
+     * @return The complete PNG file; do not modify
+     */
+    public static synchronized byte[] png(SyntheticScreenshot.Resolution resolution) {
+        return CACHE.computeIfAbsent(resolution, r -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(r.width * r.height);
+            try {
+                new PngEncoder(1, true).encode(
+                        new ByteBufferPixelSource(SyntheticScreenshot.render(r.width, r.height, 42), r.width,
+                                r.height, 4),
+                        out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        });
+    }
+}
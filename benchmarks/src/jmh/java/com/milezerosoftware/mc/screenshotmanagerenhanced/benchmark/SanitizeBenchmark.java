@@ -0,0 +1,41 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.benchmark;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.PathTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sanitizing a world name for use as a folder name.
+ *
+ * <p>
+ * {@code WorldUtils} initializes the game client when loaded, so its
+ * {@code sanitize} cannot run outside the game; {@link #worldUtils} is a
+ * verbatim copy of it. {@link #pathTemplate} is the single-pass sanitizer
+ * that folder templates use, with the same rule.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SanitizeBenchmark {
+
+    @Param({ "New World", "play.example-server.net", "Alex's \"Epic\" <Build> World: Season 4/5" })
+    public String name;
+
+    @Benchmark
+    public String worldUtils() {
+        return name.replaceAll("[^a-zA-Z0-9\\.\\-\\(\\)]", "_");
+    }
+
+    @Benchmark
+    public String pathTemplate() {
+        return PathTemplate.sanitize(name);
+    }
+}
@@ -0,0 +1,101 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Deterministic, screenshot-like RGBA fixtures for benchmarks.
+ *
+ * <p>
+ * Random noise is incompressible and flat colour compresses trivially, and
+ * neither says much about real captures. These images mimic a game frame: a
+ * sky gradient over blocky terrain made of noisy 16x16 textures with
+ * distance shading, which lands in the same size range as real screenshots.
+ * </p>
+ */
+public final class SyntheticScreenshot {
+
+    /** Standard capture sizes used across the benchmarks. */
+    public enum Resolution {
+        P720(1280, 720),
+        P1080(1920, 1080),
+        K4(3840, 2160),
+        K8(7680, 4320);
+
+        public final int width;
+        public final int height;
+
+        Resolution(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private static final int TEXTURES = 8;
+    private static final int TEXELS = 16;
+
+    private SyntheticScreenshot() {
+    }
+
+    /**
+     * Renders a fixture into a new direct buffer, like the off-heap memory of
+     * a {@code NativeImage}.
+     *
+     * @param width  The width in pixels
+     * @param height The height in pixels
+     * @param seed   Seed for the textures and terrain
+     * @return Tightly packed RGBA pixels
+     */
+    public static ByteBuffer render(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[][] textures = new int[TEXTURES][TEXELS * TEXELS];
+        for (int[] texture : textures) {
+            int base = random.nextInt(0x1000000);
+            for (int i = 0; i < texture.length; i++) {
+                int jitter = random.nextInt(48) - 24;
+                texture[i] = shade(base, 1.0 + jitter / 255.0);
+            }
+        }
+
+        int blockPixels = Math.max(2, height / 90);
+        int texelPixels = Math.max(1, blockPixels / TEXELS);
+        int[] horizon = new int[width];
+        double phase = random.nextDouble() * Math.PI;
+        for (int x = 0; x < width; x++) {
+            double t = x / (double) width;
+            horizon[x] = (int) (height * (0.45 + 0.08 * Math.sin(t * 9 + phase) + 0.03 * Math.sin(t * 37)));
+        }
+
+        ByteBuffer pixels = ByteBuffer.allocateDirect(width * height * 4);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int rgb;
+                if (y < horizon[x]) {
+                    double t = y / (double) height;
+                    rgb = ((int) (120 + 60 * t) << 16) | ((int) (170 + 50 * t) << 8) | 255;
+                } else {
+                    int blockX = x / blockPixels;
+                    int blockY = (y - horizon[x]) / blockPixels;
+                    int texture = Math.floorMod(blockX * 31 + blockY * 17 + (blockX ^ blockY), TEXTURES);
+                    int u = (x / texelPixels) % TEXELS;
+                    int v = (y / texelPixels) % TEXELS;
+                    double depth = 0.55 + 0.45 * (y - horizon[x]) / (double) Math.max(1, height - horizon[x]);
+                    rgb = shade(textures[texture][v * TEXELS + u], depth);
+                }
+                pixels.put((byte) (rgb >> 16)).put((byte) (rgb >> 8)).put((byte) rgb).put((byte) 0xFF);
+            }
+        }
+        return pixels.flip();
+    }
+
+    private static int shade(int rgb, double factor) {
+        int r = clamp((int) (((rgb >> 16) & 0xFF) * factor));
+        int g = clamp((int) (((rgb >> 8) & 0xFF) * factor));
+        int b = clamp((int) ((rgb & 0xFF) * factor));
+        return (r << 16) | (g << 8) | b;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
@@ -0,0 +1,94 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.benchmark;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.ByteArrayPixelSource;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.ByteBufferPixelSource;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PixelSource;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PngEncoder;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.thumbnail.Thumbnail;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.thumbnail.ThumbnailPack;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.thumbnail.ThumbnailScaler;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.thumbnail.ThumbnailService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The cost of a thumbnail at capture time, downscaling the frame and encoding
+ * the result, and of looking one up in a pack of {@value #THUMBNAILS}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ThumbnailBenchmark {
+
+    private static final int THUMBNAILS = 2_000;
+
+    @Param({ "P1080", "K4" })
+    public SyntheticScreenshot.Resolution resolution;
+
+    private PixelSource source;
+    private ByteArrayPixelSource thumbnail;
+    private Path dir;
+    private ThumbnailPack pack;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        source = new ByteBufferPixelSource(SyntheticScreenshot.render(resolution.width, resolution.height, 42),
+                resolution.width, resolution.height, 4);
+        thumbnail = ThumbnailScaler.downscale(source, ThumbnailService.MAX_SIZE);
+        byte[] png = encode();
+
+        dir = Files.createTempDirectory("sme-thumbnail-bench");
+        pack = new ThumbnailPack(dir);
+        for (int i = 0; i < THUMBNAILS; i++) {
+            pack.put("World/" + i + ".png", thumbnail.getWidth(), thumbnail.getHeight(), png);
+        }
+        System.out.printf("%n%s thumbnail: %,d B, pack %,d B%n", resolution, png.length, pack.fileSize());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        pack.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /** Box filter from the full frame; runs on the thread writing the file. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ByteArrayPixelSource downscale() {
+        return ThumbnailScaler.downscale(source, ThumbnailService.MAX_SIZE);
+    }
+
+    /** PNG encoding of the thumbnail; runs on the background writer. */
+    @Benchmark
+    public byte[] encode() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        new PngEncoder().encode(thumbnail, out);
+        return out.toByteArray();
+    }
+
+    /** Lookup through the mapping, including the CRC check. */
+    @Benchmark
+    public Thumbnail get() throws Exception {
+        next = (next + 7919) % THUMBNAILS;
+        return pack.get("World/" + next + ".png");
+    }
+}
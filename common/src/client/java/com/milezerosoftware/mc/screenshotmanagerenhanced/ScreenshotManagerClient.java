@@ -1,6 +1,30 @@
 package com.milezerosoftware.mc.screenshotmanagerenhanced;
 
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.archive.ArchiveService;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.capture.CaptureController;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog.ScreenshotCatalog;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.duplicate.DuplicateDetector;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.event.ScreenshotEvents;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.gallery.GalleryButton;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.migration.LibraryMigrationService;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.optimizer.ScreenshotOptimizer;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.quota.StorageQuotaService;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.shard.ShardService;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.thumbnail.ThumbnailService;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ClientIdleTracker;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataWriterService;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ScreenshotCompletionTracker;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.WorldUtils;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ConfigManager;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ModConfig;
 import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientWorldEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.screen.v1.ScreenEvents;
+import net.minecraft.client.gui.screen.GameMenuScreen;
 
 public class ScreenshotManagerClient implements ClientModInitializer {
 	@Override
@@ -11,10 +35,69 @@ public class ScreenshotManagerClient implements ClientModInitializer {
 
 		// Load configuration (generates file if missing)
 		com.milezerosoftware.mc.screenshotmanagerenhanced.config.ConfigManager.load();
+		// Pick up edits made in a text editor while the game is running
+		ConfigManager.startWatching();
 
-		// Note: At this point, the world is not yet loaded, so WorldUtils will return
-		// defaults.
-		// World identification logic will be fully verified when screenshots are taken
-		// or world join events are hooked.
+		// Resolve the world identity once per connection rather than per screenshot
+		ClientPlayConnectionEvents.JOIN.register((handler, sender, client) -> WorldUtils.onJoin());
+		ClientWorldEvents.AFTER_CLIENT_WORLD_CHANGE.register((client, world) -> WorldUtils.onWorldChange(world));
+		ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> WorldUtils.onDisconnect());
+
+		// Start embedding metadata as soon as vanilla has written a screenshot
+		ScreenshotEvents.WRITTEN.register(ScreenshotCompletionTracker::onWritten);
+
+		// Capture burst and timelapse frames as they fall due
+		ClientTickEvents.END_CLIENT_TICK.register(CaptureController::onEndTick);
+
+		// Fold near-duplicates away, then keep the screenshot catalog current as
+		// metadata is written
+		MetadataHandler.addWrittenListener((file, metadata) -> ScreenshotCatalog
+				.recordWritten(DuplicateDetector.onWritten(file, metadata), metadata));
+
+		// Open the screenshot gallery from the pause menu, on versions that have it
+		if (GalleryButton.isAvailable()) {
+			ScreenEvents.AFTER_INIT.register((client, screen, scaledWidth, scaledHeight) -> {
+				if (screen instanceof GameMenuScreen menu && menu.shouldShowMenu()) {
+					GalleryButton.add(screen);
+				}
+			});
+		}
+
+		// Recompress saved screenshots while the player is in menus or AFK
+		ClientTickEvents.END_CLIENT_TICK.register(ClientIdleTracker::onEndTick);
+		ClientLifecycleEvents.CLIENT_STARTED.register(client -> {
+			ScreenshotCatalog.start(client.runDirectory.toPath().resolve("screenshots"));
+			ThumbnailService.start(client.runDirectory.toPath().resolve("screenshots"));
+			DuplicateDetector.start(client.runDirectory.toPath().resolve("screenshots"));
+			// Keep each world within its storage limits
+			StorageQuotaService.start(client.runDirectory.toPath().resolve("screenshots"));
+			ModConfig config = ConfigManager.getInstance();
+			if (config.backgroundOptimization) {
+				ScreenshotOptimizer.start(client.runDirectory.toPath().resolve("screenshots"),
+						config.optimizerCpuBudgetPercent);
+			}
+			// Finish moving screenshots if the last session exited mid-migration
+			LibraryMigrationService.start(client.runDirectory.toPath().resolve("screenshots"), config);
+			// Pack old date folders, or unpack them if archiving was turned off
+			ArchiveService.start(client.runDirectory.toPath().resolve("screenshots"), config);
+			// Split over-full folders when grouping adaptively
+			ShardService.start(client.runDirectory.toPath().resolve("screenshots"), config);
+		});
+
+		// Let queued metadata finish writing before the game exits
+		ClientLifecycleEvents.CLIENT_STOPPING.register(client -> {
+			ConfigManager.stopWatching();
+			LibraryMigrationService.shutdown();
+			ArchiveService.shutdown();
+			ShardService.shutdown();
+			ScreenshotOptimizer.shutdown();
+			CaptureController.shutdown();
+			ScreenshotCompletionTracker.shutdown();
+			MetadataWriterService.shutdown();
+			ThumbnailService.shutdown();
+			DuplicateDetector.shutdown();
+			StorageQuotaService.shutdown();
+			ScreenshotCatalog.shutdown();
+		});
 	}
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.archive;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog.ScreenshotCatalog;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.PathTemplate;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ScreenshotPathGenerator;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ModConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packs old date folders into archives in the background, and unpacks them
+ * when archiving is turned off.
+ *
+ * <p>
+ * A {@link FolderArchiver} runs on a single low-priority daemon thread once
+ * per start, and again when the archiving setting or the folder layout
+ * changes. With archiving off, the library is only scanned if it may still
+ * hold archives. The {@link ScreenshotCatalog} is reconciled after files were
+ * moved. On exit a running pass is cancelled; the next start finishes it.
+ * </p>
+ */
+public final class ArchiveService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+
+    private static final long STOP_TIMEOUT_MS = 5000;
+
+    private static volatile ArchiveService instance;
+
+    private final Path root;
+    private final ExecutorService executor;
+    private volatile FolderArchiver running;
+    private int scheduledDays = -1;
+    private String scheduledTemplate;
+
+    private ArchiveService(Path root) {
+        this.root = root;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ScreenshotArchiver");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts the shared service, if it is not running yet, and brings the
+     * library in line with the configuration.
+     *
+     * @param screenshotsDir The screenshots folder
+     * @param config         The mod configuration
+     */
+    public static synchronized void start(Path screenshotsDir, ModConfig config) {
+        if (instance != null) {
+            return;
+        }
+        instance = new ArchiveService(screenshotsDir);
+        instance.schedule(config);
+    }
+
+    /**
+     * Packs or unpacks folders after the archiving setting or the folder
+     * layout changed.
+     *
+     * @param config The configuration now in use
+     */
+    public static synchronized void onConfigChanged(ModConfig config) {
+        if (instance != null) {
+            instance.schedule(config);
+        }
+    }
+
+    /**
+     * Stops the shared service. A pass in progress stops after the folder
+     * being packed or unpacked.
+     */
+    public static void shutdown() {
+        ArchiveService service;
+        synchronized (ArchiveService.class) {
+            service = instance;
+            instance = null;
+        }
+        if (service == null) {
+            return;
+        }
+        FolderArchiver archiver = service.running;
+        if (archiver != null) {
+            archiver.cancel();
+        }
+        service.executor.shutdownNow();
+        try {
+            service.executor.awaitTermination(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void schedule(ModConfig config) {
+        int days = config.archiveAfterDays;
+        PathTemplate template = ScreenshotPathGenerator.getTemplate(config);
+        if (days == scheduledDays && template.getSource().equals(scheduledTemplate)) {
+            return;
+        }
+        scheduledDays = days;
+        scheduledTemplate = template.getSource();
+        executor.execute(() -> {
+            try {
+                run(template, days);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Screenshot archiving failed: {}", e.getMessage());
+            }
+        });
+    }
+
+    private void run(PathTemplate template, int days) {
+        FolderArchiver archiver = new FolderArchiver(root);
+        if (days <= 0 && !archiver.mayHaveArchives()) {
+            return;
+        }
+        running = archiver;
+        try {
+            FolderArchiver.Result result = archiver.run(template, days, LocalDate.now());
+            if (result.changed() || result.failed() > 0) {
+                LOGGER.info("Archived {} files into {} folders and unpacked {} files from {} archives, {} MB, in "
+                        + "{} ms ({} failed){}", result.packedFiles(), result.packedFolders(),
+                        result.unpackedFiles(), result.unpackedFolders(), result.bytes() >> 20,
+                        result.elapsedNanos() / 1_000_000, result.failed(),
+                        result.cancelled() ? ", to be continued next start" : "");
+            }
+            ScreenshotCatalog catalog = ScreenshotCatalog.getInstance();
+            if (catalog != null && result.changed()) {
+                catalog.reconcile();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to update the screenshot catalog after archiving: {}", e.getMessage());
+        } finally {
+            running = null;
+        }
+    }
+}
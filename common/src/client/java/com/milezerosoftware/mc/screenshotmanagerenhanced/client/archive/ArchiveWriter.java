@@ -0,0 +1,233 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.zip.CRC32;
+
+/**
+ * Writes a {@link ScreenshotArchive}: uncompressed ZIP entries copied with
+ * {@link FileChannel#transferTo}, followed by the central directory.
+ *
+ * <p>
+ * {@code STORED} entries must carry their CRC-32 in the local header, so a
+ * file is read once to checksum it and then transferred, which the operating
+ * system serves from the page cache. The central directory is built in memory
+ * and written by {@link #finish}, which also forces the archive to disk.
+ * Files of 4 GiB or more are refused; offsets past 4 GiB and more than 65535
+ * entries use the Zip64 records.
+ * </p>
+ */
+final class ArchiveWriter implements Closeable {
+
+    private static final int VERSION_STORED = 10;
+    private static final int VERSION_ZIP64 = 45;
+    /** Names are UTF-8. */
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int TIMESTAMP_EXTRA_SIZE = 4 + 5;
+    private static final int CRC_BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel out;
+    private final ByteArrayOutputStream directory = new ByteArrayOutputStream();
+    private final ByteBuffer crcBuffer = ByteBuffer.allocateDirect(CRC_BUFFER_SIZE);
+    private long entries;
+    private boolean zip64;
+
+    /**
+     * Creates or truncates the archive file.
+     *
+     * @param file The file to write
+     * @throws IOException If it cannot be opened
+     */
+    ArchiveWriter(Path file) throws IOException {
+        this.out = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Packs a file.
+     *
+     * @param name     The entry name
+     * @param source   The open file
+     * @param modified The modification time in milliseconds
+     * @return The entry as written
+     * @throws IOException If reading or writing fails, or the file is too large
+     */
+    ScreenshotArchive.Entry add(String name, FileChannel source, long modified) throws IOException {
+        long size = source.size();
+        return add(name, source, 0, size, crc(source, size), modified / 1000);
+    }
+
+    /**
+     * Copies an entry of another archive without checksumming it again.
+     *
+     * @param archive The archive holding the entry
+     * @param entry   The entry
+     * @return The entry as written
+     * @throws IOException If reading or writing fails
+     */
+    ScreenshotArchive.Entry copy(ScreenshotArchive archive, ScreenshotArchive.Entry entry) throws IOException {
+        return add(entry.name(), archive.channel(), archive.dataOffset(entry), entry.size(), entry.crc(),
+                entry.modified());
+    }
+
+    private ScreenshotArchive.Entry add(String name, FileChannel source, long position, long size, int crc,
+            long modifiedSeconds) throws IOException {
+        if (size >= 0xFFFFFFFFL) {
+            throw new IOException("Too large to archive: " + name);
+        }
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int dosTime = dosTime(modifiedSeconds * 1000);
+        long offset = out.position();
+
+        ByteBuffer header = ByteBuffer.allocate(ScreenshotArchive.LOCAL_HEADER_SIZE + nameBytes.length
+                + TIMESTAMP_EXTRA_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(ScreenshotArchive.LOCAL_HEADER)
+                .putShort((short) VERSION_STORED)
+                .putShort((short) FLAG_UTF8)
+                .putShort((short) 0) // STORED
+                .putInt(dosTime)
+                .putInt(crc)
+                .putInt((int) size)
+                .putInt((int) size)
+                .putShort((short) nameBytes.length)
+                .putShort((short) TIMESTAMP_EXTRA_SIZE)
+                .put(nameBytes);
+        putTimestamp(header, modifiedSeconds);
+        writeFully(header.flip());
+        long written = out.position();
+        ScreenshotArchive.transferFully(source, position, size, out);
+        if (out.position() != written + size) {
+            out.position(written + size); // Some platforms transfer without moving the position
+        }
+
+        boolean largeOffset = offset >= 0xFFFFFFFFL;
+        zip64 |= largeOffset;
+        int extraLength = TIMESTAMP_EXTRA_SIZE + (largeOffset ? 4 + 8 : 0);
+        ByteBuffer central = ByteBuffer.allocate(ScreenshotArchive.CENTRAL_HEADER_SIZE + nameBytes.length
+                + extraLength).order(ByteOrder.LITTLE_ENDIAN);
+        central.putInt(ScreenshotArchive.CENTRAL_HEADER)
+                .putShort((short) VERSION_ZIP64) // Made by, MS-DOS attributes
+                .putShort((short) (largeOffset ? VERSION_ZIP64 : VERSION_STORED))
+                .putShort((short) FLAG_UTF8)
+                .putShort((short) 0)
+                .putInt(dosTime)
+                .putInt(crc)
+                .putInt((int) size)
+                .putInt((int) size)
+                .putShort((short) nameBytes.length)
+                .putShort((short) extraLength)
+                .putShort((short) 0) // Comment length
+                .putShort((short) 0) // Disk number
+                .putShort((short) 0) // Internal attributes
+                .putInt(0) // External attributes
+                .putInt(largeOffset ? -1 : (int) offset)
+                .put(nameBytes);
+        putTimestamp(central, modifiedSeconds);
+        if (largeOffset) {
+            central.putShort(ScreenshotArchive.EXTRA_ZIP64).putShort((short) 8).putLong(offset);
+        }
+        directory.write(central.array(), 0, central.position());
+        entries++;
+        return new ScreenshotArchive.Entry(name, size, crc, modifiedSeconds, offset);
+    }
+
+    /**
+     * Writes the central directory and the end records, then forces the
+     * archive to disk.
+     *
+     * @throws IOException If writing fails
+     */
+    void finish() throws IOException {
+        long directoryOffset = out.position();
+        writeFully(ByteBuffer.wrap(directory.toByteArray()));
+        long directorySize = directory.size();
+        long endOffset = out.position();
+        boolean large = zip64 || entries >= 0xFFFF || directoryOffset >= 0xFFFFFFFFL
+                || directorySize >= 0xFFFFFFFFL;
+
+        byte[] comment = ScreenshotArchive.COMMENT.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer end = ByteBuffer.allocate(ScreenshotArchive.ZIP64_END_SIZE + ScreenshotArchive.ZIP64_LOCATOR_SIZE
+                + ScreenshotArchive.END_SIZE + comment.length).order(ByteOrder.LITTLE_ENDIAN);
+        if (large) {
+            end.putInt(ScreenshotArchive.ZIP64_END_OF_CENTRAL_DIRECTORY)
+                    .putLong(ScreenshotArchive.ZIP64_END_SIZE - 12)
+                    .putShort((short) VERSION_ZIP64)
+                    .putShort((short) VERSION_ZIP64)
+                    .putInt(0)
+                    .putInt(0)
+                    .putLong(entries)
+                    .putLong(entries)
+                    .putLong(directorySize)
+                    .putLong(directoryOffset);
+            end.putInt(ScreenshotArchive.ZIP64_LOCATOR)
+                    .putInt(0)
+                    .putLong(endOffset)
+                    .putInt(1);
+        }
+        end.putInt(ScreenshotArchive.END_OF_CENTRAL_DIRECTORY)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putShort((short) (large ? 0xFFFF : entries))
+                .putShort((short) (large ? 0xFFFF : entries))
+                .putInt(large ? -1 : (int) directorySize)
+                .putInt(large ? -1 : (int) directoryOffset)
+                .putShort((short) comment.length)
+                .put(comment);
+        writeFully(end.flip());
+        out.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private int crc(FileChannel source, long size) throws IOException {
+        CRC32 crc = new CRC32();
+        for (long position = 0; position < size;) {
+            crcBuffer.clear();
+            int read = source.read(crcBuffer, position);
+            if (read < 0) {
+                throw new IOException("File shrank while archiving");
+            }
+            crc.update(crcBuffer.flip());
+            position += read;
+        }
+        return (int) crc.getValue();
+    }
+
+    private void writeFully(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+    }
+
+    /** The extended timestamp field, holding the modification time. */
+    private static void putTimestamp(ByteBuffer buf, long modifiedSeconds) {
+        buf.putShort(ScreenshotArchive.EXTRA_TIMESTAMP).putShort((short) 5).put((byte) 1)
+                .putInt((int) modifiedSeconds);
+    }
+
+    /**
+     * Packs a time into the MS-DOS date and time fields, in local time as
+     * ZIP tools expect: date in the high half, time in the low.
+     */
+    static int dosTime(long millis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16); // 1980-01-01, the earliest it can hold
+        }
+        return (time.getYear() - 1980) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16
+                | time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+    }
+}
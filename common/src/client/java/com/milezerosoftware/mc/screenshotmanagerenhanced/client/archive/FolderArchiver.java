@@ -0,0 +1,507 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.archive;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.migration.LibraryMigration;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.optimizer.ScreenshotOptimizer;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.AdaptiveShards;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.PathTemplate;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.PathTemplate.Variable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Packs old date folders into one {@link ScreenshotArchive} each, and unpacks
+ * them again.
+ *
+ * <p>
+ * A folder is a date folder if the library's path template matches it and
+ * its values name a day, such as {@code World/2025-01-30} under
+ * {@code {world}/{date}}. {@link #run} packs every date folder from before the
+ * cutoff into {@code 2025-01-30.zip} next to it, and unpacks the mod's
+ * archives whose folder is no longer old enough, or every one of them when
+ * archiving is turned off.
+ * </p>
+ *
+ * <p>
+ * Nothing is journaled: what is left to do is read back from the file
+ * system, since a file is either loose, packed, or both while a step is
+ * unfinished. {@linkplain #pack Packing} writes the new archive to a temporary
+ * file, forces it to disk and renames it over the old archive, and only then
+ * deletes the loose files, each only if the archive holds it with the same
+ * size and modification time. {@linkplain #unpack Unpacking} writes every
+ * file to a temporary name, checks its CRC-32 and renames it into place, and
+ * deletes the archive once all of them are out. A crash or exit at any point
+ * leaves every screenshot whole in at least one place, and the next run picks
+ * up where this one stopped.
+ * </p>
+ */
+public final class FolderArchiver {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+
+    static final String TEMP_SUFFIX = ".tmp";
+    /** Exists in the state directory while the library may hold archives. */
+    static final String MARKER_FILE = "archived";
+    private static final int CRC_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The outcome of a run.
+     *
+     * @param packedFolders   Folders packed, or added to their archive
+     * @param packedFiles     Files moved into archives
+     * @param unpackedFolders Archives unpacked and removed
+     * @param unpackedFiles   Files moved out of archives
+     * @param failed          Folders or archives left as they were after an
+     *                        error
+     * @param bytes           The bytes packed or unpacked
+     * @param cancelled       Whether the run was {@linkplain #cancel cancelled}
+     * @param elapsedNanos    The time taken
+     */
+    public record Result(int packedFolders, int packedFiles, int unpackedFolders, int unpackedFiles, int failed,
+            long bytes, boolean cancelled, long elapsedNanos) {
+
+        /**
+         * @return {@code true} if any file was moved in or out of an archive
+         */
+        public boolean changed() {
+            return packedFiles > 0 || unpackedFiles > 0;
+        }
+    }
+
+    private final Path root;
+    private final Path marker;
+    private volatile boolean cancelled;
+    private int packedFolders;
+    private int packedFiles;
+    private int unpackedFolders;
+    private int unpackedFiles;
+    private int failed;
+    private long bytes;
+
+    /**
+     * Creates an archiver for a screenshots folder.
+     *
+     * @param root The screenshots folder
+     */
+    public FolderArchiver(Path root) {
+        this.root = root;
+        this.marker = root.resolve(ScreenshotOptimizer.STATE_DIR).resolve(MARKER_FILE);
+    }
+
+    /**
+     * Packs the date folders older than a number of days and unpacks the
+     * archives that are not.
+     *
+     * @param template The library's path template
+     * @param days     Folders of days at least this many days before
+     *                 {@code today} are packed; 0 unpacks every archive
+     * @param today    The current day
+     * @return The outcome
+     */
+    public Result run(PathTemplate template, int days, LocalDate today) {
+        long start = System.nanoTime();
+        long cutoff = days > 0
+                ? today.minusDays(days - 1L).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : Long.MIN_VALUE;
+        List<Path> toPack = new ArrayList<>();
+        List<Path> toUnpack = new ArrayList<>();
+        scan(template, days > 0, cutoff, toPack, toUnpack);
+
+        for (Path archive : toUnpack) {
+            if (cancelled) {
+                break;
+            }
+            if (!ScreenshotArchive.isOurs(archive)) {
+                continue; // The player's own ZIP file
+            }
+            try {
+                unpack(archive);
+            } catch (IOException e) {
+                // Cancelling interrupts the file channels; the next run retries
+                if (!cancelled) {
+                    failed++;
+                    LOGGER.warn("Failed to unpack {}: {}", archive, e.getMessage());
+                }
+            }
+        }
+        if (!toPack.isEmpty()) {
+            try {
+                // Before the first archive exists, so it is found again after a crash
+                Files.createDirectories(marker.getParent());
+                Files.write(marker, new byte[0]);
+            } catch (IOException e) {
+                LOGGER.warn("Not archiving screenshots: {}", e.getMessage());
+                toPack.clear();
+            }
+        }
+        for (Path folder : toPack) {
+            if (cancelled) {
+                break;
+            }
+            try {
+                pack(folder);
+            } catch (IOException e) {
+                // Cancelling interrupts the file channels; the next run retries
+                if (!cancelled) {
+                    failed++;
+                    LOGGER.warn("Failed to archive {}: {}", folder, e.getMessage());
+                }
+            }
+        }
+        if (days <= 0 && failed == 0 && !cancelled) {
+            deleteQuietly(marker);
+        }
+        return new Result(packedFolders, packedFiles, unpackedFolders, unpackedFiles, failed, bytes, cancelled,
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Checks whether archives may exist, so that a library that was never
+     * archived is not scanned for them.
+     *
+     * @return {@code true} if a run packed folders and no later run with
+     *         archiving off unpacked them all
+     */
+    public boolean mayHaveArchives() {
+        return Files.exists(marker);
+    }
+
+    /**
+     * Stops a running {@link #run} after the folder in progress. Whatever is
+     * left is done by the next run.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Finds the folders to pack and the archives to unpack, and removes the
+     * temporary files an interrupted run left. Only the directory tree is
+     * listed; no file is opened.
+     */
+    private void scan(PathTemplate template, boolean archiving, long cutoff, List<Path> toPack,
+            List<Path> toUnpack) {
+        Map<Path, Boolean> old = new HashMap<>();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (!dir.equals(root) && dir.getFileName().toString().startsWith(".")) {
+                        return FileVisitResult.SKIP_SUBTREE; // The mod's state, trash and the like
+                    }
+                    if (archiving && !dir.equals(root) && isOld(dir, template, cutoff, old)
+                            && hasLooseFiles(dir)) {
+                        toPack.add(dir);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    String name = file.getFileName().toString();
+                    if (name.startsWith(".") && name.endsWith(ScreenshotArchive.SUFFIX + TEMP_SUFFIX)) {
+                        deleteQuietly(file);
+                    } else if (attrs.isRegularFile() && ScreenshotArchive.isArchiveName(name)) {
+                        Path folder = ScreenshotArchive.folderFor(file);
+                        if (!archiving || (template.match(relative(folder)) != null
+                                && !isOld(folder, template, cutoff, old))) {
+                            toUnpack.add(file);
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    LOGGER.debug("Failed to list {}: {}", file, e.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LOGGER.warn("Failed to scan {} for archiving: {}", root, e.getMessage());
+        }
+    }
+
+    private boolean isOld(Path folder, PathTemplate template, long cutoff, Map<Path, Boolean> cache) {
+        return cache.computeIfAbsent(folder, key -> {
+            Map<Variable, String> values = template.match(relative(key));
+            if (values == null) {
+                return false;
+            }
+            long time = LibraryMigration.folderTime(values);
+            return time >= 0 && time < cutoff;
+        });
+    }
+
+    private static boolean hasLooseFiles(Path dir) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path file : stream) {
+                if (isLoose(file)) {
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Failed to list {}: {}", dir, e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * @return {@code true} for a regular, visible file that is not an archive
+     *         of a subfolder
+     */
+    private static boolean isLoose(Path file) {
+        String name = file.getFileName().toString();
+        return !name.startsWith(".") && !ScreenshotArchive.isArchiveName(name)
+                && Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS);
+    }
+
+    /**
+     * Moves the files of a folder into its archive, adding them to the
+     * archive if one exists, and removes the folder if that empties it.
+     * Subfolders are left alone. Packed screenshots no longer count towards
+     * splitting the folder.
+     *
+     * @param folder The folder
+     * @return The number of files moved into the archive
+     * @throws IOException If the archive cannot be written, or exists and is
+     *                     not one of the mod's
+     */
+    public int pack(Path folder) throws IOException {
+        Path archive = ScreenshotArchive.archiveFor(folder);
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            for (Path file : stream) {
+                if (isLoose(file) && ScreenshotArchive.isSafeName(file.getFileName().toString())) {
+                    names.add(file.getFileName().toString());
+                }
+            }
+        }
+        if (names.isEmpty()) {
+            return 0;
+        }
+        names.sort(null); // Screenshot names sort by time
+
+        Map<String, ScreenshotArchive.Entry> packed = new LinkedHashMap<>();
+        ScreenshotArchive existing = Files.exists(archive) ? ScreenshotArchive.open(archive) : null;
+        try {
+            boolean rewrite = existing == null;
+            for (int i = 0; i < names.size() && !rewrite; i++) {
+                ScreenshotArchive.Entry entry = existing.entry(names.get(i));
+                rewrite = entry == null || !isPacked(folder.resolve(names.get(i)), entry);
+            }
+            if (rewrite) {
+                write(folder, archive, names, existing, packed);
+                existing = null; // Closed by write
+            } else {
+                // A run stopped after the rename; the archive already holds everything
+                for (String name : names) {
+                    packed.put(name, existing.entry(name));
+                }
+            }
+        } finally {
+            if (existing != null) {
+                existing.close();
+            }
+        }
+
+        int removed = 0;
+        int screenshots = 0;
+        for (ScreenshotArchive.Entry entry : packed.values()) {
+            Path file = folder.resolve(entry.name());
+            if (isPacked(file, entry)) {
+                Files.delete(file);
+                removed++;
+                bytes += entry.size();
+                if (AdaptiveShards.isScreenshot(entry.name())) {
+                    screenshots++;
+                }
+            }
+        }
+        AdaptiveShards.getInstance().removed(folder, screenshots);
+        try {
+            Files.deleteIfExists(folder);
+        } catch (DirectoryNotEmptyException e) {
+            // Holds subfolders, or files that changed while packing
+        }
+        packedFiles += removed;
+        packedFolders++;
+        return removed;
+    }
+
+    /**
+     * Writes a new archive holding the old archive's entries and the loose
+     * files, which replace entries of the same name, and puts it in place.
+     */
+    private void write(Path folder, Path archive, List<String> names, ScreenshotArchive existing,
+            Map<String, ScreenshotArchive.Entry> written) throws IOException {
+        Set<String> replaced = new HashSet<>(names);
+        Path temp = archive.resolveSibling("." + archive.getFileName() + TEMP_SUFFIX);
+        try {
+            try (ArchiveWriter writer = new ArchiveWriter(temp)) {
+                if (existing != null) {
+                    for (ScreenshotArchive.Entry entry : existing.entries()) {
+                        if (!replaced.contains(entry.name())) {
+                            writer.copy(existing, entry);
+                        }
+                    }
+                }
+                for (String name : names) {
+                    Path file = folder.resolve(name);
+                    try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+                        // Read after opening, so a file replaced meanwhile does not match and stays
+                        FileTime modified = Files.getLastModifiedTime(file);
+                        written.put(name, writer.add(name, source, modified.toMillis()));
+                    } catch (NoSuchFileException e) {
+                        // Moved away meanwhile
+                    }
+                }
+                writer.finish();
+            } finally {
+                if (existing != null) {
+                    existing.close();
+                }
+            }
+            Files.move(temp, archive, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * Moves every file of an archive back into its folder and deletes the
+     * archive. A file already in the folder with the same size and
+     * modification time counts as unpacked; one that differs is left alone,
+     * and the archive kept.
+     *
+     * @param archive The archive
+     * @return The number of files moved out of the archive
+     * @throws IOException If the archive cannot be read or is not one of the
+     *                     mod's, or a file cannot be written
+     */
+    public int unpack(Path archive) throws IOException {
+        Path folder = ScreenshotArchive.folderFor(archive);
+        int restored = 0;
+        int conflicts = 0;
+        try (ScreenshotArchive packed = ScreenshotArchive.open(archive)) {
+            Files.createDirectories(folder);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CRC_BUFFER_SIZE);
+            for (ScreenshotArchive.Entry entry : packed.entries()) {
+                if (!ScreenshotArchive.isSafeName(entry.name())) {
+                    throw new IOException("Unsafe entry name " + entry.name() + " in " + archive);
+                }
+                Path target = folder.resolve(entry.name());
+                if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+                    if (!isPacked(target, entry)) {
+                        conflicts++;
+                        LOGGER.warn("Not unpacking {} from {}: a different file has its name", entry.name(),
+                                archive);
+                    }
+                    continue;
+                }
+                Path temp = folder.resolve("." + entry.name() + TEMP_SUFFIX);
+                try {
+                    try (FileChannel out = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                        packed.transferTo(entry.name(), out);
+                        out.force(true);
+                        if (crc(out, entry.size(), buffer) != entry.crc()) {
+                            throw new IOException("CRC mismatch for " + entry.name() + " in " + archive);
+                        }
+                    }
+                    if (entry.modified() >= 0) {
+                        Files.setLastModifiedTime(temp, FileTime.fromMillis(entry.modified() * 1000));
+                    }
+                    Files.move(temp, target); // Never replaces a file that appeared meanwhile
+                } catch (FileAlreadyExistsException e) {
+                    conflicts++;
+                    deleteQuietly(temp);
+                    continue;
+                } catch (IOException | RuntimeException e) {
+                    deleteQuietly(temp);
+                    throw e;
+                }
+                restored++;
+                bytes += entry.size();
+                if (AdaptiveShards.isScreenshot(entry.name())) {
+                    AdaptiveShards.getInstance().added(folder, 1);
+                }
+            }
+        }
+        unpackedFiles += restored;
+        if (conflicts > 0) {
+            throw new IOException(conflicts + " files are in the way; keeping the archive");
+        }
+        Files.delete(archive);
+        unpackedFolders++;
+        return restored;
+    }
+
+    /**
+     * @return {@code true} if the file is the one the entry was packed from,
+     *         or unpacked to, going by its size and modification time
+     */
+    private static boolean isPacked(Path file, ScreenshotArchive.Entry entry) throws IOException {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            return attrs.isRegularFile() && attrs.size() == entry.size()
+                    && attrs.lastModifiedTime().toMillis() / 1000 == entry.modified();
+        } catch (NoSuchFileException e) {
+            return false; // Moved away meanwhile; the archive keeps a copy
+        }
+    }
+
+    private static int crc(FileChannel channel, long size, ByteBuffer buffer) throws IOException {
+        CRC32 crc = new CRC32();
+        for (long position = 0; position < size;) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            crc.update(buffer.flip());
+            position += read;
+        }
+        return (int) crc.getValue();
+    }
+
+    private String relative(Path dir) {
+        return root.relativize(dir).toString().replace('\\', '/');
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.debug("Could not remove {}: {}", file, e.getMessage());
+        }
+    }
+}
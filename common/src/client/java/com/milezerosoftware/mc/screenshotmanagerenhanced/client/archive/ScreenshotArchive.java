@@ -0,0 +1,395 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.archive;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler.ScreenshotMetadata;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A date folder packed into one uncompressed ZIP file by
+ * {@link FolderArchiver}, opened for reading single screenshots.
+ *
+ * <p>
+ * Every entry is {@code STORED}, so a screenshot is one contiguous range of
+ * the archive. Opening reads only the ZIP central directory at the end of the
+ * file, which is the archive's index: the name, size, CRC-32, modification
+ * time and header offset of every entry, including the Zip64 forms for
+ * archives past 4 GiB or 65535 entries. A screenshot is then copied out with
+ * {@link FileChannel#transferTo}, and its XMP packet read from the chunk
+ * headers in front of the image data, without unpacking anything else.
+ * </p>
+ *
+ * <p>
+ * Archives carry {@link #COMMENT} as their ZIP comment; other ZIP files are
+ * refused, so the archiver never unpacks or rewrites an archive the player
+ * made. All methods are thread-safe.
+ * </p>
+ */
+public final class ScreenshotArchive implements Closeable {
+
+    /** The file name suffix of an archive, which sits next to its folder. */
+    public static final String SUFFIX = ".zip";
+    /** The ZIP comment that marks an archive as the mod's own. */
+    static final String COMMENT = "screenshot-manager-enhanced archive 1";
+
+    static final int LOCAL_HEADER = 0x04034b50;
+    static final int CENTRAL_HEADER = 0x02014b50;
+    static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    static final int ZIP64_END_OF_CENTRAL_DIRECTORY = 0x06064b50;
+    static final int ZIP64_LOCATOR = 0x07064b50;
+    static final int LOCAL_HEADER_SIZE = 30;
+    static final int CENTRAL_HEADER_SIZE = 46;
+    static final int END_SIZE = 22;
+    static final int ZIP64_END_SIZE = 56;
+    static final int ZIP64_LOCATOR_SIZE = 20;
+    static final short EXTRA_ZIP64 = 0x0001;
+    static final short EXTRA_TIMESTAMP = 0x5455;
+    /** Largest central directory accepted, far above 65535 entries' worth. */
+    private static final long MAX_CENTRAL_DIRECTORY = 64L << 20;
+
+    /**
+     * One packed file.
+     *
+     * @param name         The file name within the folder
+     * @param size         The size in bytes
+     * @param crc          The CRC-32 of the contents
+     * @param modified     The modification time, in whole seconds since the
+     *                     epoch
+     * @param headerOffset The position of the entry's local header
+     */
+    public record Entry(String name, long size, int crc, long modified, long headerOffset) {
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Map<String, Entry> entries;
+    /** Where the contents of each entry read so far start. */
+    private final Map<String, Long> dataOffsets = new HashMap<>();
+
+    private ScreenshotArchive(Path file, FileChannel channel, Map<String, Entry> entries) {
+        this.file = file;
+        this.channel = channel;
+        this.entries = entries;
+    }
+
+    /**
+     * Opens an archive and reads its index.
+     *
+     * @param file The archive
+     * @return The open archive
+     * @throws IOException If the file cannot be read, is damaged, or is not an
+     *                     archive the mod wrote
+     */
+    public static ScreenshotArchive open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new ScreenshotArchive(file, channel, readIndex(file, channel));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Names the archive a folder is packed into: {@code 2025-01-30.zip} next
+     * to {@code 2025-01-30}.
+     *
+     * @param folder The folder
+     * @return The archive path
+     */
+    public static Path archiveFor(Path folder) {
+        return folder.resolveSibling(folder.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Names the folder an archive unpacks into.
+     *
+     * @param archive The archive
+     * @return The folder path
+     */
+    public static Path folderFor(Path archive) {
+        String name = archive.getFileName().toString();
+        return archive.resolveSibling(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * @param fileName A file name
+     * @return {@code true} if it has the archive suffix
+     */
+    public static boolean isArchiveName(String fileName) {
+        return fileName.toLowerCase(Locale.ROOT).endsWith(SUFFIX) && fileName.length() > SUFFIX.length();
+    }
+
+    /**
+     * @return The archive file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return Every entry, in the order they were packed
+     */
+    public Collection<Entry> entries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * Looks up an entry.
+     *
+     * @param name The file name within the folder
+     * @return The entry, or {@code null} if the archive does not hold it
+     */
+    public Entry entry(String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * Copies one file out of the archive.
+     *
+     * @param name   The file name within the folder
+     * @param target The channel to copy to
+     * @return {@code false} if the archive does not hold the file
+     * @throws IOException If reading or writing fails
+     */
+    public boolean transferTo(String name, WritableByteChannel target) throws IOException {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return false;
+        }
+        transferFully(channel, dataOffset(entry), entry.size(), target);
+        return true;
+    }
+
+    /**
+     * Reads one file out of the archive into memory.
+     *
+     * @param name The file name within the folder
+     * @return The contents, or {@code null} if the archive does not hold the
+     *         file
+     * @throws IOException If reading fails
+     */
+    public byte[] read(String name) throws IOException {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.size() > Integer.MAX_VALUE - 8) {
+            throw new IOException("Too large to read into memory: " + name);
+        }
+        ByteBuffer buf = ByteBuffer.allocate((int) entry.size());
+        readFully(channel, buf, dataOffset(entry));
+        return buf.array();
+    }
+
+    /**
+     * Reads the metadata of a packed screenshot: the packet embedded in a PNG,
+     * or failing that the packed sidecar, as
+     * {@link MetadataHandler#readMetadata} does for loose files.
+     *
+     * @param name The screenshot's file name within the folder
+     * @return The metadata, or {@code null} if the screenshot carries none or
+     *         is not in the archive
+     * @throws IOException If reading fails
+     */
+    public ScreenshotMetadata readMetadata(String name) throws IOException {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        String xmp = null;
+        if (name.toLowerCase(Locale.ROOT).endsWith(".png")) {
+            xmp = MetadataHandler.readEmbeddedXmp(channel, dataOffset(entry), entry.size());
+        }
+        if (xmp == null) {
+            int dot = name.lastIndexOf('.');
+            byte[] sidecar = read((dot > 0 ? name.substring(0, dot) : name) + ".xmp");
+            if (sidecar == null) {
+                return null;
+            }
+            xmp = new String(sidecar, StandardCharsets.UTF_8);
+        }
+        return MetadataHandler.parseXmp(xmp);
+    }
+
+    /**
+     * Finds where an entry's contents start, from the lengths in its local
+     * header. Those are the only bytes read outside the central directory.
+     */
+    synchronized long dataOffset(Entry entry) throws IOException {
+        Long cached = dataOffsets.get(entry.name());
+        if (cached != null) {
+            return cached;
+        }
+        ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, entry.headerOffset());
+        if (header.getInt(0) != LOCAL_HEADER) {
+            throw new IOException("Damaged archive entry " + entry.name() + " in " + file);
+        }
+        long offset = entry.headerOffset() + LOCAL_HEADER_SIZE + (header.getShort(26) & 0xFFFF)
+                + (header.getShort(28) & 0xFFFF);
+        if (offset + entry.size() > channel.size()) {
+            throw new IOException("Truncated archive entry " + entry.name() + " in " + file);
+        }
+        dataOffsets.put(entry.name(), offset);
+        return offset;
+    }
+
+    FileChannel channel() {
+        return channel;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static Map<String, Entry> readIndex(Path file, FileChannel channel) throws IOException {
+        long size = channel.size();
+        int tailLength = (int) Math.min(size, END_SIZE + 0xFFFF);
+        ByteBuffer tail = ByteBuffer.allocate(tailLength).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, tail, size - tailLength);
+
+        // The end record is followed only by its comment
+        int end = -1;
+        for (int i = tailLength - END_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY
+                    && i + END_SIZE + (tail.getShort(i + 20) & 0xFFFF) == tailLength) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new IOException("Not a ZIP file: " + file);
+        }
+        int commentLength = tail.getShort(end + 20) & 0xFFFF;
+        String comment = new String(tail.array(), end + END_SIZE, commentLength, StandardCharsets.UTF_8);
+        if (!COMMENT.equals(comment)) {
+            throw new IOException("Not a screenshot archive: " + file);
+        }
+
+        long count = tail.getShort(end + 10) & 0xFFFF;
+        long directorySize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+        long directoryOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+        if (count == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) {
+            long endPosition = size - tailLength + end;
+            ByteBuffer locator = ByteBuffer.allocate(ZIP64_LOCATOR_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, locator, endPosition - ZIP64_LOCATOR_SIZE);
+            if (locator.getInt(0) != ZIP64_LOCATOR) {
+                throw new IOException("Damaged archive: " + file);
+            }
+            ByteBuffer end64 = ByteBuffer.allocate(ZIP64_END_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, end64, locator.getLong(8));
+            if (end64.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY) {
+                throw new IOException("Damaged archive: " + file);
+            }
+            count = end64.getLong(32);
+            directorySize = end64.getLong(40);
+            directoryOffset = end64.getLong(48);
+        }
+        if (directorySize > MAX_CENTRAL_DIRECTORY || directoryOffset + directorySize > size) {
+            throw new IOException("Damaged archive: " + file);
+        }
+
+        ByteBuffer directory = ByteBuffer.allocate((int) directorySize).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, directory, directoryOffset);
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        int pos = 0;
+        for (long i = 0; i < count; i++) {
+            if (pos + CENTRAL_HEADER_SIZE > directorySize || directory.getInt(pos) != CENTRAL_HEADER) {
+                throw new IOException("Damaged archive: " + file);
+            }
+            int method = directory.getShort(pos + 10) & 0xFFFF;
+            int crc = directory.getInt(pos + 16);
+            long compressedSize = directory.getInt(pos + 20) & 0xFFFFFFFFL;
+            long entrySize = directory.getInt(pos + 24) & 0xFFFFFFFFL;
+            int nameLength = directory.getShort(pos + 28) & 0xFFFF;
+            int extraLength = directory.getShort(pos + 30) & 0xFFFF;
+            int entryCommentLength = directory.getShort(pos + 32) & 0xFFFF;
+            long headerOffset = directory.getInt(pos + 42) & 0xFFFFFFFFL;
+            int extra = pos + CENTRAL_HEADER_SIZE + nameLength;
+            if (extra + extraLength + entryCommentLength > directorySize) {
+                throw new IOException("Damaged archive: " + file);
+            }
+            if (method != 0 || compressedSize != entrySize) {
+                throw new IOException("Compressed entry in screenshot archive: " + file);
+            }
+            String name = new String(directory.array(), pos + CENTRAL_HEADER_SIZE, nameLength,
+                    StandardCharsets.UTF_8);
+
+            long modified = -1;
+            for (int field = extra; field + 4 <= extra + extraLength;) {
+                int tag = directory.getShort(field);
+                int length = directory.getShort(field + 2) & 0xFFFF;
+                if (tag == EXTRA_ZIP64 && headerOffset == 0xFFFFFFFFL && length >= 8) {
+                    // Only the header offset is ever too large; sizes stay 32-bit
+                    headerOffset = directory.getLong(field + 4);
+                } else if (tag == EXTRA_TIMESTAMP && length >= 5 && (directory.get(field + 4) & 1) != 0) {
+                    modified = directory.getInt(field + 5) & 0xFFFFFFFFL;
+                }
+                field += 4 + length;
+            }
+            entries.put(name, new Entry(name, entrySize, crc, modified, headerOffset));
+            pos = extra + extraLength + entryCommentLength;
+        }
+        return entries;
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, pos + buf.position()) < 0) {
+                throw new IOException("Unexpected end of file at byte " + (pos + buf.position()));
+            }
+        }
+    }
+
+    static void transferFully(FileChannel in, long position, long count, WritableByteChannel out)
+            throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long transferred = in.transferTo(position, end - position, out);
+            if (transferred <= 0) {
+                throw new IOException("Unexpected end of file at byte " + position);
+            }
+            position += transferred;
+        }
+    }
+
+    /**
+     * Checks that an entry name is a plain file name, so unpacking cannot
+     * write outside the folder.
+     */
+    static boolean isSafeName(String name) {
+        return !name.isEmpty() && !name.equals(".") && !name.equals("..") && name.indexOf('/') < 0
+                && name.indexOf('\\') < 0 && name.indexOf(':') < 0 && name.indexOf('\0') < 0;
+    }
+
+    /**
+     * @return {@code true} if the file is a readable archive the mod wrote
+     */
+    static boolean isOurs(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        try (ScreenshotArchive ignored = open(file)) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
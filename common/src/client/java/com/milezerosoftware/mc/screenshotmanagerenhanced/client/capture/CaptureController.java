@@ -0,0 +1,324 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.capture;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.ByteBufferPixelSource;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.event.ScreenshotEvents;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.mixin.NativeImageAccessor;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.quota.StorageQuotaService;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.thumbnail.ThumbnailService;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.AdaptiveShards;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ScreenshotFileAllocator;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ScreenshotFileWriter;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.CaptureMode;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ConfigManager;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.FrameDropPolicy;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ModConfig;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.texture.NativeImage;
+import net.minecraft.client.util.ScreenshotRecorder;
+import net.minecraft.text.Text;
+import org.lwjgl.system.MemoryUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Drives burst and timelapse capture from the screenshot key and the client
+ * tick.
+ *
+ * <p>
+ * In {@link CaptureMode#BURST} and {@link CaptureMode#TIMELAPSE} the
+ * screenshot key starts a {@link CaptureSession} instead of taking one
+ * screenshot; pressing it again stops the session. Each due frame reserves a
+ * pooled buffer on the render thread and is then captured through vanilla's
+ * {@code ScreenshotRecorder}, so it gets the usual world/dimension/date folder
+ * and a sequence-numbered name. When vanilla hands the image to its writer,
+ * the pixels are copied into the reserved buffer, the image is released right
+ * away and the frame is encoded by the {@link FrameEncoderService} pool. If
+ * no buffer is free, the configured {@link FrameDropPolicy} applies; the
+ * render thread never waits.
+ * </p>
+ *
+ * <p>
+ * Frames are not captured without allocating. Vanilla still reads the
+ * framebuffer back into a new {@code NativeImage} for every frame, because the
+ * framebuffer API differs between the supported Minecraft versions, and that
+ * image is then copied into the pooled buffer and freed. The pool only bounds
+ * how many frames wait for the encoders; it does not remove the per-frame
+ * allocation and copy.
+ * </p>
+ */
+public final class CaptureController {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+    private static final long STALE_FRAME_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long DRAIN_TIMEOUT_MS = 5000;
+    private static final Consumer<Text> SILENT = message -> {
+    };
+
+    private static final Queue<PendingName> pendingNames = new ConcurrentLinkedQueue<>();
+    private static final Map<Path, CapturedFrame> pendingFrames = new ConcurrentHashMap<>();
+
+    // Render thread only
+    private static CaptureSession session;
+    private static Consumer<Text> messages = SILENT;
+    private static boolean issuing;
+
+    private static volatile FrameBufferPool pool;
+    private static volatile FrameEncoderService encoder;
+
+    private record PendingName(String name, long createdNanos) {
+    }
+
+    private CaptureController() {
+    }
+
+    /**
+     * Handles a press of the screenshot key. Called on the render thread.
+     *
+     * @param messageReceiver Vanilla's chat feedback for the screenshot
+     * @return {@code true} if the press started or stopped a session and the
+     *         vanilla screenshot must be skipped
+     */
+    public static boolean onScreenshotKey(Consumer<Text> messageReceiver) {
+        if (issuing) {
+            return false; // One of our own frames
+        }
+        if (session != null) {
+            finish();
+            return true;
+        }
+
+        ModConfig config = ConfigManager.getInstance();
+        if (config.captureMode == null || config.captureMode == CaptureMode.SINGLE) {
+            return false;
+        }
+
+        MinecraftClient client = MinecraftClient.getInstance();
+        FrameBufferPool buffers = getPool();
+        buffers.preallocate(client.getWindow().getFramebufferWidth() * client.getWindow().getFramebufferHeight() * 4);
+
+        boolean burst = config.captureMode == CaptureMode.BURST;
+        session = new CaptureSession(config.captureMode, config.burstFrameCount,
+                burst ? config.burstIntervalTicks : config.timelapseIntervalTicks, config.captureDropPolicy,
+                new SimpleDateFormat("yyyy-MM-dd_HH.mm.ss").format(new Date()));
+        messages = messageReceiver != null ? messageReceiver : SILENT;
+        messages.accept(Text.literal(burst
+                ? "Capturing a burst of " + Math.max(1, config.burstFrameCount) + " frames"
+                : "Timelapse started, press again to stop"));
+        return true;
+    }
+
+    /**
+     * Captures due frames. Registered for the end of every client tick.
+     *
+     * @param client The Minecraft client
+     */
+    public static void onEndTick(MinecraftClient client) {
+        expireStaleFrames();
+        CaptureSession current = session;
+        if (current == null) {
+            return;
+        }
+        if (client.world == null) {
+            finish();
+            return;
+        }
+
+        if (current.tick(CaptureController::reserveFrame)) {
+            pendingNames.add(new PendingName(current.nextFrameName(), System.nanoTime()));
+            issuing = true;
+            try {
+                ScreenshotRecorder.saveScreenshot(client.runDirectory, client.getFramebuffer(), SILENT);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Failed to capture frame: {}", e.getMessage());
+            } finally {
+                issuing = false;
+            }
+        }
+        if (current.isFinished()) {
+            finish();
+        }
+    }
+
+    /**
+     * Takes the name for the next frame, if one is being captured. Called when
+     * vanilla asks for the screenshot's file name.
+     *
+     * @return The frame name without extension, or {@code null} for an
+     *         ordinary screenshot
+     */
+    public static String pollFrameName() {
+        PendingName pending = pendingNames.poll();
+        return pending != null ? pending.name() : null;
+    }
+
+    /**
+     * Registers the file a frame will be written to.
+     *
+     * @param frame The frame, without pixels yet
+     */
+    public static void expectFrame(CapturedFrame frame) {
+        pendingFrames.put(frame.path.toAbsolutePath().normalize(), frame);
+    }
+
+    /**
+     * Takes over the write of a frame: copies its pixels into the reserved
+     * buffer and queues it for encoding. Called on vanilla's I/O worker.
+     *
+     * @param image The captured image; vanilla closes it afterwards
+     * @param path  The path vanilla is about to write
+     * @return {@code true} if the path belongs to a frame and vanilla's write
+     *         must be skipped
+     */
+    public static boolean tryCapture(NativeImage image, Path path) {
+        CapturedFrame frame = pendingFrames.remove(path.toAbsolutePath().normalize());
+        if (frame == null) {
+            return false;
+        }
+
+        int channels = image.getFormat().getChannelCount();
+        int bytes = image.getWidth() * image.getHeight() * channels;
+        long pointer = ((NativeImageAccessor) (Object) image).getPointer();
+        ByteBuffer buffer = getPool().acquire(bytes);
+        MemoryUtil.memCopy(pointer, MemoryUtil.memAddress(buffer), bytes);
+        frame.attach(buffer, image.getWidth(), image.getHeight(), channels);
+        getEncoder().submit(frame);
+        return true;
+    }
+
+    /**
+     * Stops any running session and lets queued frames finish writing.
+     */
+    public static void shutdown() {
+        session = null;
+        FrameEncoderService service = encoder;
+        if (service != null) {
+            service.drainAndStop(DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static boolean reserveFrame() {
+        FrameBufferPool buffers = getPool();
+        if (buffers.tryReserve()) {
+            return true;
+        }
+        ModConfig config = ConfigManager.getInstance();
+        return config.captureDropPolicy == FrameDropPolicy.DROP_OLDEST && getEncoder().dropOldest()
+                && buffers.tryReserve();
+    }
+
+    private static void finish() {
+        CaptureSession ended = session;
+        session = null;
+        if (ended == null) {
+            return;
+        }
+        String kind = ended.getMode() == CaptureMode.BURST ? "Burst" : "Timelapse";
+        String summary = kind + " saved: " + ended.getCapturedFrames() + " frames";
+        if (ended.getSkippedFrames() > 0) {
+            summary += ", " + ended.getSkippedFrames() + " skipped while saving";
+        }
+        messages.accept(Text.literal(summary));
+        messages = SILENT;
+    }
+
+    /**
+     * Returns the reservations of frames whose capture never completed, e.g.
+     * because vanilla failed to read back the framebuffer.
+     */
+    private static void expireStaleFrames() {
+        long cutoff = System.nanoTime() - STALE_FRAME_NANOS;
+        while (true) {
+            PendingName pending = pendingNames.peek();
+            if (pending == null || pending.createdNanos() > cutoff || !pendingNames.remove(pending)) {
+                break;
+            }
+            getPool().cancelReservation();
+        }
+        pendingFrames.values().removeIf(frame -> {
+            if (frame.createdNanos > cutoff) {
+                return false;
+            }
+            ScreenshotFileAllocator.getInstance().release(frame.path);
+            getPool().cancelReservation();
+            return true;
+        });
+    }
+
+    private static FrameBufferPool getPool() {
+        FrameBufferPool buffers = pool;
+        if (buffers == null) {
+            synchronized (CaptureController.class) {
+                buffers = pool;
+                if (buffers == null) {
+                    buffers = new FrameBufferPool(ConfigManager.getInstance().captureBufferCount);
+                    pool = buffers;
+                }
+            }
+        }
+        return buffers;
+    }
+
+    private static FrameEncoderService getEncoder() {
+        FrameEncoderService service = encoder;
+        if (service == null) {
+            synchronized (CaptureController.class) {
+                service = encoder;
+                if (service == null) {
+                    service = new FrameEncoderService(ConfigManager.getInstance().captureEncoderThreads, getPool(),
+                            CaptureController::writeFrame,
+                            path -> ScreenshotEvents.WRITTEN.invoker().onScreenshotWritten(path.toFile()),
+                            CaptureController::discardFrame);
+                    encoder = service;
+                }
+            }
+        }
+        return service;
+    }
+
+    /**
+     * Removes the file of a frame that was dropped or failed to encode. The
+     * name was reserved for this frame alone, and a failed encode may have
+     * left a truncated file behind, so it is deleted whatever its size.
+     */
+    private static void discardFrame(Path path) {
+        try {
+            if (Files.deleteIfExists(path)) {
+                AdaptiveShards.getInstance().removed(path.getParent(), 1);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not remove discarded frame {}: {}", path.getFileName(), e.getMessage());
+        }
+    }
+
+    private static void writeFrame(CapturedFrame frame) throws IOException {
+        MetadataHandler.ScreenshotMetadata metadata = frame.metadata != null ? frame.metadata.format() : null;
+        boolean embed = metadata != null && frame.profile.supportsEmbeddedMetadata();
+        byte[][] chunks = embed ? new byte[][] { MetadataHandler.createXmpChunk(metadata) } : new byte[0][];
+        ByteBuffer pixels = frame.getPixels();
+        ByteBufferPixelSource source = new ByteBufferPixelSource(pixels, frame.getWidth(), frame.getHeight(),
+                frame.getChannels());
+        ScreenshotFileWriter.write(source, frame.path, frame.profile, false, chunks);
+        ThumbnailService.capture(source, frame.path);
+        StorageQuotaService.onWritten(frame.path);
+        if (metadata != null && !embed) {
+            MetadataHandler.writeSidecar(frame.path.toFile(), metadata);
+        }
+        if (metadata != null) {
+            MetadataHandler.notifyWritten(frame.path.toFile(), metadata);
+        }
+    }
+}
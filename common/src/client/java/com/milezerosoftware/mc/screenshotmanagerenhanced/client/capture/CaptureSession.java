@@ -0,0 +1,117 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.capture;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.CaptureMode;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.FrameDropPolicy;
+
+import java.util.Locale;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Tick-driven schedule of one burst or timelapse.
+ *
+ * <p>
+ * The session is advanced once per client tick and decides whether a frame
+ * is due. Frames are named after the session's start time plus a sequence
+ * number, e.g. {@code 2025-01-30_12.00.00_burst_0003}, so they sort in
+ * capture order and can be fed straight to video tools.
+ * </p>
+ */
+public class CaptureSession {
+
+    private final CaptureMode mode;
+    private final int frameLimit;
+    private final int intervalTicks;
+    private final FrameDropPolicy policy;
+    private final String baseName;
+
+    private long tick;
+    private long nextDueTick;
+    private int sequence;
+    private int captured;
+    private int skipped;
+    private boolean finished;
+
+    /**
+     * @param mode          {@link CaptureMode#BURST} or
+     *                      {@link CaptureMode#TIMELAPSE}
+     * @param frameLimit    Frames to capture in a burst; ignored for timelapses
+     * @param intervalTicks Ticks between frames (at least 1)
+     * @param policy        What to do when no frame buffer is free
+     * @param baseName      Common prefix of the frame names
+     */
+    public CaptureSession(CaptureMode mode, int frameLimit, int intervalTicks, FrameDropPolicy policy,
+            String baseName) {
+        if (mode == CaptureMode.SINGLE) {
+            throw new IllegalArgumentException("Single screenshots do not need a session");
+        }
+        this.mode = mode;
+        this.frameLimit = Math.max(1, frameLimit);
+        this.intervalTicks = Math.max(1, intervalTicks);
+        this.policy = policy != null ? policy : FrameDropPolicy.SKIP;
+        this.baseName = baseName;
+    }
+
+    /**
+     * Advances the session by one tick.
+     *
+     * @param reserve Reserves a frame buffer; returns {@code false} if none is
+     *                free
+     * @return {@code true} if a frame must be captured now; a buffer has been
+     *         reserved for it
+     */
+    public boolean tick(BooleanSupplier reserve) {
+        if (finished) {
+            return false;
+        }
+        long now = tick++;
+        if (now < nextDueTick) {
+            return false;
+        }
+
+        boolean reserved = reserve.getAsBoolean();
+        if (!reserved && policy == FrameDropPolicy.DEFER) {
+            return false; // Due again next tick
+        }
+        if (reserved) {
+            captured++;
+        } else {
+            skipped++;
+        }
+        nextDueTick = now + intervalTicks;
+        if (mode == CaptureMode.BURST && captured + skipped >= frameLimit) {
+            finished = true;
+        }
+        return reserved;
+    }
+
+    /**
+     * @return The file name, without extension, for the next frame
+     */
+    public String nextFrameName() {
+        return String.format(Locale.ROOT, "%s_%s_%04d", baseName, mode.name().toLowerCase(Locale.ROOT),
+                ++sequence);
+    }
+
+    /**
+     * Ends the session early, e.g. when the key is pressed again.
+     */
+    public void finish() {
+        finished = true;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public CaptureMode getMode() {
+        return mode;
+    }
+
+    public int getCapturedFrames() {
+        return captured;
+    }
+
+    public int getSkippedFrames() {
+        return skipped;
+    }
+}
@@ -0,0 +1,71 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.capture;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.PendingMetadata;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.EncoderProfile;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * A burst or timelapse frame on its way to disk.
+ *
+ * <p>
+ * Created on the render thread when the frame's file name is issued; the
+ * pixels are attached once vanilla has read back the framebuffer.
+ * </p>
+ */
+public class CapturedFrame {
+
+    public final Path path;
+    public final EncoderProfile profile;
+    public final PendingMetadata metadata;
+    public final long createdNanos;
+
+    ByteBuffer pixels;
+    int width;
+    int height;
+    int channels;
+
+    /**
+     * @param path     The file the frame will be written to
+     * @param profile  The encoder profile
+     * @param metadata The captured metadata to embed, or {@code null} for none
+     */
+    public CapturedFrame(Path path, EncoderProfile profile, PendingMetadata metadata) {
+        this.path = path;
+        this.profile = profile;
+        this.metadata = metadata;
+        this.createdNanos = System.nanoTime();
+    }
+
+    /**
+     * Attaches the captured pixels.
+     *
+     * @param pixels   Packed pixels in a pooled buffer
+     * @param width    The frame width
+     * @param height   The frame height
+     * @param channels Channels per pixel
+     */
+    public void attach(ByteBuffer pixels, int width, int height, int channels) {
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+        this.channels = channels;
+    }
+
+    public ByteBuffer getPixels() {
+        return pixels;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+}
@@ -0,0 +1,121 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.capture;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed-size pool of direct pixel buffers for burst and timelapse frames.
+ *
+ * <p>
+ * A frame first {@linkplain #tryReserve() reserves} a buffer on the render
+ * thread, without blocking, before it is captured. Once its pixels arrive it
+ * {@linkplain #acquire(int) takes} a buffer, which is guaranteed to be free,
+ * and {@linkplain #release(ByteBuffer) returns} it after encoding. Buffers are
+ * reused for every frame, so the number of frames held in memory never grows
+ * past the pool size however far the encoders fall behind.
+ * </p>
+ *
+ * <p>
+ * The pool bounds the encoder backlog; it does not make capturing
+ * allocation-free. Vanilla still reads every frame back into a
+ * {@code NativeImage} of its own, which is copied into a pooled buffer and
+ * then freed.
+ * </p>
+ */
+public class FrameBufferPool {
+
+    private final int size;
+    private final Semaphore reservations;
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger allocated = new AtomicInteger();
+
+    /**
+     * @param size Number of buffers (at least 1)
+     */
+    public FrameBufferPool(int size) {
+        this.size = Math.max(1, size);
+        this.reservations = new Semaphore(this.size);
+    }
+
+    /**
+     * Allocates every buffer up front with at least the given capacity, so
+     * the pool does not allocate while capturing. Buffers in use are left
+     * alone.
+     *
+     * @param bytes The expected frame size in bytes
+     */
+    public synchronized void preallocate(int bytes) {
+        free.removeIf(buffer -> {
+            if (buffer.capacity() >= bytes) {
+                return false;
+            }
+            allocated.decrementAndGet();
+            return true;
+        });
+        while (allocated.get() < size) {
+            allocated.incrementAndGet();
+            free.add(ByteBuffer.allocateDirect(bytes));
+        }
+    }
+
+    /**
+     * Reserves a buffer for a frame about to be captured.
+     *
+     * @return {@code false} if every buffer is reserved or in use
+     */
+    public boolean tryReserve() {
+        return reservations.tryAcquire();
+    }
+
+    /**
+     * Returns a reservation whose frame never arrived.
+     */
+    public void cancelReservation() {
+        reservations.release();
+    }
+
+    /**
+     * Takes a buffer for a reserved frame. The buffer is cleared and limited
+     * to {@code bytes}; it is only reallocated if the frame outgrew it.
+     *
+     * @param bytes The frame size in bytes
+     * @return A direct buffer with at least {@code bytes} capacity
+     */
+    public ByteBuffer acquire(int bytes) {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            allocated.incrementAndGet();
+            buffer = ByteBuffer.allocateDirect(bytes);
+        } else if (buffer.capacity() < bytes) {
+            buffer = ByteBuffer.allocateDirect(bytes); // Window was resized
+        }
+        buffer.clear().limit(bytes);
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer and its reservation to the pool.
+     *
+     * @param buffer A buffer from {@link #acquire(int)}
+     */
+    public void release(ByteBuffer buffer) {
+        free.add(buffer);
+        reservations.release();
+    }
+
+    /**
+     * @return The number of buffers that can currently be reserved
+     */
+    public int available() {
+        return reservations.availablePermits();
+    }
+
+    /**
+     * @return The total number of buffers
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,198 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.capture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Worker pool that encodes burst and timelapse frames.
+ *
+ * <p>
+ * Frames are queued in capture order with their pixels in pooled buffers.
+ * Each worker encodes one frame at a time and returns its buffer to the
+ * {@link FrameBufferPool}, so the queue can never hold more frames than the
+ * pool has buffers. Under {@link com.milezerosoftware.mc.screenshotmanagerenhanced.config.FrameDropPolicy#DROP_OLDEST}
+ * the oldest queued frame can be {@linkplain #dropOldest() discarded} to make
+ * room for a new one.
+ * </p>
+ *
+ * <p>
+ * Every frame's file name was reserved with an empty placeholder before it
+ * was captured. Frames that are dropped, abandoned at shutdown or fail to
+ * encode are reported as discarded, so the placeholder can be released.
+ * </p>
+ */
+public class FrameEncoderService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+    private static final long WORKER_POLL_MS = 250;
+
+    /** Writes a frame to its file. */
+    @FunctionalInterface
+    public interface FrameWriter {
+        void write(CapturedFrame frame) throws IOException;
+    }
+
+    private final BlockingDeque<CapturedFrame> queue = new LinkedBlockingDeque<>();
+    private final FrameBufferPool pool;
+    private final FrameWriter writer;
+    private final Consumer<Path> onWritten;
+    private final Consumer<Path> onDiscarded;
+    private final List<Thread> workers = new ArrayList<>();
+    private final AtomicInteger written = new AtomicInteger();
+    private final AtomicInteger dropped = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    /** Frames submitted and neither written, failed nor dropped yet. */
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private volatile boolean running = true;
+
+    /**
+     * @param workerCount Number of encoder threads (at least 1)
+     * @param pool        The pool the frames' buffers are returned to
+     * @param writer      Encodes a frame to disk
+     * @param onWritten   Called with the path of every frame written
+     * @param onDiscarded Called with the path of every frame dropped or
+     *                    failed
+     */
+    public FrameEncoderService(int workerCount, FrameBufferPool pool, FrameWriter writer, Consumer<Path> onWritten,
+            Consumer<Path> onDiscarded) {
+        this.pool = pool;
+        this.writer = writer;
+        this.onWritten = onWritten;
+        this.onDiscarded = onDiscarded;
+
+        for (int i = 0; i < Math.max(1, workerCount); i++) {
+            Thread worker = new Thread(this::runWorker, "ScreenshotFrameEncoder-" + (i + 1));
+            worker.setDaemon(true);
+            worker.setPriority(Thread.NORM_PRIORITY - 1);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Queues a frame whose pixels are attached.
+     *
+     * @param frame The frame to encode
+     */
+    public void submit(CapturedFrame frame) {
+        if (!running) {
+            pool.release(frame.pixels);
+            dropped.incrementAndGet();
+            onDiscarded.accept(frame.path);
+            return;
+        }
+        outstanding.incrementAndGet();
+        queue.addLast(frame);
+    }
+
+    /**
+     * Discards the oldest frame that has not started encoding and frees its
+     * buffer.
+     *
+     * @return {@code false} if no frame was waiting
+     */
+    public boolean dropOldest() {
+        CapturedFrame frame = queue.pollFirst();
+        if (frame == null) {
+            return false;
+        }
+        pool.release(frame.pixels);
+        dropped.incrementAndGet();
+        outstanding.decrementAndGet();
+        onDiscarded.accept(frame.path);
+        LOGGER.debug("Dropped frame {}: encoders are behind", frame.path.getFileName());
+        return true;
+    }
+
+    /**
+     * Lets queued frames finish, then stops the workers.
+     *
+     * @param timeout How long to wait for the queue to drain
+     * @param unit    The unit of {@code timeout}
+     * @return {@code true} if every queued frame was written in time
+     */
+    public boolean drainAndStop(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        // Counted from submit to completion, so a frame a worker has just
+        // taken from the queue still counts
+        while (outstanding.get() > 0 && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        running = false;
+        int abandoned = 0;
+        while (dropOldest()) {
+            abandoned++;
+        }
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        if (abandoned > 0) {
+            LOGGER.warn("{} frames were still queued at shutdown and were not saved", abandoned);
+        }
+        return abandoned == 0;
+    }
+
+    /**
+     * @return The number of frames waiting to be encoded
+     */
+    public int getQueuedFrames() {
+        return queue.size();
+    }
+
+    public int getWrittenFrames() {
+        return written.get();
+    }
+
+    public int getDroppedFrames() {
+        return dropped.get();
+    }
+
+    public int getFailedFrames() {
+        return failed.get();
+    }
+
+    private void runWorker() {
+        while (running) {
+            CapturedFrame frame;
+            try {
+                frame = queue.pollFirst(WORKER_POLL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return;
+                }
+                continue;
+            }
+            if (frame == null) {
+                continue;
+            }
+
+            try {
+                writer.write(frame);
+                written.incrementAndGet();
+                onWritten.accept(frame.path);
+            } catch (IOException | RuntimeException e) {
+                failed.incrementAndGet();
+                LOGGER.error("Failed to save frame {}: {}", frame.path.getFileName(), e.getMessage());
+                onDiscarded.accept(frame.path);
+            } finally {
+                pool.release(frame.pixels);
+                outstanding.decrementAndGet();
+            }
+        }
+    }
+}
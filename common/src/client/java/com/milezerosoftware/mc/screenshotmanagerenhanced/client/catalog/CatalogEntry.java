@@ -0,0 +1,29 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler.ScreenshotMetadata;
+
+/**
+ * One screenshot in the {@link ScreenshotCatalog}.
+ *
+ * @param path           The path relative to the screenshots folder, with
+ *                       {@code /} separators
+ * @param size           The file size in bytes when it was indexed
+ * @param modifiedMillis The file's modification time when it was indexed
+ * @param timestamp      The capture time in epoch milliseconds, taken from
+ *                       the file name where possible
+ * @param metadata       The metadata written for the screenshot, or
+ *                       {@code null} if the file was found without any
+ */
+public record CatalogEntry(String path, long size, long modifiedMillis, long timestamp,
+        ScreenshotMetadata metadata) {
+
+    /**
+     * Gets the directory part of the path.
+     *
+     * @return The parent path, or the empty string for files in the root
+     */
+    public String directory() {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+}
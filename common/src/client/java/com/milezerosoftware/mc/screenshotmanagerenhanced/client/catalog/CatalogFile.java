@@ -0,0 +1,340 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler.ScreenshotMetadata;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The memory-mapped snapshot of the catalog.
+ *
+ * <p>
+ * The file is laid out so that it can be queried in place:
+ * </p>
+ * <ul>
+ * <li>A header of {@value #HEADER_SIZE} bytes with the section offsets.</li>
+ * <li>One fixed-size record per screenshot, sorted by capture time: size,
+ * modification time, capture time and one dictionary id per metadata
+ * field.</li>
+ * <li>The modification time of every directory, for reconciling.</li>
+ * <li>The dictionary of distinct metadata values. World, dimension and biome
+ * names repeat across thousands of screenshots, so each is stored once and
+ * records compare ids instead of strings.</li>
+ * <li>The paths of the screenshots and directories, decoded only for
+ * results.</li>
+ * </ul>
+ *
+ * <p>
+ * Opening the file maps it and decodes the value dictionary; nothing is read
+ * per screenshot until it is queried. Records are sorted by capture time, so
+ * a date range is found by binary search.
+ * </p>
+ */
+final class CatalogFile {
+
+    static final int MAGIC = 0x534D4543; // "SMEC"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 36;
+    static final int FIELD_COUNT = 10;
+    static final int RECORD_SIZE = 24 + FIELD_COUNT * 4;
+
+    static final int FIELD_WORLD = 0;
+    static final int FIELD_DIMENSION = 1;
+    static final int FIELD_BIOME = 8;
+
+    private static final CatalogFile EMPTY = new CatalogFile(ByteBuffer.allocate(0), 0, 0, 0, 0, 0, new String[0]);
+
+    private final ByteBuffer buf;
+    private final int entryCount;
+    private final int dirCount;
+    private final int dirsOff;
+    private final int pathOffsetsOff;
+    private final int pathBlobOff;
+    private final String[] values;
+
+    private CatalogFile(ByteBuffer buf, int entryCount, int dirCount, int dirsOff, int pathOffsetsOff,
+            int pathBlobOff, String[] values) {
+        this.buf = buf;
+        this.entryCount = entryCount;
+        this.dirCount = dirCount;
+        this.dirsOff = dirsOff;
+        this.pathOffsetsOff = pathOffsetsOff;
+        this.pathBlobOff = pathBlobOff;
+        this.values = values;
+    }
+
+    /**
+     * @return A catalog without entries
+     */
+    static CatalogFile empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Maps a catalog file.
+     *
+     * @param file The file
+     * @return The opened catalog
+     * @throws IOException If the file cannot be read or is not a valid catalog
+     */
+    static CatalogFile open(Path file) throws IOException {
+        ByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a catalog file: " + file.getFileName());
+            }
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        try {
+            if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+                throw new IOException("Not a catalog file: " + file.getFileName());
+            }
+            int entryCount = buf.getInt(8);
+            int dirCount = buf.getInt(12);
+            int valueCount = buf.getInt(16);
+            int dirsOff = buf.getInt(24);
+            int valueOffsetsOff = buf.getInt(28);
+            int pathOffsetsOff = buf.getInt(32);
+            if (entryCount < 0 || dirCount < 0 || valueCount < 0 || buf.getInt(20) != HEADER_SIZE
+                    || dirsOff != HEADER_SIZE + entryCount * RECORD_SIZE
+                    || valueOffsetsOff != dirsOff + dirCount * 8) {
+                throw new IOException("Corrupt catalog header: " + file.getFileName());
+            }
+
+            int valueBlobOff = valueOffsetsOff + (valueCount + 1) * 4;
+            if (pathOffsetsOff != valueBlobOff + buf.getInt(valueOffsetsOff + valueCount * 4)) {
+                throw new IOException("Corrupt catalog header: " + file.getFileName());
+            }
+            String[] values = new String[valueCount];
+            for (int i = 0; i < valueCount; i++) {
+                values[i] = decode(buf, valueBlobOff, valueOffsetsOff, i);
+            }
+
+            int pathBlobOff = pathOffsetsOff + (entryCount + dirCount + 1) * 4;
+            int pathBlobEnd = pathBlobOff + buf.getInt(pathOffsetsOff + (entryCount + dirCount) * 4);
+            if (pathBlobEnd != buf.limit()) {
+                throw new IOException("Truncated catalog: " + file.getFileName());
+            }
+            return new CatalogFile(buf, entryCount, dirCount, dirsOff, pathOffsetsOff, pathBlobOff, values);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt catalog: " + file.getFileName(), e);
+        }
+    }
+
+    /**
+     * Writes a catalog file.
+     *
+     * @param file        The file to write
+     * @param entries     The entries, sorted by capture time
+     * @param directories The modification time of every directory
+     * @throws IOException If writing fails
+     */
+    static void write(Path file, List<CatalogEntry> entries, Map<String, Long> directories) throws IOException {
+        Map<String, Integer> valueIds = new HashMap<>();
+        List<byte[]> values = new ArrayList<>();
+        int[] ids = new int[entries.size() * FIELD_COUNT];
+        for (int i = 0; i < entries.size(); i++) {
+            String[] fields = fields(entries.get(i).metadata());
+            for (int f = 0; f < FIELD_COUNT; f++) {
+                String value = fields != null ? fields[f] : null;
+                if (value == null) {
+                    ids[i * FIELD_COUNT + f] = -1;
+                    continue;
+                }
+                Integer id = valueIds.get(value);
+                if (id == null) {
+                    id = values.size();
+                    valueIds.put(value, id);
+                    values.add(value.getBytes(StandardCharsets.UTF_8));
+                }
+                ids[i * FIELD_COUNT + f] = id;
+            }
+        }
+
+        List<byte[]> paths = new ArrayList<>(entries.size() + directories.size());
+        for (CatalogEntry entry : entries) {
+            paths.add(entry.path().getBytes(StandardCharsets.UTF_8));
+        }
+        List<Long> dirTimes = new ArrayList<>(directories.size());
+        for (Map.Entry<String, Long> dir : directories.entrySet()) {
+            paths.add(dir.getKey().getBytes(StandardCharsets.UTF_8));
+            dirTimes.add(dir.getValue());
+        }
+
+        int dirsOff = HEADER_SIZE + entries.size() * RECORD_SIZE;
+        int valueOffsetsOff = dirsOff + directories.size() * 8;
+        int pathOffsetsOff = valueOffsetsOff + (values.size() + 1) * 4 + totalLength(values);
+
+        try (FileOutputStream fos = new FileOutputStream(file.toFile());
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            out.writeInt(directories.size());
+            out.writeInt(values.size());
+            out.writeInt(HEADER_SIZE);
+            out.writeInt(dirsOff);
+            out.writeInt(valueOffsetsOff);
+            out.writeInt(pathOffsetsOff);
+
+            for (int i = 0; i < entries.size(); i++) {
+                CatalogEntry entry = entries.get(i);
+                out.writeLong(entry.size());
+                out.writeLong(entry.modifiedMillis());
+                out.writeLong(entry.timestamp());
+                for (int f = 0; f < FIELD_COUNT; f++) {
+                    out.writeInt(ids[i * FIELD_COUNT + f]);
+                }
+            }
+            for (long time : dirTimes) {
+                out.writeLong(time);
+            }
+            writeStrings(out, values);
+            writeStrings(out, paths);
+            out.flush();
+            fos.getFD().sync();
+        }
+    }
+
+    int size() {
+        return entryCount;
+    }
+
+    long fileSize(int index) {
+        return buf.getLong(HEADER_SIZE + index * RECORD_SIZE);
+    }
+
+    long modifiedMillis(int index) {
+        return buf.getLong(HEADER_SIZE + index * RECORD_SIZE + 8);
+    }
+
+    long timestamp(int index) {
+        return buf.getLong(HEADER_SIZE + index * RECORD_SIZE + 16);
+    }
+
+    /**
+     * @return The dictionary id of a field of a record, or {@code -1} if the
+     *         field is unset
+     */
+    int valueId(int index, int field) {
+        return buf.getInt(HEADER_SIZE + index * RECORD_SIZE + 24 + field * 4);
+    }
+
+    String path(int index) {
+        return decode(buf, pathBlobOff, pathOffsetsOff, index);
+    }
+
+    CatalogEntry entry(int index) {
+        String[] fields = new String[FIELD_COUNT];
+        boolean any = false;
+        for (int f = 0; f < FIELD_COUNT; f++) {
+            int id = valueId(index, f);
+            if (id >= 0) {
+                fields[f] = values[id];
+                any = true;
+            }
+        }
+        return new CatalogEntry(path(index), fileSize(index), modifiedMillis(index), timestamp(index),
+                any ? metadata(fields) : null);
+    }
+
+    /**
+     * Finds the first record captured at or after a time.
+     *
+     * @param timestamp The capture time
+     * @return The index of the record, or {@link #size()} if there is none
+     */
+    int lowerBound(long timestamp) {
+        int lo = 0;
+        int hi = entryCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (timestamp(mid) < timestamp) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Resolves a text filter to dictionary ids.
+     *
+     * @param filter The filter value, compared ignoring case
+     * @return Which ids match, or {@code null} if the filter is {@code null}
+     */
+    boolean[] matchingIds(String filter) {
+        if (filter == null) {
+            return null;
+        }
+        boolean[] matching = new boolean[values.length];
+        for (int i = 0; i < values.length; i++) {
+            matching[i] = filter.equalsIgnoreCase(values[i]);
+        }
+        return matching;
+    }
+
+    Map<String, Long> directories() {
+        Map<String, Long> directories = new HashMap<>(dirCount * 2);
+        for (int d = 0; d < dirCount; d++) {
+            directories.put(path(entryCount + d), buf.getLong(dirsOff + d * 8));
+        }
+        return directories;
+    }
+
+    static String[] fields(ScreenshotMetadata metadata) {
+        if (metadata == null) {
+            return null;
+        }
+        return new String[] { metadata.worldName, metadata.dimension, metadata.coordinates, metadata.daysPlayed,
+                metadata.playerName, metadata.difficulty, metadata.gameMode, metadata.minecraftVersion,
+                metadata.biome, metadata.worldAge };
+    }
+
+    static ScreenshotMetadata metadata(String[] fields) {
+        return new ScreenshotMetadata(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5], fields[6],
+                fields[7], fields[8], fields[9]);
+    }
+
+    private static String decode(ByteBuffer buf, int blobOff, int offsetsOff, int index) {
+        int start = buf.getInt(offsetsOff + index * 4);
+        int end = buf.getInt(offsetsOff + index * 4 + 4);
+        byte[] bytes = new byte[end - start];
+        buf.get(blobOff + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int totalLength(List<byte[]> strings) {
+        int total = 0;
+        for (byte[] s : strings) {
+            total += s.length;
+        }
+        return total;
+    }
+
+    private static void writeStrings(DataOutputStream out, List<byte[]> strings) throws IOException {
+        int offset = 0;
+        out.writeInt(0);
+        for (byte[] s : strings) {
+            offset += s.length;
+            out.writeInt(offset);
+        }
+        for (byte[] s : strings) {
+            out.write(s);
+        }
+    }
+}
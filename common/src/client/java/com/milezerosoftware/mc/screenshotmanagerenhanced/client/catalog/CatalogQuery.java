@@ -0,0 +1,61 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog;
+
+/**
+ * Filter for {@link ScreenshotCatalog#query}. Text filters match the stored
+ * metadata exactly, ignoring case; {@code null} matches anything.
+ *
+ * @param world      The world or server name
+ * @param dimension  The dimension name
+ * @param biome      The biome name
+ * @param fromMillis The earliest capture time, inclusive
+ * @param toMillis   The latest capture time, exclusive
+ */
+public record CatalogQuery(String world, String dimension, String biome, long fromMillis, long toMillis) {
+
+    /** Matches every screenshot. */
+    public static final CatalogQuery ALL = new CatalogQuery(null, null, null, Long.MIN_VALUE, Long.MAX_VALUE);
+
+    public CatalogQuery withWorld(String world) {
+        return new CatalogQuery(world, dimension, biome, fromMillis, toMillis);
+    }
+
+    public CatalogQuery withDimension(String dimension) {
+        return new CatalogQuery(world, dimension, biome, fromMillis, toMillis);
+    }
+
+    public CatalogQuery withBiome(String biome) {
+        return new CatalogQuery(world, dimension, biome, fromMillis, toMillis);
+    }
+
+    /**
+     * @param fromMillis The earliest capture time, inclusive
+     * @param toMillis   The latest capture time, exclusive
+     * @return A copy of this query restricted to the time range
+     */
+    public CatalogQuery between(long fromMillis, long toMillis) {
+        return new CatalogQuery(world, dimension, biome, fromMillis, toMillis);
+    }
+
+    /**
+     * Checks an entry against this query.
+     *
+     * @param entry The entry
+     * @return {@code true} if the entry matches
+     */
+    public boolean matches(CatalogEntry entry) {
+        if (entry.timestamp() < fromMillis || entry.timestamp() >= toMillis) {
+            return false;
+        }
+        if (world == null && dimension == null && biome == null) {
+            return true;
+        }
+        return entry.metadata() != null
+                && matches(world, entry.metadata().worldName)
+                && matches(dimension, entry.metadata().dimension)
+                && matches(biome, entry.metadata().biome);
+    }
+
+    private static boolean matches(String filter, String value) {
+        return filter == null || filter.equalsIgnoreCase(value);
+    }
+}
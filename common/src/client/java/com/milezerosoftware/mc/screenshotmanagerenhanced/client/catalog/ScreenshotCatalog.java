@@ -0,0 +1,754 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.optimizer.ScreenshotOptimizer;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler.ScreenshotMetadata;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ScreenshotFileAllocator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent index of the screenshots folder, queryable by world, dimension,
+ * biome and capture time without opening any image.
+ *
+ * <p>
+ * The catalog lives in the mod's state directory as two files per
+ * generation:
+ * </p>
+ * <ul>
+ * <li>{@code catalog-N.bin}, a memory-mapped {@link CatalogFile} snapshot
+ * that is queried in place.</li>
+ * <li>{@code catalog-N.log}, an append-only journal of the changes since the
+ * snapshot was written. Each record carries a CRC, so a record torn by a crash
+ * is detected and dropped.</li>
+ * </ul>
+ *
+ * <p>
+ * Every screenshot whose metadata is written is {@linkplain #record recorded}
+ * with one journal append. Once the journal grows long, or after a
+ * {@linkplain #reconcile reconcile} changed anything, the catalog is
+ * {@linkplain #compact compacted} into snapshot {@code N+1}. The new snapshot
+ * is complete before the old generation is deleted, so a crash at any point
+ * leaves a consistent catalog behind.
+ * </p>
+ *
+ * <p>
+ * Nothing is loaded until the catalog is first used. All methods are
+ * thread-safe.
+ * </p>
+ */
+public class ScreenshotCatalog implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+
+    static final String FILE_PREFIX = "catalog-";
+    static final String SNAPSHOT_SUFFIX = ".bin";
+    static final String JOURNAL_SUFFIX = ".log";
+
+    private static final int COMPACT_THRESHOLD = 4096;
+    private static final int MAX_DEPTH = 8;
+    private static final long STOP_TIMEOUT_MS = 2000;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final Comparator<CatalogEntry> BY_TIME = Comparator.comparingLong(CatalogEntry::timestamp)
+            .thenComparing(CatalogEntry::path);
+
+    private static volatile ScreenshotCatalog instance;
+    private static Thread reconciler;
+
+    private final Path root;
+    private final Path stateDir;
+    private boolean loaded;
+    private long generation;
+    private CatalogFile snapshot = CatalogFile.empty();
+    /** Snapshot records replaced or removed by {@link #changes}. */
+    private BitSet superseded = new BitSet();
+    /** Snapshot record index by path, built when first needed. */
+    private Map<String, Integer> snapshotIndex;
+    /** Entries changed since the snapshot; {@code null} marks a removal. */
+    private final Map<String, CatalogEntry> changes = new HashMap<>();
+    private Map<String, Long> directories = new HashMap<>();
+    private DataOutputStream journal;
+    private int journalRecords;
+
+    /**
+     * Creates the catalog of a screenshots folder. Nothing is read until the
+     * catalog is first used.
+     *
+     * @param root The screenshots folder
+     */
+    public ScreenshotCatalog(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+        this.stateDir = this.root.resolve(ScreenshotOptimizer.STATE_DIR);
+    }
+
+    /**
+     * Starts the shared catalog for a screenshots folder, if it is not running
+     * yet, and reconciles it with the folder in the background.
+     *
+     * @param screenshotsDir The screenshots folder
+     */
+    public static synchronized void start(Path screenshotsDir) {
+        if (instance != null) {
+            return;
+        }
+        ScreenshotCatalog catalog = new ScreenshotCatalog(screenshotsDir);
+        instance = catalog;
+        reconciler = new Thread(() -> {
+            try {
+                long start = System.nanoTime();
+                int changed = catalog.reconcile();
+                LOGGER.debug("Screenshot catalog reconciled in {} ms, {} entries changed",
+                        (System.nanoTime() - start) / 1_000_000, changed);
+            } catch (CancellationException ignored) {
+                // Shutting down
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Could not reconcile the screenshot catalog: {}", e.getMessage());
+            }
+        }, "ScreenshotCatalog");
+        reconciler.setDaemon(true);
+        reconciler.setPriority(Thread.MIN_PRIORITY);
+        reconciler.start();
+    }
+
+    /**
+     * Gets the shared catalog.
+     *
+     * @return The catalog, or {@code null} if it was not started
+     */
+    public static ScreenshotCatalog getInstance() {
+        return instance;
+    }
+
+    /**
+     * Stops a running reconcile and closes the shared catalog, if it was
+     * started.
+     */
+    public static void shutdown() {
+        ScreenshotCatalog catalog;
+        Thread thread;
+        synchronized (ScreenshotCatalog.class) {
+            catalog = instance;
+            thread = reconciler;
+            instance = null;
+            reconciler = null;
+        }
+        if (catalog == null) {
+            return;
+        }
+        thread.interrupt();
+        try {
+            thread.join(STOP_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            catalog.close();
+        } catch (IOException e) {
+            LOGGER.warn("Could not close the screenshot catalog: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Records a screenshot in the shared catalog, if it was started. Failures
+     * are logged; the next reconcile picks the file up instead.
+     *
+     * @param file     The screenshot file
+     * @param metadata The metadata written for it
+     */
+    public static void recordWritten(File file, ScreenshotMetadata metadata) {
+        ScreenshotCatalog catalog = instance;
+        if (catalog == null) {
+            return;
+        }
+        try {
+            catalog.record(file.toPath(), metadata);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not add {} to the screenshot catalog: {}", file.getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Adds or updates a screenshot with its current size and modification
+     * time. Files outside the screenshots folder are ignored.
+     *
+     * @param file     The screenshot file
+     * @param metadata The metadata written for it, or {@code null} to keep
+     *                 what is already recorded
+     * @throws IOException If the file cannot be read or the journal cannot be
+     *                     written
+     */
+    public synchronized void record(Path file, ScreenshotMetadata metadata) throws IOException {
+        String key = key(file);
+        if (key == null) {
+            return;
+        }
+        ensureLoaded();
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        CatalogEntry previous = get(key);
+        long modified = attrs.lastModifiedTime().toMillis();
+        put(new CatalogEntry(key, attrs.size(), modified,
+                previous != null ? previous.timestamp() : timestamp(file, modified),
+                metadata != null ? metadata : previous != null ? previous.metadata() : null));
+    }
+
+    /**
+     * Looks up one screenshot.
+     *
+     * @param relativePath The path relative to the screenshots folder, with
+     *                     {@code /} separators
+     * @return The entry, or {@code null} if the file is not in the catalog
+     * @throws IOException If the catalog cannot be loaded
+     */
+    public synchronized CatalogEntry get(String relativePath) throws IOException {
+        ensureLoaded();
+        if (changes.containsKey(relativePath)) {
+            return changes.get(relativePath);
+        }
+        Integer index = snapshotIndex().get(relativePath);
+        return index != null ? snapshot.entry(index) : null;
+    }
+
+    /**
+     * Finds the screenshots matching a query.
+     *
+     * <p>
+     * The time range is located by binary search in the snapshot, and text
+     * filters are resolved to dictionary ids once, so each candidate costs a
+     * few integer comparisons. Only matching entries are decoded.
+     * </p>
+     *
+     * @param query The filter
+     * @return The matching entries, oldest first
+     * @throws IOException If the catalog cannot be loaded
+     */
+    public synchronized List<CatalogEntry> query(CatalogQuery query) throws IOException {
+        ensureLoaded();
+        boolean[] worlds = snapshot.matchingIds(query.world());
+        boolean[] dimensions = snapshot.matchingIds(query.dimension());
+        boolean[] biomes = snapshot.matchingIds(query.biome());
+
+        List<CatalogEntry> results = new ArrayList<>();
+        int end = query.toMillis() == Long.MAX_VALUE ? snapshot.size() : snapshot.lowerBound(query.toMillis());
+        for (int i = snapshot.lowerBound(query.fromMillis()); i < end; i++) {
+            if (!superseded.get(i)
+                    && accepts(worlds, snapshot.valueId(i, CatalogFile.FIELD_WORLD))
+                    && accepts(dimensions, snapshot.valueId(i, CatalogFile.FIELD_DIMENSION))
+                    && accepts(biomes, snapshot.valueId(i, CatalogFile.FIELD_BIOME))) {
+                results.add(snapshot.entry(i));
+            }
+        }
+        if (!changes.isEmpty()) {
+            for (CatalogEntry entry : changes.values()) {
+                if (entry != null && query.matches(entry)) {
+                    results.add(entry);
+                }
+            }
+            results.sort(BY_TIME);
+        }
+        return results;
+    }
+
+    /**
+     * @return The number of screenshots in the catalog
+     * @throws IOException If the catalog cannot be loaded
+     */
+    public synchronized int size() throws IOException {
+        ensureLoaded();
+        int size = snapshot.size() - superseded.cardinality();
+        for (CatalogEntry entry : changes.values()) {
+            if (entry != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Brings the catalog in line with the screenshots folder.
+     *
+     * <p>
+     * Directories whose modification time matches the catalog are not listed
+     * again, since adding, removing or renaming a file changes it; their
+     * recorded subdirectories are still visited. In changed directories, files
+     * are compared by size and modification time. The folder is walked without
+     * holding the catalog's lock, so screenshots can be recorded meanwhile.
+     * </p>
+     *
+     * <p>
+     * Metadata of files found without an entry, or whose entry has none, is
+     * read back from the file with {@link MetadataHandler#readMetadata}, which
+     * only reads the chunk headers before the image data.
+     * </p>
+     *
+     * @return The number of entries added, updated or removed
+     * @throws IOException           If the catalog cannot be loaded or written
+     * @throws CancellationException If the thread is interrupted
+     */
+    public int reconcile() throws IOException {
+        Scan scan;
+        synchronized (this) {
+            ensureLoaded();
+            scan = new Scan(directories, entries());
+        }
+        if (Files.isDirectory(root)) {
+            scan.walk(root, "", 0);
+        }
+        scan.removeVanishedDirectories();
+
+        synchronized (this) {
+            int changed = 0;
+            for (Observed file : scan.changed) {
+                CatalogEntry previous = get(file.key);
+                if (previous != null && previous.size() == file.size && previous.modifiedMillis() == file.modified) {
+                    continue; // Recorded while the folder was walked
+                }
+                put(new CatalogEntry(file.key, file.size, file.modified,
+                        previous != null ? previous.timestamp() : timestamp(root.resolve(file.key), file.modified),
+                        previous != null && previous.metadata() != null ? previous.metadata() : file.metadata));
+                changed++;
+            }
+            for (String key : scan.removed) {
+                if (get(key) != null && !Files.exists(root.resolve(key))) {
+                    remove(key);
+                    changed++;
+                }
+            }
+            boolean directoriesChanged = !scan.directories.equals(directories);
+            directories = scan.directories;
+            if (changed > 0 || directoriesChanged) {
+                compact();
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * Writes all entries into a new snapshot and starts an empty journal.
+     *
+     * @throws IOException If the snapshot cannot be written
+     */
+    public synchronized void compact() throws IOException {
+        ensureLoaded();
+        List<CatalogEntry> entries = entries();
+        entries.sort(BY_TIME);
+
+        long next = generation + 1;
+        Path temp = stateDir.resolve(FILE_PREFIX + next + SNAPSHOT_SUFFIX + ".tmp");
+        CatalogFile.write(temp, entries, directories);
+        Path target = stateDir.resolve(FILE_PREFIX + next + SNAPSHOT_SUFFIX);
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        CatalogFile opened = CatalogFile.open(target);
+
+        closeJournal();
+        generation = next;
+        snapshot = opened;
+        superseded = new BitSet();
+        snapshotIndex = null;
+        changes.clear();
+        journalRecords = 0;
+        deleteOtherGenerations();
+        openJournal();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeJournal();
+    }
+
+    private void put(CatalogEntry entry) throws IOException {
+        appendJournal(OP_PUT, entry.path(), entry);
+        apply(entry.path(), entry);
+        if (journalRecords >= COMPACT_THRESHOLD) {
+            compact();
+        }
+    }
+
+    private void remove(String key) throws IOException {
+        appendJournal(OP_REMOVE, key, null);
+        apply(key, null);
+    }
+
+    private void apply(String key, CatalogEntry entry) {
+        Integer index = snapshotIndex().get(key);
+        if (index != null) {
+            superseded.set(index);
+            changes.put(key, entry);
+        } else if (entry != null) {
+            changes.put(key, entry);
+        } else {
+            changes.remove(key);
+        }
+    }
+
+    private List<CatalogEntry> entries() {
+        List<CatalogEntry> entries = new ArrayList<>(snapshot.size() + changes.size());
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (!superseded.get(i)) {
+                entries.add(snapshot.entry(i));
+            }
+        }
+        for (CatalogEntry entry : changes.values()) {
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    private Map<String, Integer> snapshotIndex() {
+        if (snapshotIndex == null) {
+            snapshotIndex = new HashMap<>(snapshot.size() * 2);
+            for (int i = 0; i < snapshot.size(); i++) {
+                snapshotIndex.put(snapshot.path(i), i);
+            }
+        }
+        return snapshotIndex;
+    }
+
+    private static boolean accepts(boolean[] ids, int id) {
+        return ids == null || (id >= 0 && ids[id]);
+    }
+
+    private String key(Path file) {
+        Path path = file.toAbsolutePath().normalize();
+        if (!path.startsWith(root) || path.equals(root)) {
+            return null;
+        }
+        return root.relativize(path).toString().replace('\\', '/');
+    }
+
+    private static long timestamp(Path file, long modifiedMillis) {
+        long parsed = ScreenshotFileAllocator.parseTimestamp(file.getFileName().toString());
+        return parsed >= 0 ? parsed : modifiedMillis;
+    }
+
+    private static boolean isScreenshot(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        return !name.startsWith(".") && (lower.endsWith(".png") || lower.endsWith(".qoi"));
+    }
+
+    // ---------------------------------------------------------------------
+    // Loading and journal
+    // ---------------------------------------------------------------------
+
+    private void ensureLoaded() throws IOException {
+        if (loaded) {
+            return;
+        }
+        Files.createDirectories(stateDir);
+
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(stateDir, FILE_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for (Path file : files) {
+                long gen = generationOf(file);
+                if (gen >= 0) {
+                    generations.add(gen);
+                }
+            }
+        }
+        generations.sort(Comparator.reverseOrder());
+        for (long gen : generations) {
+            try {
+                snapshot = CatalogFile.open(stateDir.resolve(FILE_PREFIX + gen + SNAPSHOT_SUFFIX));
+                generation = gen;
+                break;
+            } catch (IOException e) {
+                LOGGER.warn("Ignoring unreadable screenshot catalog: {}", e.getMessage());
+            }
+        }
+        directories = snapshot.directories();
+        replayJournal(journalFile());
+        deleteOtherGenerations();
+        openJournal();
+        loaded = true;
+    }
+
+    private Path journalFile() {
+        return stateDir.resolve(FILE_PREFIX + generation + JOURNAL_SUFFIX);
+    }
+
+    private void openJournal() throws IOException {
+        journal = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(journalFile(),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+    }
+
+    private void closeJournal() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    private void appendJournal(byte op, String key, CatalogEntry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeByte(op);
+        data.writeUTF(key);
+        if (entry != null) {
+            data.writeLong(entry.size());
+            data.writeLong(entry.modifiedMillis());
+            data.writeLong(entry.timestamp());
+            String[] fields = CatalogFile.fields(entry.metadata());
+            int present = 0;
+            for (int f = 0; fields != null && f < fields.length; f++) {
+                if (fields[f] != null) {
+                    present |= 1 << f;
+                }
+            }
+            data.writeShort(present);
+            for (int f = 0; f < CatalogFile.FIELD_COUNT; f++) {
+                if ((present & (1 << f)) != 0) {
+                    data.writeUTF(fields[f]);
+                }
+            }
+        }
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        journal.writeInt(payload.length);
+        journal.write(payload);
+        journal.writeInt((int) crc.getValue());
+        journal.flush();
+        journalRecords++;
+    }
+
+    private void replayJournal(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+        int valid = 0;
+        while (in.remaining() >= 8) {
+            int length = in.getInt();
+            if (length <= 0 || length > in.remaining() - 4) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            in.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if (in.getInt() != (int) crc.getValue() || !replay(payload)) {
+                break;
+            }
+            valid = in.position();
+            journalRecords++;
+        }
+        if (valid < in.limit()) {
+            // Torn by a crash mid-append; later appends must follow the last good record
+            LOGGER.warn("Dropping {} damaged bytes at the end of the screenshot catalog journal",
+                    in.limit() - valid);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+    }
+
+    private boolean replay(byte[] payload) {
+        try {
+            DataInputStream data = new DataInputStream(new ByteArrayInputStream(payload));
+            byte op = data.readByte();
+            String key = data.readUTF();
+            if (op == OP_REMOVE) {
+                apply(key, null);
+                return true;
+            }
+            if (op != OP_PUT) {
+                return false;
+            }
+            long size = data.readLong();
+            long modified = data.readLong();
+            long timestamp = data.readLong();
+            int present = data.readShort();
+            String[] fields = new String[CatalogFile.FIELD_COUNT];
+            for (int f = 0; f < fields.length; f++) {
+                if ((present & (1 << f)) != 0) {
+                    fields[f] = data.readUTF();
+                }
+            }
+            apply(key, new CatalogEntry(key, size, modified, timestamp,
+                    present != 0 ? CatalogFile.metadata(fields) : null));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void deleteOtherGenerations() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(stateDir, FILE_PREFIX + "*")) {
+            for (Path file : files) {
+                if (generationOf(file) != generation) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        // Still mapped on some platforms; removed on a later start
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Could not clean up old catalog files: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return The generation in a catalog file name, or {@code -1}
+     */
+    private static long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.indexOf('.', FILE_PREFIX.length());
+        if (!name.startsWith(FILE_PREFIX) || dot < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(FILE_PREFIX.length(), dot));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Reconcile
+    // ---------------------------------------------------------------------
+
+    /**
+     * A file whose size or modification time differs from the catalog.
+     */
+    private record Observed(String key, long size, long modified, ScreenshotMetadata metadata) {
+    }
+
+    /**
+     * One walk over the screenshots folder, compared against a copy of the
+     * catalog taken before it started.
+     */
+    private final class Scan {
+        private final Map<String, Long> knownDirectories;
+        private final Map<String, List<String>> knownChildren = new HashMap<>();
+        private final Map<String, Map<String, CatalogEntry>> knownFiles = new HashMap<>();
+        final Map<String, Long> directories = new HashMap<>();
+        final List<Observed> changed = new ArrayList<>();
+        final List<String> removed = new ArrayList<>();
+
+        Scan(Map<String, Long> knownDirectories, List<CatalogEntry> entries) {
+            this.knownDirectories = new HashMap<>(knownDirectories);
+            for (String dir : knownDirectories.keySet()) {
+                if (!dir.isEmpty()) {
+                    int slash = dir.lastIndexOf('/');
+                    knownChildren.computeIfAbsent(slash < 0 ? "" : dir.substring(0, slash), k -> new ArrayList<>())
+                            .add(dir);
+                }
+            }
+            for (CatalogEntry entry : entries) {
+                knownFiles.computeIfAbsent(entry.directory(), k -> new HashMap<>()).put(entry.path(), entry);
+            }
+        }
+
+        void walk(Path dir, String key, int depth) throws IOException {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException();
+            }
+            long modified;
+            try {
+                modified = Files.getLastModifiedTime(dir, LinkOption.NOFOLLOW_LINKS).toMillis();
+            } catch (NoSuchFileException e) {
+                return;
+            }
+            directories.put(key, modified);
+
+            Long known = knownDirectories.get(key);
+            if (known != null && known == modified) {
+                // Same entries as last time; only subdirectories can have changed
+                for (String child : knownChildren.getOrDefault(key, List.of())) {
+                    walk(root.resolve(child), child, depth + 1);
+                }
+                return;
+            }
+
+            Map<String, CatalogEntry> files = knownFiles.getOrDefault(key, Map.of());
+            Set<String> seen = new HashSet<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path path : stream) {
+                    String name = path.getFileName().toString();
+                    String childKey = key.isEmpty() ? name : key + "/" + name;
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    if (attrs.isDirectory()) {
+                        if (!name.startsWith(".") && depth < MAX_DEPTH) {
+                            walk(path, childKey, depth + 1);
+                        }
+                    } else if (attrs.isRegularFile() && isScreenshot(name)) {
+                        seen.add(childKey);
+                        CatalogEntry entry = files.get(childKey);
+                        long fileModified = attrs.lastModifiedTime().toMillis();
+                        if (entry == null || entry.size() != attrs.size() || entry.modifiedMillis() != fileModified) {
+                            changed.add(new Observed(childKey, attrs.size(), fileModified,
+                                    entry == null || entry.metadata() == null ? readMetadata(path) : null));
+                        }
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                directories.remove(key);
+                return;
+            }
+            for (String file : files.keySet()) {
+                if (!seen.contains(file)) {
+                    removed.add(file);
+                }
+            }
+        }
+
+        private static ScreenshotMetadata readMetadata(Path file) {
+            try {
+                return MetadataHandler.readMetadata(file);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Removes the entries of directories that were not reached, because
+         * they or one of their parents no longer exist.
+         */
+        void removeVanishedDirectories() {
+            for (Map.Entry<String, Map<String, CatalogEntry>> dir : knownFiles.entrySet()) {
+                if (!directories.containsKey(dir.getKey())) {
+                    removed.addAll(dir.getValue().keySet());
+                }
+            }
+        }
+    }
+}
@@ -1,8 +1,21 @@
 package com.milezerosoftware.mc.screenshotmanagerenhanced.client.compat;
 
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.archive.ArchiveService;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.migration.LibraryMigrationService;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.shard.ShardService;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.PathTemplate;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ScreenshotPathGenerator;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.CaptureMode;
 import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ConfigManager;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.DuplicateHandling;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.EmbedMode;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.EncoderProfile;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.FilenameSuffix;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.FrameDropPolicy;
 import com.milezerosoftware.mc.screenshotmanagerenhanced.config.GroupingMode;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.MigrationPolicy;
 import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ModConfig;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.OverflowPolicy;
 import com.terraformersmc.modmenu.api.ConfigScreenFactory;
 import com.terraformersmc.modmenu.api.ModMenuApi;
 import me.shedaniel.clothconfig2.api.ConfigBuilder;
@@ -12,19 +25,29 @@ import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.text.Text;
 
+import java.util.Optional;
+
 @Environment(EnvType.CLIENT)
 public class ModMenuIntegration implements ModMenuApi {
 
         @Override
         public ConfigScreenFactory<?> getModConfigScreenFactory() {
                 return parent -> {
-                        // Get the current configuration
-                        ModConfig currentConfig = ConfigManager.getInstance();
+                        // Edit a copy; readers keep the published snapshot until saving
+                        ModConfig currentConfig = ConfigManager.copy();
 
                         ConfigBuilder builder = ConfigBuilder.create()
                                         .setParentScreen(parent)
                                         .setTitle(Text.literal("Screenshot Manager Enhanced Settings"))
-                                        .setSavingRunnable(ConfigManager::save)
+                                        .setSavingRunnable(() -> {
+                                                PathTemplate previous = ScreenshotPathGenerator
+                                                                .getTemplate(ConfigManager.getInstance());
+                                                ConfigManager.update(currentConfig);
+                                                LibraryMigrationService.onLayoutChanged(previous,
+                                                                ConfigManager.getInstance());
+                                                ArchiveService.onConfigChanged(ConfigManager.getInstance());
+                                                ShardService.onConfigChanged(ConfigManager.getInstance());
+                                        })
                                         .setAlwaysShowTabs(false) // Hide tabs when only one category
                                         .setTransparentBackground(true) // Enable transparent background
                                         .setDoesConfirmSave(false); // Don't show confirmation dialog
@@ -48,6 +71,8 @@ public class ModMenuIntegration implements ModMenuApi {
                                                         case WORLD_DIMENSION_DATE -> Text.literal("World / Dim / Date");
                                                         case WORLD_DATE_DIMENSION -> Text.literal("World / Date / Dim");
                                                         case NONE -> Text.literal("None");
+                                                        case ADAPTIVE -> Text.literal("World, Split by Time When Full");
+                                                        case CUSTOM -> Text.literal("Custom Template");
                                                 };
                                         })
                                         .setTooltip(Text.literal("Select how to group screenshots"))
@@ -55,6 +80,55 @@ public class ModMenuIntegration implements ModMenuApi {
                                         .setSaveConsumer(newValue -> currentConfig.groupingMode = newValue)
                                         .build());
 
+                        // Entry: Custom Path Template
+                        generalCategory.addEntry(entryBuilder
+                                        .startStrField(Text.literal("Custom Path Template"),
+                                                        currentConfig.customPathTemplate)
+                                        .setDefaultValue(new ModConfig().customPathTemplate)
+                                        .setErrorSupplier(value -> {
+                                                try {
+                                                        PathTemplate.compile(value);
+                                                        return Optional.empty();
+                                                } catch (IllegalArgumentException e) {
+                                                        return Optional.of(Text.literal(e.getMessage()));
+                                                }
+                                        })
+                                        .setTooltip(Text.literal(
+                                                        "Folder layout used by the Custom Template grouping mode"))
+                                        .setSaveConsumer(newValue -> currentConfig.customPathTemplate = newValue)
+                                        .build());
+
+                        // Entry: Adaptive Folder Size
+                        generalCategory.addEntry(entryBuilder
+                                        .startIntField(Text.literal("Adaptive Folder Size"),
+                                                        currentConfig.adaptiveShardThreshold)
+                                        .setDefaultValue(new ModConfig().adaptiveShardThreshold)
+                                        .setMin(10)
+                                        .setMax(1000000)
+                                        .setTooltip(Text.literal(
+                                                        "Screenshots a folder holds before the Split by Time grouping mode\n"
+                                                                        + "splits it into month, then day, then hour folders"))
+                                        .setSaveConsumer(newValue -> currentConfig.adaptiveShardThreshold = newValue)
+                                        .build());
+
+                        // Entry: Existing Screenshots on Layout Change
+                        generalCategory.addEntry(entryBuilder
+                                        .startEnumSelector(Text.literal("Existing Screenshots"), MigrationPolicy.class,
+                                                        currentConfig.migrationPolicy)
+                                        .setDefaultValue(MigrationPolicy.KEEP)
+                                        .setEnumNameProvider(enumValue -> {
+                                                return switch ((MigrationPolicy) enumValue) {
+                                                        case KEEP -> Text.literal("Leave in Place");
+                                                        case REPORT -> Text.literal("Report Only");
+                                                        case MOVE -> Text.literal("Move to New Layout");
+                                                };
+                                        })
+                                        .setTooltip(Text.literal(
+                                                        "What happens to saved screenshots when the grouping mode or template changes.\n"
+                                                                        + "Report Only writes the planned moves to screenshots/.sme/migration-report.txt"))
+                                        .setSaveConsumer(newValue -> currentConfig.migrationPolicy = newValue)
+                                        .build());
+
                         // Grouping Mode Description (Collapsible sub-category)
                         generalCategory.addEntry(entryBuilder.startSubCategory(
                                         Text.literal("ℹ️ Grouping Mode Guide"),
@@ -88,12 +162,42 @@ public class ModMenuIntegration implements ModMenuApi {
                                                                                         +
                                                                                         "§bNONE§f (None) - Standard Minecraft behavior\n"
                                                                                         +
-                                                                                        "  §7Example: screenshots/§r"))
+                                                                                        "  §7Example: screenshots/§r\n\n"
+                                                                                        +
+                                                                                        "§bADAPTIVE§f (World, Split by Time When Full) - Like World,\n"
+                                                                                        +
+                                                                                        "  but a full folder is split by month, then day, then hour\n"
+                                                                                        +
+                                                                                        "  §7Example: screenshots/My_World/2025-01/30/§r\n\n"
+                                                                                        +
+                                                                                        "§bCUSTOM§f (Custom Template) - Your own folder layout\n"
+                                                                                        +
+                                                                                        "  §7Variables: {world} {dim} {server} {session} {biome}\n"
+                                                                                        +
+                                                                                        "  §7{date} {yyyy} {yy} {MM} {dd} {HH} {mm} {ss}\n"
+                                                                                        +
+                                                                                        "  §7Example: {world}/{dim}/{yyyy}/{MM}-{dd}§r"))
                                                                         .build()))
                                         .setExpanded(false) // Collapsed by default
                                         .setTooltip(Text.literal("Click to view detailed grouping mode information"))
                                         .build());
 
+                        // Entry: File Name Suffix
+                        generalCategory.addEntry(entryBuilder
+                                        .startEnumSelector(Text.literal("File Names"), FilenameSuffix.class,
+                                                        currentConfig.filenameSuffix)
+                                        .setDefaultValue(FilenameSuffix.SEQUENCE)
+                                        .setEnumNameProvider(enumValue -> {
+                                                return switch ((FilenameSuffix) enumValue) {
+                                                        case SEQUENCE -> Text.literal("Vanilla (_1, _2, ...)");
+                                                        case MILLISECONDS -> Text.literal("With Milliseconds");
+                                                };
+                                        })
+                                        .setTooltip(Text.literal(
+                                                        "How screenshots taken within the same second get unique names"))
+                                        .setSaveConsumer(newValue -> currentConfig.filenameSuffix = newValue)
+                                        .build());
+
                         // Spacer between Grouping Mode Guide and Advanced Features
                         generalCategory.addEntry(entryBuilder.startTextDescription(Text.literal(" ")).build());
 
@@ -121,11 +225,355 @@ public class ModMenuIntegration implements ModMenuApi {
                                                                                         "Enable/Disable adding metadata to screenshots"))
                                                                         .setSaveConsumer(
                                                                                         newValue -> currentConfig.embedMetadata = newValue)
+                                                                        .build(),
+                                                        // Entry: Embed Mode
+                                                        entryBuilder.startEnumSelector(
+                                                                        Text.literal("Embedding Method"),
+                                                                        EmbedMode.class,
+                                                                        currentConfig.metadataEmbedMode)
+                                                                        .setDefaultValue(EmbedMode.ENCODE_TIME)
+                                                                        .setEnumNameProvider(enumValue -> {
+                                                                                return switch ((EmbedMode) enumValue) {
+                                                                                        case ENCODE_TIME -> Text.literal("While Saving");
+                                                                                        case POST_WRITE -> Text.literal("After Saving");
+                                                                                };
+                                                                        })
+                                                                        .setTooltip(Text.literal(
+                                                                                        "While Saving writes each screenshot once; After Saving rewrites the vanilla file"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.metadataEmbedMode = newValue)
+                                                                        .build(),
+                                                        // Entry: Metadata Writer Threads
+                                                        entryBuilder.startIntField(
+                                                                        Text.literal("Metadata Writer Threads"),
+                                                                        currentConfig.metadataWorkerThreads)
+                                                                        .setDefaultValue(1)
+                                                                        .setMin(1)
+                                                                        .setMax(8)
+                                                                        .setTooltip(Text.literal(
+                                                                                        "Background threads embedding metadata (applies after restart)"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.metadataWorkerThreads = newValue)
+                                                                        .build(),
+                                                        // Entry: Metadata Queue Capacity
+                                                        entryBuilder.startIntField(
+                                                                        Text.literal("Metadata Queue Size"),
+                                                                        currentConfig.metadataQueueCapacity)
+                                                                        .setDefaultValue(16)
+                                                                        .setMin(1)
+                                                                        .setMax(256)
+                                                                        .setTooltip(Text.literal(
+                                                                                        "Screenshots that may wait for metadata (applies after restart)"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.metadataQueueCapacity = newValue)
+                                                                        .build(),
+                                                        // Entry: Overflow Policy
+                                                        entryBuilder.startEnumSelector(
+                                                                        Text.literal("When Queue Is Full"),
+                                                                        OverflowPolicy.class,
+                                                                        currentConfig.metadataOverflowPolicy)
+                                                                        .setDefaultValue(OverflowPolicy.SIDECAR)
+                                                                        .setEnumNameProvider(enumValue -> {
+                                                                                return switch ((OverflowPolicy) enumValue) {
+                                                                                        case BLOCK -> Text.literal("Wait");
+                                                                                        case DROP_OLDEST -> Text.literal("Drop Oldest");
+                                                                                        case SIDECAR -> Text.literal("Write .xmp Sidecar");
+                                                                                };
+                                                                        })
+                                                                        .setTooltip(Text.literal(
+                                                                                        "What to do when screenshots arrive faster than metadata can be written"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.metadataOverflowPolicy = newValue)
+                                                                        .build(),
+                                                        // Entry: Parallel Encoding
+                                                        entryBuilder.startBooleanToggle(
+                                                                        Text.literal("Multi-Core PNG Encoding"),
+                                                                        currentConfig.parallelEncoding)
+                                                                        .setDefaultValue(false)
+                                                                        .setTooltip(Text.literal(
+                                                                                        "Encode large screenshots on all CPU cores instead of one"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.parallelEncoding = newValue)
+                                                                        .build(),
+                                                        // Entry: Thumbnails
+                                                        entryBuilder.startBooleanToggle(
+                                                                        Text.literal("Capture Thumbnails"),
+                                                                        currentConfig.captureThumbnails)
+                                                                        .setDefaultValue(true)
+                                                                        .setTooltip(Text.literal(
+                                                                                        "Store a small preview of each screenshot for fast browsing"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.captureThumbnails = newValue)
+                                                                        .build(),
+                                                        // Entry: Duplicate Handling
+                                                        entryBuilder.startEnumSelector(
+                                                                        Text.literal("Duplicate Screenshots"),
+                                                                        DuplicateHandling.class,
+                                                                        currentConfig.duplicateHandling)
+                                                                        .setDefaultValue(DuplicateHandling.OFF)
+                                                                        .setEnumNameProvider(enumValue -> {
+                                                                                return switch ((DuplicateHandling) enumValue) {
+                                                                                        case OFF -> Text.literal("Keep All");
+                                                                                        case FLAG -> Text.literal("Flag in Metadata");
+                                                                                        case FOLD -> Text.literal("Move to duplicates Folder");
+                                                                                };
+                                                                        })
+                                                                        .setTooltip(Text.literal(
+                                                                                        "Spot screenshots that nearly repeat a recent one of the same world (requires metadata)"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.duplicateHandling = newValue)
+                                                                        .build(),
+                                                        // Entry: Duplicate Distance
+                                                        entryBuilder.startIntField(
+                                                                        Text.literal("Duplicate Sensitivity"),
+                                                                        currentConfig.duplicateMaxDistance)
+                                                                        .setDefaultValue(6)
+                                                                        .setMin(0)
+                                                                        .setMax(32)
+                                                                        .setTooltip(Text.literal(
+                                                                                        "How many of 64 hash bits may differ for screenshots to count as duplicates"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.duplicateMaxDistance = newValue)
+                                                                        .build(),
+                                                        // Entry: Duplicate Window
+                                                        entryBuilder.startIntField(
+                                                                        Text.literal("Duplicate Window (s)"),
+                                                                        currentConfig.duplicateWindowSeconds)
+                                                                        .setDefaultValue(30)
+                                                                        .setMin(1)
+                                                                        .setMax(3600)
+                                                                        .setTooltip(Text.literal(
+                                                                                        "How recent a screenshot must be to count as the original"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.duplicateWindowSeconds = newValue)
+                                                                        .build(),
+                                                        // Entry: Encoder Profile
+                                                        entryBuilder.startEnumSelector(
+                                                                        Text.literal("Image Format"),
+                                                                        EncoderProfile.class,
+                                                                        currentConfig.encoderProfile)
+                                                                        .setDefaultValue(EncoderProfile.STANDARD_PNG)
+                                                                        .setEnumNameProvider(enumValue -> {
+                                                                                return switch ((EncoderProfile) enumValue) {
+                                                                                        case STANDARD_PNG -> Text.literal("Standard PNG");
+                                                                                        case FAST_PNG -> Text.literal("Fast PNG");
+                                                                                        case COMPACT_PNG -> Text.literal("Compact PNG");
+                                                                                        case QOI -> Text.literal("QOI");
+                                                                                };
+                                                                        })
+                                                                        .setTooltip(Text.literal(
+                                                                                        "Fast PNG saves quickly, Compact PNG saves space, QOI is fastest but larger (metadata goes to a .xmp file)"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.encoderProfile = newValue)
+                                                                        .build(),
+                                                        // Entry: Background Optimization
+                                                        entryBuilder.startBooleanToggle(
+                                                                        Text.literal("Shrink Screenshots While Idle"),
+                                                                        currentConfig.backgroundOptimization)
+                                                                        .setDefaultValue(false)
+                                                                        .setTooltip(Text.literal(
+                                                                                        "Losslessly recompress saved PNGs while in menus or AFK (applies after restart)"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.backgroundOptimization = newValue)
+                                                                        .build(),
+                                                        // Entry: Optimizer CPU Budget
+                                                        entryBuilder.startIntField(
+                                                                        Text.literal("Optimizer CPU Budget (%)"),
+                                                                        currentConfig.optimizerCpuBudgetPercent)
+                                                                        .setDefaultValue(25)
+                                                                        .setMin(1)
+                                                                        .setMax(100)
+                                                                        .setTooltip(Text.literal(
+                                                                                        "Share of one CPU core the background optimizer may use (applies after restart)"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.optimizerCpuBudgetPercent = newValue)
                                                                         .build()))
                                         .setExpanded(false) // Collapsed by default
                                         .setTooltip(Text.literal("Click to view Advanced Features"))
                                         .build());
 
+                        // Burst & Timelapse subcategory
+                        generalCategory.addEntry(entryBuilder.startSubCategory(
+                                        Text.literal("§3Burst & Timelapse§r"),
+                                        java.util.List.of(
+                                                        // Entry: Capture Mode
+                                                        entryBuilder.startEnumSelector(
+                                                                        Text.literal("§6Screenshot Key§r"),
+                                                                        CaptureMode.class,
+                                                                        currentConfig.captureMode)
+                                                                        .setDefaultValue(CaptureMode.SINGLE)
+                                                                        .setEnumNameProvider(enumValue -> {
+                                                                                return switch ((CaptureMode) enumValue) {
+                                                                                        case SINGLE -> Text.literal("Single Screenshot");
+                                                                                        case BURST -> Text.literal("Burst");
+                                                                                        case TIMELAPSE -> Text.literal("Start/Stop Timelapse");
+                                                                                };
+                                                                        })
+                                                                        .setTooltip(Text.literal(
+                                                                                        "What pressing the screenshot key does"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.captureMode = newValue)
+                                                                        .build(),
+                                                        // Entry: Burst Frame Count
+                                                        entryBuilder.startIntField(
+                                                                        Text.literal("Burst Frames"),
+                                                                        currentConfig.burstFrameCount)
+                                                                        .setDefaultValue(10)
+                                                                        .setMin(1)
+                                                                        .setMax(1000)
+                                                                        .setTooltip(Text.literal(
+                                                                                        "Frames captured per key press in Burst mode"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.burstFrameCount = newValue)
+                                                                        .build(),
+                                                        // Entry: Burst Interval
+                                                        entryBuilder.startIntField(
+                                                                        Text.literal("Burst Interval (ticks)"),
+                                                                        currentConfig.burstIntervalTicks)
+                                                                        .setDefaultValue(2)
+                                                                        .setMin(1)
+                                                                        .setMax(200)
+                                                                        .setTooltip(Text.literal(
+                                                                                        "Ticks between burst frames (20 ticks = 1 second)"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.burstIntervalTicks = newValue)
+                                                                        .build(),
+                                                        // Entry: Timelapse Interval
+                                                        entryBuilder.startIntField(
+                                                                        Text.literal("Timelapse Interval (ticks)"),
+                                                                        currentConfig.timelapseIntervalTicks)
+                                                                        .setDefaultValue(100)
+                                                                        .setMin(1)
+                                                                        .setMax(72000)
+                                                                        .setTooltip(Text.literal(
+                                                                                        "Ticks between timelapse frames (20 ticks = 1 second)"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.timelapseIntervalTicks = newValue)
+                                                                        .build(),
+                                                        // Entry: Drop Policy
+                                                        entryBuilder.startEnumSelector(
+                                                                        Text.literal("When Saving Falls Behind"),
+                                                                        FrameDropPolicy.class,
+                                                                        currentConfig.captureDropPolicy)
+                                                                        .setDefaultValue(FrameDropPolicy.SKIP)
+                                                                        .setEnumNameProvider(enumValue -> {
+                                                                                return switch ((FrameDropPolicy) enumValue) {
+                                                                                        case SKIP -> Text.literal("Skip Frame");
+                                                                                        case DEFER -> Text.literal("Delay Frame");
+                                                                                        case DROP_OLDEST -> Text.literal("Drop Oldest Frame");
+                                                                                };
+                                                                        })
+                                                                        .setTooltip(Text.literal(
+                                                                                        "What to do when frames are captured faster than they can be saved"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.captureDropPolicy = newValue)
+                                                                        .build(),
+                                                        // Entry: Frame Buffers
+                                                        entryBuilder.startIntField(
+                                                                        Text.literal("Frame Buffers"),
+                                                                        currentConfig.captureBufferCount)
+                                                                        .setDefaultValue(4)
+                                                                        .setMin(1)
+                                                                        .setMax(32)
+                                                                        .setTooltip(Text.literal(
+                                                                                        "Frames held in memory while saving; each takes 4 bytes per pixel (applies after restart)"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.captureBufferCount = newValue)
+                                                                        .build(),
+                                                        // Entry: Encoder Threads
+                                                        entryBuilder.startIntField(
+                                                                        Text.literal("Frame Encoder Threads"),
+                                                                        currentConfig.captureEncoderThreads)
+                                                                        .setDefaultValue(2)
+                                                                        .setMin(1)
+                                                                        .setMax(16)
+                                                                        .setTooltip(Text.literal(
+                                                                                        "Background threads saving frames (applies after restart)"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.captureEncoderThreads = newValue)
+                                                                        .build()))
+                                        .setExpanded(false) // Collapsed by default
+                                        .setTooltip(Text.literal("Click to view burst and timelapse settings"))
+                                        .build());
+
+                        // Storage Limits subcategory
+                        generalCategory.addEntry(entryBuilder.startSubCategory(
+                                        Text.literal("§3Storage Limits§r"),
+                                        java.util.List.of(
+                                                        // Entry: Size Limit
+                                                        entryBuilder.startIntField(
+                                                                        Text.literal("Max Size per World (MB)"),
+                                                                        currentConfig.storageMaxMegabytes)
+                                                                        .setDefaultValue(0)
+                                                                        .setMin(0)
+                                                                        .setMax(Integer.MAX_VALUE)
+                                                                        .setTooltip(Text.literal(
+                                                                                        "Oldest screenshots are removed once a world's screenshots take up more space (0 = no limit)"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.storageMaxMegabytes = newValue)
+                                                                        .build(),
+                                                        // Entry: File Limit
+                                                        entryBuilder.startIntField(
+                                                                        Text.literal("Max Screenshots per World"),
+                                                                        currentConfig.storageMaxFiles)
+                                                                        .setDefaultValue(0)
+                                                                        .setMin(0)
+                                                                        .setMax(Integer.MAX_VALUE)
+                                                                        .setTooltip(Text.literal(
+                                                                                        "Oldest screenshots are removed once a world has more (0 = no limit)"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.storageMaxFiles = newValue)
+                                                                        .build(),
+                                                        // Entry: Age Limit
+                                                        entryBuilder.startIntField(
+                                                                        Text.literal("Keep Screenshots for (days)"),
+                                                                        currentConfig.retentionMaxAgeDays)
+                                                                        .setDefaultValue(0)
+                                                                        .setMin(0)
+                                                                        .setMax(36500)
+                                                                        .setTooltip(Text.literal(
+                                                                                        "Screenshots older than this are removed (0 = keep forever)"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.retentionMaxAgeDays = newValue)
+                                                                        .build(),
+                                                        // Entry: Per Day Limit
+                                                        entryBuilder.startIntField(
+                                                                        Text.literal("Keep per Day"),
+                                                                        currentConfig.retentionKeepPerDay)
+                                                                        .setDefaultValue(0)
+                                                                        .setMin(0)
+                                                                        .setMax(10000)
+                                                                        .setTooltip(Text.literal(
+                                                                                        "Only the most recent screenshots of each day are kept (0 = keep all)"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.retentionKeepPerDay = newValue)
+                                                                        .build(),
+                                                        // Entry: Trash
+                                                        entryBuilder.startBooleanToggle(
+                                                                        Text.literal("Move to .trash Instead of Deleting"),
+                                                                        currentConfig.retentionUseTrash)
+                                                                        .setDefaultValue(true)
+                                                                        .setTooltip(Text.literal(
+                                                                                        "Removed screenshots go to screenshots/.trash, to be emptied by hand"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.retentionUseTrash = newValue)
+                                                                        .build(),
+                                                        // Entry: Archiving
+                                                        entryBuilder.startIntField(
+                                                                        Text.literal("Archive Date Folders After (days)"),
+                                                                        currentConfig.archiveAfterDays)
+                                                                        .setDefaultValue(0)
+                                                                        .setMin(0)
+                                                                        .setMax(36500)
+                                                                        .setTooltip(Text.literal(
+                                                                                        "Packs each older date folder into one uncompressed ZIP next to it (0 = off, unpacks existing archives)"))
+                                                                        .setSaveConsumer(
+                                                                                        newValue -> currentConfig.archiveAfterDays = newValue)
+                                                                        .build()))
+                                        .setExpanded(false) // Collapsed by default
+                                        .setTooltip(Text.literal("Click to view per-world storage limits"))
+                                        .build());
+
                         // --- Visual Styling (Placeholder) ---
                         // TODO: Issue #7 - Add visual styling logic here.
                         // Custom themes or assets can be applied to the builder or screen here.
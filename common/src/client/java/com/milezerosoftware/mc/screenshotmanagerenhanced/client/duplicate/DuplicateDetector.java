@@ -0,0 +1,224 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.duplicate;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PixelSource;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.quota.StorageQuotaService;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.thumbnail.ThumbnailService;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.AdaptiveShards;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler.ScreenshotMetadata;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataTask;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ScreenshotCompletionTracker;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ConfigManager;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.DuplicateHandling;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ModConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashes screenshots as they are saved and finds the ones that nearly repeat
+ * a screenshot taken shortly before in the same world.
+ *
+ * <p>
+ * When a screenshot's name is chosen, it is {@linkplain #expect expected}
+ * along with its world and the time. The write hook then hands over the
+ * pixels on the thread that writes the file, before its metadata is written,
+ * and the image's {@link PerceptualHash} is taken there and looked up in the
+ * world's {@link DuplicateIndex}. The hash, and the screenshot it nearly
+ * duplicates if any, are added to the pending metadata, so they are written
+ * with the rest of it. With {@link DuplicateHandling#FOLD}, flagged
+ * screenshots are moved into a {@value #FOLDER} folder once their metadata
+ * is written.
+ * </p>
+ *
+ * <p>
+ * Only screenshots written with metadata are hashed; burst and timelapse
+ * frames are similar by design and are left out.
+ * </p>
+ */
+public class DuplicateDetector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+
+    /** The folder near-duplicates are folded into, next to where they were saved. */
+    public static final String FOLDER = "duplicates";
+
+    private static final long PENDING_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private static volatile DuplicateDetector instance;
+
+    private final Path root;
+    private final Map<Path, Pending> pending = new ConcurrentHashMap<>();
+    private final Map<String, DuplicateIndex> indexes = new ConcurrentHashMap<>();
+
+    private record Pending(String world, long captureMillis, long createdNanos) {
+    }
+
+    /**
+     * The outcome of hashing a screenshot.
+     *
+     * @param hash        The screenshot's perceptual hash
+     * @param duplicateOf The screenshot it nearly duplicates, relative to the
+     *                    screenshots folder, or {@code null}
+     */
+    public record Match(long hash, String duplicateOf) {
+    }
+
+    /**
+     * Creates a detector for a screenshots folder.
+     *
+     * @param root The screenshots folder
+     */
+    DuplicateDetector(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Starts the shared detector for a screenshots folder, if it is not
+     * running yet.
+     *
+     * @param screenshotsDir The screenshots folder
+     */
+    public static synchronized void start(Path screenshotsDir) {
+        if (instance == null) {
+            instance = new DuplicateDetector(screenshotsDir);
+        }
+    }
+
+    /**
+     * Stops the shared detector, forgetting the hashes of this session.
+     */
+    public static synchronized void shutdown() {
+        instance = null;
+    }
+
+    /**
+     * Registers a screenshot that should be hashed when it is written. Called
+     * on the render thread when the file name is chosen.
+     *
+     * @param file    The screenshot file
+     * @param worldId The sanitized world id the screenshot belongs to
+     */
+    public static void expect(Path file, String worldId) {
+        DuplicateDetector detector = instance;
+        if (detector != null) {
+            detector.expectFile(file, worldId, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Hashes an {@linkplain #expect expected} screenshot and adds the result
+     * to its pending metadata. The pixels are only read during this call.
+     *
+     * @param source The screenshot's pixels
+     * @param file   The screenshot file
+     */
+    public static void capture(PixelSource source, Path file) {
+        DuplicateDetector detector = instance;
+        if (detector == null || detector.pending.isEmpty()) {
+            return;
+        }
+        MetadataTask task = ScreenshotCompletionTracker.peek(file);
+        if (task == null || !task.hasMetadata()) {
+            return;
+        }
+        ModConfig config = ConfigManager.getInstance();
+        Match match = detector.captureFile(source, file, config.duplicateMaxDistance,
+                TimeUnit.SECONDS.toMillis(config.duplicateWindowSeconds));
+        if (match != null) {
+            task.setPerceptualHash(PerceptualHash.format(match.hash()), match.duplicateOf());
+        }
+    }
+
+    /**
+     * Folds a near-duplicate away once its metadata is written, if
+     * {@link DuplicateHandling#FOLD} is selected.
+     *
+     * @param file     The screenshot that was written
+     * @param metadata The metadata written for it
+     * @return Where the screenshot is now
+     */
+    public static File onWritten(File file, ScreenshotMetadata metadata) {
+        if (instance == null || metadata == null || metadata.duplicateOf == null
+                || ConfigManager.getInstance().duplicateHandling != DuplicateHandling.FOLD) {
+            return file;
+        }
+        try {
+            return fold(file.toPath()).toFile();
+        } catch (IOException e) {
+            LOGGER.warn("Could not move duplicate screenshot {}: {}", file.getName(), e.getMessage());
+            return file;
+        }
+    }
+
+    void expectFile(Path file, String worldId, long captureMillis) {
+        long now = System.nanoTime();
+        pending.values().removeIf(p -> now - p.createdNanos > PENDING_TIMEOUT_NANOS);
+        pending.put(file.toAbsolutePath().normalize(), new Pending(worldId, captureMillis, now));
+    }
+
+    /**
+     * Hashes the pixels on the calling thread and checks them against the
+     * world's recent screenshots.
+     *
+     * @return The result, or {@code null} if the file was not expected
+     */
+    Match captureFile(PixelSource source, Path file, int maxDistance, long windowMillis) {
+        Path path = file.toAbsolutePath().normalize();
+        Pending expected = pending.remove(path);
+        if (expected == null || !path.startsWith(root)) {
+            return null;
+        }
+        long hash;
+        try {
+            hash = PerceptualHash.of(source);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not hash {}: {}", file.getFileName(), e.getMessage());
+            return null;
+        }
+        String key = root.relativize(path).toString().replace('\\', '/');
+        DuplicateIndex index = indexes.computeIfAbsent(expected.world, world -> new DuplicateIndex());
+        String duplicateOf;
+        synchronized (index) {
+            duplicateOf = index.findNear(hash, expected.captureMillis, maxDistance, windowMillis);
+            index.add(hash, expected.captureMillis, key, windowMillis);
+        }
+        if (duplicateOf != null) {
+            LOGGER.debug("{} nearly duplicates {}", key, duplicateOf);
+        }
+        return new Match(hash, duplicateOf);
+    }
+
+    /**
+     * Moves a screenshot, and its sidecar if it has one, into the
+     * {@value #FOLDER} folder next to it. Its thumbnail and its entry in the
+     * storage usage follow it to the new path, and it no longer counts
+     * towards splitting its folder.
+     *
+     * @param file The screenshot
+     * @return Its new path
+     * @throws IOException If it cannot be moved, e.g. because the folder
+     *                     already holds a file of that name
+     */
+    static Path fold(Path file) throws IOException {
+        Path folder = file.resolveSibling(FOLDER);
+        Files.createDirectories(folder);
+        Path target = folder.resolve(file.getFileName());
+        Files.move(file, target);
+        Path sidecar = MetadataHandler.sidecarFor(file);
+        if (Files.exists(sidecar)) {
+            Files.move(sidecar, folder.resolve(sidecar.getFileName()));
+        }
+        ThumbnailService.onMoved(file, target);
+        StorageQuotaService.onMoved(file, target);
+        AdaptiveShards.getInstance().removed(file.getParent(), 1);
+        return target;
+    }
+}
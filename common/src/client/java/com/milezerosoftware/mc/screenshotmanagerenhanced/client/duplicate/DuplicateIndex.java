@@ -0,0 +1,148 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.duplicate;
+
+/**
+ * The perceptual hashes of one world's recent screenshots.
+ *
+ * <p>
+ * Hashes and capture times live in two parallel {@code long[]} arrays forming
+ * an open-addressing table keyed by the hash, with linear probing, so an
+ * identical frame is found with a single probe and no object per entry. A
+ * near match has to be compared with every candidate, but only screenshots
+ * inside the time window can match: entries that have left it are dropped
+ * whenever the table would otherwise grow, which keeps it at the size of one
+ * window's worth of screenshots and the scan over it short.
+ * </p>
+ *
+ * <p>
+ * Not thread-safe; {@link DuplicateDetector} synchronizes on the index.
+ * </p>
+ */
+final class DuplicateIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] hashes = new long[INITIAL_CAPACITY];
+    private long[] times = new long[INITIAL_CAPACITY];
+    /** The screenshot of each slot; {@code null} marks a free slot. */
+    private String[] files = new String[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Finds the screenshot most like a new one among those taken shortly
+     * before it.
+     *
+     * @param hash         The new screenshot's hash
+     * @param time         Its capture time in epoch milliseconds
+     * @param maxDistance  The largest Hamming distance that counts as a match
+     * @param windowMillis How long before {@code time} a match may have been
+     *                     taken
+     * @return The closest match, the most recent one if several are as close,
+     *         or {@code null}
+     */
+    String findNear(long hash, long time, int maxDistance, long windowMillis) {
+        int exact = slotOf(hash);
+        if (files[exact] != null && inWindow(times[exact], time, windowMillis)) {
+            return files[exact];
+        }
+        int best = -1;
+        int bestDistance = 0;
+        for (int i = 0; i < files.length; i++) {
+            if (files[i] == null || !inWindow(times[i], time, windowMillis)) {
+                continue;
+            }
+            int distance = PerceptualHash.distance(hash, hashes[i]);
+            if (distance > maxDistance) {
+                continue;
+            }
+            if (best < 0 || distance < bestDistance || (distance == bestDistance && times[i] > times[best])) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        return best >= 0 ? files[best] : null;
+    }
+
+    /**
+     * Adds a screenshot, replacing an earlier one with the same hash.
+     *
+     * @param hash         The screenshot's hash
+     * @param time         Its capture time in epoch milliseconds
+     * @param file         The screenshot
+     * @param windowMillis The time window; older entries may be dropped
+     */
+    void add(long hash, long time, String file, long windowMillis) {
+        int slot = slotOf(hash);
+        if (files[slot] == null) {
+            if ((size + 1) * 2 > files.length) {
+                rehash(time - windowMillis);
+                slot = slotOf(hash);
+            }
+            size++;
+        }
+        hashes[slot] = hash;
+        times[slot] = time;
+        files[slot] = file;
+    }
+
+    /**
+     * @return The number of screenshots held
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return The slot holding {@code hash}, or the free slot where it would
+     *         go
+     */
+    private int slotOf(long hash) {
+        int mask = files.length - 1;
+        int slot = mix(hash) & mask;
+        while (files[slot] != null && hashes[slot] != hash) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Rebuilds the table without the entries taken before {@code oldest},
+     * doubling it if it would still be more than half full after one more
+     * entry.
+     */
+    private void rehash(long oldest) {
+        long[] oldHashes = hashes;
+        long[] oldTimes = times;
+        String[] oldFiles = files;
+        int live = 0;
+        for (int i = 0; i < oldFiles.length; i++) {
+            if (oldFiles[i] != null && oldTimes[i] >= oldest) {
+                live++;
+            }
+        }
+        int capacity = INITIAL_CAPACITY;
+        while ((live + 1) * 2 > capacity) {
+            capacity *= 2;
+        }
+        hashes = new long[capacity];
+        times = new long[capacity];
+        files = new String[capacity];
+        size = live;
+        for (int i = 0; i < oldFiles.length; i++) {
+            if (oldFiles[i] != null && oldTimes[i] >= oldest) {
+                int slot = slotOf(oldHashes[i]);
+                hashes[slot] = oldHashes[i];
+                times[slot] = oldTimes[i];
+                files[slot] = oldFiles[i];
+            }
+        }
+    }
+
+    private static boolean inWindow(long taken, long time, long windowMillis) {
+        return taken <= time && time - taken <= windowMillis;
+    }
+
+    private static int mix(long hash) {
+        long h = hash * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,134 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.duplicate;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PixelSource;
+
+/**
+ * 64-bit difference hash (dHash) of a screenshot.
+ *
+ * <p>
+ * The image is reduced to a 9x8 grid of mean brightness, and each bit tells
+ * whether a cell is brighter than its right neighbour. Similar images differ
+ * in few bits, so the Hamming distance between two hashes measures how alike
+ * they look, regardless of size or compression.
+ * </p>
+ *
+ * <p>
+ * The grid means only need to be estimates, so rather than reading every
+ * pixel, each cell is averaged from a fixed lattice of up to
+ * {@value #ROW_SAMPLES} rows by {@value #COLUMN_SAMPLES} columns. The cost is
+ * the same for every resolution: about 37,000 pixels and 128 row copies, well
+ * under a millisecond for a 4K frame. Rows are read top to bottom, so
+ * streaming sources such as {@code PngReader} work too.
+ * </p>
+ */
+public final class PerceptualHash {
+
+    private static final int GRID_WIDTH = 9;
+    private static final int GRID_HEIGHT = 8;
+    /** Rows sampled per grid row. */
+    private static final int ROW_SAMPLES = 16;
+    /** Pixels sampled per grid cell in each sampled row. */
+    private static final int COLUMN_SAMPLES = 32;
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * Hashes an image.
+     *
+     * @param source The pixels, with 1 to 4 channels
+     * @return The hash
+     */
+    public static long of(PixelSource source) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int channels = source.getChannels();
+
+        // Sampled columns of each cell, the same for every row
+        int[][] columns = new int[GRID_WIDTH][];
+        for (int c = 0; c < GRID_WIDTH; c++) {
+            columns[c] = samples(c * width / GRID_WIDTH, (c + 1) * width / GRID_WIDTH, width, COLUMN_SAMPLES);
+        }
+
+        byte[] row = new byte[source.getRowBytes()];
+        long[] means = new long[GRID_WIDTH * GRID_HEIGHT];
+        for (int r = 0; r < GRID_HEIGHT; r++) {
+            int[] rows = samples(r * height / GRID_HEIGHT, (r + 1) * height / GRID_HEIGHT, height, ROW_SAMPLES);
+            for (int y : rows) {
+                source.readRow(y, row, 0);
+                for (int c = 0; c < GRID_WIDTH; c++) {
+                    long sum = 0;
+                    for (int x : columns[c]) {
+                        sum += luma(row, x * channels, channels);
+                    }
+                    means[r * GRID_WIDTH + c] += sum;
+                }
+            }
+            // Every cell of a row has the same number of rows; scale by the columns
+            for (int c = 0; c < GRID_WIDTH; c++) {
+                means[r * GRID_WIDTH + c] = means[r * GRID_WIDTH + c] * 256 / columns[c].length;
+            }
+        }
+
+        long hash = 0;
+        for (int r = 0; r < GRID_HEIGHT; r++) {
+            for (int c = 0; c < GRID_WIDTH - 1; c++) {
+                int cell = r * GRID_WIDTH + c;
+                hash = (hash << 1) | (means[cell] > means[cell + 1] ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @return The number of bits in which two hashes differ, 0 to 64
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * @return The hash as 16 hex digits, as stored in the metadata
+     */
+    public static String format(long hash) {
+        String hex = Long.toHexString(hash);
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    /**
+     * @param text A hash as written by {@link #format}
+     * @return The hash
+     * @throws NumberFormatException If the text is not a hash
+     */
+    public static long parse(String text) {
+        if (text.length() != 16) {
+            throw new NumberFormatException("Not a 64-bit hash: " + text);
+        }
+        return Long.parseUnsignedLong(text, 16);
+    }
+
+    /**
+     * Picks up to {@code count} evenly spread positions in {@code [from, to)},
+     * which is widened to one position if empty.
+     */
+    private static int[] samples(int from, int to, int limit, int count) {
+        if (to <= from) {
+            to = Math.min(limit, from + 1);
+            from = to - 1;
+        }
+        int span = to - from;
+        int n = Math.min(span, count);
+        int[] positions = new int[n];
+        for (int i = 0; i < n; i++) {
+            positions[i] = from + (int) ((2L * i + 1) * span / (2L * n));
+        }
+        return positions;
+    }
+
+    private static int luma(byte[] row, int i, int channels) {
+        if (channels < 3) {
+            return row[i] & 0xFF;
+        }
+        return (77 * (row[i] & 0xFF) + 150 * (row[i + 1] & 0xFF) + 29 * (row[i + 2] & 0xFF)) >> 8;
+    }
+}
@@ -0,0 +1,52 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder;
+
+/**
+ * {@link PixelSource} backed by a tightly packed heap byte array.
+ */
+public class ByteArrayPixelSource implements PixelSource {
+
+    private final byte[] pixels;
+    private final int width;
+    private final int height;
+    private final int channels;
+
+    /**
+     * Creates a source over existing pixel data.
+     *
+     * @param pixels   Packed pixels, row-major, {@code width * height * channels}
+     *                 bytes
+     * @param width    The image width in pixels
+     * @param height   The image height in pixels
+     * @param channels The number of channels per pixel (1 to 4)
+     */
+    public ByteArrayPixelSource(byte[] pixels, int width, int height, int channels) {
+        if (pixels.length < (long) width * height * channels) {
+            throw new IllegalArgumentException("Pixel array too small for " + width + "x" + height);
+        }
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+        this.channels = channels;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getChannels() {
+        return channels;
+    }
+
+    @Override
+    public void readRow(int y, byte[] dst, int offset) {
+        int rowBytes = width * channels;
+        System.arraycopy(pixels, y * rowBytes, dst, offset, rowBytes);
+    }
+}
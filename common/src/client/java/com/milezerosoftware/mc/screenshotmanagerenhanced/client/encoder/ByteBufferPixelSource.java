@@ -0,0 +1,59 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@link PixelSource} backed by a tightly packed {@link ByteBuffer}, typically
+ * a direct buffer over off-heap image memory.
+ *
+ * <p>
+ * Rows are copied with absolute bulk reads, so the buffer's position is never
+ * touched and concurrent {@link #readRow(int, byte[], int)} calls are safe.
+ * </p>
+ */
+public class ByteBufferPixelSource implements PixelSource {
+
+    private final ByteBuffer pixels;
+    private final int width;
+    private final int height;
+    private final int channels;
+
+    /**
+     * Creates a source over existing pixel data.
+     *
+     * @param pixels   Packed pixels, row-major, starting at index 0
+     * @param width    The image width in pixels
+     * @param height   The image height in pixels
+     * @param channels The number of channels per pixel (1 to 4)
+     */
+    public ByteBufferPixelSource(ByteBuffer pixels, int width, int height, int channels) {
+        if (pixels.capacity() < (long) width * height * channels) {
+            throw new IllegalArgumentException("Pixel buffer too small for " + width + "x" + height);
+        }
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+        this.channels = channels;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getChannels() {
+        return channels;
+    }
+
+    @Override
+    public void readRow(int y, byte[] dst, int offset) {
+        int rowBytes = width * channels;
+        pixels.get(y * rowBytes, dst, offset, rowBytes);
+    }
+}
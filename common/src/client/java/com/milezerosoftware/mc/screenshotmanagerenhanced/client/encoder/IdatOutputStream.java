@@ -0,0 +1,65 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Splits a zlib stream into fixed-size IDAT chunks as it is written.
+ *
+ * <p>
+ * Closing this stream flushes the last (possibly short) IDAT chunk but does
+ * not close the underlying stream.
+ * </p>
+ */
+public class IdatOutputStream extends OutputStream {
+
+    /** Default IDAT payload size, matching common encoders. */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int count;
+
+    public IdatOutputStream(OutputStream out) {
+        this(out, DEFAULT_CHUNK_SIZE);
+    }
+
+    public IdatOutputStream(OutputStream out, int chunkSize) {
+        this.out = out;
+        this.buffer = new byte[chunkSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            flushChunk();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == buffer.length) {
+                flushChunk();
+            }
+            int n = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushChunk();
+    }
+
+    private void flushChunk() throws IOException {
+        if (count > 0) {
+            PngChunks.writeChunk(out, PngChunks.IDAT, buffer, 0, count);
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.mixin.NativeImageAccessor;
+import net.minecraft.client.texture.NativeImage;
+import org.lwjgl.system.MemoryUtil;
+
+/**
+ * {@link PixelSource} that reads rows straight out of a {@link NativeImage}'s
+ * off-heap buffer.
+ *
+ * <p>
+ * No copy of the image is made on the Java heap; each
+ * {@link #readRow(int, byte[], int)} call copies a single row, and rows may be
+ * read from several threads at once. The source is only valid while the
+ * underlying image is open.
+ * </p>
+ */
+public class NativeImagePixelSource extends ByteBufferPixelSource {
+
+    public NativeImagePixelSource(NativeImage image) {
+        super(MemoryUtil.memByteBuffer(pointerOf(image),
+                image.getWidth() * image.getHeight() * image.getFormat().getChannelCount()),
+                image.getWidth(), image.getHeight(), image.getFormat().getChannelCount());
+    }
+
+    private static long pointerOf(NativeImage image) {
+        long pointer = ((NativeImageAccessor) (Object) image).getPointer();
+        if (pointer == 0L) {
+            throw new IllegalStateException("Image is not allocated");
+        }
+        return pointer;
+    }
+}
@@ -0,0 +1,291 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+/**
+ * Multi-core PNG encoder for large screenshots.
+ *
+ * <p>
+ * The image is split into bands of rows. Each band is filtered and deflated
+ * independently on a {@link ForkJoinPool} and ends on a deflate sync-flush
+ * boundary, so the compressed bands concatenate into a single valid zlib
+ * stream. To keep the compression ratio close to a single-threaded encoder,
+ * every band after the first primes its deflater with the last 32 KiB of the
+ * previous band's filtered data as a preset dictionary; the band recomputes
+ * those few rows itself rather than waiting for its neighbour. The per-band
+ * Adler-32 checksums are combined arithmetically for the zlib trailer.
+ * </p>
+ *
+ * <p>
+ * Bands are written in order as they complete, and only a bounded window of
+ * bands is in flight at once, so memory stays proportional to the band size
+ * rather than the image size. The {@link PixelSource} must support concurrent
+ * {@link PixelSource#readRow} calls.
+ * </p>
+ */
+public class ParallelPngEncoder implements ScreenshotEncoder {
+
+    /** Images smaller than this are encoded faster on a single thread. */
+    public static final long MIN_PARALLEL_PIXELS = 1_000_000;
+
+    private static final int DEFAULT_BAND_BYTES = 512 * 1024;
+    private static final int WINDOW_SIZE = 32 * 1024;
+    private static final int ADLER_BASE = 65521;
+
+    private static volatile ForkJoinPool sharedPool;
+
+    private final int compressionLevel;
+    private final boolean adaptiveFiltering;
+    private final ForkJoinPool pool;
+    private final int bandBytes;
+
+    /**
+     * Creates an encoder on the shared encoder pool with adaptive filtering
+     * and the default deflate level.
+     */
+    public ParallelPngEncoder() {
+        this(Deflater.DEFAULT_COMPRESSION, true, getSharedPool(), DEFAULT_BAND_BYTES);
+    }
+
+    /**
+     * Creates an encoder on the shared encoder pool.
+     *
+     * @param compressionLevel  Deflate level, 0-9 or
+     *                          {@link Deflater#DEFAULT_COMPRESSION}
+     * @param adaptiveFiltering {@code true} to pick the best filter per row
+     */
+    public ParallelPngEncoder(int compressionLevel, boolean adaptiveFiltering) {
+        this(compressionLevel, adaptiveFiltering, getSharedPool(), DEFAULT_BAND_BYTES);
+    }
+
+    /**
+     * Creates an encoder.
+     *
+     * @param compressionLevel  Deflate level, 0-9 or
+     *                          {@link Deflater#DEFAULT_COMPRESSION}
+     * @param adaptiveFiltering {@code true} to pick the best filter per row
+     * @param pool              The pool bands are compressed on
+     * @param bandBytes         Approximate uncompressed size of one band
+     */
+    public ParallelPngEncoder(int compressionLevel, boolean adaptiveFiltering, ForkJoinPool pool, int bandBytes) {
+        this.compressionLevel = compressionLevel;
+        this.adaptiveFiltering = adaptiveFiltering;
+        this.pool = pool;
+        this.bandBytes = Math.max(1, bandBytes);
+    }
+
+    /**
+     * Gets the pool shared by all parallel encoders: one daemon thread per
+     * core, leaving one core for the render thread.
+     *
+     * @return The shared pool
+     */
+    public static ForkJoinPool getSharedPool() {
+        ForkJoinPool pool = sharedPool;
+        if (pool == null) {
+            synchronized (ParallelPngEncoder.class) {
+                pool = sharedPool;
+                if (pool == null) {
+                    int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+                    pool = new ForkJoinPool(parallelism, p -> {
+                        var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                        thread.setName("ScreenshotEncoder-" + thread.getPoolIndex());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, null, false);
+                    sharedPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    @Override
+    public String getFileExtension() {
+        return "png";
+    }
+
+    @Override
+    public boolean supportsEmbeddedMetadata() {
+        return true;
+    }
+
+    /**
+     * Encodes the image as a PNG.
+     *
+     * @param source          The pixels to encode; must allow concurrent reads
+     * @param out             The destination stream (not closed)
+     * @param ancillaryChunks Complete, pre-serialized chunks to place between
+     *                        IHDR and IDAT; may be empty
+     * @throws IOException If writing fails
+     */
+    @Override
+    public void encode(PixelSource source, OutputStream out, byte[]... ancillaryChunks) throws IOException {
+        int height = source.getHeight();
+        int stride = source.getRowBytes() + 1;
+        int bandRows = Math.max(1, bandBytes / stride);
+        int bandCount = Math.max(1, (height + bandRows - 1) / bandRows);
+        int maxInFlight = Math.max(2, pool.getParallelism() * 2);
+
+        out.write(PngChunks.SIGNATURE);
+        PngChunks.writeHeader(out, source.getWidth(), height, PngChunks.colorTypeFor(source.getChannels()));
+        for (byte[] chunk : ancillaryChunks) {
+            out.write(chunk);
+        }
+
+        ArrayDeque<ForkJoinTask<Band>> inFlight = new ArrayDeque<>();
+        int submitted = 0;
+        long adler = 1;
+
+        try (IdatOutputStream idat = new IdatOutputStream(out)) {
+            idat.write(0x78);
+            idat.write(zlibFlags(compressionLevel));
+
+            for (int i = 0; i < bandCount; i++) {
+                while (submitted < bandCount && submitted < i + maxInFlight) {
+                    int index = submitted++;
+                    boolean last = index == bandCount - 1;
+                    inFlight.add(pool.submit(() -> compressBand(source, index, bandRows, last)));
+                }
+
+                Band band = inFlight.poll().join();
+                idat.write(band.data, 0, band.length);
+                adler = adler32Combine(adler, band.adler, band.rawLength);
+            }
+
+            idat.write((int) (adler >>> 24) & 0xFF);
+            idat.write((int) (adler >>> 16) & 0xFF);
+            idat.write((int) (adler >>> 8) & 0xFF);
+            idat.write((int) adler & 0xFF);
+        } catch (RuntimeException e) {
+            for (ForkJoinTask<Band> task : inFlight) {
+                task.cancel(true);
+            }
+            throw e;
+        }
+
+        PngChunks.writeChunk(out, PngChunks.IEND, new byte[0], 0, 0);
+    }
+
+    private Band compressBand(PixelSource source, int index, int bandRows, boolean last) {
+        int rowBytes = source.getRowBytes();
+        int stride = rowBytes + 1;
+        int bpp = source.getChannels();
+        int start = index * bandRows;
+        int end = Math.min(source.getHeight(), start + bandRows);
+
+        // Re-filter enough rows of the previous band to rebuild its 32 KiB tail
+        int dictRows = index == 0 ? 0 : Math.min(start, (WINDOW_SIZE + stride - 1) / stride);
+        int firstRow = start - dictRows;
+
+        byte[] prev = new byte[rowBytes];
+        byte[] cur = new byte[rowBytes];
+        byte[] scratch = adaptiveFiltering ? new byte[rowBytes] : null;
+        byte[] filtered = new byte[(end - firstRow) * stride];
+        if (firstRow > 0) {
+            source.readRow(firstRow - 1, prev, 0);
+        }
+
+        for (int y = firstRow; y < end; y++) {
+            source.readRow(y, cur, 0);
+            int offset = (y - firstRow) * stride;
+            if (adaptiveFiltering) {
+                PngFilters.filterAdaptive(cur, prev, bpp, rowBytes, filtered, offset, scratch);
+            } else {
+                filtered[offset] = PngFilters.NONE;
+                System.arraycopy(cur, 0, filtered, offset + 1, rowBytes);
+            }
+            byte[] swap = prev;
+            prev = cur;
+            cur = swap;
+        }
+
+        int bandOffset = dictRows * stride;
+        int rawLength = filtered.length - bandOffset;
+
+        Adler32 adler = new Adler32();
+        adler.update(filtered, bandOffset, rawLength);
+
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            if (dictRows > 0) {
+                int dictLength = Math.min(WINDOW_SIZE, bandOffset);
+                deflater.setDictionary(filtered, bandOffset - dictLength, dictLength);
+            }
+            deflater.setInput(filtered, bandOffset, rawLength);
+            if (last) {
+                deflater.finish();
+            }
+
+            byte[] data = new byte[Math.max(1024, rawLength / 4)];
+            int length = 0;
+            while (true) {
+                if (length == data.length) {
+                    data = Arrays.copyOf(data, data.length * 2);
+                }
+                int flush = last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH;
+                int n = deflater.deflate(data, length, data.length - length, flush);
+                length += n;
+                if (last ? deflater.finished() : length < data.length && deflater.needsInput()) {
+                    break;
+                }
+            }
+            return new Band(data, length, adler.getValue(), rawLength);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Computes the Adler-32 of two concatenated sequences from their
+     * individual checksums (port of zlib's {@code adler32_combine}).
+     *
+     * @param adler1 Checksum of the first sequence
+     * @param adler2 Checksum of the second sequence
+     * @param len2   Length of the second sequence
+     * @return The checksum of the concatenation
+     */
+    static long adler32Combine(long adler1, long adler2, long len2) {
+        long rem = len2 % ADLER_BASE;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (rem * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((adler1 >>> 16) & 0xFFFF) + ((adler2 >>> 16) & 0xFFFF) + ADLER_BASE - rem;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= ((long) ADLER_BASE << 1)) {
+            sum2 -= ((long) ADLER_BASE << 1);
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    /**
+     * Picks the zlib FLG byte (with FLEVEL hint) for the given deflate level.
+     */
+    static int zlibFlags(int level) {
+        if (level == Deflater.DEFAULT_COMPRESSION || level == 6) {
+            return 0x9C;
+        }
+        if (level <= 1) {
+            return 0x01;
+        }
+        return level <= 5 ? 0x5E : 0xDA;
+    }
+
+    private record Band(byte[] data, int length, long adler, int rawLength) {
+    }
+}
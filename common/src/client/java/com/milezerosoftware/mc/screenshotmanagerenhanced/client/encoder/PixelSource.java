@@ -0,0 +1,45 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder;
+
+/**
+ * Read-only view of 8-bit-per-channel pixel rows, top to bottom.
+ *
+ * <p>
+ * Implementations copy one row at a time into a caller-supplied buffer, so
+ * encoders never need a heap copy of the whole image.
+ * </p>
+ */
+public interface PixelSource {
+
+    /**
+     * @return The image width in pixels
+     */
+    int getWidth();
+
+    /**
+     * @return The image height in pixels
+     */
+    int getHeight();
+
+    /**
+     * @return The number of 8-bit channels per pixel: 1 (gray), 2 (gray +
+     *         alpha), 3 (RGB) or 4 (RGBA)
+     */
+    int getChannels();
+
+    /**
+     * Copies one row of pixels into {@code dst}.
+     *
+     * @param y      The row index, 0 being the top row
+     * @param dst    The destination buffer
+     * @param offset The offset in {@code dst} at which to write
+     *               {@code getWidth() * getChannels()} bytes
+     */
+    void readRow(int y, byte[] dst, int offset);
+
+    /**
+     * @return The number of bytes in one row
+     */
+    default int getRowBytes() {
+        return getWidth() * getChannels();
+    }
+}
@@ -0,0 +1,126 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Low-level helpers for reading and writing PNG chunks.
+ */
+public final class PngChunks {
+
+    /** The 8-byte PNG file signature. */
+    public static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A };
+
+    public static final byte[] IHDR = "IHDR".getBytes(StandardCharsets.ISO_8859_1);
+    public static final byte[] IDAT = "IDAT".getBytes(StandardCharsets.ISO_8859_1);
+    public static final byte[] IEND = "IEND".getBytes(StandardCharsets.ISO_8859_1);
+    public static final byte[] PLTE = "PLTE".getBytes(StandardCharsets.ISO_8859_1);
+    public static final byte[] TRNS = "tRNS".getBytes(StandardCharsets.ISO_8859_1);
+
+    private PngChunks() {
+    }
+
+    /**
+     * Writes a complete chunk: length, type, data and CRC.
+     *
+     * @param os     The output stream
+     * @param type   The 4-byte chunk type
+     * @param data   The chunk data
+     * @param offset Offset of the chunk data in {@code data}
+     * @param length Length of the chunk data
+     * @throws IOException If writing fails
+     */
+    public static void writeChunk(OutputStream os, byte[] type, byte[] data, int offset, int length)
+            throws IOException {
+        writeInt(os, length);
+        os.write(type);
+        os.write(data, offset, length);
+
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(data, offset, length);
+        writeInt(os, (int) crc.getValue());
+    }
+
+    /**
+     * Serializes a complete chunk into a new array.
+     *
+     * @param type The 4-byte chunk type
+     * @param data The chunk data
+     * @return Length, type, data and CRC
+     */
+    public static byte[] toChunk(byte[] type, byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length + 12);
+        try {
+            writeChunk(out, type, data, 0, data.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads the type of a serialized chunk.
+     *
+     * @param chunk A complete chunk as produced by {@link #writeChunk}
+     * @return The 4-character chunk type
+     */
+    public static String typeOf(byte[] chunk) {
+        return new String(chunk, 4, 4, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Writes the IHDR chunk for a non-interlaced, 8-bit image.
+     *
+     * @param os        The output stream
+     * @param width     The image width
+     * @param height    The image height
+     * @param colorType The PNG color type
+     * @throws IOException If writing fails
+     */
+    public static void writeHeader(OutputStream os, int width, int height, int colorType) throws IOException {
+        byte[] ihdr = new byte[13];
+        putInt(ihdr, 0, width);
+        putInt(ihdr, 4, height);
+        ihdr[8] = 8; // Bit depth
+        ihdr[9] = (byte) colorType;
+        ihdr[10] = 0; // Compression method
+        ihdr[11] = 0; // Filter method
+        ihdr[12] = 0; // Interlace method
+        writeChunk(os, IHDR, ihdr, 0, ihdr.length);
+    }
+
+    /**
+     * Maps a channel count to the matching 8-bit PNG color type.
+     *
+     * @param channels 1 (gray), 2 (gray + alpha), 3 (RGB) or 4 (RGBA)
+     * @return The PNG color type
+     */
+    public static int colorTypeFor(int channels) {
+        return switch (channels) {
+            case 1 -> 0;
+            case 2 -> 4;
+            case 3 -> 2;
+            case 4 -> 6;
+            default -> throw new IllegalArgumentException("Unsupported channel count: " + channels);
+        };
+    }
+
+    public static void writeInt(OutputStream os, int value) throws IOException {
+        os.write((value >> 24) & 0xFF);
+        os.write((value >> 16) & 0xFF);
+        os.write((value >> 8) & 0xFF);
+        os.write(value & 0xFF);
+    }
+
+    public static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+}
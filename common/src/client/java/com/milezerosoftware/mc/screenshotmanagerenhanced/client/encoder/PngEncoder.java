@@ -0,0 +1,135 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Single-threaded streaming PNG encoder.
+ *
+ * <p>
+ * Rows are pulled from a {@link PixelSource} one at a time, filtered and
+ * deflated straight into IDAT chunks, so the encoder only holds two rows of
+ * pixels regardless of image size. Pre-serialized ancillary chunks (such as
+ * the XMP iTXt chunk) are written between IHDR and the first IDAT, which lets
+ * metadata be embedded in the same pass that writes the image.
+ * </p>
+ */
+public class PngEncoder implements ScreenshotEncoder {
+
+    private final int compressionLevel;
+    private final boolean adaptiveFiltering;
+
+    /**
+     * Creates an encoder with adaptive filtering and the default deflate level.
+     */
+    public PngEncoder() {
+        this(Deflater.DEFAULT_COMPRESSION, true);
+    }
+
+    /**
+     * Creates an encoder.
+     *
+     * @param compressionLevel  Deflate level, 0-9 or
+     *                          {@link Deflater#DEFAULT_COMPRESSION}
+     * @param adaptiveFiltering {@code true} to pick the best filter per row,
+     *                          {@code false} to always use filter type None
+     */
+    public PngEncoder(int compressionLevel, boolean adaptiveFiltering) {
+        this.compressionLevel = compressionLevel;
+        this.adaptiveFiltering = adaptiveFiltering;
+    }
+
+    @Override
+    public String getFileExtension() {
+        return "png";
+    }
+
+    @Override
+    public boolean supportsEmbeddedMetadata() {
+        return true;
+    }
+
+    /**
+     * Encodes the image as a PNG.
+     *
+     * @param source           The pixels to encode
+     * @param out              The destination stream (not closed)
+     * @param ancillaryChunks  Complete, pre-serialized chunks to place between
+     *                         IHDR and IDAT; may be empty
+     * @throws IOException If writing fails
+     */
+    @Override
+    public void encode(PixelSource source, OutputStream out, byte[]... ancillaryChunks) throws IOException {
+        writeImage(source, out, PngChunks.colorTypeFor(source.getChannels()), ancillaryChunks);
+    }
+
+    /**
+     * Encodes palette indices as an indexed-color PNG.
+     *
+     * @param indices          One-channel source of palette indices
+     * @param palette          PLTE data, three bytes (RGB) per entry
+     * @param transparency     tRNS data, one alpha byte per entry, or
+     *                         {@code null} if the image is opaque
+     * @param out              The destination stream (not closed)
+     * @param ancillaryChunks  Complete, pre-serialized chunks to place between
+     *                         IHDR and PLTE; may be empty
+     * @throws IOException If writing fails
+     */
+    public void encodeIndexed(PixelSource indices, byte[] palette, byte[] transparency, OutputStream out,
+            byte[]... ancillaryChunks) throws IOException {
+        if (indices.getChannels() != 1) {
+            throw new IllegalArgumentException("Palette indices must have one channel");
+        }
+        byte[][] chunks = Arrays.copyOf(ancillaryChunks, ancillaryChunks.length + (transparency != null ? 2 : 1));
+        chunks[ancillaryChunks.length] = PngChunks.toChunk(PngChunks.PLTE, palette);
+        if (transparency != null) {
+            chunks[ancillaryChunks.length + 1] = PngChunks.toChunk(PngChunks.TRNS, transparency);
+        }
+        writeImage(indices, out, 3, chunks);
+    }
+
+    private void writeImage(PixelSource source, OutputStream out, int colorType, byte[][] chunks)
+            throws IOException {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int bpp = source.getChannels();
+        int rowBytes = source.getRowBytes();
+
+        out.write(PngChunks.SIGNATURE);
+        PngChunks.writeHeader(out, width, height, colorType);
+        for (byte[] chunk : chunks) {
+            out.write(chunk);
+        }
+
+        byte[] prev = new byte[rowBytes];
+        byte[] cur = new byte[rowBytes];
+        byte[] filtered = new byte[rowBytes + 1];
+        byte[] scratch = adaptiveFiltering ? new byte[rowBytes] : null;
+
+        Deflater deflater = new Deflater(compressionLevel);
+        try (IdatOutputStream idat = new IdatOutputStream(out);
+                DeflaterOutputStream zlib = new DeflaterOutputStream(idat, deflater, 64 * 1024)) {
+            for (int y = 0; y < height; y++) {
+                source.readRow(y, cur, 0);
+                if (adaptiveFiltering) {
+                    PngFilters.filterAdaptive(cur, prev, bpp, rowBytes, filtered, 0, scratch);
+                } else {
+                    filtered[0] = PngFilters.NONE;
+                    System.arraycopy(cur, 0, filtered, 1, rowBytes);
+                }
+                zlib.write(filtered, 0, rowBytes + 1);
+
+                byte[] swap = prev;
+                prev = cur;
+                cur = swap;
+            }
+        } finally {
+            deflater.end();
+        }
+
+        PngChunks.writeChunk(out, PngChunks.IEND, new byte[0], 0, 0);
+    }
+}
@@ -0,0 +1,145 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder;
+
+/**
+ * PNG scanline filters (PNG specification, section 9).
+ */
+public final class PngFilters {
+
+    public static final int NONE = 0;
+    public static final int SUB = 1;
+    public static final int UP = 2;
+    public static final int AVERAGE = 3;
+    public static final int PAETH = 4;
+
+    private PngFilters() {
+    }
+
+    /**
+     * Filters one row.
+     *
+     * @param type    The filter type
+     * @param cur     The unfiltered current row
+     * @param prev    The unfiltered previous row, or all zeros for the first row
+     * @param bpp     Bytes per pixel
+     * @param length  Number of bytes in the row
+     * @param out     Destination for the filtered row (without the type byte)
+     * @param outOff  Offset in {@code out}
+     */
+    public static void filter(int type, byte[] cur, byte[] prev, int bpp, int length, byte[] out, int outOff) {
+        switch (type) {
+            case NONE -> System.arraycopy(cur, 0, out, outOff, length);
+            case SUB -> {
+                for (int i = 0; i < length; i++) {
+                    int left = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+                    out[outOff + i] = (byte) ((cur[i] & 0xFF) - left);
+                }
+            }
+            case UP -> {
+                for (int i = 0; i < length; i++) {
+                    out[outOff + i] = (byte) ((cur[i] & 0xFF) - (prev[i] & 0xFF));
+                }
+            }
+            case AVERAGE -> {
+                for (int i = 0; i < length; i++) {
+                    int left = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+                    out[outOff + i] = (byte) ((cur[i] & 0xFF) - ((left + (prev[i] & 0xFF)) >>> 1));
+                }
+            }
+            case PAETH -> {
+                for (int i = 0; i < length; i++) {
+                    int a = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+                    int b = prev[i] & 0xFF;
+                    int c = i >= bpp ? prev[i - bpp] & 0xFF : 0;
+                    out[outOff + i] = (byte) ((cur[i] & 0xFF) - paethPredictor(a, b, c));
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown filter type: " + type);
+        }
+    }
+
+    /**
+     * Picks the filter whose output has the smallest sum of absolute signed
+     * values (the heuristic recommended by the PNG specification) and writes
+     * the filtered row, prefixed by its type byte, into {@code out}.
+     *
+     * @param cur     The unfiltered current row
+     * @param prev    The unfiltered previous row, or all zeros for the first row
+     * @param bpp     Bytes per pixel
+     * @param length  Number of bytes in the row
+     * @param out     Destination of {@code length + 1} bytes
+     * @param outOff  Offset in {@code out}
+     * @param scratch Scratch buffer of at least {@code length} bytes
+     */
+    public static void filterAdaptive(byte[] cur, byte[] prev, int bpp, int length, byte[] out, int outOff,
+            byte[] scratch) {
+        int bestType = NONE;
+        long bestScore = Long.MAX_VALUE;
+
+        for (int type = NONE; type <= PAETH; type++) {
+            filter(type, cur, prev, bpp, length, scratch, 0);
+            long score = 0;
+            for (int i = 0; i < length && score < bestScore; i++) {
+                score += Math.abs((int) scratch[i]);
+            }
+            if (score < bestScore) {
+                bestScore = score;
+                bestType = type;
+                System.arraycopy(scratch, 0, out, outOff + 1, length);
+            }
+        }
+        out[outOff] = (byte) bestType;
+    }
+
+    /**
+     * Reverses a filter in place.
+     *
+     * @param type   The filter type read from the row's type byte
+     * @param row    The filtered row, replaced by the unfiltered row
+     * @param offset Offset of the row data in {@code row}
+     * @param prev   The unfiltered previous row, or all zeros for the first row
+     * @param bpp    Bytes per pixel
+     * @param length Number of bytes in the row
+     */
+    public static void unfilter(int type, byte[] row, int offset, byte[] prev, int bpp, int length) {
+        switch (type) {
+            case NONE -> {
+            }
+            case SUB -> {
+                for (int i = bpp; i < length; i++) {
+                    row[offset + i] += row[offset + i - bpp];
+                }
+            }
+            case UP -> {
+                for (int i = 0; i < length; i++) {
+                    row[offset + i] += prev[i];
+                }
+            }
+            case AVERAGE -> {
+                for (int i = 0; i < length; i++) {
+                    int left = i >= bpp ? row[offset + i - bpp] & 0xFF : 0;
+                    row[offset + i] += (byte) ((left + (prev[i] & 0xFF)) >>> 1);
+                }
+            }
+            case PAETH -> {
+                for (int i = 0; i < length; i++) {
+                    int a = i >= bpp ? row[offset + i - bpp] & 0xFF : 0;
+                    int b = prev[i] & 0xFF;
+                    int c = i >= bpp ? prev[i - bpp] & 0xFF : 0;
+                    row[offset + i] += (byte) paethPredictor(a, b, c);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown filter type: " + type);
+        }
+    }
+
+    static int paethPredictor(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+}
@@ -0,0 +1,287 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Streaming PNG decoder exposed as a {@link PixelSource}.
+ *
+ * <p>
+ * Opening a file reads only the chunk headers plus the small non-IDAT
+ * chunks, using positional reads that skip over the image data. Rows are
+ * then inflated and unfiltered one at a time straight from the IDAT chunks,
+ * so memory use does not depend on the image size.
+ * </p>
+ *
+ * <p>
+ * Supported are non-interlaced 8-bit images of every color type; palette
+ * images are expanded to RGB, or RGBA if they carry a tRNS chunk. Rows must
+ * be read in order, top to bottom; create a new reader for another pass.
+ * </p>
+ */
+public class PngReader implements PixelSource, Closeable {
+
+    private static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final List<byte[]> ancillaryChunks = new ArrayList<>();
+    private final List<long[]> idatRanges = new ArrayList<>();
+    private int width;
+    private int height;
+    private int bitDepth;
+    private int colorType;
+    private int interlace;
+    private byte[] palette;
+    private byte[] transparency;
+
+    private InputStream pixelStream;
+    private byte[] current;
+    private byte[] previous;
+    private int nextRow;
+
+    /**
+     * Opens a PNG and reads its header and ancillary chunks.
+     *
+     * @param path The PNG file
+     * @throws IOException If the file cannot be read or is not a PNG
+     */
+    public PngReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            readChunks();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void readChunks() throws IOException {
+        ByteBuffer signature = ByteBuffer.allocate(PngChunks.SIGNATURE.length);
+        readFully(signature, 0);
+        if (!Arrays.equals(signature.array(), PngChunks.SIGNATURE)) {
+            throw new IOException("Not a PNG file");
+        }
+
+        long size = channel.size();
+        long pos = PngChunks.SIGNATURE.length;
+        ByteBuffer header = ByteBuffer.allocate(8);
+        boolean sawHeader = false;
+        while (pos + 8 <= size) {
+            header.clear();
+            readFully(header, pos);
+            long length = Integer.toUnsignedLong(header.getInt(0));
+            String type = new String(header.array(), 4, 4, StandardCharsets.ISO_8859_1);
+            if (pos + 12 + length > size) {
+                throw new EOFException("Truncated " + type + " chunk");
+            }
+
+            switch (type) {
+                case "IDAT" -> idatRanges.add(new long[] { pos + 8, length });
+                case "IEND" -> {
+                    if (!sawHeader || idatRanges.isEmpty()) {
+                        throw new IOException("PNG has no image data");
+                    }
+                    return;
+                }
+                case "IHDR" -> {
+                    ByteBuffer ihdr = readData(pos, length);
+                    width = ihdr.getInt(0);
+                    height = ihdr.getInt(4);
+                    bitDepth = ihdr.get(8) & 0xFF;
+                    colorType = ihdr.get(9) & 0xFF;
+                    interlace = ihdr.get(12) & 0xFF;
+                    sawHeader = true;
+                }
+                case "PLTE" -> palette = readData(pos, length).array();
+                case "tRNS" -> transparency = readData(pos, length).array();
+                default -> {
+                    if (length > MAX_CHUNK_SIZE) {
+                        throw new IOException("Chunk " + type + " too large: " + length + " bytes");
+                    }
+                    ByteBuffer chunk = ByteBuffer.allocate((int) length + 12);
+                    readFully(chunk, pos);
+                    ancillaryChunks.add(chunk.array());
+                }
+            }
+            pos += 12 + length;
+        }
+        throw new EOFException("PNG has no IEND chunk");
+    }
+
+    /**
+     * @return {@code true} if the image can be decoded by this reader
+     */
+    public boolean isSupported() {
+        return bitDepth == 8 && interlace == 0 && (colorType != 3 || palette != null);
+    }
+
+    /**
+     * @return The PNG color type from the IHDR chunk
+     */
+    public int getColorType() {
+        return colorType;
+    }
+
+    /**
+     * Gets the serialized chunks other than IHDR, PLTE, tRNS, IDAT and IEND, in
+     * file order. Chunks after the image data are included.
+     *
+     * @return Complete chunks: length, type, data and CRC
+     */
+    public List<byte[]> getAncillaryChunks() {
+        return ancillaryChunks;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the number of channels of the decoded rows. Palette images are
+     * expanded to 3 or 4 channels.
+     */
+    @Override
+    public int getChannels() {
+        return switch (colorType) {
+            case 0 -> 1;
+            case 2 -> 3;
+            case 3 -> transparency != null ? 4 : 3;
+            case 4 -> 2;
+            case 6 -> 4;
+            default -> throw new IllegalStateException("Unknown PNG color type: " + colorType);
+        };
+    }
+
+    /**
+     * Decodes the next row.
+     *
+     * @param y      The row index; must be the row after the previous call
+     * @param dst    The destination buffer
+     * @param offset The offset in {@code dst}
+     * @throws IllegalStateException If rows are requested out of order or the
+     *                               image is not {@linkplain #isSupported()
+     *                               supported}
+     * @throws UncheckedIOException  If the image data is corrupt or unreadable
+     */
+    @Override
+    public void readRow(int y, byte[] dst, int offset) {
+        if (!isSupported()) {
+            throw new IllegalStateException("Unsupported PNG: bit depth " + bitDepth + ", interlace " + interlace);
+        }
+        if (y != nextRow) {
+            throw new IllegalStateException("Rows must be read in order: expected " + nextRow + ", got " + y);
+        }
+
+        int bpp = colorType == 3 ? 1 : getChannels();
+        int rawBytes = width * bpp;
+        try {
+            if (pixelStream == null) {
+                pixelStream = new InflaterInputStream(new IdatInputStream(), new Inflater(), 64 * 1024);
+                current = new byte[rawBytes + 1];
+                previous = new byte[rawBytes];
+            }
+            int read = pixelStream.readNBytes(current, 0, rawBytes + 1);
+            if (read != rawBytes + 1) {
+                throw new EOFException("Image data ends at row " + y);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        PngFilters.unfilter(current[0], current, 1, previous, bpp, rawBytes);
+        System.arraycopy(current, 1, previous, 0, rawBytes);
+        nextRow++;
+
+        if (colorType != 3) {
+            System.arraycopy(previous, 0, dst, offset, rawBytes);
+            return;
+        }
+
+        boolean alpha = transparency != null;
+        int entries = palette.length / 3;
+        for (int x = 0, o = offset; x < width; x++) {
+            int index = previous[x] & 0xFF;
+            if (index >= entries) {
+                throw new UncheckedIOException(new IOException("Palette index out of range: " + index));
+            }
+            dst[o++] = palette[index * 3];
+            dst[o++] = palette[index * 3 + 1];
+            dst[o++] = palette[index * 3 + 2];
+            if (alpha) {
+                dst[o++] = index < transparency.length ? transparency[index] : (byte) 0xFF;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer readData(long chunkPos, long length) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate((int) length);
+        readFully(data, chunkPos + 8);
+        return data;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    /**
+     * Concatenated payload of all IDAT chunks, read positionally.
+     */
+    private class IdatInputStream extends InputStream {
+        private int range;
+        private long offset;
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            while (range < idatRanges.size() && offset == idatRanges.get(range)[1]) {
+                range++;
+                offset = 0;
+            }
+            if (range == idatRanges.size()) {
+                return -1;
+            }
+            long[] current = idatRanges.get(range);
+            int n = (int) Math.min(len, current[1] - offset);
+            int read = channel.read(ByteBuffer.wrap(b, off, n), current[0] + offset);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            offset += read;
+            return read;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Pure-Java streaming encoder for the QOI image format
+ * (<a href="https://qoiformat.org/qoi-specification.pdf">specification</a>).
+ *
+ * <p>
+ * QOI is lossless and needs a single pass with a 64-entry colour cache, no
+ * entropy coding, so it encodes several times faster than PNG at the cost of
+ * larger files. Gray sources are expanded to RGB(A), since QOI only stores 3
+ * or 4 channels. The format has no metadata chunks; ancillary chunks are
+ * ignored.
+ * </p>
+ */
+public class QoiEncoder implements ScreenshotEncoder {
+
+    private static final int OP_INDEX = 0x00;
+    private static final int OP_DIFF = 0x40;
+    private static final int OP_LUMA = 0x80;
+    private static final int OP_RUN = 0xC0;
+    private static final int OP_RGB = 0xFE;
+    private static final int OP_RGBA = 0xFF;
+    private static final int MAX_RUN = 62;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] END_MARKER = { 0, 0, 0, 0, 0, 0, 0, 1 };
+
+    @Override
+    public String getFileExtension() {
+        return "qoi";
+    }
+
+    @Override
+    public boolean supportsEmbeddedMetadata() {
+        return false;
+    }
+
+    @Override
+    public void encode(PixelSource source, OutputStream out, byte[]... ancillaryChunks) throws IOException {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int channels = source.getChannels();
+        boolean alpha = channels == 2 || channels == 4;
+        boolean gray = channels <= 2;
+
+        byte[] header = new byte[14];
+        header[0] = 'q';
+        header[1] = 'o';
+        header[2] = 'i';
+        header[3] = 'f';
+        PngChunks.putInt(header, 4, width);
+        PngChunks.putInt(header, 8, height);
+        header[12] = (byte) (alpha ? 4 : 3);
+        header[13] = 0; // sRGB with linear alpha
+        out.write(header);
+
+        int[] index = new int[64];
+        byte[] row = new byte[source.getRowBytes()];
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int pos = 0;
+
+        int prevR = 0;
+        int prevG = 0;
+        int prevB = 0;
+        int prevA = 255;
+        int prev = 0x000000FF;
+        int run = 0;
+        long remaining = (long) width * height;
+
+        for (int y = 0; y < height; y++) {
+            source.readRow(y, row, 0);
+            for (int i = 0; i < row.length; i += channels) {
+                int r;
+                int g;
+                int b;
+                int a;
+                if (gray) {
+                    r = g = b = row[i] & 0xFF;
+                    a = alpha ? row[i + 1] & 0xFF : 255;
+                } else {
+                    r = row[i] & 0xFF;
+                    g = row[i + 1] & 0xFF;
+                    b = row[i + 2] & 0xFF;
+                    a = alpha ? row[i + 3] & 0xFF : 255;
+                }
+                int px = (r << 24) | (g << 16) | (b << 8) | a;
+                remaining--;
+
+                if (pos > buffer.length - 8) {
+                    out.write(buffer, 0, pos);
+                    pos = 0;
+                }
+
+                if (px == prev) {
+                    run++;
+                    if (run == MAX_RUN || remaining == 0) {
+                        buffer[pos++] = (byte) (OP_RUN | (run - 1));
+                        run = 0;
+                    }
+                    continue;
+                }
+
+                if (run > 0) {
+                    buffer[pos++] = (byte) (OP_RUN | (run - 1));
+                    run = 0;
+                }
+
+                int hash = (r * 3 + g * 5 + b * 7 + a * 11) & 63;
+                if (index[hash] == px) {
+                    buffer[pos++] = (byte) (OP_INDEX | hash);
+                } else {
+                    index[hash] = px;
+                    if (a == prevA) {
+                        int vr = (byte) (r - prevR);
+                        int vg = (byte) (g - prevG);
+                        int vb = (byte) (b - prevB);
+                        int vgR = vr - vg;
+                        int vgB = vb - vg;
+                        if (vr > -3 && vr < 2 && vg > -3 && vg < 2 && vb > -3 && vb < 2) {
+                            buffer[pos++] = (byte) (OP_DIFF | (vr + 2) << 4 | (vg + 2) << 2 | (vb + 2));
+                        } else if (vgR > -9 && vgR < 8 && vg > -33 && vg < 32 && vgB > -9 && vgB < 8) {
+                            buffer[pos++] = (byte) (OP_LUMA | (vg + 32));
+                            buffer[pos++] = (byte) ((vgR + 8) << 4 | (vgB + 8));
+                        } else {
+                            buffer[pos++] = (byte) OP_RGB;
+                            buffer[pos++] = (byte) r;
+                            buffer[pos++] = (byte) g;
+                            buffer[pos++] = (byte) b;
+                        }
+                    } else {
+                        buffer[pos++] = (byte) OP_RGBA;
+                        buffer[pos++] = (byte) r;
+                        buffer[pos++] = (byte) g;
+                        buffer[pos++] = (byte) b;
+                        buffer[pos++] = (byte) a;
+                    }
+                }
+
+                prev = px;
+                prevR = r;
+                prevG = g;
+                prevB = b;
+                prevA = a;
+            }
+        }
+
+        out.write(buffer, 0, pos);
+        out.write(END_MARKER);
+    }
+}
@@ -0,0 +1,40 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Encodes a screenshot into an image file format.
+ *
+ * <p>
+ * Implementations pull rows from a {@link PixelSource} and stream the encoded
+ * file to an {@link OutputStream}. Use {@link ScreenshotEncoders} to obtain
+ * the encoder for a configured profile.
+ * </p>
+ */
+public interface ScreenshotEncoder {
+
+    /**
+     * @return The file extension of the encoded format, without the dot
+     */
+    String getFileExtension();
+
+    /**
+     * @return {@code true} if the ancillary chunks passed to
+     *         {@link #encode} are written into the file
+     */
+    boolean supportsEmbeddedMetadata();
+
+    /**
+     * Encodes the image.
+     *
+     * @param source          The pixels to encode
+     * @param out             The destination stream (not closed)
+     * @param ancillaryChunks Complete, pre-serialized PNG chunks (such as the
+     *                        XMP iTXt chunk); ignored by formats that do not
+     *                        {@linkplain #supportsEmbeddedMetadata() support}
+     *                        them
+     * @throws IOException If writing fails
+     */
+    void encode(PixelSource source, OutputStream out, byte[]... ancillaryChunks) throws IOException;
+}
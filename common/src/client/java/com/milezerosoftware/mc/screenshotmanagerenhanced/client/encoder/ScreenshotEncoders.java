@@ -0,0 +1,37 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.EncoderProfile;
+
+import java.util.zip.Deflater;
+
+/**
+ * Maps {@link EncoderProfile}s to {@link ScreenshotEncoder}s.
+ */
+public final class ScreenshotEncoders {
+
+    private ScreenshotEncoders() {
+    }
+
+    /**
+     * Creates the encoder for a profile.
+     *
+     * @param profile  The configured profile
+     * @param parallel Whether PNG profiles may use all cores
+     * @param pixels   The number of pixels in the image; parallel encoding is
+     *                 only used from {@link ParallelPngEncoder#MIN_PARALLEL_PIXELS}
+     * @return A new encoder
+     */
+    public static ScreenshotEncoder create(EncoderProfile profile, boolean parallel, long pixels) {
+        boolean useParallel = parallel && pixels >= ParallelPngEncoder.MIN_PARALLEL_PIXELS;
+        return switch (profile) {
+            case STANDARD_PNG -> png(Deflater.DEFAULT_COMPRESSION, true, useParallel);
+            case FAST_PNG -> png(Deflater.BEST_SPEED, false, useParallel);
+            case COMPACT_PNG -> png(Deflater.BEST_COMPRESSION, true, useParallel);
+            case QOI -> new QoiEncoder();
+        };
+    }
+
+    private static ScreenshotEncoder png(int level, boolean adaptiveFiltering, boolean parallel) {
+        return parallel ? new ParallelPngEncoder(level, adaptiveFiltering) : new PngEncoder(level, adaptiveFiltering);
+    }
+}
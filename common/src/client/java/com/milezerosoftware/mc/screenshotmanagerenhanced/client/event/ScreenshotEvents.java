@@ -0,0 +1,40 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.event;
+
+import net.fabricmc.fabric.api.event.Event;
+import net.fabricmc.fabric.api.event.EventFactory;
+
+import java.io.File;
+
+/**
+ * Events fired by the screenshot pipeline.
+ */
+public final class ScreenshotEvents {
+
+    /**
+     * Fired on the I/O worker thread as soon as vanilla has finished encoding a
+     * screenshot and closed its file.
+     *
+     * <p>
+     * Only screenshots whose file names were issued by this mod are reported.
+     * </p>
+     */
+    public static final Event<Written> WRITTEN = EventFactory.createArrayBacked(Written.class,
+            listeners -> file -> {
+                for (Written listener : listeners) {
+                    listener.onScreenshotWritten(file);
+                }
+            });
+
+    private ScreenshotEvents() {
+    }
+
+    @FunctionalInterface
+    public interface Written {
+        /**
+         * Called once the screenshot file is completely written.
+         *
+         * @param file The final screenshot file
+         */
+        void onScreenshotWritten(File file);
+    }
+}
@@ -0,0 +1,130 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.gallery;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog.CatalogEntry;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The rows of the gallery grid: a header row per section followed by rows of
+ * up to {@code columns} screenshots.
+ *
+ * <p>
+ * Row positions are computed once, so finding the rows in view is a binary
+ * search and drawing costs the same however many screenshots the world has.
+ * </p>
+ */
+public final class GalleryLayout {
+
+    private final GalleryModel model;
+    private final int columns;
+    /** Top of each row, plus the total height at the end. */
+    private final int[] tops;
+    private final int[] sections;
+    /** Index of the row's first screenshot in its section, or -1 for a header. */
+    private final int[] starts;
+
+    /**
+     * Lays out a gallery.
+     *
+     * @param model        The gallery
+     * @param columns      Screenshots per row
+     * @param headerHeight The height of a section header
+     * @param rowHeight    The height of a row of screenshots
+     */
+    public GalleryLayout(GalleryModel model, int columns, int headerHeight, int rowHeight) {
+        this.model = model;
+        this.columns = Math.max(1, columns);
+        int rows = 0;
+        for (GalleryModel.Section section : model.sections()) {
+            rows += 1 + (section.entries().size() + this.columns - 1) / this.columns;
+        }
+        tops = new int[rows + 1];
+        sections = new int[rows];
+        starts = new int[rows];
+
+        int row = 0;
+        int y = 0;
+        List<GalleryModel.Section> all = model.sections();
+        for (int s = 0; s < all.size(); s++) {
+            sections[row] = s;
+            starts[row] = -1;
+            tops[row++] = y;
+            y += headerHeight;
+            for (int start = 0; start < all.get(s).entries().size(); start += this.columns) {
+                sections[row] = s;
+                starts[row] = start;
+                tops[row++] = y;
+                y += rowHeight;
+            }
+        }
+        tops[rows] = y;
+    }
+
+    /**
+     * @return The number of rows, headers included
+     */
+    public int rowCount() {
+        return sections.length;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    /**
+     * @return The height of all rows together
+     */
+    public int height() {
+        return tops[tops.length - 1];
+    }
+
+    /**
+     * Finds the row at a height.
+     *
+     * @param y The distance from the top of the first row
+     * @return The row covering {@code y}, clamped to the existing rows, or
+     *         {@code 0} if there are none
+     */
+    public int rowAt(int y) {
+        if (sections.length == 0) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(tops, 0, sections.length, y);
+        int row = index >= 0 ? index : -index - 2;
+        return Math.max(0, Math.min(row, sections.length - 1));
+    }
+
+    public int rowTop(int row) {
+        return tops[row];
+    }
+
+    public int rowHeight(int row) {
+        return tops[row + 1] - tops[row];
+    }
+
+    /**
+     * @return {@code true} if the row is a section header
+     */
+    public boolean isHeader(int row) {
+        return starts[row] < 0;
+    }
+
+    /**
+     * @return The section the row belongs to
+     */
+    public GalleryModel.Section section(int row) {
+        return model.sections().get(sections[row]);
+    }
+
+    /**
+     * @return The screenshots in a row, left to right; empty for a header
+     */
+    public List<CatalogEntry> entries(int row) {
+        if (starts[row] < 0) {
+            return List.of();
+        }
+        List<CatalogEntry> entries = section(row).entries();
+        return entries.subList(starts[row], Math.min(starts[row] + columns, entries.size()));
+    }
+}
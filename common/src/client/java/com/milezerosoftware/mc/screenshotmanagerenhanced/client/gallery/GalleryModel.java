@@ -0,0 +1,122 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.gallery;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog.CatalogEntry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The screenshots of one world as shown in the gallery, in sections that
+ * follow the folders the grouping mode sorted them into.
+ *
+ * <p>
+ * A screenshot belongs to the world if its metadata names it, or if it lies
+ * in the world's folder. Its section is its folder with the world's folder
+ * left out, so {@code World/overworld/2025-01-30} is shown under
+ * {@code overworld/2025-01-30}, and screenshots grouped by date alone are
+ * shown by date. Screenshots and sections are newest first.
+ * </p>
+ */
+public final class GalleryModel {
+
+    private static final Comparator<CatalogEntry> NEWEST_FIRST = Comparator
+            .comparingLong(CatalogEntry::timestamp).thenComparing(CatalogEntry::path).reversed();
+
+    /**
+     * One folder of screenshots.
+     *
+     * @param title   The folder relative to the world's folder, with
+     *                {@code /} separators; empty for the world's folder itself
+     * @param entries The screenshots, newest first
+     */
+    public record Section(String title, List<CatalogEntry> entries) {
+    }
+
+    private final List<Section> sections;
+    private final int size;
+
+    private GalleryModel(List<Section> sections) {
+        this.sections = sections;
+        this.size = sections.stream().mapToInt(section -> section.entries.size()).sum();
+    }
+
+    /**
+     * Builds the gallery of a world from catalog entries.
+     *
+     * @param entries     Screenshots of any world
+     * @param safeWorldId The world id sanitized for use as a folder name
+     * @param rawWorldId  The world id as recorded in the metadata
+     * @return The world's screenshots in sections
+     */
+    public static GalleryModel of(Collection<CatalogEntry> entries, String safeWorldId, String rawWorldId) {
+        Map<String, List<CatalogEntry>> byFolder = new HashMap<>();
+        for (CatalogEntry entry : entries) {
+            String directory = entry.directory();
+            int world = worldSegment(directory, safeWorldId);
+            boolean named = entry.metadata() != null && rawWorldId != null
+                    && rawWorldId.equalsIgnoreCase(entry.metadata().worldName);
+            if (world < 0 && !named) {
+                continue;
+            }
+            String title = world < 0 ? directory : withoutSegment(directory, world, safeWorldId.length());
+            byFolder.computeIfAbsent(title, key -> new ArrayList<>()).add(entry);
+        }
+
+        List<Section> sections = new ArrayList<>(byFolder.size());
+        for (Map.Entry<String, List<CatalogEntry>> folder : byFolder.entrySet()) {
+            List<CatalogEntry> sorted = new ArrayList<>(folder.getValue());
+            sorted.sort(NEWEST_FIRST);
+            sections.add(new Section(folder.getKey(), List.copyOf(sorted)));
+        }
+        sections.sort(Comparator.comparing((Section section) -> section.entries.get(0), NEWEST_FIRST));
+        return new GalleryModel(List.copyOf(sections));
+    }
+
+    /**
+     * @return The sections, newest first
+     */
+    public List<Section> sections() {
+        return sections;
+    }
+
+    /**
+     * @return The number of screenshots in all sections
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The index in {@code directory} of the first path segment equal
+     *         to the world's folder name, or {@code -1}
+     */
+    private static int worldSegment(String directory, String safeWorldId) {
+        if (safeWorldId == null || safeWorldId.isEmpty()) {
+            return -1;
+        }
+        int start = 0;
+        while (start <= directory.length()) {
+            int end = directory.indexOf('/', start);
+            if (end < 0) {
+                end = directory.length();
+            }
+            if (end - start == safeWorldId.length() && directory.startsWith(safeWorldId, start)) {
+                return start;
+            }
+            start = end + 1;
+        }
+        return -1;
+    }
+
+    private static String withoutSegment(String directory, int start, int length) {
+        int end = start + length;
+        if (start == 0) {
+            return end < directory.length() ? directory.substring(end + 1) : "";
+        }
+        return directory.substring(0, start - 1) + directory.substring(end);
+    }
+}
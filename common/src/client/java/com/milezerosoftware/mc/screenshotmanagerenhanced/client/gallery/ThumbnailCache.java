@@ -0,0 +1,137 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.gallery;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Least-recently-used cache of decoded thumbnails, bounded by their size in
+ * bytes rather than their number.
+ *
+ * <p>
+ * Values typically hold native or GPU memory, so each one is handed to the
+ * release callback as soon as it is evicted, replaced or cleared. The cache
+ * is meant for the render thread and is not thread-safe.
+ * </p>
+ *
+ * @param <K> The key type
+ * @param <V> The cached value type
+ */
+public class ThumbnailCache<K, V> {
+
+    private final long maxBytes;
+    private final Consumer<? super V> release;
+    /** Entries in access order, least recently used first. */
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    private record Entry<V>(V value, long bytes) {
+    }
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param maxBytes The total size the cached values may reach
+     * @param release  Frees a value that leaves the cache
+     */
+    public ThumbnailCache(long maxBytes, Consumer<? super V> release) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.release = release;
+    }
+
+    /**
+     * Gets a value and marks it as most recently used.
+     *
+     * @param key The key
+     * @return The value, or {@code null} if it is not cached
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * @param key The key
+     * @return {@code true} if a value is cached, without marking it as used
+     */
+    public boolean contains(K key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Caches a value as the most recently used one, releasing any value it
+     * replaces, then evicts the least recently used values until the cache is
+     * within its size. A value larger than the whole cache is kept until the
+     * next one is added.
+     *
+     * @param key   The key
+     * @param value The value
+     * @param size  The memory held by the value, in bytes
+     */
+    public void put(K key, V value, long size) {
+        Entry<V> previous = entries.put(key, new Entry<>(value, size));
+        bytes += size;
+        if (previous != null) {
+            bytes -= previous.bytes;
+            if (previous.value != value) {
+                release.accept(previous.value);
+            }
+        }
+        Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && entries.size() > 1) {
+            Entry<V> evicted = eldest.next().getValue();
+            eldest.remove();
+            bytes -= evicted.bytes;
+            release.accept(evicted.value);
+        }
+    }
+
+    /**
+     * Removes and releases a value.
+     *
+     * @param key The key
+     * @return {@code true} if a value was cached
+     */
+    public boolean remove(K key) {
+        Entry<V> removed = entries.remove(key);
+        if (removed == null) {
+            return false;
+        }
+        bytes -= removed.bytes;
+        release.accept(removed.value);
+        return true;
+    }
+
+    /**
+     * Removes and releases every value.
+     */
+    public void clear() {
+        for (Entry<V> entry : entries.values()) {
+            release.accept(entry.value);
+        }
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @return The number of cached values
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return The total size of the cached values in bytes
+     */
+    public long bytes() {
+        return bytes;
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+}
@@ -0,0 +1,244 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.gallery;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Loads thumbnails on background threads and hands the results back to the
+ * render thread in small batches.
+ *
+ * <p>
+ * Requests are served newest first, since the most recent ones are for what
+ * is on screen now. Requests that scrolled out of view are dropped with
+ * {@link #retain} before they start, so scrolling through a large folder only
+ * loads what stays visible. At most {@code threads} workers run, and they
+ * exit when nothing is pending, so an idle loader holds no tasks.
+ * </p>
+ *
+ * <p>
+ * Finished results wait until they are {@linkplain #drain drained}. Results
+ * that arrive after the loader is closed, or that are still waiting when it
+ * closes, are handed to the discard callback so their memory is freed.
+ * </p>
+ *
+ * @param <K> The key type
+ * @param <V> The loaded value type
+ */
+public class ThumbnailLoader<K, V> implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+
+    /**
+     * Loads one thumbnail on a background thread.
+     *
+     * @param <K> The key type
+     * @param <V> The loaded value type
+     */
+    @FunctionalInterface
+    public interface Source<K, V> {
+        /**
+         * @param key The key
+         * @return The value, or {@code null} if there is none
+         * @throws Exception If loading failed; the key is then drained with
+         *                   a {@code null} value
+         */
+        V load(K key) throws Exception;
+    }
+
+    private final Source<K, V> source;
+    private final Consumer<? super V> discard;
+    private final int threads;
+    private final ThreadPoolExecutor executor;
+
+    private final Object lock = new Object();
+    /** Requests not yet started, oldest first. */
+    private final ArrayDeque<K> pending = new ArrayDeque<>();
+    /** Keys pending, loading or waiting to be drained. */
+    private final Set<K> known = new HashSet<>();
+    private final ArrayDeque<Result<K, V>> results = new ArrayDeque<>();
+    private int workers;
+    private boolean closed;
+
+    private record Result<K, V>(K key, V value) {
+    }
+
+    /**
+     * Creates a loader with its own worker threads.
+     *
+     * @param threads The maximum number of thumbnails loaded at once
+     * @param source  Loads a thumbnail
+     * @param discard Frees a loaded value that will not be drained
+     */
+    public ThumbnailLoader(int threads, Source<K, V> source, Consumer<? super V> discard) {
+        this.source = source;
+        this.discard = discard;
+        this.threads = threads;
+        this.executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ScreenshotGallery");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Requests a thumbnail. A key that is already pending moves to the front
+     * of the queue; one that is loading or waiting to be drained is ignored.
+     *
+     * @param key The key
+     * @return {@code true} if the key was not pending, loading or waiting yet
+     */
+    public boolean request(K key) {
+        synchronized (lock) {
+            if (closed) {
+                return false;
+            }
+            if (!known.add(key)) {
+                if (pending.removeLastOccurrence(key)) {
+                    pending.addLast(key);
+                }
+                return false;
+            }
+            pending.addLast(key);
+            if (workers < threads) {
+                workers++;
+                executor.execute(this::work);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Drops pending requests that are no longer wanted. Loads already running
+     * complete as usual.
+     *
+     * @param wanted Whether a key is still wanted
+     * @return The number of requests dropped
+     */
+    public int retain(Predicate<? super K> wanted) {
+        synchronized (lock) {
+            int before = pending.size();
+            pending.removeIf(key -> {
+                if (wanted.test(key)) {
+                    return false;
+                }
+                known.remove(key);
+                return true;
+            });
+            return before - pending.size();
+        }
+    }
+
+    /**
+     * Hands finished results to a consumer, oldest first.
+     *
+     * @param max  The maximum number of results to hand over
+     * @param sink Receives each key with its value, or {@code null} if there
+     *             is none
+     * @return The number of results handed over
+     */
+    public int drain(int max, BiConsumer<? super K, ? super V> sink) {
+        List<Result<K, V>> batch = new ArrayList<>(Math.min(max, 16));
+        synchronized (lock) {
+            while (batch.size() < max && !results.isEmpty()) {
+                Result<K, V> result = results.poll();
+                known.remove(result.key);
+                batch.add(result);
+            }
+        }
+        for (Result<K, V> result : batch) {
+            sink.accept(result.key, result.value);
+        }
+        return batch.size();
+    }
+
+    /**
+     * @return The number of requests not yet started
+     */
+    public int pending() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * @return {@code true} if nothing is pending, loading or waiting
+     */
+    public boolean isIdle() {
+        synchronized (lock) {
+            return known.isEmpty();
+        }
+    }
+
+    /**
+     * Drops every pending request, discards waiting results, and stops the
+     * workers once their current load completes. Does not wait for them.
+     */
+    @Override
+    public void close() {
+        List<Result<K, V>> waiting;
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pending.clear();
+            known.clear();
+            waiting = new ArrayList<>(results);
+            results.clear();
+        }
+        executor.shutdown();
+        for (Result<K, V> result : waiting) {
+            discardValue(result.value);
+        }
+    }
+
+    private void work() {
+        while (true) {
+            K key;
+            synchronized (lock) {
+                key = pending.pollLast();
+                if (key == null) {
+                    workers--;
+                    return;
+                }
+            }
+
+            V value = null;
+            try {
+                value = source.load(key);
+            } catch (Exception e) {
+                LOGGER.debug("Could not load the thumbnail of {}: {}", key, e.getMessage());
+            }
+
+            synchronized (lock) {
+                if (!closed) {
+                    results.add(new Result<>(key, value));
+                    continue;
+                }
+            }
+            discardValue(value);
+        }
+    }
+
+    private void discardValue(V value) {
+        if (value != null) {
+            discard.accept(value);
+        }
+    }
+}
@@ -0,0 +1,701 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.migration;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.optimizer.ScreenshotOptimizer;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler.ScreenshotMetadata;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.PathTemplate;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.PathTemplate.Variable;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ScreenshotFileAllocator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Moves existing screenshots into the folders a new path template would have
+ * put them in.
+ *
+ * <p>
+ * {@link #plan} works out every move without touching anything: it reads each
+ * screenshot's values back from its folder with {@link PathTemplate#match},
+ * fills in what the folder lacks from the embedded metadata, takes the time
+ * from the file name, and renders the new folder. The metadata is only read
+ * for files whose folder does not supply everything the new template needs,
+ * so switching between the predefined modes mostly costs one directory
+ * listing. A plan doubles as the dry-run report.
+ * </p>
+ *
+ * <p>
+ * {@link #run} first writes the plan to a journal in the state directory and
+ * forces it to disk, then renames the files on several threads. A move never
+ * targets a path that a screenshot occupied when the plan was made, so moves
+ * do not depend on each other and their order does not matter. Progress is
+ * not journaled per file: whether a move happened is read back from the file
+ * system, since exactly one of its two paths exists. That lets an interrupted
+ * migration be {@linkplain #resume resumed} or {@linkplain #rollback rolled
+ * back} after a crash or game exit. Emptied folders are removed and the
+ * journal deleted once every move is done.
+ * </p>
+ */
+public final class LibraryMigration {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+
+    static final String JOURNAL_FILE = "migration.journal";
+    private static final String MAGIC = "sme-migration 1";
+    private static final String END = "end";
+    private static final Variable[] TEXT_VARIABLES = { Variable.WORLD, Variable.DIM, Variable.SERVER,
+            Variable.SESSION, Variable.BIOME };
+
+    /**
+     * The direction a journaled migration is applied in.
+     */
+    public enum Direction {
+        FORWARD,
+        ROLLBACK
+    }
+
+    /**
+     * One file to move.
+     *
+     * @param from The current path relative to the screenshots folder, with
+     *             {@code /} separators
+     * @param to   The new path, in the same form
+     */
+    public record Move(String from, String to) {
+    }
+
+    /**
+     * The moves needed to reach a new layout, and what was left alone.
+     *
+     * @param fromTemplate The template the screenshots are in
+     * @param toTemplate   The template they move to
+     * @param moves        The moves, screenshots and their sidecars
+     * @param scanned      The number of screenshots found
+     * @param moving       The number of screenshots to move, without sidecars
+     * @param unchanged    Screenshots already in the right folder
+     * @param unmatched    Screenshots whose folder does not fit the old
+     *                     template
+     * @param unresolved   Screenshots missing a value the new template needs
+     * @param kept         Screenshots of worlds that are left alone
+     */
+    public record Plan(String fromTemplate, String toTemplate, List<Move> moves, int scanned, int moving,
+            int unchanged, int unmatched, int unresolved, int kept) {
+
+        /**
+         * @return {@code true} if no file needs to move
+         */
+        public boolean isEmpty() {
+            return moves.isEmpty();
+        }
+
+        /**
+         * Writes a readable report of the plan, listing every move.
+         *
+         * @param file The report file
+         * @throws IOException If the report cannot be written
+         */
+        public void writeReport(Path file) throws IOException {
+            Files.createDirectories(file.getParent());
+            try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                out.write("Moving screenshots from \"" + fromTemplate + "\" to \"" + toTemplate + "\"\n");
+                out.write("Screenshots found:                " + scanned + "\n");
+                out.write("To move:                          " + moving + "\n");
+                out.write("Already in place:                 " + unchanged + "\n");
+                out.write("Not in the old layout (kept):     " + unmatched + "\n");
+                out.write("Missing a value for the new one:  " + unresolved + "\n");
+                out.write("Worlds the mod is disabled for:   " + kept + "\n\n");
+                for (Move move : moves) {
+                    out.write(move.from + " -> " + move.to + "\n");
+                }
+            }
+        }
+    }
+
+    /**
+     * The outcome of applying a journal.
+     *
+     * @param moved        Files moved now
+     * @param alreadyMoved Files an earlier, interrupted run had moved
+     * @param missing      Files that were at neither path
+     * @param failed       Files that could not be moved, and stay where they
+     *                     were
+     * @param cancelled    Whether the run was {@linkplain #cancel cancelled}
+     *                     and the journal kept for later
+     * @param elapsedNanos The time the moves took
+     */
+    public record Result(int moved, int alreadyMoved, int missing, int failed, boolean cancelled,
+            long elapsedNanos) {
+    }
+
+    /** What the planning pass worked out for one screenshot. */
+    private record Found(String path, String sidecar, String directory, int status) {
+    }
+
+    private static final int MOVE = 0;
+    private static final int UNCHANGED = 1;
+    private static final int UNMATCHED = 2;
+    private static final int UNRESOLVED = 3;
+    private static final int KEPT = 4;
+    /** Stands for a folder that does not match the old template. */
+    private static final Map<Variable, String> NO_MATCH = Collections.emptyMap();
+
+    private final Path root;
+    private final Path journal;
+    private final int parallelism;
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a migration for a screenshots folder.
+     *
+     * @param root        The screenshots folder
+     * @param parallelism The number of threads to scan and move with
+     */
+    public LibraryMigration(Path root, int parallelism) {
+        this.root = root;
+        this.journal = root.resolve(ScreenshotOptimizer.STATE_DIR).resolve(JOURNAL_FILE);
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Works out where every screenshot goes under a new template, without
+     * moving anything.
+     *
+     * @param from      The template the screenshots are in now
+     * @param to        The template to move them to
+     * @param keepWorld Whether a world's screenshots stay where they are,
+     *                  tested with the world name from the metadata or,
+     *                  failing that, the folder
+     * @return The plan
+     */
+    public Plan plan(PathTemplate from, PathTemplate to, Predicate<String> keepWorld) {
+        Map<String, Map<Variable, String>> folders = new ConcurrentHashMap<>();
+        Map<Path, Set<String>> sidecars = new ConcurrentHashMap<>();
+        ConcurrentLinkedQueue<Found> found = new ConcurrentLinkedQueue<>();
+        MetadataHandler.listAll(root, parallelism, file -> {
+            String path = relative(file);
+            if (path.indexOf('\t') >= 0 || path.indexOf('\n') >= 0 || path.indexOf('\r') >= 0) {
+                found.add(new Found(path, null, null, UNMATCHED)); // Cannot be journaled
+                return;
+            }
+            // Listing a folder's sidecars once is far cheaper than a stat per screenshot
+            Path sidecar = MetadataHandler.sidecarFor(file);
+            Set<String> folderSidecars = sidecars.computeIfAbsent(file.getParent(), LibraryMigration::listSidecars);
+            String sidecarPath = folderSidecars.contains(sidecar.getFileName().toString()) ? relative(sidecar) : null;
+            found.add(locate(file, path, sidecarPath, from, to, keepWorld, folders));
+        });
+
+        List<Found> files = new ArrayList<>(found);
+        files.sort(Comparator.comparing(Found::path)); // Same suffixes whatever order the scan ran in
+        Set<String> occupied = new HashSet<>(files.size() * 2);
+        for (Found file : files) {
+            occupied.add(file.path);
+            if (file.sidecar != null) {
+                occupied.add(file.sidecar);
+            }
+        }
+
+        List<Move> moves = new ArrayList<>();
+        int[] counts = new int[5];
+        for (Found file : files) {
+            counts[file.status]++;
+            if (file.status != MOVE) {
+                continue;
+            }
+            String name = file.path.substring(file.path.lastIndexOf('/') + 1);
+            String target = freeName(file.directory, name, file.sidecar != null, occupied);
+            occupied.add(target);
+            moves.add(new Move(file.path, target));
+            if (file.sidecar != null) {
+                String sidecarTarget = sidecarOf(target);
+                occupied.add(sidecarTarget);
+                moves.add(new Move(file.sidecar, sidecarTarget));
+            }
+        }
+        return new Plan(from.getSource(), to.getSource(), Collections.unmodifiableList(moves), files.size(),
+                counts[MOVE], counts[UNCHANGED], counts[UNMATCHED], counts[UNRESOLVED], counts[KEPT]);
+    }
+
+    private Found locate(Path file, String path, String sidecar, PathTemplate from, PathTemplate to,
+            Predicate<String> keepWorld, Map<String, Map<Variable, String>> folders) {
+        int slash = path.lastIndexOf('/');
+        String directory = slash < 0 ? "" : path.substring(0, slash);
+        String name = path.substring(slash + 1);
+        Map<Variable, String> folder = folders.computeIfAbsent(directory, key -> {
+            Map<Variable, String> values = from.match(key);
+            return values != null ? values : NO_MATCH;
+        });
+        if (folder == NO_MATCH) {
+            return new Found(path, sidecar, null, UNMATCHED);
+        }
+
+        // The metadata only fills in what the folder cannot tell
+        ScreenshotMetadata metadata = null;
+        if (needsMetadata(folder, to)) {
+            try {
+                metadata = MetadataHandler.readMetadata(file);
+            } catch (IOException e) {
+                LOGGER.debug("Failed to read metadata from {}: {}", file, e.getMessage());
+            }
+        }
+        String world = metadata != null && !isBlank(metadata.worldName) ? metadata.worldName
+                : folder.get(Variable.WORLD);
+        String dimension = folder.containsKey(Variable.DIM) ? folder.get(Variable.DIM)
+                : metadata != null ? identifier(metadata.dimension) : null;
+        String biome = folder.containsKey(Variable.BIOME) ? folder.get(Variable.BIOME)
+                : metadata != null ? identifier(metadata.biome) : null;
+        PathTemplate.Values values = new PathTemplate.Values(world, dimension, folder.get(Variable.SERVER),
+                folder.get(Variable.SESSION), biome);
+
+        if (world != null && keepWorld.test(world)) {
+            return new Found(path, sidecar, null, KEPT);
+        }
+        for (Variable variable : TEXT_VARIABLES) {
+            if (to.uses(variable) && isBlank(valueOf(values, variable))) {
+                return new Found(path, sidecar, null, UNRESOLVED);
+            }
+        }
+
+        long time = ScreenshotFileAllocator.parseTimestamp(name);
+        if (time < 0) {
+            time = folderTime(folder);
+        }
+        if (time < 0) {
+            try {
+                time = Files.getLastModifiedTime(file).toMillis();
+            } catch (IOException e) {
+                return new Found(path, sidecar, null, UNRESOLVED);
+            }
+        }
+
+        StringBuilder target = new StringBuilder(directory.length() + 16);
+        to.appendTo(target, values, time);
+        String targetDirectory = target.toString();
+        return new Found(path, sidecar, targetDirectory, targetDirectory.equals(directory) ? UNCHANGED : MOVE);
+    }
+
+    private static Set<String> listSidecars(Path directory) {
+        Set<String> names = new HashSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.xmp")) {
+            for (Path file : stream) {
+                names.add(file.getFileName().toString());
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Failed to list sidecars in {}: {}", directory, e.getMessage());
+        }
+        return names;
+    }
+
+    /**
+     * @return {@code true} if the new template needs a value the folder does
+     *         not have and the metadata might
+     */
+    private static boolean needsMetadata(Map<Variable, String> folder, PathTemplate to) {
+        return (to.uses(Variable.WORLD) && !folder.containsKey(Variable.WORLD))
+                || (to.uses(Variable.DIM) && !folder.containsKey(Variable.DIM))
+                || (to.uses(Variable.BIOME) && !folder.containsKey(Variable.BIOME));
+    }
+
+    private static String valueOf(PathTemplate.Values values, Variable variable) {
+        return switch (variable) {
+            case WORLD -> values.world();
+            case DIM -> values.dimension();
+            case SERVER -> values.server();
+            case SESSION -> values.session();
+            default -> values.biome();
+        };
+    }
+
+    /**
+     * Turns a name as shown in the metadata, e.g. {@code The Nether}, back
+     * into the identifier folders use, {@code the_nether}.
+     */
+    static String identifier(String displayName) {
+        if (isBlank(displayName)) {
+            return null;
+        }
+        return displayName.trim().toLowerCase(Locale.ROOT).replace(' ', '_');
+    }
+
+    /**
+     * Reads the time a folder stands for from the values its template
+     * matched.
+     *
+     * @param folder The values {@link PathTemplate#match} read from the folder
+     * @return The start of the most precise time the folder names, or
+     *         {@code -1} if it does not name a day
+     */
+    public static long folderTime(Map<Variable, String> folder) {
+        int year;
+        int month;
+        int day;
+        String date = folder.get(Variable.DATE);
+        if (date != null) {
+            year = Integer.parseInt(date.substring(0, 4));
+            month = Integer.parseInt(date.substring(5, 7));
+            day = Integer.parseInt(date.substring(8, 10));
+        } else if (folder.containsKey(Variable.MONTH) && folder.containsKey(Variable.DAY)
+                && (folder.containsKey(Variable.YEAR) || folder.containsKey(Variable.YEAR_SHORT))) {
+            year = folder.containsKey(Variable.YEAR) ? Integer.parseInt(folder.get(Variable.YEAR))
+                    : 2000 + Integer.parseInt(folder.get(Variable.YEAR_SHORT));
+            month = Integer.parseInt(folder.get(Variable.MONTH));
+            day = Integer.parseInt(folder.get(Variable.DAY));
+        } else {
+            return -1;
+        }
+        try {
+            LocalDateTime time = LocalDateTime.of(year, month, day, field(folder, Variable.HOUR),
+                    field(folder, Variable.MINUTE), field(folder, Variable.SECOND));
+            return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeException e) {
+            return -1;
+        }
+    }
+
+    private static int field(Map<Variable, String> folder, Variable variable) {
+        String value = folder.get(variable);
+        return value != null ? Integer.parseInt(value) : 0;
+    }
+
+    /**
+     * Picks a name in the target folder that no screenshot had and no earlier
+     * move took, adding {@code _2}, {@code _3}... like vanilla does.
+     */
+    private static String freeName(String directory, String name, boolean withSidecar, Set<String> occupied) {
+        String prefix = directory.isEmpty() ? "" : directory + "/";
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        String candidate = prefix + name;
+        for (int i = 2; occupied.contains(candidate) || (withSidecar && occupied.contains(sidecarOf(candidate)));
+                i++) {
+            candidate = prefix + base + "_" + i + extension;
+        }
+        return candidate;
+    }
+
+    private static String sidecarOf(String path) {
+        int slash = path.lastIndexOf('/');
+        int dot = path.lastIndexOf('.');
+        return (dot > slash + 1 ? path.substring(0, dot) : path) + ".xmp";
+    }
+
+    /**
+     * Journals a plan and applies it.
+     *
+     * @param plan The plan
+     * @return The outcome
+     * @throws IOException           If the journal cannot be written
+     * @throws IllegalStateException If another migration is still pending
+     */
+    public Result run(Plan plan) throws IOException {
+        if (isPending()) {
+            throw new IllegalStateException("A migration is already pending in " + journal);
+        }
+        if (plan.isEmpty()) {
+            return new Result(0, 0, 0, 0, false, 0);
+        }
+        Journal entry = new Journal(Direction.FORWARD, plan.fromTemplate(), plan.toTemplate(), plan.moves());
+        writeJournal(entry);
+        return apply(entry);
+    }
+
+    /**
+     * @return {@code true} if a migration was interrupted and is waiting to be
+     *         resumed or rolled back
+     */
+    public boolean isPending() {
+        return Files.exists(journal);
+    }
+
+    /**
+     * Reads the interrupted migration, for deciding whether to resume or roll
+     * it back.
+     *
+     * @return The journaled plan, without counts, or {@code null} if there is
+     *         none
+     * @throws IOException If the journal cannot be read or is damaged
+     */
+    public Plan pending() throws IOException {
+        Journal entry = readJournal();
+        if (entry == null) {
+            return null;
+        }
+        return new Plan(entry.from, entry.to, entry.moves, 0, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * @return The direction of the interrupted migration, or {@code null} if
+     *         there is none
+     * @throws IOException If the journal cannot be read or is damaged
+     */
+    public Direction pendingDirection() throws IOException {
+        Journal entry = readJournal();
+        return entry != null ? entry.direction : null;
+    }
+
+    /**
+     * Finishes an interrupted migration in the direction it was going.
+     *
+     * @return The outcome, or {@code null} if none was pending
+     * @throws IOException If the journal cannot be read or is damaged
+     */
+    public Result resume() throws IOException {
+        Journal entry = readJournal();
+        return entry != null ? apply(entry) : null;
+    }
+
+    /**
+     * Moves the files of an interrupted migration back where they were.
+     *
+     * @return The outcome, or {@code null} if none was pending
+     * @throws IOException If the journal cannot be read, is damaged or cannot
+     *                     be rewritten
+     */
+    public Result rollback() throws IOException {
+        Journal entry = readJournal();
+        if (entry == null) {
+            return null;
+        }
+        if (entry.direction == Direction.FORWARD) {
+            entry = new Journal(Direction.ROLLBACK, entry.from, entry.to, entry.moves);
+            writeJournal(entry); // A crash during the rollback must keep rolling back
+        }
+        return apply(entry);
+    }
+
+    /**
+     * Stops a running {@link #run}, {@link #resume} or {@link #rollback}
+     * after the moves in progress. The journal is kept, so the migration can
+     * be resumed later.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private Result apply(Journal entry) throws IOException {
+        boolean forward = entry.direction == Direction.FORWARD;
+        List<Move> moves = entry.moves;
+        long start = System.nanoTime();
+
+        Set<String> targetFolders = new HashSet<>();
+        for (Move move : moves) {
+            targetFolders.add(parentOf(forward ? move.to : move.from));
+        }
+        for (String folder : targetFolders) {
+            Files.createDirectories(root.resolve(folder));
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger moved = new AtomicInteger();
+        AtomicInteger alreadyMoved = new AtomicInteger();
+        AtomicInteger missing = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        Runnable worker = () -> {
+            int i;
+            while (!cancelled && (i = next.getAndIncrement()) < moves.size()) {
+                Move move = moves.get(forward ? i : moves.size() - 1 - i);
+                Path source = root.resolve(forward ? move.from : move.to);
+                Path target = root.resolve(forward ? move.to : move.from);
+                try {
+                    // Without ATOMIC_MOVE so an existing target is never
+                    // replaced; within one file system this is still a rename
+                    Files.move(source, target);
+                    moved.incrementAndGet();
+                } catch (NoSuchFileException e) {
+                    (Files.exists(target, LinkOption.NOFOLLOW_LINKS) ? alreadyMoved : missing).incrementAndGet();
+                } catch (FileAlreadyExistsException e) {
+                    failed.incrementAndGet();
+                    LOGGER.warn("Not moving {}: {} already exists", source, target);
+                } catch (IOException e) {
+                    failed.incrementAndGet();
+                    LOGGER.warn("Failed to move {}: {}", source, e.getMessage());
+                }
+            }
+        };
+
+        int threads = Math.min(parallelism, Math.max(1, moves.size() / 64));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "ScreenshotMigration");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> workers = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                workers.add(executor.submit(worker));
+            }
+            for (Future<?> future : workers) {
+                awaitUninterruptibly(future);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        boolean stopped = cancelled && next.get() < moves.size();
+        if (!stopped) {
+            removeEmptyFolders(moves, forward);
+            Files.deleteIfExists(journal);
+        }
+        return new Result(moved.get(), alreadyMoved.get(), missing.get(), failed.get(), stopped,
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Waits for a worker even if interrupted, since a file system rename
+     * cannot be abandoned halfway; the interrupt cancels the remaining moves
+     * instead.
+     */
+    private void awaitUninterruptibly(Future<?> future) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                future.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+                cancel();
+            } catch (ExecutionException e) {
+                LOGGER.warn("Screenshot migration worker failed: {}", e.getCause().toString());
+                break;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Removes the folders the moves emptied, deepest first, along with
+     * parents that become empty in turn.
+     */
+    private void removeEmptyFolders(List<Move> moves, boolean forward) {
+        Set<String> folders = new HashSet<>();
+        for (Move move : moves) {
+            for (String folder = parentOf(forward ? move.from : move.to); !folder.isEmpty()
+                    && folders.add(folder); folder = parentOf(folder)) {
+            }
+        }
+        List<String> deepestFirst = new ArrayList<>(folders);
+        deepestFirst.sort(Comparator.comparingInt(String::length).reversed());
+        for (String folder : deepestFirst) {
+            try {
+                Files.deleteIfExists(root.resolve(folder));
+            } catch (DirectoryNotEmptyException e) {
+                // Still holds other files
+            } catch (IOException e) {
+                LOGGER.debug("Could not remove {}: {}", folder, e.getMessage());
+            }
+        }
+    }
+
+    private static String parentOf(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+
+    private String relative(Path file) {
+        return root.relativize(file).toString().replace('\\', '/');
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    /** The journaled form of a plan. */
+    private record Journal(Direction direction, String from, String to, List<Move> moves) {
+    }
+
+    /**
+     * Replaces the journal atomically and forces it to disk, so a crash
+     * leaves either the old or the new journal, whole.
+     */
+    private void writeJournal(Journal entry) throws IOException {
+        Files.createDirectories(journal.getParent());
+        Path temp = journal.resolveSibling(JOURNAL_FILE + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp.toFile());
+                BufferedWriter out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8),
+                        1 << 16)) {
+            out.write(MAGIC + "\n" + entry.direction + "\n" + entry.from + "\n" + entry.to + "\n"
+                    + entry.moves.size() + "\n");
+            for (Move move : entry.moves) {
+                out.write(move.from);
+                out.write('\t');
+                out.write(move.to);
+                out.write('\n');
+            }
+            out.write(END + "\n");
+            out.flush();
+            stream.getFD().sync();
+        }
+        Files.move(temp, journal, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Journal readJournal() throws IOException {
+        if (!Files.exists(journal)) {
+            return null;
+        }
+        try (BufferedReader in = Files.newBufferedReader(journal, StandardCharsets.UTF_8)) {
+            if (!MAGIC.equals(in.readLine())) {
+                throw new IOException("Not a migration journal: " + journal);
+            }
+            Direction direction;
+            int count;
+            String from;
+            String to;
+            try {
+                direction = Direction.valueOf(in.readLine());
+                from = in.readLine();
+                to = in.readLine();
+                count = Integer.parseInt(in.readLine());
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new IOException("Damaged migration journal: " + journal);
+            }
+            List<Move> moves = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String line = in.readLine();
+                int tab = line != null ? line.indexOf('\t') : -1;
+                if (tab <= 0) {
+                    throw new IOException("Damaged migration journal: " + journal);
+                }
+                moves.add(new Move(line.substring(0, tab), line.substring(tab + 1)));
+            }
+            if (!END.equals(in.readLine()) || from == null || to == null) {
+                throw new IOException("Damaged migration journal: " + journal);
+            }
+            return new Journal(direction, from, to, Collections.unmodifiableList(moves));
+        }
+    }
+}
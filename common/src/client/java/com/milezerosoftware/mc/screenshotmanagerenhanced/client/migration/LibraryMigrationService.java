@@ -0,0 +1,232 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.migration;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog.ScreenshotCatalog;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.optimizer.ScreenshotOptimizer;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.shard.ShardService;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.PathTemplate;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ScreenshotPathGenerator;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.MigrationPolicy;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ModConfig;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.WorldConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Moves the screenshot library in the background when the folder layout
+ * changes, and finishes migrations the last session could not.
+ *
+ * <p>
+ * Migrations run one at a time on a single daemon thread. The background
+ * optimizer is {@linkplain ScreenshotOptimizer#suspend suspended} while files
+ * move, and the {@link ScreenshotCatalog} is reconciled afterwards. On exit a
+ * running migration is cancelled and its journal kept; the next start
+ * resumes it, or rolls it back if the layout was switched back to where the
+ * files came from.
+ * </p>
+ */
+public class LibraryMigrationService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+
+    static final String REPORT_FILE = "migration-report.txt";
+
+    private static final long STOP_TIMEOUT_MS = 5000;
+
+    private static volatile LibraryMigrationService instance;
+
+    private final Path root;
+    private final int parallelism;
+    private final ExecutorService executor;
+    private volatile LibraryMigration running;
+
+    private LibraryMigrationService(Path root) {
+        this.root = root;
+        this.parallelism = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ScreenshotMigration");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts the shared service, if it is not running yet, and deals with a
+     * migration left pending by the last session.
+     *
+     * @param screenshotsDir The screenshots folder
+     * @param config         The mod configuration
+     */
+    public static synchronized void start(Path screenshotsDir, ModConfig config) {
+        if (instance != null) {
+            return;
+        }
+        LibraryMigrationService service = new LibraryMigrationService(screenshotsDir);
+        instance = service;
+        PathTemplate current = ScreenshotPathGenerator.getTemplate(config);
+        service.submit(() -> service.recover(current));
+    }
+
+    /**
+     * Moves, or reports on, the existing screenshots after the layout
+     * changed, as the configuration's {@link MigrationPolicy} says.
+     *
+     * @param previous The template in use before the change
+     * @param config   The configuration now in use
+     */
+    public static synchronized void onLayoutChanged(PathTemplate previous, ModConfig config) {
+        PathTemplate current = ScreenshotPathGenerator.getTemplate(config);
+        if (instance == null || config.migrationPolicy == MigrationPolicy.KEEP
+                || previous.getSource().equals(current.getSource())) {
+            return;
+        }
+        MigrationPolicy policy = config.migrationPolicy;
+        Predicate<String> keepWorld = inactiveWorlds(config.worldRules);
+        LibraryMigrationService service = instance;
+        service.submit(() -> service.migrate(previous, current, policy, keepWorld));
+    }
+
+    /**
+     * Stops the shared service. A migration in progress stops after the files
+     * being moved and is resumed on the next start.
+     */
+    public static void shutdown() {
+        LibraryMigrationService service;
+        synchronized (LibraryMigrationService.class) {
+            service = instance;
+            instance = null;
+        }
+        if (service == null) {
+            return;
+        }
+        LibraryMigration migration = service.running;
+        if (migration != null) {
+            migration.cancel();
+        }
+        service.executor.shutdownNow();
+        try {
+            service.executor.awaitTermination(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Screenshots of worlds the mod is disabled for were saved the vanilla
+     * way and stay there. Folders hold the sanitized name, metadata the raw
+     * one, so both are matched.
+     */
+    static Predicate<String> inactiveWorlds(Map<String, WorldConfig> rules) {
+        Set<String> names = new HashSet<>();
+        rules.forEach((world, rule) -> {
+            if (!rule.active) {
+                names.add(world);
+                names.add(PathTemplate.sanitize(world));
+            }
+        });
+        return names::contains;
+    }
+
+    private void submit(Runnable task) {
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (CancellationException ignored) {
+                // Shutting down
+            } catch (RuntimeException e) {
+                LOGGER.warn("Screenshot migration failed: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Finishes a pending migration so the files end up in {@code current},
+     * if the journal leads there or back from there.
+     */
+    private void recover(PathTemplate current) {
+        LibraryMigration migration = new LibraryMigration(root, parallelism);
+        LibraryMigration.Plan pending;
+        try {
+            pending = migration.pending();
+        } catch (IOException e) {
+            LOGGER.warn("Cannot resume the screenshot migration: {}", e.getMessage());
+            return;
+        }
+        if (pending == null) {
+            return;
+        }
+        boolean back = pending.fromTemplate().equals(current.getSource());
+        LOGGER.info("{} the interrupted move of {} screenshot files", back ? "Rolling back" : "Finishing",
+                pending.moves().size());
+        apply(migration, () -> back ? migration.rollback() : migration.resume());
+    }
+
+    private void migrate(PathTemplate previous, PathTemplate current, MigrationPolicy policy,
+            Predicate<String> keepWorld) {
+        recover(previous);
+        LibraryMigration migration = new LibraryMigration(root, parallelism);
+        if (migration.isPending()) {
+            return; // Cancelled, or the journal is damaged; nothing may move until it is dealt with
+        }
+
+        long start = System.nanoTime();
+        LibraryMigration.Plan plan = migration.plan(previous, current, keepWorld);
+        LOGGER.info("Planned moving {} of {} screenshots from \"{}\" to \"{}\" in {} ms", plan.moving(),
+                plan.scanned(), plan.fromTemplate(), plan.toTemplate(), (System.nanoTime() - start) / 1_000_000);
+        if (policy == MigrationPolicy.REPORT) {
+            Path report = root.resolve(ScreenshotOptimizer.STATE_DIR).resolve(REPORT_FILE);
+            try {
+                plan.writeReport(report);
+                LOGGER.info("Wrote the screenshot migration plan to {}", report);
+            } catch (IOException e) {
+                LOGGER.warn("Could not write the screenshot migration plan: {}", e.getMessage());
+            }
+            return;
+        }
+        if (!plan.isEmpty()) {
+            apply(migration, () -> migration.run(plan));
+        }
+    }
+
+    private interface Step {
+        LibraryMigration.Result apply() throws IOException;
+    }
+
+    private void apply(LibraryMigration migration, Step step) {
+        Runnable restartOptimizer = ScreenshotOptimizer.suspend();
+        running = migration;
+        try {
+            LibraryMigration.Result result = step.apply();
+            if (result == null) {
+                return;
+            }
+            LOGGER.info("Moved {} screenshot files in {} ms ({} moved before, {} missing, {} failed){}",
+                    result.moved(), result.elapsedNanos() / 1_000_000, result.alreadyMoved(), result.missing(),
+                    result.failed(), result.cancelled() ? ", to be continued next start" : "");
+            ScreenshotCatalog catalog = ScreenshotCatalog.getInstance();
+            if (catalog != null && result.moved() > 0) {
+                catalog.reconcile();
+            }
+            if (result.moved() > 0) {
+                ShardService.onLibraryMoved();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Screenshot migration failed, will retry next start: {}", e.getMessage());
+        } finally {
+            running = null;
+            if (instance == this) {
+                restartOptimizer.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.mixin;
+
+import net.minecraft.client.texture.NativeImage;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+/**
+ * Exposes the address of a {@link NativeImage}'s off-heap pixel buffer so the
+ * mod's encoders can read pixels without copying the image to the heap.
+ */
+@Mixin(NativeImage.class)
+public interface NativeImageAccessor {
+
+    @Accessor("pointer")
+    long getPointer();
+}
@@ -0,0 +1,93 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.mixin;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.capture.CaptureController;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.duplicate.DuplicateDetector;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.NativeImagePixelSource;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.event.ScreenshotEvents;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.quota.StorageQuotaService;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.thumbnail.ThumbnailService;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ScreenshotFileWriter;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ScreenshotCompletionTracker;
+import net.minecraft.client.texture.NativeImage;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.nio.file.Path;
+
+/**
+ * Mixin for {@link NativeImage} that hooks the point where screenshots are
+ * written to disk.
+ * 
+ * <p>
+ * Vanilla's {@code ScreenshotRecorder} encodes the captured image on the I/O
+ * worker via {@code NativeImage.writeTo}. At the head of that method the
+ * pixels are still in memory, so the screenshot can be encoded with its
+ * metadata in one pass, or on all cores. Returning from it means the encoder
+ * has closed the file, so this is the earliest safe moment to start
+ * post-processing it.
+ * </p>
+ */
+@Mixin(NativeImage.class)
+public class NativeImageMixin {
+
+    /**
+     * Replaces vanilla's PNG writer for burst and timelapse frames, and for
+     * screenshots issued by this mod when encode-time embedding or parallel
+     * encoding applies to them.
+     *
+     * @param path The path being written
+     * @param ci   Callback info, cancelled if the file was written here
+     */
+    @Inject(method = "writeTo(Ljava/nio/file/Path;)V", at = @At("HEAD"), cancellable = true)
+    private void onWriteToHead(Path path, CallbackInfo ci) {
+        if (CaptureController.tryCapture((NativeImage) (Object) this, path)) {
+            ci.cancel(); // Copied to a frame buffer; the capture pool writes it
+            return;
+        }
+        if (!ScreenshotCompletionTracker.isExpected(path)) {
+            return;
+        }
+        // Hash before the metadata is written so the hash goes into it
+        DuplicateDetector.capture(new NativeImagePixelSource((NativeImage) (Object) this), path);
+
+        // Thumbnail and storage first: writing the metadata may fold the file away
+        if (ScreenshotFileWriter.tryWrite((NativeImage) (Object) this, path, () -> afterWrite(path))) {
+            ScreenshotEvents.WRITTEN.invoker().onScreenshotWritten(path.toFile());
+            ci.cancel();
+        }
+    }
+
+    /**
+     * Takes the thumbnail of a screenshot once it has been completely
+     * written and counts it against its world's storage limits, then
+     * publishes {@link ScreenshotEvents#WRITTEN} if this mod issued it. The
+     * event may lead to the file being moved, so it comes last.
+     *
+     * @param path The path that was written
+     * @param ci   Callback info
+     */
+    @Inject(method = "writeTo(Ljava/nio/file/Path;)V", at = @At("RETURN"))
+    private void onWriteToReturn(Path path, CallbackInfo ci) {
+        afterWrite(path);
+        if (ScreenshotCompletionTracker.isExpected(path)) {
+            ScreenshotEvents.WRITTEN.invoker().onScreenshotWritten(path.toFile());
+        }
+    }
+
+    /**
+     * Takes the thumbnail of a screenshot once its file is written, and
+     * counts the file against its world's storage limits. Vanilla only
+     * closes the image after {@code writeTo} returns, so the pixels are still
+     * readable here.
+     *
+     * @param path The path that was written
+     */
+    private void afterWrite(Path path) {
+        if (ThumbnailService.isExpected(path)) {
+            ThumbnailService.capture(new NativeImagePixelSource((NativeImage) (Object) this), path);
+        }
+        StorageQuotaService.onWritten(path);
+    }
+}
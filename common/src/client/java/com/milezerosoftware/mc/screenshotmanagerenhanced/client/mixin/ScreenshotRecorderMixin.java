@@ -1,42 +1,86 @@
 package com.milezerosoftware.mc.screenshotmanagerenhanced.client.mixin;
 
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.capture.CaptureController;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.capture.CapturedFrame;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.duplicate.DuplicateDetector;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.quota.StorageQuotaService;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.thumbnail.ThumbnailService;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.AdaptiveShards;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataTask;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.PathTemplate;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.PendingMetadata;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ScreenshotCompletionTracker;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ScreenshotFileAllocator;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ScreenshotFileWriter;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ScreenshotMetadataCollector;
 import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ScreenshotPathGenerator;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.WorldSession;
 import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.WorldUtils;
 import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ConfigManager;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.DuplicateHandling;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.EncoderProfile;
 import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ModConfig;
+import net.minecraft.client.gl.Framebuffer;
 import net.minecraft.client.util.ScreenshotRecorder;
+import net.minecraft.text.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 import java.io.File;
+import java.io.UncheckedIOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.function.Consumer;
 
 /**
  * Mixin for {@link ScreenshotRecorder} that intercepts screenshot file path
  * generation.
  * 
  * <p>
- * This mixin provides two key features:
+ * This mixin provides four key features:
  * </p>
  * <ul>
  * <li>Custom screenshot directory organization based on world/server name</li>
  * <li>XMP metadata embedding into screenshot PNG files</li>
+ * <li>Burst and timelapse capture from the screenshot key</li>
+ * <li>Thumbnails taken while the pixels are still in memory</li>
  * </ul>
  * 
  * <p>
- * The mixin intercepts the {@code getScreenshotFilename} method to redirect
- * screenshots to organized subdirectories and optionally embed metadata.
+ * The mixin injects at the head of {@code saveScreenshot}, so the screenshot
+ * key can start or stop a burst or timelapse instead of taking a single
+ * screenshot. It also intercepts the {@code getScreenshotFilename} method to
+ * redirect screenshots to organized subdirectories and optionally embed
+ * metadata.
  * </p>
  */
 @Mixin(ScreenshotRecorder.class)
 public class ScreenshotRecorderMixin {
 
-    private static final int FILE_POLL_INTERVAL_MS = 100;
-    private static final int FILE_POLL_MAX_ATTEMPTS = 100;
-    private static final int FILE_WRITE_DELAY_MS = 200;
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+
+    /**
+     * Lets the screenshot key start or stop a burst or timelapse when one of
+     * those capture modes is selected.
+     *
+     * @param gameDirectory   The game directory
+     * @param framebuffer     The framebuffer to capture
+     * @param messageReceiver Receives the chat feedback
+     * @param ci              Callback info, cancelled if a session was started
+     *                        or stopped
+     */
+    @Inject(method = "saveScreenshot(Ljava/io/File;Lnet/minecraft/client/gl/Framebuffer;Ljava/util/function/Consumer;)V", at = @At("HEAD"), cancellable = true)
+    private static void onSaveScreenshot(File gameDirectory, Framebuffer framebuffer,
+            Consumer<Text> messageReceiver, CallbackInfo ci) {
+        if (CaptureController.onScreenshotKey(messageReceiver)) {
+            ci.cancel();
+        }
+    }
 
     /**
      * Intercepts screenshot filename generation to provide custom paths and
@@ -53,8 +97,8 @@ public class ScreenshotRecorderMixin {
      * </p>
      * <ol>
      * <li>Collects metadata from the current game state (on Render thread)</li>
-     * <li>Spawns a daemon thread to wait for the file to be written</li>
-     * <li>Triggers async metadata embedding once the file exists</li>
+     * <li>Queues a task on the shared metadata writer service, which embeds
+     * the metadata once the file is written</li>
      * </ol>
      *
      * @param gameDir The game directory (usually .minecraft)
@@ -62,39 +106,78 @@ public class ScreenshotRecorderMixin {
      */
     @Inject(method = "getScreenshotFilename(Ljava/io/File;)Ljava/io/File;", at = @At("HEAD"), cancellable = true)
     private static void onGetScreenshotFilename(File gameDir, CallbackInfoReturnable<File> cir) {
-        // Get the sanitized world/server name
-        String rawWorldId = WorldUtils.getWorldId();
-        String safeWorldId = WorldUtils.sanitize(rawWorldId);
-        String dimension = WorldUtils.getDimension();
+        // The world identity is resolved once per session on join, so this
+        // reads cached fields only
+        WorldSession session = WorldUtils.getSession();
+        String rawWorldId = session != null ? session.getRawWorldId() : WorldUtils.getWorldId();
         ModConfig config = ConfigManager.getInstance();
 
-        // Use the centralized path generator
+        // Use the centralized path generator; the biome is only looked up when
+        // the folder template uses it
+        PathTemplate template = ScreenshotPathGenerator.getTemplate(config);
+        PathTemplate.Values values = session != null ? session.getPathValues()
+                : new PathTemplate.Values(rawWorldId, WorldUtils.getDimension(), null, null, null);
+        if (template.uses(PathTemplate.Variable.BIOME)) {
+            values = new PathTemplate.Values(values.world(), values.dimension(), values.server(), values.session(),
+                    WorldUtils.getBiomeId());
+        }
+        // One capture time for the folder and the name, so a time-based
+        // shard always agrees with the timestamp in the name
+        long now = System.currentTimeMillis();
         File screenshotDir = ScreenshotPathGenerator.getScreenshotDirectory(
                 gameDir,
                 config,
                 rawWorldId,
-                safeWorldId,
-                dimension,
-                new Date());
+                values,
+                now);
 
-        // Ensure the directory exists
-        if (!screenshotDir.exists()) {
-            screenshotDir.mkdirs();
+        // Maintain standard vanilla naming: YYYY-MM-DD_HH.MM.SS.png, or the
+        // session's sequence-numbered name for burst and timelapse frames.
+        // The name is reserved atomically, which also creates the directory.
+        EncoderProfile profile = config.getEncoderProfile(rawWorldId);
+        String frameName = CaptureController.pollFrameName();
+        File finalFile;
+        try {
+            ScreenshotFileAllocator allocator = ScreenshotFileAllocator.getInstance();
+            finalFile = (frameName != null
+                    ? allocator.reserve(screenshotDir.toPath(), frameName, profile.getFileExtension())
+                    : allocator.reserve(screenshotDir.toPath(), new Date(now), config.filenameSuffix,
+                            profile.getFileExtension()))
+                    .toFile();
+            if (template.isSharded()) {
+                // Counted in its shard now that the file exists
+                AdaptiveShards.getInstance().added(screenshotDir.toPath(), 1);
+            }
+            if (frameName == null) {
+                // Frames release their own names; a failed vanilla write must not leave an empty file
+                ScreenshotCompletionTracker.expirePlaceholder(finalFile.toPath());
+            }
+        } catch (UncheckedIOException e) {
+            // Let vanilla's writer report the problem when it tries to write
+            LOGGER.warn("Could not reserve a screenshot name: {}", e.getMessage());
+            String base = frameName != null ? frameName
+                    : new SimpleDateFormat("yyyy-MM-dd_HH.mm.ss").format(new Date(now));
+            finalFile = new File(screenshotDir, base + "." + profile.getFileExtension());
         }
 
-        // Maintain standard vanilla naming: YYYY-MM-DD_HH.MM.SS.png
-        String timestamp = new SimpleDateFormat("yyyy-MM-dd_HH.mm.ss").format(new Date());
-        File finalFile = new File(screenshotDir, timestamp + ".png");
-
-        // Handle filename collisions by appending a suffix
-        int i = 1;
-        while (finalFile.exists()) {
-            finalFile = new File(screenshotDir, timestamp + "_" + (i++) + ".png");
+        if (config.captureThumbnails) {
+            ThumbnailService.expect(finalFile.toPath(), values.world());
+        }
+        StorageQuotaService.expect(finalFile.toPath(), values.world());
+        if (frameName == null && config.embedMetadata && config.duplicateHandling != DuplicateHandling.OFF) {
+            DuplicateDetector.expect(finalFile.toPath(), values.world());
         }
 
         // Collect metadata and start async writer if enabled
-        if (config.embedMetadata) {
-            collectAndEmbedMetadata(finalFile);
+        if (frameName != null) {
+            // Frames are encoded by the capture pool, with metadata embedded at encode time
+            CaptureController.expectFrame(new CapturedFrame(finalFile.toPath(), profile,
+                    config.embedMetadata ? ScreenshotMetadataCollector.capture() : null));
+        } else if (config.embedMetadata) {
+            collectAndEmbedMetadata(finalFile, profile);
+        } else if (ScreenshotFileWriter.needsCustomEncoder(config, profile, false)) {
+            // Track the file so the write hook encodes it with the profile's encoder
+            ScreenshotCompletionTracker.expect(new MetadataTask(finalFile, (PendingMetadata) null, profile));
         }
 
         // Set the return value and cancel original method execution
@@ -102,42 +185,21 @@ public class ScreenshotRecorderMixin {
     }
 
     /**
-     * Collects metadata on the Render thread and spawns an async writer.
+     * Collects metadata on the Render thread and queues it for async writing.
      * 
      * <p>
      * Metadata must be collected on the Render thread because it requires
      * access to game state (world, player, etc.). The actual file writing
-     * is done asynchronously to avoid blocking.
+     * is done by the shared writer service to avoid blocking.
      * </p>
      *
      * @param targetFile The screenshot file that will be created
+     * @param profile    The encoder profile the file will be written with
      */
-    private static void collectAndEmbedMetadata(File targetFile) {
-        var metadata = com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ScreenshotMetadataCollector
-                .collect();
-
-        // Start async thread that waits for file to exist, then writes metadata
-        Thread writerThread = new Thread(() -> {
-            try {
-                // Wait for file to exist (poll every 100ms, timeout after 10 seconds)
-                int attempts = 0;
-                while (!targetFile.exists() && attempts < FILE_POLL_MAX_ATTEMPTS) {
-                    Thread.sleep(FILE_POLL_INTERVAL_MS);
-                    attempts++;
-                }
-
-                if (targetFile.exists()) {
-                    // Small delay to ensure file is fully written
-                    Thread.sleep(FILE_WRITE_DELAY_MS);
-                    com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler
-                            .writeMetadataAsync(targetFile, metadata);
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }, "ScreenshotFileWatcher");
-
-        writerThread.setDaemon(true);
-        writerThread.start();
+    private static void collectAndEmbedMetadata(File targetFile, EncoderProfile profile) {
+        // Only raw values are copied here; they are formatted on the thread
+        // that writes the file
+        ScreenshotCompletionTracker.expect(
+                new MetadataTask(targetFile, ScreenshotMetadataCollector.capture(), profile));
     }
 }
@@ -0,0 +1,84 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.optimizer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Limits how much CPU time a background thread uses.
+ *
+ * <p>
+ * The worker calls {@link #checkpoint()} often. After each slice of work the
+ * thread sleeps long enough that its CPU time stays within the configured
+ * share of wall time, and while {@code mayRun} is false it does not run at
+ * all. Interrupting the thread aborts the work with a
+ * {@link CancellationException} from the next checkpoint.
+ * </p>
+ */
+public class CpuBudget {
+
+    private static final long SLICE_NANOS = 20_000_000L;
+    private static final long PAUSED_POLL_MS = 500;
+
+    private final int percent;
+    private final BooleanSupplier mayRun;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final boolean cpuTimeSupported;
+    private long sliceStart = -1;
+
+    /**
+     * @param percent Share of one core the worker may use, 1 to 100
+     * @param mayRun  Whether work may currently proceed
+     */
+    public CpuBudget(int percent, BooleanSupplier mayRun) {
+        this.percent = Math.max(1, Math.min(100, percent));
+        this.mayRun = mayRun;
+        this.cpuTimeSupported = threads.isCurrentThreadCpuTimeSupported();
+    }
+
+    /**
+     * Blocks while work is not allowed and sleeps off any CPU time used beyond
+     * the budget.
+     *
+     * @throws CancellationException If the calling thread was interrupted
+     */
+    public void checkpoint() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Interrupted");
+        }
+        if (!mayRun.getAsBoolean()) {
+            while (!mayRun.getAsBoolean()) {
+                sleep(PAUSED_POLL_MS);
+            }
+            sliceStart = now();
+            return;
+        }
+
+        long time = now();
+        if (sliceStart < 0) {
+            sliceStart = time;
+            return;
+        }
+        long used = time - sliceStart;
+        if (used >= SLICE_NANOS) {
+            if (percent < 100) {
+                sleep(used * (100 - percent) / percent / 1_000_000L);
+            }
+            sliceStart = now();
+        }
+    }
+
+    private long now() {
+        return cpuTimeSupported ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted");
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.optimizer;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PixelSource;
+
+/**
+ * Maps the rows of an RGB or RGBA source to one-byte palette indices.
+ */
+final class IndexedPixelSource implements PixelSource {
+
+    private final PixelSource source;
+    private final Palette palette;
+    private final byte[] row;
+
+    IndexedPixelSource(PixelSource source, Palette palette) {
+        this.source = source;
+        this.palette = palette;
+        this.row = new byte[source.getRowBytes()];
+    }
+
+    @Override
+    public int getWidth() {
+        return source.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return source.getHeight();
+    }
+
+    @Override
+    public int getChannels() {
+        return 1;
+    }
+
+    @Override
+    public void readRow(int y, byte[] dst, int offset) {
+        source.readRow(y, row, 0);
+        int channels = source.getChannels();
+        for (int i = 0, x = offset; i < row.length; i += channels, x++) {
+            int index = palette.indexOf(PngOptimizer.pack(row, i, channels));
+            if (index < 0) {
+                throw new IllegalStateException("Color missing from palette at row " + y);
+            }
+            dst[x] = (byte) index;
+        }
+    }
+}
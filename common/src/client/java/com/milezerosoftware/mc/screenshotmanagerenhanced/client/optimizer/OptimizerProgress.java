@@ -0,0 +1,116 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.optimizer;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers which screenshots the optimizer has already processed.
+ *
+ * <p>
+ * Entries are appended to a tab-separated log of relative path, size and
+ * modification time, so recording a file costs one small write and a crash
+ * loses at most the last line. A file counts as done while its size and
+ * modification time still match; if it is edited or replaced, it is processed
+ * again. The log is compacted to one line per file when loaded.
+ * </p>
+ */
+public class OptimizerProgress implements Closeable {
+
+    static final String FILE_NAME = "optimizer-progress.tsv";
+
+    private final Path file;
+    private final Map<String, long[]> done = new HashMap<>();
+    private BufferedWriter writer;
+
+    private OptimizerProgress(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the progress log from a state directory, creating it if needed.
+     *
+     * @param stateDir The directory holding the log
+     * @return The loaded progress
+     * @throws IOException If the log cannot be read or rewritten
+     */
+    public static OptimizerProgress load(Path stateDir) throws IOException {
+        Files.createDirectories(stateDir);
+        OptimizerProgress progress = new OptimizerProgress(stateDir.resolve(FILE_NAME));
+        if (Files.exists(progress.file)) {
+            List<String> lines = Files.readAllLines(progress.file, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                progress.parse(line);
+            }
+            // Also drops duplicates and terminates a line torn by a crash
+            progress.compact();
+        }
+        progress.writer = Files.newBufferedWriter(progress.file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        return progress;
+    }
+
+    /**
+     * @return {@code true} if the file was processed in this exact version
+     */
+    public synchronized boolean isDone(String relativePath, long size, long modifiedMillis) {
+        long[] entry = done.get(relativePath);
+        return entry != null && entry[0] == size && entry[1] == modifiedMillis;
+    }
+
+    /**
+     * Records a processed file and flushes it to disk.
+     *
+     * @throws IOException If the log cannot be written
+     */
+    public synchronized void markDone(String relativePath, long size, long modifiedMillis) throws IOException {
+        done.put(relativePath, new long[] { size, modifiedMillis });
+        writer.write(relativePath + '\t' + size + '\t' + modifiedMillis + '\n');
+        writer.flush();
+    }
+
+    /**
+     * @return The number of files recorded
+     */
+    public synchronized int size() {
+        return done.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private void parse(String line) {
+        String[] parts = line.split("\t");
+        if (parts.length != 3) {
+            return; // Torn final line after a crash
+        }
+        try {
+            done.put(parts[0], new long[] { Long.parseLong(parts[1]), Long.parseLong(parts[2]) });
+        } catch (NumberFormatException ignored) {
+            // Skip the damaged entry; the file is simply processed again
+        }
+    }
+
+    private void compact() throws IOException {
+        Path temp = file.resolveSibling(FILE_NAME + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, long[]> entry : done.entrySet()) {
+                out.write(entry.getKey() + '\t' + entry.getValue()[0] + '\t' + entry.getValue()[1] + '\n');
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,121 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.optimizer;
+
+/**
+ * Collects up to 256 distinct RGBA colors for palette reduction.
+ *
+ * <p>
+ * Colors are packed as {@code 0xRRGGBBAA} ints and looked up in a small
+ * open-addressing table, so counting colors costs no allocation per pixel.
+ * </p>
+ */
+final class Palette {
+
+    static final int MAX_COLORS = 256;
+
+    private static final int TABLE_SIZE = 1024;
+
+    private final int[] keys = new int[TABLE_SIZE];
+    private final short[] slots = new short[TABLE_SIZE]; // index + 1, 0 = empty
+    private final int[] colors = new int[MAX_COLORS];
+    private int size;
+
+    /**
+     * Adds a color if it is not present yet.
+     *
+     * @param rgba The packed color
+     * @return {@code false} if the palette is full and the color is new
+     */
+    boolean add(int rgba) {
+        int slot = find(rgba);
+        if (slots[slot] != 0) {
+            return true;
+        }
+        if (size == MAX_COLORS) {
+            return false;
+        }
+        colors[size] = rgba;
+        keys[slot] = rgba;
+        slots[slot] = (short) ++size;
+        return true;
+    }
+
+    /**
+     * @param rgba The packed color
+     * @return The palette index of the color, or -1 if it is not present
+     */
+    int indexOf(int rgba) {
+        return slots[find(rgba)] - 1;
+    }
+
+    /**
+     * @return The number of colors collected
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Reorders the palette so translucent colors come first, which keeps the
+     * tRNS chunk as short as possible. Indices change; call before encoding.
+     */
+    void sortTranslucentFirst() {
+        int[] sorted = new int[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if ((colors[i] & 0xFF) != 0xFF) {
+                sorted[n++] = colors[i];
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if ((colors[i] & 0xFF) == 0xFF) {
+                sorted[n++] = colors[i];
+            }
+        }
+        java.util.Arrays.fill(slots, (short) 0);
+        int count = size;
+        size = 0;
+        for (int i = 0; i < count; i++) {
+            add(sorted[i]);
+        }
+    }
+
+    /**
+     * @return PLTE chunk data: three bytes per color
+     */
+    byte[] toPlte() {
+        byte[] plte = new byte[size * 3];
+        for (int i = 0; i < size; i++) {
+            plte[i * 3] = (byte) (colors[i] >>> 24);
+            plte[i * 3 + 1] = (byte) (colors[i] >>> 16);
+            plte[i * 3 + 2] = (byte) (colors[i] >>> 8);
+        }
+        return plte;
+    }
+
+    /**
+     * @return tRNS chunk data up to the last translucent color, or
+     *         {@code null} if every color is opaque
+     */
+    byte[] toTrns() {
+        int translucent = 0;
+        while (translucent < size && (colors[translucent] & 0xFF) != 0xFF) {
+            translucent++;
+        }
+        if (translucent == 0) {
+            return null;
+        }
+        byte[] trns = new byte[translucent];
+        for (int i = 0; i < translucent; i++) {
+            trns[i] = (byte) colors[i];
+        }
+        return trns;
+    }
+
+    private int find(int rgba) {
+        int slot = (rgba * 0x9E3779B1) >>> 22;
+        while (slots[slot] != 0 && keys[slot] != rgba) {
+            slot = (slot + 1) & (TABLE_SIZE - 1);
+        }
+        return slot;
+    }
+}
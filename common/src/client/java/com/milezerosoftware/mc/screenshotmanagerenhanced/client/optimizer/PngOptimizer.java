@@ -0,0 +1,241 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.optimizer;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PixelSource;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PngChunks;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PngEncoder;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PngReader;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * Losslessly recompresses a single PNG in place.
+ *
+ * <p>
+ * Images with at most 256 distinct colors are rewritten as indexed PNGs with
+ * a PLTE (and, if needed, tRNS) chunk. Everything else is re-encoded at
+ * maximum deflate effort with both adaptive and no filtering, keeping the
+ * smaller result. Ancillary chunks, including the XMP iTXt metadata, are
+ * copied verbatim.
+ * </p>
+ *
+ * <p>
+ * A candidate replaces the original only if it is smaller and decodes to the
+ * exact same pixels. It is written to a hidden temp file next to the
+ * original, given the original's modification time and atomically moved over
+ * it, so a crash never leaves a half-written screenshot behind.
+ * </p>
+ */
+public final class PngOptimizer {
+
+    /** Suffix of the temp files written next to the screenshot. */
+    public static final String TEMP_SUFFIX = ".sme-tmp";
+
+    /**
+     * Chunks whose contents depend on the color type or palette; files with
+     * these are left alone rather than rewritten incorrectly.
+     */
+    private static final Set<String> COLOR_DEPENDENT_CHUNKS = Set.of("bKGD", "sBIT", "hIST", "sPLT");
+
+    private static final int OUTPUT_BUFFER_SIZE = 256 * 1024;
+
+    /** Outcome of {@link #optimize}. */
+    public enum Outcome {
+        /** The file was replaced by a smaller encoding. */
+        OPTIMIZED,
+        /** No candidate was smaller than the original; it was left untouched. */
+        NOT_SMALLER,
+        /** The file uses a PNG feature this optimizer does not rewrite. */
+        UNSUPPORTED,
+        /** The file changed while it was being optimized; try again later. */
+        CHANGED
+    }
+
+    /**
+     * Result of {@link #optimize}.
+     *
+     * @param outcome       What happened to the file
+     * @param originalBytes The file size before optimization
+     * @param finalBytes    The file size afterwards
+     */
+    public record Result(Outcome outcome, long originalBytes, long finalBytes) {
+        static Result unchanged(Outcome outcome, long size) {
+            return new Result(outcome, size, size);
+        }
+    }
+
+    private enum Candidate {
+        INDEXED, ADAPTIVE, UNFILTERED
+    }
+
+    private PngOptimizer() {
+    }
+
+    /**
+     * Recompresses a PNG, replacing it if a smaller lossless encoding is found.
+     *
+     * @param file       The PNG file
+     * @param checkpoint Called before every decoded row; may block to throttle
+     *                   the work or throw to abort it
+     * @return What was done
+     * @throws IOException If the file cannot be read, is corrupt or the result
+     *                     fails verification
+     */
+    public static Result optimize(Path file, Runnable checkpoint) throws IOException {
+        long originalSize = Files.size(file);
+        FileTime originalTime = Files.getLastModifiedTime(file);
+
+        List<byte[]> chunks;
+        Palette palette = null;
+        try (PngReader reader = new PngReader(file)) {
+            if (!reader.isSupported()) {
+                return Result.unchanged(Outcome.UNSUPPORTED, originalSize);
+            }
+            chunks = reader.getAncillaryChunks();
+            for (byte[] chunk : chunks) {
+                if (COLOR_DEPENDENT_CHUNKS.contains(PngChunks.typeOf(chunk))) {
+                    return Result.unchanged(Outcome.UNSUPPORTED, originalSize);
+                }
+            }
+            if (reader.getChannels() >= 3) {
+                palette = collectPalette(new ThrottledPixelSource(reader, checkpoint));
+            }
+        }
+
+        List<Candidate> candidates = palette != null
+                ? List.of(Candidate.INDEXED)
+                : List.of(Candidate.ADAPTIVE, Candidate.UNFILTERED);
+        byte[][] ancillary = chunks.toArray(new byte[0][]);
+
+        Path best = null;
+        long bestSize = originalSize;
+        try {
+            for (Candidate candidate : candidates) {
+                Path temp = Files.createTempFile(file.getParent(), "." + file.getFileName(), TEMP_SUFFIX);
+                try {
+                    encode(file, temp, candidate, palette, checkpoint, ancillary);
+                } catch (IOException | RuntimeException e) {
+                    Files.deleteIfExists(temp);
+                    throw e;
+                }
+                long size = Files.size(temp);
+                if (size < bestSize) {
+                    if (best != null) {
+                        Files.deleteIfExists(best);
+                    }
+                    best = temp;
+                    bestSize = size;
+                } else {
+                    Files.deleteIfExists(temp);
+                }
+            }
+
+            if (best == null) {
+                return Result.unchanged(Outcome.NOT_SMALLER, originalSize);
+            }
+            if (!sameImage(file, best, checkpoint)) {
+                throw new IOException("Recompressed image does not match the original");
+            }
+
+            // Do not clobber a file that was edited or replaced in the meantime
+            if (Files.size(file) != originalSize || !Files.getLastModifiedTime(file).equals(originalTime)) {
+                return Result.unchanged(Outcome.CHANGED, originalSize);
+            }
+            Files.setLastModifiedTime(best, originalTime);
+            Files.move(best, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            best = null;
+            return new Result(Outcome.OPTIMIZED, originalSize, bestSize);
+        } finally {
+            if (best != null) {
+                Files.deleteIfExists(best);
+            }
+        }
+    }
+
+    private static void encode(Path file, Path temp, Candidate candidate, Palette palette, Runnable checkpoint,
+            byte[][] ancillary) throws IOException {
+        try (PngReader reader = new PngReader(file);
+                OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), OUTPUT_BUFFER_SIZE)) {
+            PixelSource source = new ThrottledPixelSource(reader, checkpoint);
+            switch (candidate) {
+                case INDEXED -> new PngEncoder(Deflater.BEST_COMPRESSION, false).encodeIndexed(
+                        new IndexedPixelSource(source, palette), palette.toPlte(), palette.toTrns(), out, ancillary);
+                case ADAPTIVE -> new PngEncoder(Deflater.BEST_COMPRESSION, true).encode(source, out, ancillary);
+                case UNFILTERED -> new PngEncoder(Deflater.BEST_COMPRESSION, false).encode(source, out, ancillary);
+            }
+        }
+    }
+
+    /**
+     * Collects the colors of an RGB or RGBA image.
+     *
+     * @return The palette, or {@code null} if the image has more than 256
+     *         colors
+     */
+    static Palette collectPalette(PixelSource source) {
+        Palette palette = new Palette();
+        int channels = source.getChannels();
+        byte[] row = new byte[source.getRowBytes()];
+        for (int y = 0; y < source.getHeight(); y++) {
+            source.readRow(y, row, 0);
+            for (int i = 0; i < row.length; i += channels) {
+                if (!palette.add(pack(row, i, channels))) {
+                    return null;
+                }
+            }
+        }
+        palette.sortTranslucentFirst();
+        return palette;
+    }
+
+    /**
+     * Packs an RGB or RGBA pixel as {@code 0xRRGGBBAA}.
+     */
+    static int pack(byte[] row, int i, int channels) {
+        int alpha = channels == 4 ? row[i + 3] & 0xFF : 0xFF;
+        return (row[i] & 0xFF) << 24 | (row[i + 1] & 0xFF) << 16 | (row[i + 2] & 0xFF) << 8 | alpha;
+    }
+
+    /**
+     * Decodes two PNGs side by side and compares their pixels. An opaque RGBA
+     * image matches its RGB palette encoding.
+     */
+    static boolean sameImage(Path a, Path b, Runnable checkpoint) throws IOException {
+        try (PngReader first = new PngReader(a); PngReader second = new PngReader(b)) {
+            int channelsA = first.getChannels();
+            int channelsB = second.getChannels();
+            if (first.getWidth() != second.getWidth() || first.getHeight() != second.getHeight()
+                    || !second.isSupported() || (channelsA != channelsB && (channelsA < 3 || channelsB < 3))) {
+                return false;
+            }
+            PixelSource throttled = new ThrottledPixelSource(first, checkpoint);
+            byte[] rowA = new byte[first.getRowBytes()];
+            byte[] rowB = new byte[second.getRowBytes()];
+            for (int y = 0; y < first.getHeight(); y++) {
+                throttled.readRow(y, rowA, 0);
+                second.readRow(y, rowB, 0);
+                if (channelsA == channelsB) {
+                    if (!Arrays.equals(rowA, rowB)) {
+                        return false;
+                    }
+                    continue;
+                }
+                for (int i = 0, j = 0; i < rowA.length; i += channelsA, j += channelsB) {
+                    if (pack(rowA, i, channelsA) != pack(rowB, j, channelsB)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+}
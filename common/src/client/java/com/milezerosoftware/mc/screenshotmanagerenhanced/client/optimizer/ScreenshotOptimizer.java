@@ -0,0 +1,248 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.optimizer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Background service that recompresses saved screenshots while the player is
+ * idle.
+ *
+ * <p>
+ * A single low-priority daemon thread walks the screenshots folder and runs
+ * {@link PngOptimizer} on every PNG it has not processed yet. Work only
+ * proceeds while the client reports itself {@linkplain #setClientIdle idle}
+ * (in a menu, paused or AFK) and is throttled by a {@link CpuBudget}, so it
+ * never competes with gameplay. Screenshots younger than a few minutes are
+ * left for metadata embedding to finish first.
+ * </p>
+ *
+ * <p>
+ * Processed files are recorded in {@link OptimizerProgress} under
+ * {@value #STATE_DIR}, so no file is recompressed twice across sessions.
+ * </p>
+ */
+public class ScreenshotOptimizer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+
+    /** Hidden directory inside the screenshots folder for the mod's state. */
+    public static final String STATE_DIR = ".sme";
+
+    private static final long MIN_AGE_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final long RESCAN_INTERVAL_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final long STOP_TIMEOUT_MS = 2000;
+    private static final int MAX_DEPTH = 8;
+
+    private static volatile boolean clientIdle;
+    private static ScreenshotOptimizer instance;
+
+    private final Path root;
+    private final int cpuBudgetPercent;
+    private final CpuBudget budget;
+    private final long minAgeMillis;
+    private Thread thread;
+    private int optimizedFiles;
+    private long savedBytes;
+
+    /**
+     * Creates an optimizer with explicit settings.
+     *
+     * @param root             The screenshots folder
+     * @param cpuBudgetPercent Share of one core to use while running
+     * @param minAgeMillis     Minimum age of a file before it is processed
+     * @param mayRun           Whether work may currently proceed
+     */
+    ScreenshotOptimizer(Path root, int cpuBudgetPercent, long minAgeMillis, BooleanSupplier mayRun) {
+        this.root = root;
+        this.cpuBudgetPercent = cpuBudgetPercent;
+        this.budget = new CpuBudget(cpuBudgetPercent, mayRun);
+        this.minAgeMillis = minAgeMillis;
+    }
+
+    /**
+     * Reports whether the client is idle. Called every client tick.
+     *
+     * @param idle {@code true} while the player is in a menu, paused or AFK
+     */
+    public static void setClientIdle(boolean idle) {
+        clientIdle = idle;
+    }
+
+    /**
+     * Starts the shared optimizer for a screenshots folder, if it is not
+     * running yet.
+     *
+     * @param screenshotsDir   The screenshots folder
+     * @param cpuBudgetPercent Share of one core to use while the client is idle
+     */
+    public static synchronized void start(Path screenshotsDir, int cpuBudgetPercent) {
+        if (instance != null) {
+            return;
+        }
+        instance = new ScreenshotOptimizer(screenshotsDir, cpuBudgetPercent, MIN_AGE_MS, () -> clientIdle);
+        instance.thread = new Thread(instance::runLoop, "ScreenshotOptimizer");
+        instance.thread.setDaemon(true);
+        instance.thread.setPriority(Thread.MIN_PRIORITY);
+        instance.thread.start();
+    }
+
+    /**
+     * Stops the shared optimizer, if it was started. A file being optimized
+     * is abandoned and left untouched.
+     */
+    public static void shutdown() {
+        ScreenshotOptimizer optimizer;
+        synchronized (ScreenshotOptimizer.class) {
+            optimizer = instance;
+            instance = null;
+        }
+        if (optimizer == null) {
+            return;
+        }
+        optimizer.thread.interrupt();
+        try {
+            optimizer.thread.join(STOP_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the shared optimizer while other code moves or replaces
+     * screenshots, so a recompressed file is never written back to a path the
+     * original has left.
+     *
+     * @return Restarts the optimizer with its previous settings; does nothing
+     *         if it was not running
+     */
+    public static Runnable suspend() {
+        ScreenshotOptimizer optimizer;
+        synchronized (ScreenshotOptimizer.class) {
+            optimizer = instance;
+        }
+        if (optimizer == null) {
+            return () -> {
+            };
+        }
+        shutdown();
+        return () -> start(optimizer.root, optimizer.cpuBudgetPercent);
+    }
+
+    private void runLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                runOnce();
+                Thread.sleep(RESCAN_INTERVAL_MS);
+            } catch (CancellationException | InterruptedException e) {
+                break;
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Screenshot optimizer pass failed: {}", e.getMessage());
+                try {
+                    Thread.sleep(RESCAN_INTERVAL_MS);
+                } catch (InterruptedException interrupted) {
+                    break;
+                }
+            }
+        }
+        if (optimizedFiles > 0) {
+            LOGGER.info("Recompressed {} screenshots, saving {} KB", optimizedFiles, savedBytes / 1024);
+        }
+    }
+
+    /**
+     * Processes every pending screenshot once.
+     *
+     * @return The number of files processed
+     * @throws IOException If the progress log cannot be read or written
+     */
+    int runOnce() throws IOException {
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        try (OptimizerProgress progress = OptimizerProgress.load(root.resolve(STATE_DIR))) {
+            List<Path> pending = scan(progress);
+            for (Path file : pending) {
+                budget.checkpoint();
+                process(file, progress);
+            }
+            return pending.size();
+        }
+    }
+
+    private List<Path> scan(OptimizerProgress progress) throws IOException {
+        List<Path> pending = new ArrayList<>();
+        long cutoff = System.currentTimeMillis() - minAgeMillis;
+        Files.walkFileTree(root, EnumSet.noneOf(FileVisitOption.class), MAX_DEPTH, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                boolean hidden = !dir.equals(root) && dir.getFileName().toString().startsWith(".");
+                return hidden ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                String name = file.getFileName().toString();
+                if (name.startsWith(".") && name.endsWith(PngOptimizer.TEMP_SUFFIX)) {
+                    // Left behind by a crash or forced exit mid-optimization
+                    Files.deleteIfExists(file);
+                } else if (attrs.isRegularFile() && name.toLowerCase(Locale.ROOT).endsWith(".png")
+                        && attrs.lastModifiedTime().toMillis() <= cutoff
+                        && !progress.isDone(key(file), attrs.size(), attrs.lastModifiedTime().toMillis())) {
+                    pending.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return pending;
+    }
+
+    private void process(Path file, OptimizerProgress progress) throws IOException {
+        try {
+            PngOptimizer.Result result = PngOptimizer.optimize(file, budget::checkpoint);
+            if (result.outcome() == PngOptimizer.Outcome.CHANGED) {
+                return; // Picked up again by the next pass
+            }
+            if (result.outcome() == PngOptimizer.Outcome.OPTIMIZED) {
+                optimizedFiles++;
+                savedBytes += result.originalBytes() - result.finalBytes();
+                LOGGER.debug("Recompressed {}: {} -> {} bytes", file.getFileName(), result.originalBytes(),
+                        result.finalBytes());
+            }
+        } catch (IOException | RuntimeException e) {
+            if (e instanceof CancellationException cancelled) {
+                throw cancelled;
+            }
+            // Corrupt or unreadable; record it so it is not retried every pass
+            LOGGER.debug("Not recompressing {}: {}", file.getFileName(), e.getMessage());
+        }
+
+        if (Files.exists(file)) {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            progress.markDone(key(file), attrs.size(), attrs.lastModifiedTime().toMillis());
+        }
+    }
+
+    private String key(Path file) {
+        return root.relativize(file).toString().replace('\\', '/');
+    }
+}
@@ -0,0 +1,39 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.optimizer;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PixelSource;
+
+/**
+ * Calls a checkpoint before every row, so long-running work can be paused or
+ * slowed down between rows.
+ */
+final class ThrottledPixelSource implements PixelSource {
+
+    private final PixelSource source;
+    private final Runnable checkpoint;
+
+    ThrottledPixelSource(PixelSource source, Runnable checkpoint) {
+        this.source = source;
+        this.checkpoint = checkpoint;
+    }
+
+    @Override
+    public int getWidth() {
+        return source.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return source.getHeight();
+    }
+
+    @Override
+    public int getChannels() {
+        return source.getChannels();
+    }
+
+    @Override
+    public void readRow(int y, byte[] dst, int offset) {
+        checkpoint.run();
+        source.readRow(y, dst, offset);
+    }
+}
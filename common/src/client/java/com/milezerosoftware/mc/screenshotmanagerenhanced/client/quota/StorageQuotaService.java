@@ -0,0 +1,431 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.quota;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog.CatalogEntry;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog.CatalogQuery;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog.ScreenshotCatalog;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.optimizer.ScreenshotOptimizer;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.AdaptiveShards;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.PathTemplate;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ScreenshotPathGenerator;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ConfigManager;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ModConfig;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.RetentionPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps each world's screenshots within its storage limits.
+ *
+ * <p>
+ * When a screenshot's name is chosen, it is {@linkplain #expect expected}
+ * along with its world. Once the write hook reports the file
+ * {@linkplain #onWritten written}, a single background thread adds it to the
+ * {@link UsageLedger} and removes whatever the world's
+ * {@link RetentionPolicy} no longer allows, either by moving it into
+ * {@value #TRASH_DIR} or by deleting it. Only the screenshots being removed
+ * are looked at, so a screenshot costs the same however many are on disk.
+ * </p>
+ *
+ * <p>
+ * The ledger lives in {@code .sme/usage.log} and is trusted as it was left.
+ * It is reconciled with the folder in the background after the game starts:
+ * screenshots deleted or changed in the meantime are corrected with one
+ * {@code stat} each. The first start fills it from the
+ * {@link ScreenshotCatalog}, taking each screenshot's world from the folders
+ * it is grouped into.
+ * </p>
+ */
+public class StorageQuotaService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+
+    /** Where removed screenshots are moved, inside the screenshots folder. */
+    public static final String TRASH_DIR = ".trash";
+
+    private static final long PENDING_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long STOP_TIMEOUT_MS = 2000;
+
+    private static volatile StorageQuotaService instance;
+
+    private final Path root;
+    private final UsageLedger ledger;
+    private final Map<Path, Pending> pending = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor worker;
+    private volatile boolean closing;
+
+    private record Pending(String world, long captureMillis, long createdNanos) {
+    }
+
+    /**
+     * Creates a service for a screenshots folder.
+     *
+     * @param root The screenshots folder
+     */
+    StorageQuotaService(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+        this.ledger = new UsageLedger(
+                this.root.resolve(ScreenshotOptimizer.STATE_DIR).resolve(UsageLedger.FILE_NAME));
+        this.worker = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ScreenshotQuota");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+    }
+
+    /**
+     * Starts the shared service for a screenshots folder, if it is not
+     * running yet, and reconciles its ledger in the background.
+     *
+     * @param screenshotsDir The screenshots folder
+     */
+    public static synchronized void start(Path screenshotsDir) {
+        if (instance != null) {
+            return;
+        }
+        StorageQuotaService service = new StorageQuotaService(screenshotsDir);
+        instance = service;
+        service.worker.execute(() -> {
+            try {
+                ModConfig config = ConfigManager.getInstance();
+                service.reconcile(config, ScreenshotCatalog.getInstance(),
+                        ScreenshotPathGenerator.getTemplate(config));
+            } catch (CancellationException ignored) {
+                // Shutting down
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Could not reconcile screenshot storage usage: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Gets the shared service.
+     *
+     * @return The service, or {@code null} if it was not started
+     */
+    public static StorageQuotaService getInstance() {
+        return instance;
+    }
+
+    /**
+     * Lets queued screenshots be counted, stops a running reconcile and
+     * closes the ledger, if the service was started.
+     */
+    public static void shutdown() {
+        StorageQuotaService service;
+        synchronized (StorageQuotaService.class) {
+            service = instance;
+            instance = null;
+        }
+        if (service != null) {
+            service.close();
+        }
+    }
+
+    /**
+     * Registers a screenshot that should be counted when it is written.
+     * Called on the render thread when the file name is chosen.
+     *
+     * @param file    The screenshot file
+     * @param worldId The world id the screenshot belongs to
+     */
+    public static void expect(Path file, String worldId) {
+        StorageQuotaService service = instance;
+        if (service != null) {
+            service.expectFile(file, worldId, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Counts an {@linkplain #expect expected} screenshot once its file is
+     * complete and applies its world's limits in the background.
+     *
+     * @param file The screenshot file
+     */
+    public static void onWritten(Path file) {
+        StorageQuotaService service = instance;
+        if (service != null && !service.pending.isEmpty()) {
+            service.writtenFile(file);
+        }
+    }
+
+    /**
+     * Keeps a screenshot counted after another part of the mod moved it
+     * within the screenshots folder.
+     *
+     * @param from The path it had
+     * @param to   The path it has now
+     */
+    public static void onMoved(Path from, Path to) {
+        StorageQuotaService service = instance;
+        if (service != null) {
+            service.movedFile(from, to);
+        }
+    }
+
+    void expectFile(Path file, String worldId, long captureMillis) {
+        long now = System.nanoTime();
+        pending.values().removeIf(p -> now - p.createdNanos > PENDING_TIMEOUT_NANOS);
+        pending.put(file.toAbsolutePath().normalize(),
+                new Pending(PathTemplate.sanitize(worldId), captureMillis, now));
+    }
+
+    /**
+     * Takes the size of an expected screenshot while it is still where it was
+     * written, since it may be moved before the worker gets to it.
+     *
+     * @return {@code true} if the file was expected and is queued for
+     *         counting
+     */
+    boolean writtenFile(Path file) {
+        Path path = file.toAbsolutePath().normalize();
+        Pending expected = pending.remove(path);
+        if (expected == null || !path.startsWith(root)) {
+            return false;
+        }
+        long size;
+        try {
+            size = Files.size(path);
+        } catch (IOException e) {
+            LOGGER.debug("Could not count {}: {}", path.getFileName(), e.getMessage());
+            return false;
+        }
+        try {
+            worker.execute(() -> {
+                try {
+                    record(expected.world, path, size, expected.captureMillis, ConfigManager.getInstance());
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.warn("Could not apply storage limits for {}: {}", path.getFileName(), e.getMessage());
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false; // Shutting down
+        }
+    }
+
+    /**
+     * Moves an expected screenshot to the new path, and queues moving a
+     * counted one. The move runs after the screenshot's own counting, which
+     * is queued first.
+     *
+     * @return {@code true} if the move was queued
+     */
+    boolean movedFile(Path from, Path to) {
+        Path source = from.toAbsolutePath().normalize();
+        Path target = to.toAbsolutePath().normalize();
+        if (!source.startsWith(root) || !target.startsWith(root)) {
+            return false;
+        }
+        Pending expected = pending.remove(source);
+        if (expected != null) {
+            pending.put(target, expected);
+        }
+        try {
+            worker.execute(() -> {
+                try {
+                    ledger.move(keyOf(source), keyOf(target));
+                } catch (IOException e) {
+                    LOGGER.warn("Could not record the move of {}: {}", source.getFileName(), e.getMessage());
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false; // Shutting down
+        }
+    }
+
+    /**
+     * Adds a written screenshot to the ledger and applies its world's limits.
+     *
+     * @return The number of screenshots removed
+     */
+    int record(String world, Path file, long captureMillis, ModConfig config) throws IOException {
+        long size;
+        try {
+            size = Files.size(file);
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+        return record(world, file, size, captureMillis, config);
+    }
+
+    /**
+     * Adds a written screenshot of a known size to the ledger and applies its
+     * world's limits.
+     *
+     * @return The number of screenshots removed
+     */
+    int record(String world, Path file, long size, long captureMillis, ModConfig config) throws IOException {
+        ledger.put(new UsageLedger.Tracked(world, keyOf(file), size, captureMillis));
+        return enforce(world, config, System.currentTimeMillis());
+    }
+
+    /**
+     * Removes the screenshots a world has beyond its limits.
+     *
+     * @param world  The sanitized world id
+     * @param config The configuration with the limits
+     * @param now    The current time in epoch milliseconds
+     * @return The number of screenshots removed
+     */
+    int enforce(String world, ModConfig config, long now) throws IOException {
+        int evicted = 0;
+        for (String key : ledger.selectEvictions(world, policyFor(config, world), now)) {
+            if (evict(key, config.retentionUseTrash)) {
+                ledger.remove(key);
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            LOGGER.info("Removed {} screenshots of {} to stay within its storage limits", evicted, world);
+        }
+        return evicted;
+    }
+
+    /**
+     * Brings the ledger in line with the folder, fills it on the first start,
+     * and applies every world's limits.
+     *
+     * @param config   The configuration with the limits
+     * @param catalog  The catalog to fill a new ledger from, or {@code null}
+     * @param template The folder layout, to tell each catalogued screenshot's
+     *                 world
+     * @throws IOException           If the ledger cannot be read or written
+     * @throws CancellationException If the thread is interrupted
+     */
+    void reconcile(ModConfig config, ScreenshotCatalog catalog, PathTemplate template) throws IOException {
+        if (!ledger.load() && catalog != null && template.uses(PathTemplate.Variable.WORLD)) {
+            seed(catalog, template);
+        }
+        int corrected = 0;
+        for (UsageLedger.Tracked tracked : ledger.entries()) {
+            if (closing || Thread.currentThread().isInterrupted()) {
+                throw new CancellationException();
+            }
+            try {
+                long size = Files.size(root.resolve(tracked.key()));
+                if (size != tracked.size()) {
+                    ledger.put(new UsageLedger.Tracked(tracked.world(), tracked.key(), size, tracked.timestamp()));
+                    corrected++;
+                }
+            } catch (NoSuchFileException e) {
+                ledger.remove(tracked.key());
+                corrected++;
+            }
+        }
+        LOGGER.debug("Storage usage reconciled, {} screenshots corrected", corrected);
+        long now = System.currentTimeMillis();
+        for (String world : ledger.worlds()) {
+            enforce(world, config, now);
+        }
+    }
+
+    /**
+     * @param world The sanitized world id
+     * @return The world's current usage
+     */
+    UsageLedger.Usage usage(String world) {
+        return ledger.usage(world);
+    }
+
+    /**
+     * Resolves a world's limits. The ledger knows worlds by their folder
+     * name, so the per-world rule is found by sanitizing its key.
+     */
+    static RetentionPolicy policyFor(ModConfig config, String world) {
+        for (String rawWorldId : config.worldRules.keySet()) {
+            if (PathTemplate.sanitize(rawWorldId).equals(world)) {
+                return config.getRetentionPolicy(rawWorldId);
+            }
+        }
+        return config.getRetentionPolicy(null);
+    }
+
+    private void seed(ScreenshotCatalog catalog, PathTemplate template) throws IOException {
+        catalog.reconcile(); // The catalog may be as new as the ledger
+        int seeded = 0;
+        for (CatalogEntry entry : catalog.query(CatalogQuery.ALL)) {
+            Map<PathTemplate.Variable, String> values = template.match(entry.directory());
+            String world = values != null ? values.get(PathTemplate.Variable.WORLD) : null;
+            if (world != null) {
+                ledger.put(new UsageLedger.Tracked(world, entry.path(), entry.size(), entry.timestamp()));
+                seeded++;
+            }
+        }
+        LOGGER.debug("Storage usage filled from the catalog with {} screenshots", seeded);
+    }
+
+    /**
+     * Moves a screenshot, and its sidecar if it has one, to the trash, or
+     * deletes them, and stops counting it in its shard.
+     *
+     * @return {@code true} if the screenshot is gone
+     */
+    private boolean evict(String key, boolean toTrash) {
+        Path file = root.resolve(key);
+        Path sidecar = MetadataHandler.sidecarFor(file);
+        try {
+            if (toTrash) {
+                Path target = root.resolve(TRASH_DIR).resolve(key);
+                Files.createDirectories(target.getParent());
+                Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+                if (Files.exists(sidecar)) {
+                    Files.move(sidecar, MetadataHandler.sidecarFor(target), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } else {
+                Files.delete(file);
+                Files.deleteIfExists(sidecar);
+            }
+            AdaptiveShards.getInstance().removed(file.getParent(), 1);
+            return true;
+        } catch (NoSuchFileException e) {
+            return true; // Already gone
+        } catch (IOException e) {
+            LOGGER.warn("Could not remove {}: {}", key, e.getMessage());
+            return false;
+        }
+    }
+
+    void close() {
+        // Screenshots still queued are counted; a running reconcile stops early
+        closing = true;
+        worker.shutdown();
+        try {
+            if (!worker.awaitTermination(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                worker.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            worker.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        try {
+            ledger.close();
+        } catch (IOException e) {
+            LOGGER.warn("Could not close the storage usage ledger: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return The ledger key of a normalized path inside the screenshots
+     *         folder
+     */
+    private String keyOf(Path path) {
+        return root.relativize(path).toString().replace('\\', '/');
+    }
+}
@@ -0,0 +1,491 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.quota;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.RetentionPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * How many screenshots each world has and how much space they take up, kept
+ * up to date one screenshot at a time.
+ *
+ * <p>
+ * Every change is a single CRC-checked append to a journal, in the same
+ * record format as the screenshot catalog's, and the counters are adjusted
+ * in place, so recording a screenshot costs the same with 100 files on disk
+ * as with 100,000. Loading replays the journal and drops a record torn by a
+ * crash. Once the journal holds more than twice as many records as there are
+ * screenshots, it is rewritten with one record each and swapped in with an
+ * atomic move.
+ * </p>
+ *
+ * <p>
+ * Each world's screenshots are kept in capture order, in one queue per local
+ * day, so the oldest screenshot of a world or of a day is at the front of a
+ * queue. {@link #selectEvictions} only walks the screenshots it selects.
+ * Removed screenshots are marked rather than taken out of the middle of a
+ * queue, and skipped once they reach its front.
+ * </p>
+ *
+ * <p>
+ * All methods are thread-safe.
+ * </p>
+ */
+final class UsageLedger implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+
+    static final String FILE_NAME = "usage.log";
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final int MIN_COMPACT_RECORDS = 1024;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+
+    /**
+     * A world's totals.
+     *
+     * @param bytes The size of its screenshots
+     * @param files The number of its screenshots
+     */
+    record Usage(long bytes, int files) {
+    }
+
+    /**
+     * One screenshot.
+     *
+     * @param world     The sanitized world id
+     * @param key       The path relative to the screenshots folder, with
+     *                  {@code /} separators
+     * @param size      The file size in bytes
+     * @param timestamp The capture time in epoch milliseconds
+     */
+    record Tracked(String world, String key, long size, long timestamp) {
+    }
+
+    private static final class Node {
+        final Tracked tracked;
+        final long day;
+        boolean removed;
+
+        Node(Tracked tracked) {
+            this.tracked = tracked;
+            this.day = dayOf(tracked.timestamp);
+        }
+    }
+
+    private static final class Day {
+        final ArrayDeque<Node> nodes = new ArrayDeque<>();
+        int live;
+    }
+
+    private static final class World {
+        final TreeMap<Long, Day> days = new TreeMap<>();
+        final Set<Long> touchedDays = new HashSet<>();
+        long bytes;
+        int files;
+        /** The per-day limit every day was last checked against, or 0. */
+        int checkedKeepPerDay;
+    }
+
+    private final Path file;
+    private final Map<String, Node> nodes = new HashMap<>();
+    private final Map<String, World> worlds = new HashMap<>();
+    private boolean loaded;
+    private DataOutputStream journal;
+    private int journalRecords;
+
+    /**
+     * Creates a ledger. Nothing is read until {@link #load()}.
+     *
+     * @param file The journal file
+     */
+    UsageLedger(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the journal, if it has not been read yet.
+     *
+     * @return {@code true} if the ledger existed before, {@code false} if it
+     *         is new and has yet to be filled
+     * @throws IOException If the journal cannot be read or opened for writing
+     */
+    synchronized boolean load() throws IOException {
+        if (loaded) {
+            return true;
+        }
+        boolean existed = Files.exists(file);
+        if (existed) {
+            replay();
+        }
+        Files.createDirectories(file.getParent());
+        openJournal();
+        loaded = true;
+        return existed;
+    }
+
+    /**
+     * Adds a screenshot, or updates it if it is already recorded.
+     *
+     * @param tracked The screenshot
+     * @throws IOException If the journal cannot be written
+     */
+    synchronized void put(Tracked tracked) throws IOException {
+        load();
+        Node existing = nodes.get(tracked.key);
+        if (existing != null && existing.tracked.equals(tracked)) {
+            return;
+        }
+        append(tracked.key, tracked);
+        apply(tracked.key, tracked);
+        compactIfWorthwhile();
+    }
+
+    /**
+     * Removes a screenshot.
+     *
+     * @param key The path relative to the screenshots folder
+     * @return {@code true} if it was recorded
+     * @throws IOException If the journal cannot be written
+     */
+    synchronized boolean remove(String key) throws IOException {
+        load();
+        if (!nodes.containsKey(key)) {
+            return false;
+        }
+        append(key, null);
+        apply(key, null);
+        compactIfWorthwhile();
+        return true;
+    }
+
+    /**
+     * Records that a screenshot moved to another path.
+     *
+     * @param from The old path relative to the screenshots folder
+     * @param to   The new path
+     * @return {@code true} if it was recorded
+     * @throws IOException If the journal cannot be written
+     */
+    synchronized boolean move(String from, String to) throws IOException {
+        load();
+        Node node = nodes.get(from);
+        if (node == null) {
+            return false;
+        }
+        Tracked tracked = node.tracked;
+        remove(from);
+        put(new Tracked(tracked.world, to, tracked.size, tracked.timestamp));
+        return true;
+    }
+
+    /**
+     * @param world The sanitized world id
+     * @return The world's totals
+     */
+    synchronized Usage usage(String world) {
+        World usage = worlds.get(world);
+        return usage != null ? new Usage(usage.bytes, usage.files) : new Usage(0, 0);
+    }
+
+    /**
+     * @return The worlds with at least one screenshot
+     */
+    synchronized Set<String> worlds() {
+        return new HashSet<>(worlds.keySet());
+    }
+
+    /**
+     * @return A copy of every recorded screenshot
+     */
+    synchronized List<Tracked> entries() {
+        List<Tracked> entries = new ArrayList<>(nodes.size());
+        for (Node node : nodes.values()) {
+            entries.add(node.tracked);
+        }
+        return entries;
+    }
+
+    /**
+     * Picks the screenshots a world has to give up to be within its limits:
+     * those beyond the newest {@code keepPerDay} of their day, those older
+     * than {@code maxAgeDays}, and then the oldest until the world is within
+     * its size and file limits. The world's newest screenshot is never
+     * picked. Nothing is removed; remove each screenshot once it is gone.
+     *
+     * @param world  The sanitized world id
+     * @param policy The world's limits
+     * @param now    The current time in epoch milliseconds
+     * @return The screenshots to remove, oldest first where possible
+     */
+    synchronized List<String> selectEvictions(String world, RetentionPolicy policy, long now) {
+        World usage = worlds.get(world);
+        if (usage == null || !policy.isLimited()) {
+            return List.of();
+        }
+        Node newest = newest(usage);
+        Set<Node> selected = new LinkedHashSet<>();
+        long bytes = usage.bytes;
+        int files = usage.files;
+
+        if (policy.keepPerDay() > 0) {
+            // After a change of limit every day is checked once, otherwise
+            // only the days that gained screenshots since the last check
+            Iterable<Long> days = policy.keepPerDay() == usage.checkedKeepPerDay ? usage.touchedDays
+                    : usage.days.keySet();
+            for (long d : days) {
+                Day day = usage.days.get(d);
+                int excess = day != null ? day.live - policy.keepPerDay() : 0;
+                for (Iterator<Node> it = day != null ? day.nodes.iterator() : null; excess > 0 && it.hasNext();) {
+                    Node node = it.next();
+                    if (!node.removed && node != newest) {
+                        selected.add(node);
+                        bytes -= node.tracked.size;
+                        files--;
+                        excess--;
+                    }
+                }
+            }
+            usage.touchedDays.clear();
+            usage.checkedKeepPerDay = policy.keepPerDay();
+        }
+
+        long cutoff = policy.maxAgeDays() > 0 ? now - policy.maxAgeDays() * DAY_MILLIS : Long.MIN_VALUE;
+        for (Day day : usage.days.values()) {
+            boolean done = false;
+            for (Node node : day.nodes) {
+                if (node.removed || selected.contains(node)) {
+                    continue;
+                }
+                boolean tooOld = node.tracked.timestamp < cutoff;
+                boolean overQuota = (policy.maxBytes() > 0 && bytes > policy.maxBytes())
+                        || (policy.maxFiles() > 0 && files > policy.maxFiles());
+                if (node == newest || (!tooOld && !overQuota)) {
+                    done = true;
+                    break;
+                }
+                selected.add(node);
+                bytes -= node.tracked.size;
+                files--;
+            }
+            if (done) {
+                break;
+            }
+        }
+
+        List<String> keys = new ArrayList<>(selected.size());
+        for (Node node : selected) {
+            keys.add(node.tracked.key);
+        }
+        return keys;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    /**
+     * @return The local day of a time, counted from the epoch
+     */
+    static long dayOf(long millis) {
+        int offset = ZoneId.systemDefault().getRules().getOffset(Instant.ofEpochMilli(millis)).getTotalSeconds();
+        return Math.floorDiv(millis + offset * 1000L, DAY_MILLIS);
+    }
+
+    private static Node newest(World usage) {
+        for (Day day : usage.days.descendingMap().values()) {
+            Iterator<Node> it = day.nodes.descendingIterator();
+            while (it.hasNext()) {
+                Node node = it.next();
+                if (!node.removed) {
+                    return node;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void apply(String key, Tracked tracked) {
+        Node previous = tracked != null ? nodes.put(key, new Node(tracked)) : nodes.remove(key);
+        if (previous != null) {
+            unlink(previous);
+        }
+        if (tracked != null) {
+            link(nodes.get(key));
+        }
+    }
+
+    private void link(Node node) {
+        World usage = worlds.computeIfAbsent(node.tracked.world, w -> new World());
+        Day day = usage.days.computeIfAbsent(node.day, d -> new Day());
+        Node last = day.nodes.peekLast();
+        if (last == null || last.tracked.timestamp <= node.tracked.timestamp) {
+            day.nodes.addLast(node);
+        } else {
+            // Recorded out of order, e.g. while seeding; keep the day sorted
+            List<Node> sorted = new ArrayList<>(day.nodes);
+            int i = sorted.size();
+            while (i > 0 && sorted.get(i - 1).tracked.timestamp > node.tracked.timestamp) {
+                i--;
+            }
+            sorted.add(i, node);
+            day.nodes.clear();
+            day.nodes.addAll(sorted);
+        }
+        day.live++;
+        usage.touchedDays.add(node.day);
+        usage.bytes += node.tracked.size;
+        usage.files++;
+    }
+
+    private void unlink(Node node) {
+        node.removed = true;
+        World usage = worlds.get(node.tracked.world);
+        Day day = usage.days.get(node.day);
+        day.live--;
+        usage.bytes -= node.tracked.size;
+        usage.files--;
+        if (day.live == 0) {
+            usage.days.remove(node.day);
+            usage.touchedDays.remove(node.day);
+        } else {
+            while (day.nodes.peekFirst().removed) {
+                day.nodes.pollFirst();
+            }
+        }
+        if (usage.files == 0) {
+            worlds.remove(node.tracked.world);
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Journal
+    // ---------------------------------------------------------------------
+
+    private void openJournal() throws IOException {
+        journal = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+    }
+
+    private void append(String key, Tracked tracked) throws IOException {
+        writeRecord(journal, key, tracked);
+        journal.flush();
+        journalRecords++;
+    }
+
+    private static void writeRecord(DataOutputStream out, String key, Tracked tracked) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeByte(tracked != null ? OP_PUT : OP_REMOVE);
+        data.writeUTF(key);
+        if (tracked != null) {
+            data.writeUTF(tracked.world);
+            data.writeLong(tracked.size);
+            data.writeLong(tracked.timestamp);
+        }
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private void replay() throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+        int valid = 0;
+        while (in.remaining() >= 8) {
+            int length = in.getInt();
+            if (length <= 0 || length > in.remaining() - 4) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            in.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if (in.getInt() != (int) crc.getValue() || !replay(payload)) {
+                break;
+            }
+            valid = in.position();
+            journalRecords++;
+        }
+        if (valid < in.limit()) {
+            // Torn by a crash mid-append; later appends must follow the last good record
+            LOGGER.warn("Dropping {} damaged bytes at the end of the storage usage journal", in.limit() - valid);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+    }
+
+    private boolean replay(byte[] payload) {
+        try {
+            DataInputStream data = new DataInputStream(new ByteArrayInputStream(payload));
+            byte op = data.readByte();
+            String key = data.readUTF();
+            if (op == OP_REMOVE) {
+                apply(key, null);
+                return true;
+            }
+            if (op != OP_PUT) {
+                return false;
+            }
+            apply(key, new Tracked(data.readUTF(), key, data.readLong(), data.readLong()));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Rewrites the journal with one record per screenshot once it is mostly
+     * superseded records.
+     */
+    private void compactIfWorthwhile() throws IOException {
+        if (journalRecords < MIN_COMPACT_RECORDS || journalRecords <= 2 * nodes.size()) {
+            return;
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            for (Node node : nodes.values()) {
+                writeRecord(out, node.tracked.key, node.tracked);
+            }
+        }
+        journal.close();
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        journalRecords = nodes.size();
+        openJournal();
+    }
+}
@@ -0,0 +1,337 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.shard;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.AdaptiveShards;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ScreenshotFileAllocator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Moves the screenshots of over-full folders into time-based shards, for the
+ * {@linkplain AdaptiveShards sharded} folder layout.
+ *
+ * <p>
+ * A folder is rebalanced when it holds at least the threshold number of
+ * screenshots, or already has shards. Each screenshot in it then moves into
+ * the shard for its capture time, read from its name or, failing that, its
+ * modification time, and its sidecar moves along. Shards that received
+ * screenshots are checked in turn. Every file moves with a single rename, so
+ * an interrupted run leaves each file whole in one place or the other, and
+ * the next run carries on. Screenshots changed in the last
+ * {@value #SETTLE_MILLIS} ms may still be being written and are left for the
+ * next run.
+ * </p>
+ */
+public final class ShardRebalancer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+
+    static final long SETTLE_MILLIS = 300_000;
+
+    private static final int MAX_SUFFIX = 1000;
+
+    /**
+     * The outcome of a run.
+     *
+     * @param folders      The folders that were split or found split with
+     *                     screenshots left in them
+     * @param moved        The screenshots moved into shards
+     * @param failed       The screenshots that could not be moved
+     * @param cancelled    Whether the run stopped early
+     * @param elapsedNanos The time taken
+     */
+    public record Result(int folders, int moved, int failed, boolean cancelled, long elapsedNanos) {
+    }
+
+    /** A screenshot on its way into a shard, with its sidecar if it has one. */
+    private record Candidate(Path file, Path sidecar, long time) {
+    }
+
+    /** The screenshots, sidecar names and shards found in a folder. */
+    private record Listing(List<Path> screenshots, Set<String> sidecars, boolean split) {
+        static final Listing EMPTY = new Listing(List.of(), Set.of(), false);
+    }
+
+    private final Path root;
+    private final AdaptiveShards shards;
+    private final BiConsumer<Path, Path> onMoved;
+    private volatile boolean cancelled;
+    private int folders;
+    private int moved;
+    private int failed;
+
+    /**
+     * @param root    The screenshots folder
+     * @param shards  The occupancy tracker to keep up to date
+     * @param onMoved Told the old and new path of each moved screenshot
+     */
+    public ShardRebalancer(Path root, AdaptiveShards shards, BiConsumer<Path, Path> onMoved) {
+        this.root = root;
+        this.shards = shards;
+        this.onMoved = onMoved;
+    }
+
+    /**
+     * Rebalances every base folder: each visible folder directly in the
+     * screenshots folder. The count of each folder listed is handed to the
+     * tracker, so the first screenshot of a session does not list it again.
+     *
+     * @param threshold The number of screenshots a folder holds before it is
+     *                  split
+     * @param now       The current time in epoch milliseconds
+     * @return The outcome
+     */
+    public Result rebalanceAll(int threshold, long now) {
+        long start = System.nanoTime();
+        List<Path> bases = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root)) {
+            for (Path entry : stream) {
+                if (!entry.getFileName().toString().startsWith(".")
+                        && Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                    bases.add(entry);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // No screenshots yet
+        } catch (IOException e) {
+            LOGGER.warn("Failed to list {}: {}", root, e.getMessage());
+        }
+        bases.sort(null);
+        for (Path base : bases) {
+            if (cancelled) {
+                break;
+            }
+            rebalanceFolder(base, 0, threshold, now);
+        }
+        return result(start);
+    }
+
+    /**
+     * Rebalances one folder, and the shards it fills.
+     *
+     * @param directory The folder
+     * @param level     Its level, {@code 0} for a base folder
+     * @param threshold The number of screenshots a folder holds before it is
+     *                  split
+     * @param now       The current time in epoch milliseconds
+     * @return The outcome
+     */
+    public Result rebalance(Path directory, int level, int threshold, long now) {
+        long start = System.nanoTime();
+        rebalanceFolder(directory, level, threshold, now);
+        return result(start);
+    }
+
+    /**
+     * Stops the run after the file being moved.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private Result result(long start) {
+        Result result = new Result(folders, moved, failed, cancelled, System.nanoTime() - start);
+        folders = 0;
+        moved = 0;
+        failed = 0;
+        return result;
+    }
+
+    private void rebalanceFolder(Path directory, int level, int threshold, long now) {
+        if (level >= AdaptiveShards.LEVELS || cancelled) {
+            return;
+        }
+        Listing listing;
+        try {
+            listing = list(directory, level);
+        } catch (IOException e) {
+            LOGGER.debug("Failed to list {}: {}", directory, e.getMessage());
+            return;
+        }
+        if (!listing.split && listing.screenshots.size() < threshold) {
+            shards.seed(directory, listing.screenshots.size(), false);
+            return;
+        }
+        if (listing.screenshots.isEmpty() && listing.sidecars.isEmpty()) {
+            shards.seed(directory, 0, true);
+            return;
+        }
+        List<Candidate> candidates = new ArrayList<>();
+        split(directory, level, listing, candidates, now);
+        distribute(directory, level, candidates, threshold, now);
+    }
+
+    /**
+     * Marks a folder as split and collects the screenshots in it that can
+     * move.
+     */
+    private void split(Path directory, int level, Listing listing, List<Candidate> candidates, long now) {
+        folders++;
+        shards.split(directory);
+        Set<String> orphans = new HashSet<>(listing.sidecars);
+        for (Path file : listing.screenshots) {
+            Path sidecar = MetadataHandler.sidecarFor(file);
+            boolean hasSidecar = orphans.remove(sidecar.getFileName().toString());
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException e) {
+                continue; // Gone since the listing
+            }
+            long modified = attributes.lastModifiedTime().toMillis();
+            if (!attributes.isRegularFile() || now - modified < SETTLE_MILLIS) {
+                continue;
+            }
+            long time = ScreenshotFileAllocator.parseTimestamp(file.getFileName().toString());
+            candidates.add(new Candidate(file, hasSidecar ? sidecar : null, time >= 0 ? time : modified));
+        }
+        moveOrphans(directory, level, orphans);
+    }
+
+    /**
+     * Moves screenshots into the shards of a split folder. A shard that the
+     * screenshots would fill is split first, so each screenshot moves once,
+     * straight into the shard it ends up in.
+     */
+    private void distribute(Path directory, int level, List<Candidate> candidates, int threshold, long now) {
+        Map<String, List<Candidate>> groups = new TreeMap<>();
+        for (Candidate candidate : candidates) {
+            groups.computeIfAbsent(AdaptiveShards.shardName(level, candidate.time), key -> new ArrayList<>())
+                    .add(candidate);
+        }
+        for (Map.Entry<String, List<Candidate>> group : groups.entrySet()) {
+            Path shard = directory.resolve(group.getKey());
+            List<Candidate> members = group.getValue();
+            if (level + 1 < AdaptiveShards.LEVELS) {
+                Listing listing;
+                try {
+                    listing = list(shard, level + 1);
+                } catch (IOException e) {
+                    LOGGER.debug("Failed to list {}: {}", shard, e.getMessage());
+                    listing = Listing.EMPTY;
+                }
+                if (listing.split || listing.screenshots.size() + members.size() >= threshold) {
+                    split(shard, level + 1, listing, members, now);
+                    distribute(shard, level + 1, members, threshold, now);
+                    continue;
+                }
+            }
+            for (Candidate candidate : members) {
+                if (cancelled) {
+                    return;
+                }
+                try {
+                    Path target = move(candidate.file, candidate.sidecar, shard);
+                    moved++;
+                    shards.moved(candidate.file.getParent(), shard);
+                    onMoved.accept(candidate.file, target);
+                } catch (IOException e) {
+                    failed++;
+                    LOGGER.debug("Failed to move {} into {}: {}", candidate.file, shard, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static Listing list(Path directory, int level) throws IOException {
+        List<Path> screenshots = new ArrayList<>();
+        Set<String> sidecars = new HashSet<>();
+        boolean split = false;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path entry : stream) {
+                String name = entry.getFileName().toString();
+                if (AdaptiveShards.isScreenshot(name)) {
+                    screenshots.add(entry);
+                } else if (name.toLowerCase(Locale.ROOT).endsWith(".xmp")) {
+                    sidecars.add(name);
+                } else if (AdaptiveShards.isShardName(level, name)
+                        && Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                    split = true;
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return Listing.EMPTY;
+        }
+        screenshots.sort(null); // Screenshot names sort by time
+        return new Listing(screenshots, sidecars, split);
+    }
+
+    /**
+     * Moves the sidecars whose screenshot already went into a shard, at any
+     * depth, when a run stopped between moving the two.
+     */
+    private static void moveOrphans(Path directory, int level, Set<String> orphans) {
+        for (String name : orphans) {
+            long time = ScreenshotFileAllocator.parseTimestamp(name);
+            if (time < 0) {
+                continue;
+            }
+            String base = name.substring(0, name.lastIndexOf('.'));
+            Path shard = directory;
+            for (int depth = level; depth < AdaptiveShards.LEVELS; depth++) {
+                shard = shard.resolve(AdaptiveShards.shardName(depth, time));
+                if (Files.exists(shard.resolve(base + ".png")) || Files.exists(shard.resolve(base + ".qoi"))) {
+                    try {
+                        Files.move(directory.resolve(name), shard.resolve(name));
+                    } catch (IOException e) {
+                        LOGGER.debug("Failed to move {} to its screenshot: {}", name, e.getMessage());
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves a screenshot, and its sidecar if given, into a shard, adding
+     * {@code _2}, {@code _3}... like vanilla does if the name is taken there.
+     *
+     * @return The screenshot's new path
+     */
+    private static Path move(Path file, Path sidecar, Path shard) throws IOException {
+        Files.createDirectories(shard);
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = name.substring(0, dot);
+        String extension = name.substring(dot);
+        for (int n = 1; n <= MAX_SUFFIX; n++) {
+            String candidate = n == 1 ? base : base + "_" + n;
+            Path sidecarTarget = shard.resolve(candidate + ".xmp");
+            if (sidecar != null && Files.exists(sidecarTarget, LinkOption.NOFOLLOW_LINKS)) {
+                continue;
+            }
+            Path target = shard.resolve(candidate + extension);
+            try {
+                Files.move(file, target);
+            } catch (FileAlreadyExistsException e) {
+                continue;
+            }
+            if (sidecar != null) {
+                try {
+                    Files.move(sidecar, sidecarTarget);
+                } catch (IOException e) {
+                    LOGGER.debug("Failed to move {} along with its screenshot: {}", sidecar, e.getMessage());
+                }
+            }
+            return target;
+        }
+        throw new FileAlreadyExistsException(shard.resolve(name).toString());
+    }
+}
@@ -0,0 +1,191 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.shard;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog.ScreenshotCatalog;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.optimizer.ScreenshotOptimizer;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.quota.StorageQuotaService;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.AdaptiveShards;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ScreenshotPathGenerator;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ConfigManager;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ModConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Rebalances over-full folders in the background while the folder layout is
+ * sharded.
+ *
+ * <p>
+ * A {@link ShardRebalancer} goes over every base folder once per start, when
+ * the layout or the folder size setting changes, and after a migration moved
+ * screenshots. A folder the {@link AdaptiveShards} tracker splits while
+ * screenshots are taken is rebalanced on its own, and a folder it meets for
+ * the first time is counted here. Passes run one at a time on a single
+ * low-priority daemon thread, with the background optimizer
+ * {@linkplain ScreenshotOptimizer#suspend suspended}; moved screenshots stay
+ * counted by the {@link StorageQuotaService}, and the
+ * {@link ScreenshotCatalog} is reconciled afterwards. On exit a running pass
+ * is cancelled; the next start finishes it.
+ * </p>
+ */
+public final class ShardService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+
+    private static final long STOP_TIMEOUT_MS = 5000;
+
+    private static volatile ShardService instance;
+
+    private final Path root;
+    private final ExecutorService executor;
+    private volatile ShardRebalancer running;
+    private boolean scheduledSharded;
+    private int scheduledThreshold;
+
+    private ShardService(Path root) {
+        this.root = root;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ScreenshotShards");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts the shared service, if it is not running yet, and rebalances the
+     * library if the layout is sharded.
+     *
+     * @param screenshotsDir The screenshots folder
+     * @param config         The mod configuration
+     */
+    public static synchronized void start(Path screenshotsDir, ModConfig config) {
+        if (instance != null) {
+            return;
+        }
+        ShardService service = new ShardService(screenshotsDir);
+        instance = service;
+        AdaptiveShards.getInstance().setSplitListener(service::onSplit);
+        // Folders first seen while taking a screenshot are listed here, not on the render thread
+        AdaptiveShards.getInstance().setCounter(service.executor);
+        service.schedule(config);
+    }
+
+    /**
+     * Rebalances the library after the layout or the folder size setting
+     * changed to a sharded layout.
+     *
+     * @param config The configuration now in use
+     */
+    public static synchronized void onConfigChanged(ModConfig config) {
+        if (instance != null) {
+            instance.schedule(config);
+        }
+    }
+
+    /**
+     * Rebalances the library after a migration moved screenshots into it, if
+     * the layout is sharded.
+     */
+    public static synchronized void onLibraryMoved() {
+        ShardService service = instance;
+        ModConfig config = ConfigManager.getInstance();
+        if (service != null && ScreenshotPathGenerator.getTemplate(config).isSharded()) {
+            service.submit(rebalancer -> rebalancer.rebalanceAll(config.adaptiveShardThreshold,
+                    System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Stops the shared service. A pass in progress stops after the file being
+     * moved.
+     */
+    public static void shutdown() {
+        ShardService service;
+        synchronized (ShardService.class) {
+            service = instance;
+            instance = null;
+        }
+        if (service == null) {
+            return;
+        }
+        AdaptiveShards.getInstance().setSplitListener(null);
+        AdaptiveShards.getInstance().setCounter(null);
+        ShardRebalancer rebalancer = service.running;
+        if (rebalancer != null) {
+            rebalancer.cancel();
+        }
+        service.executor.shutdownNow();
+        try {
+            service.executor.awaitTermination(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void schedule(ModConfig config) {
+        boolean sharded = ScreenshotPathGenerator.getTemplate(config).isSharded();
+        int threshold = config.adaptiveShardThreshold;
+        boolean unchanged = sharded == scheduledSharded && threshold == scheduledThreshold;
+        scheduledSharded = sharded;
+        scheduledThreshold = threshold;
+        if (sharded && !unchanged) {
+            submit(rebalancer -> rebalancer.rebalanceAll(threshold, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Called by the tracker, on the thread that took the screenshot.
+     */
+    private void onSplit(Path directory, int level) {
+        submit(rebalancer -> rebalancer.rebalance(directory, level,
+                ConfigManager.getInstance().adaptiveShardThreshold, System.currentTimeMillis()));
+    }
+
+    private void submit(Function<ShardRebalancer, ShardRebalancer.Result> pass) {
+        try {
+            executor.execute(() -> {
+                try {
+                    run(pass);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Screenshot folder rebalancing failed: {}", e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    private void run(Function<ShardRebalancer, ShardRebalancer.Result> pass) {
+        ShardRebalancer rebalancer = new ShardRebalancer(root, AdaptiveShards.getInstance(),
+                StorageQuotaService::onMoved);
+        Runnable restartOptimizer = ScreenshotOptimizer.suspend();
+        running = rebalancer;
+        try {
+            ShardRebalancer.Result result = pass.apply(rebalancer);
+            if (result.moved() > 0 || result.failed() > 0) {
+                LOGGER.info("Moved {} screenshots from {} full folders into shards in {} ms ({} failed){}",
+                        result.moved(), result.folders(), result.elapsedNanos() / 1_000_000, result.failed(),
+                        result.cancelled() ? ", to be continued next start" : "");
+            }
+            ScreenshotCatalog catalog = ScreenshotCatalog.getInstance();
+            if (catalog != null && result.moved() > 0) {
+                catalog.reconcile();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to update the screenshot catalog after rebalancing: {}", e.getMessage());
+        } finally {
+            running = null;
+            if (instance == this) {
+                restartOptimizer.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.thumbnail;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A thumbnail stored in a {@link ThumbnailPack}.
+ *
+ * @param width  The thumbnail width in pixels
+ * @param height The thumbnail height in pixels
+ * @param png    The PNG-encoded thumbnail: a read-only view of the pack's
+ *               memory mapping, valid for as long as it is referenced
+ */
+public record Thumbnail(int width, int height, ByteBuffer png) {
+}
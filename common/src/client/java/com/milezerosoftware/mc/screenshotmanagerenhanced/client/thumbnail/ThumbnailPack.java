@@ -0,0 +1,441 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.thumbnail;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * The thumbnails of one world, appended to a single pack file.
+ *
+ * <p>
+ * The pack is {@code N.pack} in the world's thumbnail directory: an 8-byte
+ * header followed by one record per thumbnail,
+ * {@code [int length][short key length][key][short width][short height][PNG][int CRC]},
+ * where the length and CRC cover everything between them. A thumbnail is
+ * never rewritten in place; storing it again appends a new record that
+ * supersedes the old one.
+ * </p>
+ *
+ * <p>
+ * Opening the pack walks the record headers once to build the in-memory
+ * index of offsets by screenshot path. Reads go through a read-only mapping
+ * of the file, so {@link #get} returns a view of the mapped bytes without a
+ * system call or copy. A record torn by a crash fails its CRC or runs past
+ * the end of the file, and is cut off when the pack is next opened.
+ * </p>
+ *
+ * <p>
+ * {@linkplain #compact Compaction} copies the records still wanted into pack
+ * {@code N+1}, leaving out superseded records and those of deleted
+ * screenshots. The old pack may still be mapped by earlier
+ * {@link Thumbnail}s, so it is deleted where the platform allows and
+ * otherwise on a later open. All methods are thread-safe.
+ * </p>
+ */
+public class ThumbnailPack implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+
+    static final int MAGIC = 0x534D4554; // "SMET"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final String SUFFIX = ".pack";
+
+    private final Path dir;
+    private boolean loaded;
+    private long generation;
+    private FileChannel channel;
+    /** Read-only mapping of the pack, remapped when a record lies beyond it. */
+    private ByteBuffer mapped;
+    /** Offset of every thumbnail's latest record, by screenshot path. */
+    private final Map<String, Long> offsets = new HashMap<>();
+    private long end;
+    private long liveBytes;
+
+    /**
+     * Creates the pack stored in a directory. Nothing is read until the pack
+     * is first used.
+     *
+     * @param dir The world's thumbnail directory
+     */
+    public ThumbnailPack(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Appends a thumbnail, superseding any stored for the same screenshot.
+     *
+     * @param key    The screenshot path relative to the screenshots folder
+     * @param width  The thumbnail width
+     * @param height The thumbnail height
+     * @param png    The PNG-encoded thumbnail
+     * @throws IOException If the pack cannot be written
+     */
+    public synchronized void put(String key, int width, int height, byte[] png) throws IOException {
+        ensureLoaded();
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > 0xFFFF || width > 0xFFFF || height > 0xFFFF) {
+            throw new IllegalArgumentException("Thumbnail record out of range: " + key);
+        }
+        int bodyLength = 2 + keyBytes.length + 4 + png.length;
+        int recordLength = 4 + bodyLength + 4;
+        if (end + recordLength > Integer.MAX_VALUE) {
+            throw new IOException("Thumbnail pack is full: " + dir.getFileName());
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(recordLength);
+        record.putInt(bodyLength);
+        record.putShort((short) keyBytes.length).put(keyBytes);
+        record.putShort((short) width).putShort((short) height);
+        record.put(png);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, bodyLength);
+        record.putInt((int) crc.getValue());
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record, end + record.position());
+        }
+
+        Long previous = offsets.put(key, end);
+        if (previous != null) {
+            liveBytes -= recordLength(previous);
+        }
+        liveBytes += recordLength;
+        end += recordLength;
+    }
+
+    /**
+     * Looks up a thumbnail.
+     *
+     * @param key The screenshot path relative to the screenshots folder
+     * @return The thumbnail, or {@code null} if none is stored or its record is
+     *         damaged
+     * @throws IOException If the pack cannot be opened or mapped
+     */
+    public synchronized Thumbnail get(String key) throws IOException {
+        ensureLoaded();
+        Long offset = offsets.get(key);
+        if (offset == null) {
+            return null;
+        }
+        int pos = offset.intValue();
+        int bodyLength = mapping(pos + 4).getInt(pos);
+        ByteBuffer buf = mapping(pos + 4 + bodyLength + 4);
+
+        CRC32 crc = new CRC32();
+        crc.update(buf.slice(pos + 4, bodyLength));
+        if (buf.getInt(pos + 4 + bodyLength) != (int) crc.getValue()) {
+            LOGGER.warn("Damaged thumbnail of {} in {}", key, dir.getFileName());
+            return null;
+        }
+        int keyLength = buf.getShort(pos + 4) & 0xFFFF;
+        int header = 4 + 2 + keyLength;
+        return new Thumbnail(buf.getShort(pos + header) & 0xFFFF, buf.getShort(pos + header + 2) & 0xFFFF,
+                buf.slice(pos + header + 4, bodyLength - 2 - keyLength - 4).asReadOnlyBuffer());
+    }
+
+    /**
+     * @param key The screenshot path relative to the screenshots folder
+     * @return {@code true} if a thumbnail is stored for the screenshot
+     * @throws IOException If the pack cannot be opened
+     */
+    public synchronized boolean contains(String key) throws IOException {
+        ensureLoaded();
+        return offsets.containsKey(key);
+    }
+
+    /**
+     * @return The paths of the screenshots with a stored thumbnail
+     * @throws IOException If the pack cannot be opened
+     */
+    public synchronized Set<String> keys() throws IOException {
+        ensureLoaded();
+        return Set.copyOf(offsets.keySet());
+    }
+
+    /**
+     * @return The number of stored thumbnails
+     * @throws IOException If the pack cannot be opened
+     */
+    public synchronized int size() throws IOException {
+        ensureLoaded();
+        return offsets.size();
+    }
+
+    /**
+     * @return The size of the pack file in bytes
+     * @throws IOException If the pack cannot be opened
+     */
+    public synchronized long fileSize() throws IOException {
+        ensureLoaded();
+        return end;
+    }
+
+    /**
+     * Computes how much compacting with a filter would save.
+     *
+     * @param keep Whether the thumbnail of a screenshot is still wanted
+     * @return The bytes held by superseded records and unwanted thumbnails
+     * @throws IOException If the pack cannot be opened
+     */
+    public synchronized long reclaimableBytes(Predicate<String> keep) throws IOException {
+        ensureLoaded();
+        long reclaimable = end - HEADER_SIZE - liveBytes;
+        for (Map.Entry<String, Long> entry : offsets.entrySet()) {
+            if (!keep.test(entry.getKey())) {
+                reclaimable += recordLength(entry.getValue());
+            }
+        }
+        return reclaimable;
+    }
+
+    /**
+     * Rewrites the pack with the latest record of every wanted thumbnail, in
+     * their current order.
+     *
+     * @param keep Whether the thumbnail of a screenshot is still wanted
+     * @return The number of thumbnails dropped
+     * @throws IOException If the new pack cannot be written; the current one
+     *                     is left in use
+     */
+    public synchronized int compact(Predicate<String> keep) throws IOException {
+        ensureLoaded();
+        List<Map.Entry<String, Long>> records = new ArrayList<>(offsets.entrySet());
+        records.sort(Map.Entry.comparingByValue());
+
+        long next = generation + 1;
+        Path temp = dir.resolve(next + SUFFIX + ".tmp");
+        Map<String, Long> compacted = new HashMap<>();
+        int dropped = 0;
+        long pos = HEADER_SIZE;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(out);
+            out.position(HEADER_SIZE);
+            for (Map.Entry<String, Long> record : records) {
+                if (!keep.test(record.getKey())) {
+                    dropped++;
+                    continue;
+                }
+                long length = recordLength(record.getValue());
+                transferFully(channel, record.getValue(), length, out);
+                compacted.put(record.getKey(), pos);
+                pos += length;
+            }
+            out.force(true);
+        }
+        Path target = dir.resolve(next + SUFFIX);
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        FileChannel opened = FileChannel.open(target, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.close();
+        channel = opened;
+        mapped = null;
+        generation = next;
+        offsets.clear();
+        offsets.putAll(compacted);
+        end = pos;
+        liveBytes = pos - HEADER_SIZE;
+        deleteOtherGenerations();
+        return dropped;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        mapped = null;
+        offsets.clear();
+        loaded = false;
+    }
+
+    // ---------------------------------------------------------------------
+    // Loading
+    // ---------------------------------------------------------------------
+
+    private void ensureLoaded() throws IOException {
+        if (loaded) {
+            return;
+        }
+        Files.createDirectories(dir);
+        generation = latestGeneration();
+        Path file = dir.resolve(generation + SUFFIX);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE || !hasValidHeader()) {
+                if (size > 0) {
+                    LOGGER.warn("Discarding unreadable thumbnail pack {}", dir.getFileName());
+                }
+                channel.truncate(0);
+                writeHeader(channel);
+                end = HEADER_SIZE;
+            } else {
+                end = size;
+                readIndex();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            channel = null;
+            offsets.clear();
+            throw e;
+        }
+        deleteOtherGenerations();
+        loaded = true;
+    }
+
+    private boolean hasValidHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // Positional reads until the header is complete
+        }
+        return header.getInt(0) == MAGIC && header.getInt(4) == VERSION;
+    }
+
+    /**
+     * Builds the index from the record headers and cuts off a damaged tail.
+     */
+    private void readIndex() throws IOException {
+        ByteBuffer buf = mapping(end);
+        int pos = HEADER_SIZE;
+        int last = -1;
+        liveBytes = 0;
+        while (pos + 4 <= end) {
+            int bodyLength = buf.getInt(pos);
+            if (bodyLength < 6 || (long) pos + 4 + bodyLength + 4 > end) {
+                break;
+            }
+            int keyLength = buf.getShort(pos + 4) & 0xFFFF;
+            if (2 + keyLength + 4 > bodyLength) {
+                break;
+            }
+            byte[] key = new byte[keyLength];
+            buf.get(pos + 6, key);
+            Long previous = offsets.put(new String(key, StandardCharsets.UTF_8), (long) pos);
+            if (previous != null) {
+                liveBytes -= recordLength(previous);
+            }
+            liveBytes += 4 + bodyLength + 4;
+            last = pos;
+            pos += 4 + bodyLength + 4;
+        }
+
+        // Appends are not synced, so only the newest record can be half-written
+        if (last >= 0 && !crcMatches(buf, last)) {
+            offsets.values().remove((long) last);
+            liveBytes -= recordLength(last);
+            pos = last;
+        }
+        if (pos < end) {
+            LOGGER.warn("Dropping {} damaged bytes at the end of thumbnail pack {}", end - pos, dir.getFileName());
+            channel.truncate(pos);
+            end = pos;
+            mapped = null;
+        }
+    }
+
+    private static boolean crcMatches(ByteBuffer buf, int pos) {
+        int bodyLength = buf.getInt(pos);
+        CRC32 crc = new CRC32();
+        crc.update(buf.slice(pos + 4, bodyLength));
+        return buf.getInt(pos + 4 + bodyLength) == (int) crc.getValue();
+    }
+
+    /**
+     * @return A mapping of the pack that covers at least {@code minSize} bytes
+     */
+    private ByteBuffer mapping(long minSize) throws IOException {
+        if (mapped == null || mapped.capacity() < minSize) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+        }
+        return mapped;
+    }
+
+    private long recordLength(long offset) throws IOException {
+        return 4L + mapping(offset + 4).getInt((int) offset) + 4;
+    }
+
+    private static void writeHeader(FileChannel out) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            out.write(header, header.position());
+        }
+    }
+
+    private static void transferFully(FileChannel in, long position, long count, FileChannel out)
+            throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long transferred = in.transferTo(position, end - position, out);
+            if (transferred <= 0) {
+                throw new IOException("Unexpected end of thumbnail pack at byte " + position);
+            }
+            position += transferred;
+        }
+    }
+
+    private long latestGeneration() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path file : files) {
+                long gen = generationOf(file);
+                if (gen >= 0) {
+                    generations.add(gen);
+                }
+            }
+        }
+        return generations.stream().max(Comparator.naturalOrder()).orElse(0L);
+    }
+
+    private void deleteOtherGenerations() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                if (generationOf(file) != generation) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        // Still mapped on some platforms; removed on a later open
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Could not clean up old thumbnail packs: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return The generation in a pack file name, or {@code -1}
+     */
+    private static long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
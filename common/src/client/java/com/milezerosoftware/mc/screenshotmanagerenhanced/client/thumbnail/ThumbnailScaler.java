@@ -0,0 +1,108 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.thumbnail;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.ByteArrayPixelSource;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PixelSource;
+
+/**
+ * Box-filter downscaling of a screenshot to thumbnail size.
+ *
+ * <p>
+ * Every output pixel is the average of the source pixels it covers. Each
+ * source row is read once, and the run of pixels under each output column is
+ * summed in registers before being added to that column's totals, so the cost
+ * is one addition per source channel with no floating point. Alpha is dropped; screenshots are opaque.
+ * </p>
+ */
+public final class ThumbnailScaler {
+
+    private ThumbnailScaler() {
+    }
+
+    /**
+     * Scales an image down so that its longer side is at most
+     * {@code maxSize}, keeping the aspect ratio. Smaller images are copied at
+     * their own size.
+     *
+     * @param source  The pixels to scale, with 1 to 4 channels
+     * @param maxSize The maximum width and height of the result
+     * @return The thumbnail as packed RGB
+     */
+    public static ByteArrayPixelSource downscale(PixelSource source, int maxSize) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int channels = source.getChannels();
+        int outWidth;
+        int outHeight;
+        if (width >= height) {
+            outWidth = Math.min(maxSize, width);
+            outHeight = (int) Math.max(1, Math.min(height, Math.round((double) height * outWidth / width)));
+        } else {
+            outHeight = Math.min(maxSize, height);
+            outWidth = (int) Math.max(1, Math.min(width, Math.round((double) width * outHeight / height)));
+        }
+
+        // Output column c averages source columns starts[c] until starts[c + 1]
+        int[] starts = new int[outWidth + 1];
+        for (int c = 0; c <= outWidth; c++) {
+            starts[c] = (int) (((long) c * width + outWidth - 1) / outWidth);
+        }
+
+        byte[] row = new byte[source.getRowBytes()];
+        int[] sums = new int[outWidth * 3];
+        byte[] out = new byte[outWidth * outHeight * 3];
+        int outRow = 0;
+        int rows = 0;
+        for (int y = 0; y < height; y++) {
+            int target = (int) ((long) y * outHeight / height);
+            if (target != outRow) {
+                flush(sums, starts, rows, out, outRow * outWidth * 3);
+                outRow = target;
+                rows = 0;
+            }
+            source.readRow(y, row, 0);
+            int i = 0;
+            for (int c = 0, o = 0; c < outWidth; c++, o += 3) {
+                int r = 0;
+                int g = 0;
+                int b = 0;
+                if (channels >= 3) {
+                    for (int x = starts[c]; x < starts[c + 1]; x++, i += channels) {
+                        r += row[i] & 0xFF;
+                        g += row[i + 1] & 0xFF;
+                        b += row[i + 2] & 0xFF;
+                    }
+                } else {
+                    for (int x = starts[c]; x < starts[c + 1]; x++, i += channels) {
+                        r += row[i] & 0xFF;
+                    }
+                    g = r;
+                    b = r;
+                }
+                sums[o] += r;
+                sums[o + 1] += g;
+                sums[o + 2] += b;
+            }
+            rows++;
+        }
+        flush(sums, starts, rows, out, outRow * outWidth * 3);
+        return new ByteArrayPixelSource(out, outWidth, outHeight, 3);
+    }
+
+    /**
+     * Writes one output row as the rounded averages of the sums, then clears
+     * them.
+     */
+    private static void flush(int[] sums, int[] starts, int rows, byte[] out, int offset) {
+        for (int x = 0; x < starts.length - 1; x++) {
+            int count = (starts[x + 1] - starts[x]) * rows;
+            int half = count >> 1;
+            int o = x * 3;
+            out[offset + o] = (byte) ((sums[o] + half) / count);
+            out[offset + o + 1] = (byte) ((sums[o + 1] + half) / count);
+            out[offset + o + 2] = (byte) ((sums[o + 2] + half) / count);
+            sums[o] = 0;
+            sums[o + 1] = 0;
+            sums[o + 2] = 0;
+        }
+    }
+}
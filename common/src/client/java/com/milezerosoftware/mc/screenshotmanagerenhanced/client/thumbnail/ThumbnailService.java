@@ -0,0 +1,414 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.thumbnail;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.ByteArrayPixelSource;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PixelSource;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PngEncoder;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PngReader;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.optimizer.ScreenshotOptimizer;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.PathTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Produces a thumbnail of every screenshot as it is captured and stores it in
+ * its world's {@link ThumbnailPack}.
+ *
+ * <p>
+ * When a screenshot's name is chosen, it is {@linkplain #expect expected}
+ * along with its world. The write hook then hands over the pixels while they
+ * are still in memory, on the thread that writes the file, and the image is
+ * {@linkplain ThumbnailScaler box-filtered} down to {@value #MAX_SIZE}
+ * pixels there. Encoding and appending the small result happen on a single
+ * background thread, so neither the render thread nor the screenshot write
+ * waits on the pack. If that thread falls behind, further thumbnails are
+ * skipped rather than queued without bound.
+ * </p>
+ *
+ * <p>
+ * Packs live in {@code .sme/thumbnails/<world>/}. Each start checks them for
+ * records of deleted screenshots and compacts those where it is worthwhile.
+ * </p>
+ */
+public class ThumbnailService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+
+    /** The longer side of a thumbnail, in pixels. */
+    public static final int MAX_SIZE = 256;
+
+    static final String DIRECTORY = "thumbnails";
+
+    private static final int QUEUE_CAPACITY = 16;
+    private static final long PENDING_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long STOP_TIMEOUT_MS = 2000;
+    /** Compact once this many bytes, and a quarter of the pack, can be reclaimed. */
+    private static final long MIN_RECLAIM_BYTES = 1024 * 1024;
+
+    private static volatile ThumbnailService instance;
+
+    private final Path root;
+    private final Path packsDir;
+    private final Map<Path, Pending> pending = new ConcurrentHashMap<>();
+    private final Map<String, ThumbnailPack> packs = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor writer;
+
+    private record Pending(String world, long createdNanos) {
+    }
+
+    /**
+     * Creates a service for a screenshots folder.
+     *
+     * @param root The screenshots folder
+     */
+    ThumbnailService(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+        this.packsDir = this.root.resolve(ScreenshotOptimizer.STATE_DIR).resolve(DIRECTORY);
+        this.writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, "ScreenshotThumbnails");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+    }
+
+    /**
+     * Starts the shared service for a screenshots folder, if it is not
+     * running yet, and compacts its packs in the background.
+     *
+     * @param screenshotsDir The screenshots folder
+     */
+    public static synchronized void start(Path screenshotsDir) {
+        if (instance != null) {
+            return;
+        }
+        ThumbnailService service = new ThumbnailService(screenshotsDir);
+        instance = service;
+        service.writer.execute(service::compactAll);
+    }
+
+    /**
+     * Gets the shared service.
+     *
+     * @return The service, or {@code null} if it was not started
+     */
+    public static ThumbnailService getInstance() {
+        return instance;
+    }
+
+    /**
+     * Lets queued thumbnails finish writing and closes the packs, if the
+     * service was started.
+     */
+    public static void shutdown() {
+        ThumbnailService service;
+        synchronized (ThumbnailService.class) {
+            service = instance;
+            instance = null;
+        }
+        if (service != null) {
+            service.close();
+        }
+    }
+
+    /**
+     * Registers a screenshot whose thumbnail should be taken when it is
+     * written. Called on the render thread when the file name is chosen.
+     *
+     * @param file    The screenshot file
+     * @param worldId The sanitized world id the screenshot belongs to
+     */
+    public static void expect(Path file, String worldId) {
+        ThumbnailService service = instance;
+        if (service != null) {
+            service.expectFile(file, worldId);
+        }
+    }
+
+    /**
+     * @param file The path being written
+     * @return {@code true} if a thumbnail is expected for the file
+     */
+    public static boolean isExpected(Path file) {
+        ThumbnailService service = instance;
+        return service != null && !service.pending.isEmpty()
+                && service.pending.containsKey(file.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Takes the thumbnail of an {@linkplain #expect expected} screenshot.
+     * The pixels are only read during this call.
+     *
+     * @param source The screenshot's pixels
+     * @param file   The screenshot file
+     */
+    public static void capture(PixelSource source, Path file) {
+        ThumbnailService service = instance;
+        if (service != null) {
+            service.captureFile(source, file);
+        }
+    }
+
+    /**
+     * Files a screenshot's thumbnail under its new path after the screenshot
+     * was moved, e.g. folded away as a near-duplicate. The thumbnail may
+     * still be waiting to be stored, so the move is queued behind it.
+     *
+     * @param from The screenshot's old path
+     * @param to   Its new path
+     */
+    public static void onMoved(Path from, Path to) {
+        ThumbnailService service = instance;
+        if (service != null) {
+            service.movedFile(from, to);
+        }
+    }
+
+    void expectFile(Path file, String worldId) {
+        long now = System.nanoTime();
+        pending.values().removeIf(p -> now - p.createdNanos > PENDING_TIMEOUT_NANOS);
+        pending.put(file.toAbsolutePath().normalize(), new Pending(worldId, now));
+    }
+
+    /**
+     * Downscales the pixels on the calling thread and queues the thumbnail
+     * for storing.
+     *
+     * @return {@code true} if the thumbnail was queued
+     */
+    boolean captureFile(PixelSource source, Path file) {
+        Path path = file.toAbsolutePath().normalize();
+        Pending expected = pending.remove(path);
+        if (expected == null || !path.startsWith(root)) {
+            return false;
+        }
+        String key = keyOf(path);
+        ByteArrayPixelSource thumbnail;
+        try {
+            thumbnail = ThumbnailScaler.downscale(source, MAX_SIZE);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not scale the thumbnail of {}: {}", file.getFileName(), e.getMessage());
+            return false;
+        }
+        try {
+            writer.execute(() -> store(expected.world, key, thumbnail));
+            return true;
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Skipping the thumbnail of {}: writer is busy", file.getFileName());
+            return false;
+        }
+    }
+
+    /**
+     * Moves an expected thumbnail to the new path, and queues moving a stored
+     * one.
+     *
+     * @return {@code true} if the move was queued
+     */
+    boolean movedFile(Path from, Path to) {
+        Path source = from.toAbsolutePath().normalize();
+        Path target = to.toAbsolutePath().normalize();
+        if (!source.startsWith(root) || !target.startsWith(root)) {
+            return false;
+        }
+        Pending expected = pending.remove(source);
+        if (expected != null) {
+            pending.put(target, expected);
+        }
+        String fromKey = keyOf(source);
+        String toKey = keyOf(target);
+        try {
+            writer.execute(() -> move(fromKey, toKey));
+            return true;
+        } catch (RejectedExecutionException e) {
+            // Taken from the file again when it is next shown
+            LOGGER.debug("Skipping moving the thumbnail of {}: writer is busy", fromKey);
+            return false;
+        }
+    }
+
+    /**
+     * Gets the pack of a world, opening it on first use.
+     *
+     * @param worldId The sanitized world id
+     * @return The world's pack
+     */
+    public ThumbnailPack getPack(String worldId) {
+        return packs.computeIfAbsent(directoryName(worldId), name -> new ThumbnailPack(packsDir.resolve(name)));
+    }
+
+    /**
+     * Looks up the thumbnail of a screenshot.
+     *
+     * @param worldId The sanitized world id the screenshot belongs to
+     * @param file    The screenshot file
+     * @return The thumbnail, or {@code null} if none is stored
+     * @throws IOException If the pack cannot be read
+     */
+    public Thumbnail get(String worldId, Path file) throws IOException {
+        Path path = file.toAbsolutePath().normalize();
+        if (!path.startsWith(root)) {
+            return null;
+        }
+        return getPack(worldId).get(keyOf(path));
+    }
+
+    /**
+     * Looks up the thumbnail of a screenshot, and takes it from the file if
+     * none is stored, e.g. for screenshots from before thumbnails were kept.
+     * Decoding the file is slow, so this should not be called on the render
+     * thread.
+     *
+     * @param worldId The sanitized world id the screenshot belongs to
+     * @param file    The screenshot file
+     * @return The thumbnail, or {@code null} if none is stored and the file
+     *         is not a readable PNG
+     * @throws IOException If the pack cannot be read or written
+     */
+    public Thumbnail getOrCreate(String worldId, Path file) throws IOException {
+        Thumbnail thumbnail = get(worldId, file);
+        Path path = file.toAbsolutePath().normalize();
+        if (thumbnail != null || !path.startsWith(root) || !path.getFileName().toString().endsWith(".png")) {
+            return thumbnail;
+        }
+        ByteArrayPixelSource scaled;
+        try (PngReader reader = new PngReader(path)) {
+            if (!reader.isSupported()) {
+                return null;
+            }
+            scaled = ThumbnailScaler.downscale(reader, MAX_SIZE);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        String key = keyOf(path);
+        ThumbnailPack pack = getPack(worldId);
+        pack.put(key, scaled.getWidth(), scaled.getHeight(), encode(scaled));
+        return pack.get(key);
+    }
+
+    private void store(String world, String key, ByteArrayPixelSource thumbnail) {
+        try {
+            getPack(world).put(key, thumbnail.getWidth(), thumbnail.getHeight(), encode(thumbnail));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not store the thumbnail of {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Stores a thumbnail again under a new key, in the open pack that has
+     * it. The old record is dropped when the pack is next compacted.
+     */
+    private void move(String from, String to) {
+        for (ThumbnailPack pack : packs.values()) {
+            try {
+                Thumbnail thumbnail = pack.get(from);
+                if (thumbnail != null) {
+                    byte[] png = new byte[thumbnail.png().remaining()];
+                    thumbnail.png().get(png);
+                    pack.put(to, thumbnail.width(), thumbnail.height(), png);
+                    return;
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Could not move the thumbnail of {}: {}", from, e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private static byte[] encode(ByteArrayPixelSource thumbnail) throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream(thumbnail.getRowBytes() * thumbnail.getHeight() / 2);
+        new PngEncoder().encode(thumbnail, png);
+        return png.toByteArray();
+    }
+
+    /**
+     * Compacts every world's pack that holds enough thumbnails of deleted
+     * screenshots or superseded records.
+     *
+     * @return The number of thumbnails dropped
+     */
+    int compactAll() {
+        if (!Files.isDirectory(packsDir)) {
+            return 0;
+        }
+        int dropped = 0;
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(packsDir, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                dropped += compact(getPack(dir.getFileName().toString()));
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not compact thumbnail packs: {}", e.getMessage());
+        }
+        return dropped;
+    }
+
+    private int compact(ThumbnailPack pack) throws IOException {
+        // Checked outside the pack's lock; thumbnails stored meanwhile are kept
+        Set<String> deleted = new HashSet<>();
+        for (String key : pack.keys()) {
+            if (!Files.exists(root.resolve(key))) {
+                deleted.add(key);
+            }
+        }
+        long reclaimable = pack.reclaimableBytes(key -> !deleted.contains(key));
+        if (reclaimable < MIN_RECLAIM_BYTES || reclaimable < pack.fileSize() / 4) {
+            return 0;
+        }
+        int dropped = pack.compact(key -> !deleted.contains(key));
+        LOGGER.debug("Compacted a thumbnail pack, dropping {} thumbnails and {} KB", dropped, reclaimable / 1024);
+        return dropped;
+    }
+
+    void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writer.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        for (ThumbnailPack pack : packs.values()) {
+            try {
+                pack.close();
+            } catch (IOException e) {
+                LOGGER.warn("Could not close a thumbnail pack: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return The pack key of a normalized path inside the screenshots folder
+     */
+    private String keyOf(Path path) {
+        return root.relativize(path).toString().replace('\\', '/');
+    }
+
+    /**
+     * @return A directory name for a world that cannot climb out of the
+     *         thumbnails directory
+     */
+    private static String directoryName(String worldId) {
+        String name = PathTemplate.sanitize(worldId);
+        return name.isEmpty() || name.startsWith(".") ? "_" + name : name;
+    }
+}
@@ -0,0 +1,386 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.tool;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler.ScreenshotMetadata;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.PathTemplate;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.PathTemplate.Variable;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ScreenshotPathGenerator;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ConfigManager;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.GroupingMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Embeds or refreshes the {@code mc:} XMP metadata of an existing screenshot
+ * library without starting the game.
+ *
+ * <p>
+ * Every screenshot is read back the way {@link MetadataHandler#readMetadata}
+ * does, from the chunk headers before the image data, so files that are
+ * already up to date cost one small read. Values the metadata lacks are
+ * taken from the folders the screenshot sits in, matched against the
+ * library's path template with {@link PathTemplate#match}: the world, the
+ * dimension and the biome. A file is only rewritten when that changes its
+ * packet, through {@link MetadataHandler#embedMetadata}, which streams the
+ * pixel data and replaces the old packet in place; its modification time is
+ * kept. Formats that cannot embed XMP get their sidecar written instead.
+ * Packets written by other tools, without any of our properties, are left
+ * alone.
+ * </p>
+ *
+ * <p>
+ * Files are processed where the parallel scan finds them, on at most
+ * {@code parallelism} threads, so memory use does not grow with the size of
+ * the library.
+ * </p>
+ *
+ * <pre>
+ * MetadataBatchTool &lt;screenshots folder&gt; [--mode MODE | --template TEMPLATE | --config FILE]
+ *                   [--threads N] [--dry-run]
+ * </pre>
+ */
+public final class MetadataBatchTool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+
+    private static final String CONFIG_FILE = "config/screenshot-manager-enhanced.json";
+    private static final long PROGRESS_INTERVAL_SECONDS = 5;
+    private static final Map<Variable, String> NO_MATCH = Collections.emptyMap();
+
+    /**
+     * What happened to one screenshot.
+     */
+    public enum Outcome {
+        /** Had no metadata and got some. */
+        TAGGED,
+        /** Had metadata that was completed or rewritten. */
+        UPGRADED,
+        /** Had everything that could be known. */
+        UP_TO_DATE,
+        /** Nothing is known about it, or its packet is not ours. */
+        SKIPPED,
+        /** Could not be read or written. */
+        FAILED
+    }
+
+    /**
+     * The counts of a run, or of a run so far.
+     *
+     * @param scanned      Screenshots looked at
+     * @param tagged       Screenshots that got metadata
+     * @param upgraded     Screenshots whose metadata was rewritten
+     * @param upToDate     Screenshots left as they were
+     * @param skipped      Screenshots nothing could be done for
+     * @param failed       Screenshots that could not be read or written
+     * @param elapsedNanos The time taken
+     */
+    public record Summary(int scanned, int tagged, int upgraded, int upToDate, int skipped, int failed,
+            long elapsedNanos) {
+
+        /**
+         * @return The screenshots looked at per second
+         */
+        public double filesPerSecond() {
+            return elapsedNanos > 0 ? scanned * 1e9 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%d screenshots in %.1f s (%.0f files/s): %d tagged, %d upgraded, %d up to date, "
+                            + "%d skipped, %d failed",
+                    scanned, elapsedNanos / 1e9, filesPerSecond(), tagged, upgraded, upToDate, skipped, failed);
+        }
+    }
+
+    private final Path root;
+    private final PathTemplate template;
+    private final int parallelism;
+    private final boolean dryRun;
+    private final Map<String, Map<Variable, String>> folders = new ConcurrentHashMap<>();
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(Outcome.values().length);
+    private volatile long startNanos;
+
+    /**
+     * Creates a tool for a screenshots folder.
+     *
+     * @param root        The screenshots folder
+     * @param template    The template the library is laid out by
+     * @param parallelism The number of files processed at once
+     * @param dryRun      Whether to only count what would change
+     */
+    public MetadataBatchTool(Path root, PathTemplate template, int parallelism, boolean dryRun) {
+        this.root = root;
+        this.template = template;
+        this.parallelism = Math.max(1, parallelism);
+        this.dryRun = dryRun;
+    }
+
+    /**
+     * Processes every screenshot under the folder and waits until done.
+     *
+     * @return The counts
+     */
+    public Summary run() {
+        startNanos = System.nanoTime();
+        MetadataHandler.listAll(root, parallelism, file -> counts.incrementAndGet(process(file).ordinal()));
+        return progress();
+    }
+
+    /**
+     * @return The counts so far; safe to call from another thread while
+     *         {@link #run} is going
+     */
+    public Summary progress() {
+        int tagged = counts.get(Outcome.TAGGED.ordinal());
+        int upgraded = counts.get(Outcome.UPGRADED.ordinal());
+        int upToDate = counts.get(Outcome.UP_TO_DATE.ordinal());
+        int skipped = counts.get(Outcome.SKIPPED.ordinal());
+        int failed = counts.get(Outcome.FAILED.ordinal());
+        return new Summary(tagged + upgraded + upToDate + skipped + failed, tagged, upgraded, upToDate, skipped,
+                failed, startNanos == 0 ? 0 : System.nanoTime() - startNanos);
+    }
+
+    Outcome process(Path file) {
+        boolean png = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".png");
+        Path sidecar = MetadataHandler.sidecarFor(file);
+        try {
+            String xmp = png ? MetadataHandler.readEmbeddedXmp(file) : readSidecar(sidecar);
+            ScreenshotMetadata existing = xmp != null ? MetadataHandler.parseXmp(xmp) : null;
+            if (xmp != null && existing == null) {
+                return Outcome.SKIPPED; // Another tool's packet; replacing it would lose its data
+            }
+            if (existing == null && png) {
+                // Metadata that could not be embedded at capture time went to a sidecar
+                String fallback = readSidecar(sidecar);
+                existing = fallback != null ? MetadataHandler.parseXmp(fallback) : null;
+            }
+
+            ScreenshotMetadata merged = merge(existing, folderValues(file));
+            if (merged == null) {
+                return Outcome.SKIPPED;
+            }
+            String updated = MetadataHandler.buildXmp(merged);
+            if (updated.equals(xmp)) {
+                return Outcome.UP_TO_DATE;
+            }
+            if (!dryRun) {
+                write(file, png, sidecar, merged, updated);
+            }
+            return xmp == null ? Outcome.TAGGED : Outcome.UPGRADED;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to tag {}: {}", file, e.getMessage());
+            return Outcome.FAILED;
+        }
+    }
+
+    private static void write(Path file, boolean png, Path sidecar, ScreenshotMetadata metadata, String xmp)
+            throws IOException {
+        if (!png) {
+            Files.writeString(sidecar, xmp, StandardCharsets.UTF_8);
+            return;
+        }
+        // Keep the time the screenshot was taken, which galleries sort by
+        FileTime modified = Files.getLastModifiedTime(file);
+        MetadataHandler.embedMetadata(file.toFile(), metadata);
+        Files.setLastModifiedTime(file, modified);
+    }
+
+    private static String readSidecar(Path sidecar) throws IOException {
+        try {
+            return Files.readString(sidecar, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return The values the folders of a screenshot name, matched once per
+     *         folder
+     */
+    private Map<Variable, String> folderValues(Path file) {
+        Path parent = root.relativize(file).getParent();
+        String directory = parent == null ? "" : parent.toString().replace('\\', '/');
+        return folders.computeIfAbsent(directory, key -> {
+            Map<Variable, String> values = template.match(key);
+            return values != null ? values : NO_MATCH;
+        });
+    }
+
+    /**
+     * Completes existing metadata with what the folders tell. Values already
+     * in the metadata always win, since the folders only hold their sanitized
+     * form.
+     *
+     * @param existing The metadata read from the file, or {@code null}
+     * @param folder   The values matched from its folders
+     * @return The metadata to write, or {@code null} if nothing is known
+     */
+    static ScreenshotMetadata merge(ScreenshotMetadata existing, Map<Variable, String> folder) {
+        String world = existing != null ? existing.worldName : null;
+        String dimension = existing != null ? existing.dimension : null;
+        String biome = existing != null ? existing.biome : null;
+        if (isBlank(world)) {
+            world = known(folder.get(Variable.WORLD));
+        }
+        if (isBlank(dimension)) {
+            dimension = displayName(known(folder.get(Variable.DIM)));
+        }
+        if (isBlank(biome)) {
+            biome = displayName(known(folder.get(Variable.BIOME)));
+        }
+        if (existing == null) {
+            if (world == null && dimension == null && biome == null) {
+                return null;
+            }
+            return new ScreenshotMetadata(world, dimension, null, null, null, null, null, null, biome, null);
+        }
+        return new ScreenshotMetadata(world, dimension, existing.coordinates, existing.daysPlayed, null,
+                existing.difficulty, null, existing.minecraftVersion, biome, existing.worldAge,
+                existing.perceptualHash, existing.duplicateOf);
+    }
+
+    /**
+     * Turns an identifier as folders hold it, {@code the_nether}, into the
+     * name the game writes into the metadata, {@code The Nether}.
+     */
+    static String displayName(String identifier) {
+        if (identifier == null) {
+            return null;
+        }
+        StringBuilder out = new StringBuilder(identifier.length());
+        for (String part : identifier.split("_")) {
+            if (part.isEmpty()) {
+                continue;
+            }
+            if (out.length() > 0) {
+                out.append(' ');
+            }
+            out.append(Character.toUpperCase(part.charAt(0))).append(part.substring(1).toLowerCase(Locale.ROOT));
+        }
+        return out.length() > 0 ? out.toString() : null;
+    }
+
+    /**
+     * @return The folder value, or {@code null} for the placeholder templates
+     *         write when a value was missing
+     */
+    private static String known(String value) {
+        return isBlank(value) || value.equals("UNKNOWN") ? null : value;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    /**
+     * Runs the tool from the command line.
+     *
+     * <p>
+     * Without {@code --mode}, {@code --template} or {@code --config}, the
+     * layout is read from the mod's configuration next to the screenshots
+     * folder, as in a game directory, falling back to
+     * {@link GroupingMode#WORLD}.
+     * </p>
+     *
+     * @param args The command line
+     */
+    public static void main(String[] args) {
+        Path root = null;
+        PathTemplate template = null;
+        Path configFile = null;
+        int threads = Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        boolean dryRun = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--mode" -> template = PathTemplate.of(GroupingMode.valueOf(
+                            value(args, ++i).toUpperCase(Locale.ROOT)));
+                    case "--template" -> template = PathTemplate.compile(value(args, ++i));
+                    case "--config" -> configFile = Path.of(value(args, ++i));
+                    case "--threads" -> threads = Integer.parseInt(value(args, ++i));
+                    case "--dry-run" -> dryRun = true;
+                    default -> {
+                        if (args[i].startsWith("--") || root != null) {
+                            throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+                        }
+                        root = Path.of(args[i]);
+                    }
+                }
+            }
+            if (root == null) {
+                throw new IllegalArgumentException("No screenshots folder given");
+            }
+            if (template == null) {
+                template = configuredTemplate(root, configFile);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: MetadataBatchTool <screenshots folder> "
+                    + "[--mode MODE | --template TEMPLATE | --config FILE] [--threads N] [--dry-run]");
+            System.exit(2);
+            return;
+        }
+        if (!Files.isDirectory(root)) {
+            System.err.println("Not a folder: " + root);
+            System.exit(2);
+            return;
+        }
+
+        System.out.println((dryRun ? "Checking " : "Tagging ") + root + " laid out as \""
+                + template.getSource() + "\" on " + threads + " threads");
+        MetadataBatchTool tool = new MetadataBatchTool(root, template, threads, dryRun);
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MetadataBatchToolProgress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> System.out.println(tool.progress()), PROGRESS_INTERVAL_SECONDS,
+                PROGRESS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        Summary summary;
+        try {
+            summary = tool.run();
+        } finally {
+            reporter.shutdownNow();
+        }
+        System.out.println((dryRun ? "Dry run: " : "Done: ") + summary);
+        if (summary.failed() > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException(args[i - 1] + " needs a value");
+        }
+        return args[i];
+    }
+
+    private static PathTemplate configuredTemplate(Path root, Path configFile) {
+        Path file = configFile != null ? configFile
+                : root.toAbsolutePath().normalize().resolveSibling(CONFIG_FILE);
+        if (!Files.isRegularFile(file)) {
+            if (configFile != null) {
+                throw new IllegalArgumentException("No such config file: " + configFile);
+            }
+            return PathTemplate.of(GroupingMode.WORLD);
+        }
+        ConfigManager.load(file);
+        return ScreenshotPathGenerator.getTemplate(ConfigManager.getInstance());
+    }
+}
@@ -0,0 +1,61 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.util;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.optimizer.ScreenshotOptimizer;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayerEntity;
+
+/**
+ * Decides each tick whether the player is idle, for background work that
+ * must not compete with gameplay.
+ *
+ * <p>
+ * The client counts as idle on the title screen, while any screen is open,
+ * while paused, and once the player has neither moved nor turned for a
+ * minute.
+ * </p>
+ */
+public class ClientIdleTracker {
+
+    private static final int AFK_TICKS = 60 * 20;
+
+    private static double lastX;
+    private static double lastY;
+    private static double lastZ;
+    private static float lastYaw;
+    private static float lastPitch;
+    private static int stillTicks;
+
+    private ClientIdleTracker() {
+    }
+
+    /**
+     * Updates the idle state. Registered for the end of every client tick.
+     *
+     * @param client The Minecraft client
+     */
+    public static void onEndTick(MinecraftClient client) {
+        ScreenshotOptimizer.setClientIdle(isIdle(client));
+    }
+
+    private static boolean isIdle(MinecraftClient client) {
+        ClientPlayerEntity player = client.player;
+        if (client.world == null || player == null) {
+            stillTicks = 0;
+            return true;
+        }
+
+        if (player.getX() != lastX || player.getY() != lastY || player.getZ() != lastZ
+                || player.getYaw() != lastYaw || player.getPitch() != lastPitch) {
+            lastX = player.getX();
+            lastY = player.getY();
+            lastZ = player.getZ();
+            lastYaw = player.getYaw();
+            lastPitch = player.getPitch();
+            stillTicks = 0;
+        } else if (stillTicks < AFK_TICKS) {
+            stillTicks++;
+        }
+
+        return client.currentScreen != null || client.isPaused() || stillTicks >= AFK_TICKS;
+    }
+}
@@ -0,0 +1,271 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Serializes PNG iTXt chunks straight into a growable UTF-8 byte buffer.
+ *
+ * <p>
+ * Text is encoded as it is appended, with XML escaping done in the same scan,
+ * and the CRC is updated over each appended run while it is still in cache.
+ * The length field is reserved up front and back-patched by
+ * {@link #finishChunk()}, so a finished chunk exists only in this buffer
+ * until it is written out or copied once by {@link #toByteArray()}.
+ * </p>
+ *
+ * <p>
+ * The output is byte-identical to encoding the same text with
+ * {@link String#getBytes} in UTF-8, including the replacement of unpaired
+ * surrogates with {@code '?'}. Instances are not thread-safe;
+ * {@link #acquire()} hands out one reusable instance per thread.
+ * </p>
+ */
+public final class ItxtChunkWriter {
+
+    private static final int INITIAL_CAPACITY = 2048;
+    /** Buffers grown beyond this are not kept for reuse. */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    private static final byte[] ITXT = { 'i', 'T', 'X', 't' };
+    private static final byte[] AMP = "&amp;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LT = "&lt;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] GT = "&gt;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] QUOT = "&quot;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] APOS = "&apos;".getBytes(StandardCharsets.US_ASCII);
+
+    private static final ThreadLocal<ItxtChunkWriter> CACHE = ThreadLocal.withInitial(ItxtChunkWriter::new);
+
+    private byte[] buf;
+    private int len;
+    private final CRC32 crc = new CRC32();
+    /** Offset of the current chunk's length field. */
+    private int chunkStart;
+    /** Start of the bytes not yet added to the CRC, or -1 outside a chunk. */
+    private int crcFrom = -1;
+
+    ItxtChunkWriter() {
+        this(INITIAL_CAPACITY);
+    }
+
+    ItxtChunkWriter(int capacity) {
+        this.buf = new byte[capacity];
+    }
+
+    /**
+     * Gets this thread's writer, emptied. The writer must not be held across
+     * calls that might acquire it again.
+     *
+     * @return The reset writer
+     */
+    public static ItxtChunkWriter acquire() {
+        ItxtChunkWriter writer = CACHE.get();
+        if (writer.buf.length > MAX_RETAINED_CAPACITY) {
+            writer.buf = new byte[INITIAL_CAPACITY];
+        }
+        return writer.reset();
+    }
+
+    /**
+     * Discards the buffered bytes.
+     *
+     * @return This writer
+     */
+    ItxtChunkWriter reset() {
+        len = 0;
+        crcFrom = -1;
+        return this;
+    }
+
+    /**
+     * Starts an uncompressed iTXt chunk with an empty language tag and
+     * translated keyword. Everything appended until {@link #finishChunk()} is
+     * the chunk's text.
+     *
+     * @param keyword The chunk keyword (Latin-1)
+     * @return This writer
+     */
+    public ItxtChunkWriter startChunk(String keyword) {
+        ensure(8 + keyword.length() + 5);
+        chunkStart = len;
+        len += 4; // Length, back-patched by finishChunk()
+        crcFrom = len;
+        System.arraycopy(ITXT, 0, buf, len, 4);
+        len += 4;
+        latin1(keyword);
+        // Keyword terminator, compression flag and method, empty language tag
+        // and translated keyword
+        for (int i = 0; i < 5; i++) {
+            buf[len++] = 0;
+        }
+        return updateCrc();
+    }
+
+    /**
+     * Back-patches the length of the chunk started by
+     * {@link #startChunk(String)} and appends its CRC.
+     *
+     * @return This writer
+     */
+    public ItxtChunkWriter finishChunk() {
+        if (crcFrom < 0) {
+            throw new IllegalStateException("No chunk started");
+        }
+        updateCrc();
+        putInt(chunkStart, len - chunkStart - 8);
+        ensure(4);
+        putInt(len, (int) crc.getValue());
+        len += 4;
+        crc.reset();
+        crcFrom = -1;
+        return this;
+    }
+
+    /**
+     * Appends bytes as they are.
+     *
+     * @param bytes The bytes
+     * @return This writer
+     */
+    ItxtChunkWriter raw(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, len, bytes.length);
+        len += bytes.length;
+        return updateCrc();
+    }
+
+    /**
+     * Appends text encoded as UTF-8.
+     *
+     * @param text The text, or {@code null} to append nothing
+     * @return This writer
+     */
+    public ItxtChunkWriter text(String text) {
+        return encode(text, false);
+    }
+
+    /**
+     * Appends text encoded as UTF-8, with the five XML special characters
+     * replaced by their entities.
+     *
+     * @param text The text, or {@code null} to append nothing
+     * @return This writer
+     */
+    ItxtChunkWriter escaped(String text) {
+        return encode(text, true);
+    }
+
+    /**
+     * @return A copy of the buffered bytes
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(buf, len);
+    }
+
+    /**
+     * @return A buffer over the buffered bytes, valid until this writer is next
+     *         used
+     */
+    ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(buf, 0, len);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, len);
+    }
+
+    /**
+     * @return The buffered bytes decoded as UTF-8
+     */
+    @Override
+    public String toString() {
+        return new String(buf, 0, len, StandardCharsets.UTF_8);
+    }
+
+    private ItxtChunkWriter encode(String text, boolean escapeXml) {
+        if (text == null) {
+            return this;
+        }
+        int n = text.length();
+        // At most 6 bytes per char ("&quot;"), which also covers UTF-8
+        ensure(n * 6);
+        byte[] b = buf;
+        int p = len;
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                if (escapeXml) {
+                    switch (c) {
+                        case '&' -> p = put(b, p, AMP);
+                        case '<' -> p = put(b, p, LT);
+                        case '>' -> p = put(b, p, GT);
+                        case '"' -> p = put(b, p, QUOT);
+                        case '\'' -> p = put(b, p, APOS);
+                        default -> b[p++] = (byte) c;
+                    }
+                } else {
+                    b[p++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                b[p++] = (byte) (0xC0 | (c >> 6));
+                b[p++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                char low;
+                if (Character.isHighSurrogate(c) && i + 1 < n
+                        && Character.isLowSurrogate(low = text.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, low);
+                    b[p++] = (byte) (0xF0 | (cp >> 18));
+                    b[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    b[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    b[p++] = (byte) (0x80 | (cp & 0x3F));
+                    i++;
+                } else {
+                    b[p++] = '?'; // As String.getBytes does for unpaired surrogates
+                }
+            } else {
+                b[p++] = (byte) (0xE0 | (c >> 12));
+                b[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                b[p++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        len = p;
+        return updateCrc();
+    }
+
+    private static int put(byte[] b, int p, byte[] entity) {
+        System.arraycopy(entity, 0, b, p, entity.length);
+        return p + entity.length;
+    }
+
+    private void latin1(String text) {
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            buf[len++] = c <= 0xFF ? (byte) c : (byte) '?';
+        }
+    }
+
+    private ItxtChunkWriter updateCrc() {
+        if (crcFrom >= 0 && len > crcFrom) {
+            crc.update(buf, crcFrom, len - crcFrom);
+            crcFrom = len;
+        }
+        return this;
+    }
+
+    private void putInt(int pos, int value) {
+        buf[pos] = (byte) (value >>> 24);
+        buf[pos + 1] = (byte) (value >>> 16);
+        buf[pos + 2] = (byte) (value >>> 8);
+        buf[pos + 3] = (byte) value;
+    }
+
+    private void ensure(int extra) {
+        int needed = len + extra;
+        if (needed > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(needed, buf.length * 2));
+        }
+    }
+}
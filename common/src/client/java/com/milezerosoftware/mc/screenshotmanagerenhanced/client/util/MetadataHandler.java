@@ -1,10 +1,29 @@
 package com.milezerosoftware.mc.screenshotmanagerenhanced.client.util;
 
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.EncoderProfile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.util.zip.CRC32;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 /**
  * Handles embedding XMP metadata into PNG screenshot files.
@@ -13,45 +32,355 @@ import java.util.zip.CRC32;
  * This class provides functionality to asynchronously write XMP metadata
  * into PNG files by inserting an iTXt chunk before the IDAT chunks.
  * The metadata includes Minecraft-specific information such as world name,
- * dimension, coordinates, and biome.
+ * dimension, coordinates, and biome. {@link #readMetadata} reads it back.
  * </p>
  * 
  * <p>
  * The writing process is thread-safe and uses file size stability checks
  * to ensure the screenshot file is fully written before attempting to read it.
+ * Work is executed by the shared {@link MetadataWriterService} rather than
+ * per-screenshot threads.
  * </p>
  */
 public class MetadataHandler {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+
     private static final int FILE_STABILITY_CHECKS = 3;
     private static final int MAX_WAIT_ATTEMPTS = 50;
     private static final int POLL_INTERVAL_MS = 100;
+    private static final int FILE_CREATION_MAX_ATTEMPTS = 100;
+    private static final int FILE_WRITE_DELAY_MS = 200;
+    private static final String XMP_KEYWORD = "XML:com.adobe.xmp";
+    private static final String XMP_TITLE = "Screenshot Manager Enhanced";
+    private static final long PNG_SIGNATURE = 0x89504E470D0A1A0AL;
+    private static final int CHUNK_IDAT = 0x49444154;
+    private static final int CHUNK_ITXT = 0x69545874;
+    private static final int HEAD_READ_SIZE = 4096;
+    private static final int MAX_XMP_SIZE = 1 << 20;
+
+    private static final byte[] SUMMARY_WORLD = ascii("World: ");
+    private static final byte[] SUMMARY_DIMENSION = ascii(" | Dim: ");
+    private static final byte[] SUMMARY_LOCATION = ascii(" | Loc: ");
+    private static final byte[] SUMMARY_DAYS = ascii(" | Days Played: ");
+
+    private static final XmpProperty WORLD_TITLE = XmpProperty.of("mc", "WorldTitle");
+    private static final XmpProperty DIFFICULTY = XmpProperty.of("mc", "Difficulty");
+    private static final XmpProperty VERSION = XmpProperty.of("mc", "Version");
+    private static final XmpProperty DIMENSION = XmpProperty.of("mc", "Dimension");
+    private static final XmpProperty BIOME = XmpProperty.of("mc", "Biome");
+    private static final XmpProperty COORDINATES = XmpProperty.of("mc", "Coordinates");
+    private static final XmpProperty DAYS = XmpProperty.of("mc", "Days");
+    private static final XmpProperty WORLD_AGE = XmpProperty.of("mc", "WorldAge");
+    private static final XmpProperty PERCEPTUAL_HASH = XmpProperty.of("mc", "PerceptualHash");
+    private static final XmpProperty DUPLICATE_OF = XmpProperty.of("mc", "DuplicateOf");
+
+    private static final List<BiConsumer<File, ScreenshotMetadata>> writtenListeners = new CopyOnWriteArrayList<>();
 
     /**
      * Writes XMP metadata to a PNG file asynchronously.
      * 
      * <p>
-     * This method spawns a daemon thread that waits for the file to be fully
-     * written, then embeds the provided metadata as XMP data in the PNG.
+     * The screenshot is registered with the {@link ScreenshotCompletionTracker}.
+     * As soon as vanilla finishes writing the file, the task is queued on the
+     * shared {@link MetadataWriterService}, which embeds the provided metadata
+     * as XMP data in the PNG. If the write event never arrives, the task falls
+     * back to polling for the file.
      * </p>
      *
      * @param file     The PNG screenshot file to modify
      * @param metadata The metadata to embed
      */
     public static void writeMetadataAsync(File file, ScreenshotMetadata metadata) {
-        Thread thread = new Thread(() -> {
+        writeMetadataAsync(file, metadata, EncoderProfile.STANDARD_PNG);
+    }
+
+    /**
+     * Writes XMP metadata for a screenshot asynchronously, embedding it if the
+     * profile's format supports it and writing a sidecar otherwise.
+     *
+     * @param file     The screenshot file
+     * @param metadata The metadata to write
+     * @param profile  The encoder profile the file is written with
+     */
+    public static void writeMetadataAsync(File file, ScreenshotMetadata metadata, EncoderProfile profile) {
+        ScreenshotCompletionTracker.expect(new MetadataTask(file, metadata, profile));
+    }
+
+    /**
+     * Registers a listener for screenshots whose metadata has been written,
+     * whether embedded after the fact, at encode time or as a sidecar.
+     * Listeners run on the thread that wrote the metadata.
+     *
+     * @param listener Receives the screenshot file and its metadata
+     */
+    public static void addWrittenListener(BiConsumer<File, ScreenshotMetadata> listener) {
+        writtenListeners.add(listener);
+    }
+
+    /**
+     * Notifies the {@linkplain #addWrittenListener listeners} that a
+     * screenshot's metadata has been written.
+     *
+     * @param file     The screenshot file
+     * @param metadata The metadata written for it
+     */
+    public static void notifyWritten(File file, ScreenshotMetadata metadata) {
+        for (BiConsumer<File, ScreenshotMetadata> listener : writtenListeners) {
+            listener.accept(file, metadata);
+        }
+    }
+
+    /**
+     * Queues a task on the shared writer service.
+     *
+     * @param task The task to queue
+     */
+    static void submit(MetadataTask task) {
+        MetadataWriterService.getInstance().submit(task);
+    }
+
+    /**
+     * Processes a queued task on a writer thread.
+     * 
+     * <p>
+     * Tasks confirmed by the write-completion event are embedded immediately.
+     * Otherwise this waits for vanilla to start writing the screenshot file and
+     * for its size to stabilize first; if nothing is ever written, the empty
+     * placeholder its name was reserved with is released. Formats without
+     * metadata chunks get a sidecar.
+     * </p>
+     *
+     * @param task The task to process
+     */
+    static void processTask(MetadataTask task) {
+        try {
+            if (!task.profile.supportsEmbeddedMetadata()) {
+                if (task.writeConfirmed || awaitFileContent(task.file)) {
+                    writeSidecar(task.file, task.getMetadata());
+                } else {
+                    ScreenshotFileAllocator.getInstance().release(task.file.toPath());
+                    return;
+                }
+            } else if (task.writeConfirmed) {
+                embedMetadata(task.file, task.getMetadata());
+            } else {
+                if (!awaitFileContent(task.file)) {
+                    LOGGER.warn("Screenshot {} was never written; metadata not embedded", task.file.getName());
+                    ScreenshotFileAllocator.getInstance().release(task.file.toPath());
+                    return;
+                }
+                writeMetadata(task.file, task.getMetadata());
+            }
+            ScreenshotCompletionTracker.recordEmbedded(task);
+            notifyWritten(task.file, task.getMetadata());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Metadata embedding is non-critical, but errors aid debugging
+            LOGGER.error("Failed to embed metadata into {}: {}", task.file.getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the metadata this mod wrote for a screenshot back.
+     *
+     * <p>
+     * For a PNG, only the chunk headers before the image data are read, with
+     * positional reads, and the XMP chunk is the only chunk body loaded. Our
+     * chunks sit right after IHDR, so a single 4 KiB read usually covers
+     * everything up to the first IDAT. Files without an embedded packet, and
+     * formats that cannot carry one, fall back to the {@linkplain #writeSidecar
+     * sidecar}.
+     * </p>
+     *
+     * <p>
+     * The player name and game mode are not part of the XMP packet and are
+     * always {@code null}.
+     * </p>
+     *
+     * @param file The screenshot file
+     * @return The metadata, or {@code null} if the file carries none
+     * @throws IOException If the file cannot be read
+     */
+    public static ScreenshotMetadata readMetadata(Path file) throws IOException {
+        String xmp = null;
+        if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".png")) {
+            xmp = readEmbeddedXmp(file);
+        }
+        if (xmp == null) {
             try {
-                writeMetadata(file, metadata);
-            } catch (Exception e) {
-                // Log the exception - metadata embedding is non-critical but errors aid
-                // debugging
-                System.err.println("[Screenshot Manager Enhanced] Failed to embed metadata: " + e.getMessage());
-                e.printStackTrace();
+                xmp = Files.readString(sidecarFor(file.toFile()).toPath(), StandardCharsets.UTF_8);
+            } catch (NoSuchFileException e) {
+                return null;
             }
-        }, "ScreenshotMetadataWriter");
+        }
+        return parseXmp(xmp);
+    }
 
-        thread.setDaemon(true);
-        thread.start();
+    /**
+     * Reads the XMP packet embedded in a PNG as stored, without reading past
+     * the chunk headers that precede the image data.
+     *
+     * @param png The PNG file
+     * @return The packet, or {@code null} if the file embeds none
+     * @throws IOException If the file cannot be read
+     */
+    public static String readEmbeddedXmp(Path png) throws IOException {
+        try (FileChannel channel = FileChannel.open(png, StandardOpenOption.READ)) {
+            XmpChunk chunk = findXmpChunk(channel);
+            return chunk != null ? chunk.text() : null;
+        }
+    }
+
+    /**
+     * Reads the XMP packet of a PNG stored as is inside a larger file, such as
+     * an uncompressed archive entry, without reading past the chunk headers
+     * that precede the image data.
+     *
+     * @param channel The file holding the PNG
+     * @param offset  The position the PNG starts at
+     * @param length  The length of the PNG
+     * @return The packet, or {@code null} if the PNG embeds none
+     * @throws IOException If the file cannot be read
+     */
+    public static String readEmbeddedXmp(FileChannel channel, long offset, long length) throws IOException {
+        XmpChunk chunk = findXmpChunk(channel, offset, length);
+        return chunk != null ? chunk.text() : null;
+    }
+
+    /**
+     * Reads the metadata of every screenshot under a folder in parallel.
+     *
+     * <p>
+     * Each directory is listed by its own {@link java.util.concurrent.ForkJoinTask},
+     * and its files are read by {@link #readMetadata} in batches that idle
+     * workers steal, so both wide and deep trees keep every core busy. Hidden
+     * directories, such as the mod's state directory, are skipped.
+     * </p>
+     *
+     * @param root The folder to scan
+     * @param sink Receives each screenshot that carries metadata, as soon as it
+     *             has been read. Called concurrently from the scanning threads.
+     */
+    public static void readAll(Path root, BiConsumer<Path, ScreenshotMetadata> sink) {
+        readAll(root, Runtime.getRuntime().availableProcessors(), sink);
+    }
+
+    /**
+     * Reads the metadata of every screenshot under a folder with a bounded
+     * number of threads.
+     *
+     * @param root        The folder to scan
+     * @param parallelism The number of threads to read with
+     * @param sink        Receives each screenshot that carries metadata
+     * @see #readAll(Path, BiConsumer)
+     */
+    public static void readAll(Path root, int parallelism, BiConsumer<Path, ScreenshotMetadata> sink) {
+        MetadataScanner.scan(root, parallelism, file -> {
+            ScreenshotMetadata metadata;
+            try {
+                metadata = readMetadata(file);
+            } catch (IOException e) {
+                LOGGER.debug("Failed to read metadata from {}: {}", file, e.getMessage());
+                return;
+            }
+            if (metadata != null) {
+                sink.accept(file, metadata);
+            }
+        });
+    }
+
+    /**
+     * Lists every screenshot under a folder in parallel without reading it,
+     * for callers that only need the metadata of some files.
+     *
+     * @param root        The folder to scan
+     * @param parallelism The number of threads to list with
+     * @param sink        Receives each screenshot. Called concurrently from the
+     *                    scanning threads.
+     * @see #readAll(Path, BiConsumer)
+     */
+    public static void listAll(Path root, int parallelism, Consumer<Path> sink) {
+        MetadataScanner.scan(root, parallelism, sink);
+    }
+
+    /**
+     * Reads the metadata of every screenshot under a folder in parallel.
+     *
+     * @param root The folder to scan
+     * @return The metadata of every screenshot that carries any, by path
+     * @see #readAll(Path, BiConsumer)
+     */
+    public static Map<Path, ScreenshotMetadata> readAll(Path root) {
+        Map<Path, ScreenshotMetadata> results = new ConcurrentHashMap<>();
+        readAll(root, results::put);
+        return new TreeMap<>(results);
+    }
+
+    /**
+     * Writes the metadata to an XMP sidecar file next to the screenshot.
+     * 
+     * <p>
+     * Used when embedding is not possible (e.g. the writer queue is full). The
+     * sidecar shares the screenshot's base name with an {@code .xmp} extension,
+     * which is the convention used by Lightroom and similar tools.
+     * </p>
+     *
+     * @param file     The screenshot file the metadata belongs to
+     * @param metadata The metadata to write
+     */
+    public static void writeSidecar(File file, ScreenshotMetadata metadata) {
+        File sidecar = sidecarFor(file);
+        try {
+            Files.writeString(sidecar.toPath(), buildXmp(metadata), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LOGGER.error("Failed to write metadata sidecar {}: {}", sidecar.getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * @param file A screenshot
+     * @return The sidecar its metadata is written to when it cannot be
+     *         embedded, whether or not it exists
+     */
+    public static Path sidecarFor(Path file) {
+        return sidecarFor(file.toFile()).toPath();
+    }
+
+    private static File sidecarFor(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return new File(file.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + ".xmp");
+    }
+
+    /**
+     * Waits for vanilla to start writing a file by polling its size.
+     *
+     * <p>
+     * The name was reserved by creating the file empty, so its existence says
+     * nothing; only content shows that the write has begun.
+     * </p>
+     *
+     * @param file The file to wait for
+     * @return {@code true} if the file has content, {@code false} after timing
+     *         out
+     */
+    private static boolean awaitFileContent(File file) throws InterruptedException {
+        // Poll every 100ms, timeout after 10 seconds
+        int attempts = 0;
+        while (file.length() == 0 && attempts < FILE_CREATION_MAX_ATTEMPTS) {
+            Thread.sleep(POLL_INTERVAL_MS);
+            attempts++;
+        }
+
+        if (file.length() == 0) {
+            return false;
+        }
+
+        // Small delay to ensure file is fully written
+        Thread.sleep(FILE_WRITE_DELAY_MS);
+        return true;
     }
 
     /**
@@ -62,9 +391,9 @@ public class MetadataHandler {
      * </p>
      * <ol>
      * <li>Waits for the file to be fully written (size stability check)</li>
-     * <li>Reads the existing PNG image</li>
+     * <li>Reads the PNG chunk headers up to the first IDAT</li>
      * <li>Constructs XMP XML with the provided metadata</li>
-     * <li>Writes a new PNG with the XMP chunk inserted before IDAT</li>
+     * <li>Streams a new PNG with the XMP chunk inserted before IDAT</li>
      * <li>Atomically replaces the original file</li>
      * </ol>
      *
@@ -72,33 +401,35 @@ public class MetadataHandler {
      * @param metadata The metadata to embed
      * @throws Exception If any step of the process fails
      */
-    private static void writeMetadata(File file, ScreenshotMetadata metadata) throws Exception {
+    public static void writeMetadata(File file, ScreenshotMetadata metadata) throws Exception {
         // Wait for file to be fully written (size stability check)
         waitForFileStability(file);
 
-        // Read the existing PNG bytes directly (avoids slow re-encoding)
-        byte[] pngData = Files.readAllBytes(file.toPath());
-        if (pngData.length == 0) {
-            throw new IOException("File is empty - may be corrupted: " + file.getAbsolutePath());
-        }
+        embedMetadata(file, metadata);
+    }
 
-        // Construct XMP XML
-        String xmpXml = new XmpBuilder()
-                .setTitle("Screenshot Manager Enhanced")
-                .setDescription(createSummary(metadata))
-                .addCustomProperty("mc", "WorldTitle", metadata.worldName)
-                .addCustomProperty("mc", "Difficulty", metadata.difficulty)
-                .addCustomProperty("mc", "Version", metadata.minecraftVersion)
-                .addCustomProperty("mc", "Dimension", metadata.dimension)
-                .addCustomProperty("mc", "Biome", metadata.biome)
-                .addCustomProperty("mc", "Coordinates", metadata.coordinates)
-                .addCustomProperty("mc", "Days", metadata.daysPlayed)
-                .addCustomProperty("mc", "WorldAge", metadata.worldAge)
-                .build();
+    /**
+     * Embeds XMP metadata into a PNG file that is known to be completely
+     * written, replacing the XMP packet it already carries, if any.
+     * 
+     * <p>
+     * The file is never loaded into memory: only the chunk headers up to the
+     * first IDAT are read, and the pixel data is copied with
+     * {@link FileChannel#transferTo}, so memory use is independent of image
+     * size.
+     * </p>
+     *
+     * @param file     The PNG file to modify
+     * @param metadata The metadata to embed
+     * @throws IOException If reading or replacing the file fails
+     */
+    public static void embedMetadata(File file, ScreenshotMetadata metadata) throws IOException {
+        // Serialize the XMP chunk into this thread's buffer
+        ItxtChunkWriter chunk = writeXmp(ItxtChunkWriter.acquire().startChunk(XMP_KEYWORD), metadata).finishChunk();
 
         // Write to temp file with XMP chunk
         File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
-        writePngWithXmp(pngData, tempFile, xmpXml);
+        writePngWithXmp(file.toPath(), tempFile, chunk);
 
         // Atomic replace using Files.move (safer on Windows, prevents data loss)
         if (tempFile.exists() && tempFile.length() > 0) {
@@ -110,6 +441,86 @@ public class MetadataHandler {
         }
     }
 
+    /**
+     * Builds the XMP packet for the given metadata.
+     *
+     * @param metadata The screenshot metadata
+     * @return The XMP XML string
+     */
+    public static String buildXmp(ScreenshotMetadata metadata) {
+        XmpBuilder builder = new XmpBuilder()
+                .setTitle(XMP_TITLE)
+                .setDescription(createSummary(metadata))
+                .addCustomProperty("mc", "WorldTitle", metadata.worldName)
+                .addCustomProperty("mc", "Difficulty", metadata.difficulty)
+                .addCustomProperty("mc", "Version", metadata.minecraftVersion)
+                .addCustomProperty("mc", "Dimension", metadata.dimension)
+                .addCustomProperty("mc", "Biome", metadata.biome)
+                .addCustomProperty("mc", "Coordinates", metadata.coordinates)
+                .addCustomProperty("mc", "Days", metadata.daysPlayed)
+                .addCustomProperty("mc", "WorldAge", metadata.worldAge);
+        // Only written when set, so packets without them keep their old bytes
+        if (metadata.perceptualHash != null) {
+            builder.addCustomProperty("mc", "PerceptualHash", metadata.perceptualHash);
+        }
+        if (metadata.duplicateOf != null) {
+            builder.addCustomProperty("mc", "DuplicateOf", metadata.duplicateOf);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Serializes the metadata as a complete XMP iTXt chunk (length, type, data
+     * and CRC), ready to be written into a PNG stream between IHDR and IDAT.
+     *
+     * <p>
+     * The chunk is serialized directly into a reused per-thread buffer; the
+     * returned array is the only allocation. Its text is identical to
+     * {@link #buildXmp}.
+     * </p>
+     *
+     * @param metadata The screenshot metadata
+     * @return The chunk bytes
+     */
+    public static byte[] createXmpChunk(ScreenshotMetadata metadata) {
+        return writeXmp(ItxtChunkWriter.acquire().startChunk(XMP_KEYWORD), metadata).finishChunk().toByteArray();
+    }
+
+    /**
+     * Writes the XMP packet for the given metadata, producing the same bytes
+     * as {@link #buildXmp} without building any intermediate strings.
+     *
+     * @param out      The writer to append to
+     * @param metadata The screenshot metadata
+     * @return {@code out}
+     */
+    private static ItxtChunkWriter writeXmp(ItxtChunkWriter out, ScreenshotMetadata metadata) {
+        out.raw(XmpBuilder.HEADER).escaped(XMP_TITLE).raw(XmpBuilder.TITLE_END);
+
+        // Same text as createSummary(); the literal parts need no escaping
+        out.raw(SUMMARY_WORLD).escaped(String.valueOf(metadata.worldName))
+                .raw(SUMMARY_DIMENSION).escaped(String.valueOf(metadata.dimension))
+                .raw(SUMMARY_LOCATION).escaped(String.valueOf(metadata.coordinates))
+                .raw(SUMMARY_DAYS).escaped(String.valueOf(metadata.daysPlayed))
+                .raw(XmpBuilder.DESCRIPTION_END);
+
+        WORLD_TITLE.write(out, metadata.worldName);
+        DIFFICULTY.write(out, metadata.difficulty);
+        VERSION.write(out, metadata.minecraftVersion);
+        DIMENSION.write(out, metadata.dimension);
+        BIOME.write(out, metadata.biome);
+        COORDINATES.write(out, metadata.coordinates);
+        DAYS.write(out, metadata.daysPlayed);
+        WORLD_AGE.write(out, metadata.worldAge);
+        if (metadata.perceptualHash != null) {
+            PERCEPTUAL_HASH.write(out, metadata.perceptualHash);
+        }
+        if (metadata.duplicateOf != null) {
+            DUPLICATE_OF.write(out, metadata.duplicateOf);
+        }
+        return out.raw(XmpBuilder.FOOTER);
+    }
+
     /**
      * Waits for a file to be fully written by checking size stability.
      * 
@@ -152,69 +563,87 @@ public class MetadataHandler {
     }
 
     /**
-     * Writes a PNG with an iTXt chunk containing XMP data.
+     * Streams a PNG file into {@code output} with an iTXt chunk containing XMP
+     * data spliced in before the first IDAT, or in place of the XMP chunk the
+     * file already has.
      * 
      * <p>
-     * The iTXt chunk is placed after IHDR but before IDAT for proper PNG structure,
-     * avoiding the "Text chunk found after IDAT" warning from some readers.
+     * Only the header chunks are read; everything from the first IDAT to the
+     * end of the file is copied channel-to-channel without passing through the
+     * Java heap.
      * </p>
      *
-     * @param pngData The raw PNG byte data
-     * @param output  The output file
-     * @param xmpXml  The XMP XML string to embed
-     * @throws IOException If writing fails
+     * @param source The PNG file to read
+     * @param output The output file
+     * @param chunk  The finished iTXt chunk to embed
+     * @throws IOException If the source is empty or not a PNG, or writing fails
      */
-    private static void writePngWithXmp(byte[] pngData, File output, String xmpXml) throws IOException {
-
-        // Find the first IDAT chunk position
-        int idatPos = findChunkPosition(pngData, "IDAT");
-
-        if (idatPos == -1) {
-            // Fallback: just append before IEND
-            int iendPos = pngData.length - 12;
-            try (FileOutputStream fos = new FileOutputStream(output)) {
-                fos.write(pngData, 0, iendPos);
-                writeItxtChunk(fos, "XML:com.adobe.xmp", xmpXml);
-                fos.write(pngData, iendPos, 12);
+    public static void writePngWithXmp(Path source, File output, ItxtChunkWriter chunk) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(output.toPath(), StandardOpenOption.WRITE,
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            if (size == 0) {
+                throw new IOException("File is empty - may be corrupted: " + source.toAbsolutePath());
             }
-            return;
-        }
 
-        try (FileOutputStream fos = new FileOutputStream(output)) {
-            // Write everything before IDAT
-            fos.write(pngData, 0, idatPos);
+            XmpChunk existing = findXmpChunk(in);
+            if (existing != null) {
+                // Replace the old packet where it is, so a file never carries two
+                transferFully(in, 0, existing.start(), out);
+                writeFully(out, chunk.asByteBuffer());
+                transferFully(in, existing.end(), size - existing.end(), out);
+                return;
+            }
 
-            // Write iTXt chunk with XMP (before IDAT)
-            writeItxtChunk(fos, "XML:com.adobe.xmp", xmpXml);
+            long insertPos = findChunkPosition(in, "IDAT");
+            if (insertPos == -1) {
+                // Fallback: just append before IEND
+                insertPos = size - 12;
+                if (insertPos < 8) {
+                    throw new IOException("Not a PNG file: " + source.toAbsolutePath());
+                }
+            }
 
-            // Write the rest of the file (IDAT chunks and IEND)
-            fos.write(pngData, idatPos, pngData.length - idatPos);
+            // Everything before IDAT, then the iTXt chunk, then the IDAT chunks and IEND
+            transferFully(in, 0, insertPos, out);
+            writeFully(out, chunk.asByteBuffer());
+            transferFully(in, insertPos, size - insertPos, out);
         }
     }
 
     /**
-     * Finds the position of a specific chunk type in PNG data.
+     * Finds the position of a chunk type by reading chunk headers only.
+     * 
+     * <p>
+     * Scanning stops at the first IDAT, since ancillary chunks that precede the
+     * image data are the only ones this class inserts or looks for.
+     * </p>
      *
-     * @param pngData   The raw PNG byte data
+     * @param channel   The PNG file channel
      * @param chunkType The 4-character chunk type to find (e.g., "IDAT")
-     * @return The byte position of the chunk, or -1 if not found
+     * @return The byte position of the chunk, or -1 if not found before IDAT
+     * @throws IOException If reading fails
      */
-    private static int findChunkPosition(byte[] pngData, String chunkType) {
-        // Skip PNG signature (8 bytes)
-        int pos = 8;
+    public static long findChunkPosition(FileChannel channel, String chunkType) throws IOException {
         byte[] typeBytes = chunkType.getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer header = ByteBuffer.allocate(8);
+        long size = channel.size();
 
-        while (pos + 8 < pngData.length) {
-            // Read chunk length (4 bytes, big-endian)
-            int length = ((pngData[pos] & 0xFF) << 24) |
-                    ((pngData[pos + 1] & 0xFF) << 16) |
-                    ((pngData[pos + 2] & 0xFF) << 8) |
-                    (pngData[pos + 3] & 0xFF);
+        // Skip PNG signature (8 bytes)
+        long pos = 8;
+        while (pos + 8 <= size) {
+            header.clear();
+            while (header.hasRemaining()) {
+                if (channel.read(header, pos + header.position()) < 0) {
+                    return -1;
+                }
+            }
 
-            // Check chunk type (4 bytes at pos+4)
+            int length = header.getInt(0);
             boolean match = true;
-            for (int i = 0; i < 4 && i < typeBytes.length; i++) {
-                if (pngData[pos + 4 + i] != typeBytes[i]) {
+            for (int i = 0; i < 4; i++) {
+                if (header.get(4 + i) != typeBytes[i]) {
                     match = false;
                     break;
                 }
@@ -223,67 +652,253 @@ public class MetadataHandler {
             if (match) {
                 return pos;
             }
+            if (header.get(4) == 'I' && header.get(5) == 'D' && header.get(6) == 'A' && header.get(7) == 'T') {
+                return -1;
+            }
 
             // Move to next chunk: length(4) + type(4) + data(length) + crc(4)
-            pos += 4 + 4 + length + 4;
+            pos += 4 + 4 + (length & 0xFFFFFFFFL) + 4;
         }
 
         return -1;
     }
 
     /**
-     * Writes an iTXt PNG chunk to the output stream.
+     * An XMP iTXt chunk of a PNG file.
      *
-     * @param os      The output stream
-     * @param keyword The chunk keyword (e.g., "XML:com.adobe.xmp")
-     * @param text    The text content (XMP XML)
-     * @throws IOException If writing fails
+     * @param start The position of its length field
+     * @param end   The position just past its CRC
+     * @param text  The packet
      */
-    private static void writeItxtChunk(OutputStream os, String keyword, String text) throws IOException {
-        ByteArrayOutputStream chunkData = new ByteArrayOutputStream();
-
-        // Keyword (null-terminated)
-        chunkData.write(keyword.getBytes(StandardCharsets.ISO_8859_1));
-        chunkData.write(0);
+    private record XmpChunk(long start, long end, String text) {
+    }
 
-        // Compression flag (0 = uncompressed)
-        chunkData.write(0);
+    /**
+     * Finds the XMP chunk of a PNG without reading past the chunk headers
+     * that precede the image data.
+     *
+     * @param channel The PNG file channel
+     * @return The chunk, or {@code null} if there is none before IDAT
+     * @throws IOException If reading fails
+     */
+    private static XmpChunk findXmpChunk(FileChannel channel) throws IOException {
+        return findXmpChunk(channel, 0, Long.MAX_VALUE);
+    }
 
-        // Compression method (must be 0)
-        chunkData.write(0);
+    /**
+     * Finds the XMP chunk of a PNG that starts at {@code base} and is
+     * {@code size} bytes long. Chunk positions are relative to {@code base}.
+     */
+    private static XmpChunk findXmpChunk(FileChannel channel, long base, long size) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate((int) Math.min(HEAD_READ_SIZE, size));
+        readFully(channel, head, base);
+        head.flip();
+        if (head.limit() < 8 || head.getLong(0) != PNG_SIGNATURE) {
+            return null;
+        }
 
-        // Language tag (empty, null-terminated)
-        chunkData.write(0);
+        long pos = 8;
+        while (true) {
+            ByteBuffer header = pos + 8 <= size ? read(channel, head, base, pos, 8) : null;
+            if (header == null) {
+                return null;
+            }
+            long length = header.getInt(0) & 0xFFFFFFFFL;
+            if (pos + 4 + 4 + length + 4 > size) {
+                return null;
+            }
+            int type = header.getInt(4);
+            if (type == CHUNK_IDAT) {
+                return null;
+            }
+            if (type == CHUNK_ITXT && length <= MAX_XMP_SIZE) {
+                ByteBuffer data = read(channel, head, base, pos + 8, (int) length);
+                if (data == null) {
+                    return null;
+                }
+                String text = itxtText(data, XMP_KEYWORD);
+                if (text != null) {
+                    return new XmpChunk(pos, pos + 4 + 4 + length + 4, text);
+                }
+            }
+            pos += 4 + 4 + length + 4;
+        }
+    }
 
-        // Translated keyword (empty, null-terminated)
-        chunkData.write(0);
+    /**
+     * Returns a range of the file, from the already read head if it covers
+     * it and with one positional read otherwise.
+     *
+     * @return The bytes, or {@code null} if the file ends first
+     */
+    private static ByteBuffer read(FileChannel channel, ByteBuffer head, long base, long pos, int length)
+            throws IOException {
+        if (pos + length <= head.limit()) {
+            return head.slice((int) pos, length);
+        }
+        if (head.limit() < head.capacity()) {
+            return null; // The head already reached the end of the file
+        }
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        return readFully(channel, buf, base + pos) ? buf.flip() : null;
+    }
 
-        // Text (UTF-8)
-        chunkData.write(text.getBytes(StandardCharsets.UTF_8));
+    private static boolean readFully(FileChannel channel, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, pos + buf.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        byte[] data = chunkData.toByteArray();
+    /**
+     * Decodes the text of an iTXt chunk.
+     *
+     * @param data    The chunk data
+     * @param keyword The expected keyword
+     * @return The text, or {@code null} if the keyword differs or the chunk is
+     *         malformed
+     */
+    private static String itxtText(ByteBuffer data, String keyword) {
+        int n = keyword.length();
+        if (data.remaining() < n + 5 || data.get(n) != 0) {
+            return null;
+        }
+        for (int i = 0; i < n; i++) {
+            if (data.get(i) != (byte) keyword.charAt(i)) {
+                return null;
+            }
+        }
+        int compressed = data.get(n + 1);
+        int pos = n + 3;
+        // Skip the language tag and the translated keyword
+        for (int terminators = 0; terminators < 2; pos++) {
+            if (pos >= data.limit()) {
+                return null;
+            }
+            if (data.get(pos) == 0) {
+                terminators++;
+            }
+        }
 
-        // Write length (4 bytes, big-endian)
-        writeInt(os, data.length);
+        byte[] text = new byte[data.limit() - pos];
+        data.get(pos, text);
+        if (compressed == 0) {
+            return new String(text, StandardCharsets.UTF_8);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(text);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(text.length * 4);
+            byte[] buf = new byte[8192];
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(buf);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    return null;
+                }
+                out.write(buf, 0, inflated);
+                if (out.size() > MAX_XMP_SIZE) {
+                    return null;
+                }
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            return null;
+        } finally {
+            inflater.end();
+        }
+    }
 
-        // Write chunk type "iTXt" (4 bytes)
-        os.write("iTXt".getBytes(StandardCharsets.ISO_8859_1));
+    /**
+     * Extracts our {@code mc:} properties from an XMP packet.
+     *
+     * @param xmp The packet
+     * @return The metadata, or {@code null} if none of our properties are set
+     */
+    public static ScreenshotMetadata parseXmp(String xmp) {
+        String world = WORLD_TITLE.read(xmp);
+        String difficulty = DIFFICULTY.read(xmp);
+        String version = VERSION.read(xmp);
+        String dimension = DIMENSION.read(xmp);
+        String biome = BIOME.read(xmp);
+        String coordinates = COORDINATES.read(xmp);
+        String days = DAYS.read(xmp);
+        String worldAge = WORLD_AGE.read(xmp);
+        String perceptualHash = PERCEPTUAL_HASH.read(xmp);
+        String duplicateOf = DUPLICATE_OF.read(xmp);
+        if (world == null && difficulty == null && version == null && dimension == null && biome == null
+                && coordinates == null && days == null && worldAge == null && perceptualHash == null) {
+            return null;
+        }
+        return new ScreenshotMetadata(world, dimension, coordinates, days, null, difficulty, null, version, biome,
+                worldAge, perceptualHash, duplicateOf);
+    }
 
-        // Write chunk data
-        os.write(data);
+    /**
+     * Reverses XML escaping: the five predefined entities and character
+     * references.
+     */
+    private static String unescapeXml(String text, int start, int end) {
+        int amp = text.indexOf('&', start);
+        if (amp < 0 || amp >= end) {
+            return text.substring(start, end);
+        }
+        StringBuilder sb = new StringBuilder(end - start);
+        int pos = start;
+        while (amp >= 0 && amp < end) {
+            sb.append(text, pos, amp);
+            int semi = text.indexOf(';', amp);
+            if (semi < 0 || semi >= end) {
+                break;
+            }
+            String entity = text.substring(amp + 1, semi);
+            switch (entity) {
+                case "amp" -> sb.append('&');
+                case "lt" -> sb.append('<');
+                case "gt" -> sb.append('>');
+                case "quot" -> sb.append('"');
+                case "apos" -> sb.append('\'');
+                default -> {
+                    int codePoint = -1;
+                    try {
+                        if (entity.startsWith("#x")) {
+                            codePoint = Integer.parseInt(entity.substring(2), 16);
+                        } else if (entity.startsWith("#")) {
+                            codePoint = Integer.parseInt(entity.substring(1));
+                        }
+                    } catch (NumberFormatException ignored) {
+                        // Not a character reference; kept as written
+                    }
+                    if (Character.isValidCodePoint(codePoint)) {
+                        sb.appendCodePoint(codePoint);
+                    } else {
+                        sb.append(text, amp, semi + 1);
+                    }
+                }
+            }
+            pos = semi + 1;
+            amp = text.indexOf('&', pos);
+        }
+        return sb.append(text, pos, end).toString();
+    }
 
-        // Write CRC (4 bytes)
-        CRC32 crc = new CRC32();
-        crc.update("iTXt".getBytes(StandardCharsets.ISO_8859_1));
-        crc.update(data);
-        writeInt(os, (int) crc.getValue());
+    private static void writeFully(FileChannel out, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
     }
 
-    private static void writeInt(OutputStream os, int value) throws IOException {
-        os.write((value >> 24) & 0xFF);
-        os.write((value >> 16) & 0xFF);
-        os.write((value >> 8) & 0xFF);
-        os.write(value & 0xFF);
+    private static void transferFully(FileChannel in, long position, long count, FileChannel out)
+            throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long transferred = in.transferTo(position, end - position, out);
+            if (transferred <= 0) {
+                throw new IOException("Unexpected end of file at byte " + position);
+            }
+            position += transferred;
+        }
     }
 
     /**
@@ -319,6 +934,13 @@ public class MetadataHandler {
         public final String minecraftVersion;
         public final String biome;
         public final String worldAge;
+        /** The 64-bit dHash of the image as 16 hex digits, or {@code null}. */
+        public final String perceptualHash;
+        /**
+         * The screenshot this one nearly duplicates, relative to the
+         * screenshots folder, or {@code null}.
+         */
+        public final String duplicateOf;
 
         /**
          * Creates a new ScreenshotMetadata instance.
@@ -345,6 +967,40 @@ public class MetadataHandler {
                 String minecraftVersion,
                 String biome,
                 String worldAge) {
+            this(worldName, dimension, coordinates, daysPlayed, playerName, difficulty, gameMode, minecraftVersion,
+                    biome, worldAge, null, null);
+        }
+
+        /**
+         * Creates a new ScreenshotMetadata instance with a perceptual hash.
+         *
+         * @param worldName        The world or server name
+         * @param dimension        The dimension (Overworld, Nether, End)
+         * @param coordinates      Player coordinates (x, y, z format)
+         * @param daysPlayed       In-game days elapsed
+         * @param playerName       The player's name
+         * @param difficulty       Game difficulty setting
+         * @param gameMode         Current game mode
+         * @param minecraftVersion Minecraft version string
+         * @param biome            Current biome name
+         * @param worldAge         Real-time world age
+         * @param perceptualHash   The image's perceptual hash, or {@code null}
+         * @param duplicateOf      The screenshot this one nearly duplicates, or
+         *                         {@code null}
+         */
+        public ScreenshotMetadata(
+                String worldName,
+                String dimension,
+                String coordinates,
+                String daysPlayed,
+                String playerName,
+                String difficulty,
+                String gameMode,
+                String minecraftVersion,
+                String biome,
+                String worldAge,
+                String perceptualHash,
+                String duplicateOf) {
             this.worldName = worldName;
             this.dimension = dimension;
             this.coordinates = coordinates;
@@ -355,6 +1011,69 @@ public class MetadataHandler {
             this.minecraftVersion = minecraftVersion;
             this.biome = biome;
             this.worldAge = worldAge;
+            this.perceptualHash = perceptualHash;
+            this.duplicateOf = duplicateOf;
+        }
+
+        /**
+         * Returns a copy with a perceptual hash and near-duplicate reference.
+         *
+         * @param perceptualHash The image's perceptual hash
+         * @param duplicateOf    The screenshot this one nearly duplicates, or
+         *                       {@code null}
+         * @return The copy
+         */
+        public ScreenshotMetadata withPerceptualHash(String perceptualHash, String duplicateOf) {
+            return new ScreenshotMetadata(worldName, dimension, coordinates, daysPlayed, playerName, difficulty,
+                    gameMode, minecraftVersion, biome, worldAge, perceptualHash, duplicateOf);
+        }
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * The qualified name and pre-encoded opening and closing tags of a custom
+     * XMP property.
+     */
+    private record XmpProperty(String name, byte[] open, byte[] close) {
+
+        static XmpProperty of(String namespace, String key) {
+            return new XmpProperty(namespace + ":" + key,
+                    ("      <" + namespace + ":" + key + ">").getBytes(StandardCharsets.UTF_8),
+                    ("</" + namespace + ":" + key + ">\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        void write(ItxtChunkWriter out, String value) {
+            out.raw(open).escaped(value).raw(close);
+        }
+
+        /**
+         * Finds the property in a packet, written either as an element, as we
+         * write it, or in the attribute shorthand other XMP tools use.
+         *
+         * @return The unescaped value, or {@code null} if it is absent or empty
+         */
+        String read(String xmp) {
+            String openTag = "<" + name + ">";
+            int start = xmp.indexOf(openTag);
+            if (start >= 0) {
+                start += openTag.length();
+                int end = xmp.indexOf("</" + name + ">", start);
+                return end > start ? unescapeXml(xmp, start, end) : null;
+            }
+
+            int attr = xmp.indexOf(name + "=");
+            while (attr > 0 && !Character.isWhitespace(xmp.charAt(attr - 1))) {
+                attr = xmp.indexOf(name + "=", attr + 1);
+            }
+            int quote = attr + name.length() + 1;
+            if (attr <= 0 || quote >= xmp.length() || (xmp.charAt(quote) != '"' && xmp.charAt(quote) != '\'')) {
+                return null;
+            }
+            int end = xmp.indexOf(xmp.charAt(quote), quote + 1);
+            return end > quote + 1 ? unescapeXml(xmp, quote + 1, end) : null;
         }
     }
 
@@ -363,13 +1082,41 @@ public class MetadataHandler {
      * 
      * <p>
      * Provides a fluent API for building standards-compliant XMP metadata
-     * with Dublin Core and custom Minecraft namespace properties.
+     * with Dublin Core and custom Minecraft namespace properties. The packet is
+     * serialized by {@link ItxtChunkWriter} from the same pre-encoded fragments
+     * that {@link MetadataHandler#writeXmp} uses.
      * </p>
      */
     private static class XmpBuilder {
+        static final byte[] HEADER = ascii(
+                "<x:xmpmeta xmlns:x='adobe:ns:meta/' >\n" +
+                        "  <rdf:RDF xmlns:rdf='http://www.w3.org/1999/02/22-rdf-syntax-ns#'>\n" +
+                        "    <rdf:Description rdf:about=''\n" +
+                        "        xmlns:dc='http://purl.org/dc/elements/1.1/'\n" +
+                        "        xmlns:mc='http://milezerosoftware.com/mc/1.0/'>\n" +
+                        "      <dc:title>\n" +
+                        "        <rdf:Alt>\n" +
+                        "          <rdf:li xml:lang='x-default'>");
+        static final byte[] TITLE_END = ascii(
+                "</rdf:li>\n" +
+                        "        </rdf:Alt>\n" +
+                        "      </dc:title>\n" +
+                        "      <dc:description>\n" +
+                        "        <rdf:Alt>\n" +
+                        "          <rdf:li xml:lang='x-default'>");
+        static final byte[] DESCRIPTION_END = ascii(
+                "</rdf:li>\n" +
+                        "        </rdf:Alt>\n" +
+                        "      </dc:description>\n");
+        static final byte[] FOOTER = ascii(
+                "    </rdf:Description>\n" +
+                        "  </rdf:RDF>\n" +
+                        "</x:xmpmeta>");
+
         private String title = "";
         private String description = "";
-        private final StringBuilder customProperties = new StringBuilder();
+        private final List<XmpProperty> properties = new ArrayList<>();
+        private final List<String> values = new ArrayList<>();
 
         /**
          * Sets the document title (dc:title).
@@ -378,7 +1125,7 @@ public class MetadataHandler {
          * @return This builder for chaining
          */
         public XmpBuilder setTitle(String title) {
-            this.title = escapeXml(title);
+            this.title = title;
             return this;
         }
 
@@ -389,7 +1136,7 @@ public class MetadataHandler {
          * @return This builder for chaining
          */
         public XmpBuilder setDescription(String description) {
-            this.description = escapeXml(description);
+            this.description = description;
             return this;
         }
 
@@ -402,8 +1149,8 @@ public class MetadataHandler {
          * @return This builder for chaining
          */
         public XmpBuilder addCustomProperty(String namespace, String key, String value) {
-            customProperties.append(String.format("      <%s:%s>%s</%s:%s>\n",
-                    namespace, key, escapeXml(value), namespace, key));
+            properties.add(XmpProperty.of(namespace, key));
+            values.add(value);
             return this;
         }
 
@@ -413,37 +1160,14 @@ public class MetadataHandler {
          * @return The XMP XML string
          */
         public String build() {
-            return String.format(
-                    "<x:xmpmeta xmlns:x='adobe:ns:meta/' >\n" +
-                            "  <rdf:RDF xmlns:rdf='http://www.w3.org/1999/02/22-rdf-syntax-ns#'>\n" +
-                            "    <rdf:Description rdf:about=''\n" +
-                            "        xmlns:dc='http://purl.org/dc/elements/1.1/'\n" +
-                            "        xmlns:mc='http://milezerosoftware.com/mc/1.0/'>\n" +
-                            "      <dc:title>\n" +
-                            "        <rdf:Alt>\n" +
-                            "          <rdf:li xml:lang='x-default'>%s</rdf:li>\n" +
-                            "        </rdf:Alt>\n" +
-                            "      </dc:title>\n" +
-                            "      <dc:description>\n" +
-                            "        <rdf:Alt>\n" +
-                            "          <rdf:li xml:lang='x-default'>%s</rdf:li>\n" +
-                            "        </rdf:Alt>\n" +
-                            "      </dc:description>\n" +
-                            "%s" +
-                            "    </rdf:Description>\n" +
-                            "  </rdf:RDF>\n" +
-                            "</x:xmpmeta>",
-                    title, description, customProperties.toString());
-        }
-
-        private String escapeXml(String input) {
-            if (input == null)
-                return "";
-            return input.replace("&", "&amp;")
-                    .replace("<", "&lt;")
-                    .replace(">", "&gt;")
-                    .replace("\"", "&quot;")
-                    .replace("'", "&apos;");
+            ItxtChunkWriter out = new ItxtChunkWriter()
+                    .raw(HEADER).escaped(title)
+                    .raw(TITLE_END).escaped(description)
+                    .raw(DESCRIPTION_END);
+            for (int i = 0; i < properties.size(); i++) {
+                properties.get(i).write(out, values.get(i));
+            }
+            return out.raw(FOOTER).toString();
         }
     }
 }
@@ -0,0 +1,132 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Visits every screenshot of a whole screenshots folder on a fork/join pool,
+ * for {@link MetadataHandler#readAll} and {@link MetadataHandler#listAll}.
+ *
+ * <p>
+ * Every directory is a task that forks one task per subdirectory, so listing
+ * proceeds down all branches at once. The files of a directory are split in
+ * halves until a batch is small enough to visit, which lets idle workers steal
+ * from a large directory instead of waiting on the one thread that listed
+ * it.
+ * </p>
+ */
+final class MetadataScanner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+
+    /** Files visited by one task without splitting further. */
+    private static final int BATCH_SIZE = 16;
+    private static final int MAX_DEPTH = 8;
+
+    private MetadataScanner() {
+    }
+
+    /**
+     * Scans a folder and waits for the scan to finish.
+     *
+     * @param root        The folder to scan
+     * @param parallelism The number of threads to visit with
+     * @param sink        Receives each screenshot
+     */
+    static void scan(Path root, int parallelism, Consumer<Path> sink) {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            pool.invoke(new DirectoryTask(root, 0, sink));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static boolean isScreenshot(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".png") || lower.endsWith(".qoi");
+    }
+
+    private static final class DirectoryTask extends RecursiveAction {
+        private final Path dir;
+        private final int depth;
+        private final Consumer<Path> sink;
+
+        DirectoryTask(Path dir, int depth, Consumer<Path> sink) {
+            this.dir = dir;
+            this.depth = depth;
+            this.sink = sink;
+        }
+
+        @Override
+        protected void compute() {
+            List<Path> files = new ArrayList<>();
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path path : stream) {
+                    String name = path.getFileName().toString();
+                    if (name.startsWith(".")) {
+                        continue;
+                    }
+                    if (isScreenshot(name)) {
+                        files.add(path);
+                    } else if (depth < MAX_DEPTH && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                        DirectoryTask task = new DirectoryTask(path, depth + 1, sink);
+                        task.fork();
+                        subdirectories.add(task);
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Failed to list {}: {}", dir, e.getMessage());
+            }
+
+            if (!files.isEmpty()) {
+                new FileBatch(files, 0, files.size(), sink).invoke();
+            }
+            for (DirectoryTask task : subdirectories) {
+                task.join();
+            }
+        }
+    }
+
+    private static final class FileBatch extends RecursiveAction {
+        private final List<Path> files;
+        private final int start;
+        private final int end;
+        private final Consumer<Path> sink;
+
+        FileBatch(List<Path> files, int start, int end, Consumer<Path> sink) {
+            this.files = files;
+            this.start = start;
+            this.end = end;
+            this.sink = sink;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > BATCH_SIZE) {
+                int mid = (start + end) >>> 1;
+                invokeAll(new FileBatch(files, start, mid, sink), new FileBatch(files, mid, end, sink));
+                return;
+            }
+            for (int i = start; i < end; i++) {
+                sink.accept(files.get(i));
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.milezerosoftware.mc.screenshotmanagerenhanced.client.util;
 
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.EncoderProfile;
+
 import java.io.File;
 
 /**
@@ -24,17 +26,129 @@ public class MetadataTask {
     /** The target screenshot file path. */
     public final File file;
 
-    /** The collected metadata to embed. */
-    public final MetadataHandler.ScreenshotMetadata metadata;
+    /**
+     * The metadata to embed, or {@code null} if the screenshot is only tracked
+     * so it can be written by this mod's encoder. Formatted on first use.
+     */
+    private final PendingMetadata pending;
+    private volatile MetadataHandler.ScreenshotMetadata metadata;
+    private volatile String perceptualHash;
+    private volatile String duplicateOf;
+
+    /** The encoder profile resolved for the screenshot's world at capture. */
+    public final EncoderProfile profile;
+
+    /** {@link System#nanoTime()} at the moment the screenshot was captured. */
+    public final long captureNanos;
 
     /**
-     * Creates a new MetadataTask.
+     * Whether the file is known to be completely written (signalled by the
+     * write-completion event) rather than needing to be polled for.
+     */
+    public final boolean writeConfirmed;
+
+    /**
+     * Creates a new MetadataTask captured now, whose file still needs to be
+     * waited for.
      *
      * @param file     The target screenshot file
      * @param metadata The metadata to embed
      */
     public MetadataTask(File file, MetadataHandler.ScreenshotMetadata metadata) {
+        this(file, metadata, EncoderProfile.STANDARD_PNG);
+    }
+
+    /**
+     * Creates a new MetadataTask captured now, whose file still needs to be
+     * waited for.
+     *
+     * @param file     The target screenshot file
+     * @param metadata The metadata to embed, or {@code null}
+     * @param profile  The encoder profile for the file
+     */
+    public MetadataTask(File file, MetadataHandler.ScreenshotMetadata metadata, EncoderProfile profile) {
+        this(file, metadata != null ? () -> metadata : null, profile, System.nanoTime(), false);
+    }
+
+    /**
+     * Creates a new MetadataTask captured now, whose metadata is formatted by
+     * the thread that first needs it.
+     *
+     * @param file     The target screenshot file
+     * @param metadata The captured metadata, or {@code null}
+     * @param profile  The encoder profile for the file
+     */
+    public MetadataTask(File file, PendingMetadata metadata, EncoderProfile profile) {
+        this(file, metadata, profile, System.nanoTime(), false);
+    }
+
+    /**
+     * Creates a new MetadataTask.
+     *
+     * @param file           The target screenshot file
+     * @param metadata       The captured metadata, or {@code null}
+     * @param profile        The encoder profile for the file
+     * @param captureNanos   {@link System#nanoTime()} at capture
+     * @param writeConfirmed Whether the file is known to be fully written
+     */
+    public MetadataTask(File file, PendingMetadata metadata, EncoderProfile profile, long captureNanos,
+            boolean writeConfirmed) {
         this.file = file;
-        this.metadata = metadata;
+        this.pending = metadata;
+        this.profile = profile;
+        this.captureNanos = captureNanos;
+        this.writeConfirmed = writeConfirmed;
+    }
+
+    /**
+     * Returns a copy of this task marked as fully written.
+     *
+     * @return A confirmed copy of this task
+     */
+    public MetadataTask confirmed() {
+        MetadataTask copy = new MetadataTask(file, pending, profile, captureNanos, true);
+        copy.perceptualHash = perceptualHash;
+        copy.duplicateOf = duplicateOf;
+        copy.metadata = metadata;
+        return copy;
+    }
+
+    /**
+     * Adds the image's perceptual hash to the metadata. Called by the write
+     * hook while the pixels are in memory, before the metadata is written.
+     *
+     * @param hash        The hash as stored in the metadata
+     * @param duplicateOf The screenshot this one nearly duplicates, or
+     *                    {@code null}
+     */
+    public void setPerceptualHash(String hash, String duplicateOf) {
+        this.perceptualHash = hash;
+        this.duplicateOf = duplicateOf;
+        this.metadata = null; // Formatted again with the hash
+    }
+
+    /**
+     * @return {@code true} if this task carries metadata to write
+     */
+    public boolean hasMetadata() {
+        return pending != null;
+    }
+
+    /**
+     * Gets the formatted metadata, formatting it on the calling thread the
+     * first time. Must not be called on the Render thread.
+     *
+     * @return The metadata, or {@code null} if the task carries none
+     */
+    public MetadataHandler.ScreenshotMetadata getMetadata() {
+        MetadataHandler.ScreenshotMetadata formatted = metadata;
+        if (formatted == null && pending != null) {
+            formatted = pending.format();
+            if (perceptualHash != null) {
+                formatted = formatted.withPerceptualHash(perceptualHash, duplicateOf);
+            }
+            metadata = formatted;
+        }
+        return formatted;
     }
 }
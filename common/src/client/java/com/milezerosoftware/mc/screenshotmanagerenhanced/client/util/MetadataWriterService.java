@@ -0,0 +1,246 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.util;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ConfigManager;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ModConfig;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.OverflowPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Long-lived, bounded worker pool that embeds metadata into screenshots.
+ *
+ * <p>
+ * Screenshots enqueue a small {@link MetadataTask} (file path and collected
+ * metadata, never pixel data) into a fixed-capacity queue. A fixed number of
+ * daemon workers drain the queue, so thread count and memory stay flat no
+ * matter how quickly screenshots are taken.
+ * </p>
+ *
+ * <p>
+ * When the queue is full, the configured {@link OverflowPolicy} decides
+ * whether the caller waits, the oldest task is dropped, or the new task
+ * degrades to an XMP sidecar file.
+ * </p>
+ */
+public class MetadataWriterService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+    private static final long WORKER_POLL_MS = 250;
+    private static final long DEFAULT_DRAIN_TIMEOUT_MS = 5000;
+
+    private static volatile MetadataWriterService instance;
+
+    private final BlockingQueue<MetadataTask> queue;
+    private final OverflowPolicy policy;
+    private final Consumer<MetadataTask> processor;
+    private final Consumer<MetadataTask> sidecarWriter;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean accepting = true;
+
+    /**
+     * Creates a writer service with explicit settings and task handlers.
+     *
+     * @param workerCount   Number of worker threads (at least 1)
+     * @param capacity      Maximum number of queued tasks (at least 1)
+     * @param policy        What to do when the queue is full
+     * @param processor     Handles a dequeued task on a worker thread
+     * @param sidecarWriter Handles a task degraded by {@link OverflowPolicy#SIDECAR}
+     */
+    MetadataWriterService(int workerCount, int capacity, OverflowPolicy policy,
+            Consumer<MetadataTask> processor, Consumer<MetadataTask> sidecarWriter) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.policy = policy != null ? policy : OverflowPolicy.BLOCK;
+        this.processor = processor;
+        this.sidecarWriter = sidecarWriter;
+
+        for (int i = 0; i < Math.max(1, workerCount); i++) {
+            Thread worker = new Thread(this::runWorker, "ScreenshotMetadataWriter-" + (i + 1));
+            worker.setDaemon(true);
+            worker.setPriority(Thread.NORM_PRIORITY - 1);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Gets the shared writer service, creating it from the current
+     * configuration on first use.
+     *
+     * @return The shared service
+     */
+    public static MetadataWriterService getInstance() {
+        MetadataWriterService service = instance;
+        if (service == null) {
+            synchronized (MetadataWriterService.class) {
+                service = instance;
+                if (service == null) {
+                    ModConfig config = ConfigManager.getInstance();
+                    service = new MetadataWriterService(
+                            config.metadataWorkerThreads,
+                            config.metadataQueueCapacity,
+                            config.metadataOverflowPolicy,
+                            MetadataHandler::processTask,
+                            task -> MetadataHandler.writeSidecar(task.file, task.getMetadata()));
+                    instance = service;
+                }
+            }
+        }
+        return service;
+    }
+
+    /**
+     * Drains and stops the shared service, if it was ever started.
+     *
+     * <p>
+     * Intended for client shutdown. Queued tasks are given a short grace period
+     * to finish; anything still pending afterwards is written as a sidecar.
+     * </p>
+     */
+    public static void shutdown() {
+        MetadataWriterService service;
+        synchronized (MetadataWriterService.class) {
+            service = instance;
+            instance = null;
+        }
+        if (service != null) {
+            service.drainAndStop(DEFAULT_DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Queues a task for processing, applying the overflow policy if the queue
+     * is full.
+     *
+     * @param task The task to queue
+     * @return {@code true} if the task was queued for embedding, {@code false} if
+     *         it was rejected or degraded to a sidecar
+     */
+    public boolean submit(MetadataTask task) {
+        if (!accepting) {
+            sidecarWriter.accept(task);
+            return false;
+        }
+
+        if (queue.offer(task)) {
+            return true;
+        }
+
+        switch (policy) {
+            case BLOCK -> {
+                try {
+                    queue.put(task);
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            case DROP_OLDEST -> {
+                while (!queue.offer(task)) {
+                    MetadataTask evicted = queue.poll();
+                    if (evicted != null) {
+                        LOGGER.warn("Metadata queue full, dropped pending task for {}", evicted.file.getName());
+                    }
+                }
+                return true;
+            }
+            case SIDECAR -> {
+                LOGGER.warn("Metadata queue full, writing sidecar for {}", task.file.getName());
+                sidecarWriter.accept(task);
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stops accepting tasks, lets the workers finish the queue and waits for
+     * them to exit.
+     *
+     * @param timeout Maximum time to wait for the queue to drain
+     * @param unit    Unit of {@code timeout}
+     * @return {@code true} if every queued task was processed in time
+     */
+    public boolean drainAndStop(long timeout, TimeUnit unit) {
+        accepting = false;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        for (Thread worker : workers) {
+            long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMs <= 0) {
+                break;
+            }
+            try {
+                worker.join(remainingMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        // Anything the workers could not get to is preserved as a sidecar
+        List<MetadataTask> leftovers = new ArrayList<>();
+        queue.drainTo(leftovers);
+        for (MetadataTask task : leftovers) {
+            sidecarWriter.accept(task);
+        }
+
+        boolean drained = leftovers.isEmpty();
+        for (Thread worker : workers) {
+            if (worker.isAlive()) {
+                worker.interrupt();
+                drained = false;
+            }
+        }
+        if (!drained) {
+            LOGGER.warn("Metadata writer stopped before draining; {} task(s) written as sidecars", leftovers.size());
+        }
+        return drained;
+    }
+
+    /**
+     * @return The number of tasks waiting for a worker
+     */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * @return The number of worker threads owned by this service
+     */
+    public int getWorkerCount() {
+        return workers.size();
+    }
+
+    private void runWorker() {
+        while (true) {
+            MetadataTask task;
+            try {
+                task = queue.poll(WORKER_POLL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (task == null) {
+                if (!accepting) {
+                    return; // Queue drained after shutdown
+                }
+                continue;
+            }
+
+            try {
+                processor.accept(task);
+            } catch (Exception e) {
+                // Metadata embedding is non-critical, but errors aid debugging
+                LOGGER.error("Failed to embed metadata into {}", task.file.getName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.util;
+
+/**
+ * Screenshot metadata that has been captured but not yet formatted.
+ *
+ * <p>
+ * Capturing happens on the Render thread and is kept to copying raw values;
+ * {@link #format()} turns them into text and is meant to be called on the
+ * thread that writes the file.
+ * </p>
+ *
+ * @see ScreenshotMetadataCollector#capture()
+ */
+@FunctionalInterface
+public interface PendingMetadata {
+
+    /**
+     * Formats the captured values.
+     *
+     * @return The metadata to write
+     */
+    MetadataHandler.ScreenshotMetadata format();
+}
@@ -0,0 +1,287 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Tracks screenshots between file name generation and the moment vanilla has
+ * finished writing them.
+ *
+ * <p>
+ * The normal path is event driven: the {@code NativeImage} write hook reports
+ * completion via {@link #isExpected(Path)} and {@link #onWritten(File)}, and
+ * the task is handed to the writer immediately with the file marked as
+ * complete. If no completion event arrives within
+ * {@link #FALLBACK_DELAY_MS}, the task falls back to the polling path, which
+ * waits for content to be written to the file and for it to stabilize.
+ * </p>
+ *
+ * <p>
+ * With encode-time embedding, the write hook instead {@link #claim(Path)}s the
+ * task and writes the metadata while encoding, so no post-processing is
+ * needed at all.
+ * </p>
+ *
+ * <p>
+ * Screenshots registered without metadata are only tracked so the write hook
+ * can encode them with the parallel encoder; they are never handed on.
+ * </p>
+ *
+ * <p>
+ * Every single screenshot's name is reserved with an empty placeholder. If
+ * vanilla fails to write it, e.g. because {@code NativeImage.writeTo} threw,
+ * no event arrives; the placeholder is then released after
+ * {@link #PLACEHOLDER_TIMEOUT_MS}, so no empty file is left in the folder.
+ * </p>
+ *
+ * <p>
+ * Capture-to-embed latency is recorded separately for each path.
+ * </p>
+ */
+public class ScreenshotCompletionTracker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+    private static final long FALLBACK_DELAY_MS = 5000;
+    private static final long PLACEHOLDER_TIMEOUT_MS = 30_000;
+
+    /** Capture-to-embed latency of screenshots confirmed by the write event. */
+    public static final LatencyStats EVENT_LATENCY = new LatencyStats("event");
+
+    /** Capture-to-embed latency of screenshots that fell back to polling. */
+    public static final LatencyStats POLLING_LATENCY = new LatencyStats("polling");
+
+    /** Capture-to-embed latency of screenshots encoded with their metadata. */
+    public static final LatencyStats ENCODE_LATENCY = new LatencyStats("encode");
+
+    private static final Map<Path, MetadataTask> pending = new ConcurrentHashMap<>();
+    private static volatile ScheduledExecutorService fallbackScheduler;
+    private static volatile Consumer<MetadataTask> sink = MetadataHandler::submit;
+
+    private ScreenshotCompletionTracker() {
+    }
+
+    /**
+     * Registers a screenshot that is about to be written.
+     *
+     * @param task The task to hand over once the file is written
+     */
+    public static void expect(MetadataTask task) {
+        Path key = key(task.file);
+        pending.put(key, task);
+        getFallbackScheduler().schedule(() -> fallback(key), FALLBACK_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Releases a reserved screenshot name if nothing has been written to it
+     * after {@link #PLACEHOLDER_TIMEOUT_MS}. A file with content is never
+     * touched.
+     *
+     * @param file The placeholder returned by
+     *             {@link ScreenshotFileAllocator#reserve}
+     */
+    public static void expirePlaceholder(Path file) {
+        expirePlaceholder(file, PLACEHOLDER_TIMEOUT_MS);
+    }
+
+    static void expirePlaceholder(Path file, long delayMs) {
+        getFallbackScheduler().schedule(() -> ScreenshotFileAllocator.getInstance().release(file), delayMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Checks whether a path belongs to a screenshot awaiting its write event.
+     *
+     * @param path The path being written
+     * @return {@code true} if the path was registered via {@link #expect}
+     */
+    public static boolean isExpected(Path path) {
+        return !pending.isEmpty() && pending.containsKey(key(path.toFile()));
+    }
+
+    /**
+     * Looks up a pending screenshot without taking it.
+     *
+     * @param path The path being written
+     * @return The pending task, or {@code null} if none is registered
+     */
+    public static MetadataTask peek(Path path) {
+        return pending.isEmpty() ? null : pending.get(key(path.toFile()));
+    }
+
+    /**
+     * Handles the write-completion event for a screenshot.
+     *
+     * @param file The screenshot file that was just written
+     */
+    public static void onWritten(File file) {
+        MetadataTask task = pending.remove(key(file));
+        if (task != null && task.hasMetadata()) {
+            sink.accept(task.confirmed());
+        }
+    }
+
+    /**
+     * Takes ownership of a pending screenshot so its metadata can be written
+     * while encoding. The write event will then find nothing to do.
+     *
+     * @param path The path about to be written
+     * @return The pending task, or {@code null} if none is registered
+     */
+    public static MetadataTask claim(Path path) {
+        return pending.remove(key(path.toFile()));
+    }
+
+    /**
+     * Returns a claimed task to the pending set, e.g. after encode-time
+     * embedding failed and vanilla will write the file instead.
+     *
+     * @param task The task previously returned by {@link #claim(Path)}
+     */
+    public static void restore(MetadataTask task) {
+        pending.put(key(task.file), task);
+    }
+
+    /**
+     * Hands every outstanding screenshot to the polling path and stops the
+     * fallback timer. Called on client shutdown, before the writer drains.
+     */
+    public static void shutdown() {
+        List<Path> keys = new ArrayList<>(pending.keySet());
+        for (Path key : keys) {
+            fallback(key);
+        }
+
+        ScheduledExecutorService scheduler = fallbackScheduler;
+        fallbackScheduler = null;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+
+        LOGGER.info("Screenshot metadata latency: {}; {}; {}", ENCODE_LATENCY, EVENT_LATENCY, POLLING_LATENCY);
+    }
+
+    /**
+     * Replaces the consumer that receives ready tasks. Used by tests.
+     *
+     * @param consumer The new consumer
+     */
+    static void setSink(Consumer<MetadataTask> consumer) {
+        sink = consumer;
+    }
+
+    /**
+     * Records the capture-to-embed latency of a finished task.
+     *
+     * @param task The task whose metadata was just embedded
+     */
+    static void recordEmbedded(MetadataTask task) {
+        record(task, task.writeConfirmed ? EVENT_LATENCY : POLLING_LATENCY);
+    }
+
+    /**
+     * Records the capture-to-embed latency of a screenshot whose metadata was
+     * written during encoding.
+     *
+     * @param task The claimed task
+     */
+    static void recordEncoded(MetadataTask task) {
+        record(task, ENCODE_LATENCY);
+    }
+
+    private static void record(MetadataTask task, LatencyStats stats) {
+        long nanos = System.nanoTime() - task.captureNanos;
+        stats.record(nanos);
+        LOGGER.debug("Embedded metadata into {} {} ms after capture ({} path)",
+                task.file.getName(), TimeUnit.NANOSECONDS.toMillis(nanos), stats.name);
+    }
+
+    private static void fallback(Path key) {
+        MetadataTask task = pending.remove(key);
+        if (task != null && task.hasMetadata()) {
+            LOGGER.debug("No write event for {}, falling back to polling", task.file.getName());
+            sink.accept(task);
+        }
+    }
+
+    private static ScheduledExecutorService getFallbackScheduler() {
+        ScheduledExecutorService scheduler = fallbackScheduler;
+        if (scheduler == null) {
+            synchronized (ScreenshotCompletionTracker.class) {
+                scheduler = fallbackScheduler;
+                if (scheduler == null) {
+                    scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                        Thread thread = new Thread(r, "ScreenshotWriteFallback");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    fallbackScheduler = scheduler;
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    private static Path key(File file) {
+        return file.toPath().toAbsolutePath().normalize();
+    }
+
+    /**
+     * Running count, mean and maximum of a latency measurement.
+     */
+    public static class LatencyStats {
+        private final String name;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        LatencyStats(String name) {
+            this.name = name;
+        }
+
+        void record(long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        /**
+         * @return The number of recorded samples
+         */
+        public long getCount() {
+            return count.get();
+        }
+
+        /**
+         * @return The mean latency in milliseconds, or 0 without samples
+         */
+        public double getMeanMillis() {
+            long n = count.get();
+            return n == 0 ? 0 : totalNanos.get() / (double) n / 1_000_000.0;
+        }
+
+        /**
+         * @return The maximum latency in milliseconds
+         */
+        public double getMaxMillis() {
+            return maxNanos.get() / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s n=%d mean=%.1f ms max=%.1f ms", name, getCount(), getMeanMillis(),
+                    getMaxMillis());
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.util;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.NativeImagePixelSource;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.ParallelPngEncoder;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PixelSource;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.ScreenshotEncoder;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.ScreenshotEncoders;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ConfigManager;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.EmbedMode;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.EncoderProfile;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ModConfig;
+import net.minecraft.client.texture.NativeImage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes screenshots with this mod's own encoders in place of vanilla's.
+ *
+ * <p>
+ * The screenshot is encoded directly from the {@link NativeImage}'s memory
+ * with the {@link ScreenshotEncoder} for the profile chosen at capture. This
+ * takes over from vanilla whenever it changes the result:
+ * </p>
+ * <ul>
+ * <li>Encode-time embedding: the XMP iTXt chunk is emitted between IHDR and
+ * the first IDAT, so each file is written exactly once with no read-back,
+ * temp file or rename. Formats without metadata chunks get an {@code .xmp}
+ * sidecar instead.</li>
+ * <li>Parallel encoding: large PNG captures are filtered and deflated on all
+ * cores by {@link ParallelPngEncoder}, which also shortens how long the
+ * off-heap image stays allocated.</li>
+ * <li>Any profile other than {@link EncoderProfile#STANDARD_PNG}.</li>
+ * </ul>
+ */
+public class ScreenshotFileWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+    private static final int OUTPUT_BUFFER_SIZE = 256 * 1024;
+
+    private ScreenshotFileWriter() {
+    }
+
+    /**
+     * Checks whether a screenshot has to be written by this mod rather than
+     * vanilla.
+     *
+     * @param config   The current configuration
+     * @param profile  The screenshot's encoder profile
+     * @param metadata Whether metadata will be written for it
+     * @return {@code true} if the write hook must encode the file
+     */
+    public static boolean needsCustomEncoder(ModConfig config, EncoderProfile profile, boolean metadata) {
+        return profile != EncoderProfile.STANDARD_PNG || config.parallelEncoding
+                || (metadata && config.metadataEmbedMode == EmbedMode.ENCODE_TIME);
+    }
+
+    /**
+     * Encodes a pending screenshot, if one is registered for the path and
+     * {@linkplain #needsCustomEncoder this mod's encoder applies} to it.
+     *
+     * <p>
+     * If a PNG write fails, the pending task is restored so the caller can let
+     * vanilla write the file and the post-write path embeds the metadata
+     * instead. Vanilla cannot write other formats, so their failures are
+     * rethrown for vanilla to report.
+     * </p>
+     *
+     * @param image         The captured screenshot
+     * @param path          The destination path
+     * @param onFileWritten Run once the file is written, before the
+     *                      {@linkplain MetadataHandler#addWrittenListener
+     *                      metadata listeners}, which may move it
+     * @return {@code true} if the file was written and vanilla's write must be
+     *         skipped
+     * @throws UncheckedIOException If a non-PNG profile failed to write
+     */
+    public static boolean tryWrite(NativeImage image, Path path, Runnable onFileWritten) {
+        MetadataTask task = ScreenshotCompletionTracker.claim(path);
+        if (task == null) {
+            return false;
+        }
+
+        ModConfig config = ConfigManager.getInstance();
+        if (!needsCustomEncoder(config, task.profile, task.hasMetadata())) {
+            ScreenshotCompletionTracker.restore(task);
+            return false;
+        }
+
+        boolean embed = task.hasMetadata() && task.profile.supportsEmbeddedMetadata()
+                && config.metadataEmbedMode == EmbedMode.ENCODE_TIME;
+        try {
+            byte[][] chunks = embed ? new byte[][] { MetadataHandler.createXmpChunk(task.getMetadata()) } : new byte[0][];
+            write(new NativeImagePixelSource(image), path, task.profile, config.parallelEncoding, chunks);
+        } catch (IOException | RuntimeException e) {
+            boolean vanillaCanWrite = "png".equals(task.profile.getFileExtension());
+            if (!vanillaCanWrite) {
+                throw e instanceof IOException io ? new UncheckedIOException(io) : (RuntimeException) e;
+            }
+            LOGGER.warn("Encoding {} failed, using vanilla writer: {}", path.getFileName(), e.getMessage());
+            ScreenshotCompletionTracker.restore(task);
+            return false;
+        }
+        onFileWritten.run();
+
+        if (!task.hasMetadata()) {
+            return true;
+        }
+        if (embed) {
+            ScreenshotCompletionTracker.recordEncoded(task);
+            MetadataHandler.notifyWritten(path.toFile(), task.getMetadata());
+        } else if (!task.profile.supportsEmbeddedMetadata()) {
+            MetadataHandler.writeSidecar(path.toFile(), task.getMetadata());
+            ScreenshotCompletionTracker.recordEncoded(task);
+            MetadataHandler.notifyWritten(path.toFile(), task.getMetadata());
+        } else {
+            // Post-write embedding still applies; the write event picks it up
+            ScreenshotCompletionTracker.restore(task);
+        }
+        return true;
+    }
+
+    /**
+     * Encodes pixels at {@code path} with the encoder for a profile.
+     *
+     * @param source          The pixels to encode
+     * @param path            The destination path
+     * @param profile         The encoder profile
+     * @param parallel        Whether large PNGs may be encoded on all cores
+     * @param ancillaryChunks Serialized chunks to embed before the image data
+     * @throws IOException If writing fails
+     */
+    public static void write(PixelSource source, Path path, EncoderProfile profile, boolean parallel,
+            byte[]... ancillaryChunks) throws IOException {
+        ScreenshotEncoder encoder = ScreenshotEncoders.create(profile, parallel,
+                (long) source.getWidth() * source.getHeight());
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), OUTPUT_BUFFER_SIZE)) {
+            encoder.encode(source, out, ancillaryChunks);
+        }
+    }
+}
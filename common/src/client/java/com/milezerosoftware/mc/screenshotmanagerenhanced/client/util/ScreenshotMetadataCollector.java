@@ -4,8 +4,19 @@ import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayerEntity;
 import net.minecraft.client.world.ClientWorld;
 import net.minecraft.SharedConstants;
+import net.minecraft.stat.Stat;
 import net.minecraft.stat.Stats;
+import net.minecraft.text.TranslatableTextContent;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.Language;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.Difficulty;
+import net.minecraft.world.GameMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Collects metadata from the current Minecraft game state for embedding into
@@ -13,8 +24,11 @@ import net.minecraft.util.math.BlockPos;
  * 
  * <p>
  * This collector gathers information about the current world, player position,
- * biome, dimension, and other game state details. All data is collected on the
- * Render thread to ensure access to game state objects.
+ * biome, dimension, and other game state details. Collection has two phases:
+ * {@link #capture()} runs on the Render thread and only copies primitives,
+ * registry key paths, the player name and enums out of the game state. Turning them into text
+ * happens in {@link PendingMetadata#format()}, which is called on whichever
+ * background thread writes the file.
  * </p>
  * 
  * <p>
@@ -28,12 +42,42 @@ import net.minecraft.util.math.BlockPos;
  */
 public class ScreenshotMetadataCollector {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+
+    /** Pascal Case names of dimension and biome paths; a few dozen at most. */
+    private static final Map<String, String> DISPLAY_NAMES = new ConcurrentHashMap<>();
+    /**
+     * Translation keys of the difficulty names. Only the key is cached; the
+     * name is looked up in the current language each time, so a language
+     * switch applies to the next screenshot.
+     */
+    private static final Map<Difficulty, String> DIFFICULTY_KEYS = new ConcurrentHashMap<>();
+
+    private static volatile String versionName;
+    private static Stat<Identifier> playTimeStat;
+
+    /**
+     * Collects and formats metadata in one go.
+     *
+     * <p>
+     * This method must be called from the Render thread. Prefer
+     * {@link #capture()} and format on a background thread.
+     * </p>
+     *
+     * @return A populated {@link MetadataHandler.ScreenshotMetadata} instance
+     */
+    public static MetadataHandler.ScreenshotMetadata collect() {
+        return capture().format();
+    }
+
     /**
-     * Collects metadata from the current game state.
+     * Copies the raw metadata values out of the current game state.
      * 
      * <p>
      * This method must be called from the Render thread to ensure
-     * access to client-side game objects (player, world, etc.).
+     * access to client-side game objects (player, world, etc.). It does no
+     * string formatting; the world identity comes from the cached
+     * {@link WorldSession}.
      * </p>
      * 
      * <p>
@@ -41,86 +85,94 @@ public class ScreenshotMetadataCollector {
      * when game state is unavailable (e.g., screenshot from main menu).
      * </p>
      *
-     * @return A populated {@link MetadataHandler.ScreenshotMetadata} instance
+     * @return The raw values, to be formatted off the Render thread
      */
-    public static MetadataHandler.ScreenshotMetadata collect() {
+    public static PendingMetadata capture() {
+        long start = System.nanoTime();
         MinecraftClient client = MinecraftClient.getInstance();
         ClientPlayerEntity player = client.player;
         ClientWorld world = client.world;
 
         // Fallbacks for edge cases (e.g., screenshot from menu)
         String worldName = WorldUtils.getWorldId();
+        String dimension = world != null ? world.getRegistryKey().getValue().getPath() : null;
 
-        // Dimension - formatted as Pascal Case
-        String dimension = world != null
-                ? toPascalCase(world.getRegistryKey().getValue().getPath())
-                : "Unknown";
-
-        // Coordinates - formatted as "x: 12, y: 80, z: 30"
-        String coordinates = formatCoordinates(player);
-
-        // In-Game Days
-        double days = world != null ? world.getTimeOfDay() / 24000.0 : 0;
-        String daysPlayed = String.format("%.2f d", days);
-
-        // Real-Time World Age (player's total play time in this world)
-        int totalTicks = 0;
+        int x = 0;
+        int y = 0;
+        int z = 0;
+        String biome = null;
+        int playTicks = 0;
+        String playerName = null;
         if (player != null) {
-            try {
-                totalTicks = player.getStatHandler().getStat(Stats.CUSTOM.getOrCreateStat(Stats.PLAY_TIME));
-            } catch (Exception ignored) {
+            BlockPos pos = player.getBlockPos();
+            x = pos.getX();
+            y = pos.getY();
+            z = pos.getZ();
+            if (world != null) {
+                try {
+                    biome = world.getBiome(pos).getKey().get().getValue().getPath();
+                } catch (Exception ignored) {
+                }
             }
-        }
-
-        double realDays = totalTicks / 20.0 / 60.0 / 60.0 / 24.0;
-        String worldAge = String.format("%.2f d", realDays);
-
-        String playerName = player != null
-                ? player.getName().getString()
-                : "Unknown";
-        String difficulty = world != null
-                ? world.getDifficulty().getTranslatableName().getString()
-                : "Unknown";
-        String gameMode = client.interactionManager != null
-                ? client.interactionManager.getCurrentGameMode().asString()
-                : "Unknown";
-        String minecraftVersion = getMinecraftVersionName();
-
-        // Biome - formatted as Pascal Case
-        String biome = "Unknown";
-        if (world != null && player != null) {
             try {
-                String rawBiome = world.getBiome(player.getBlockPos()).getKey().get().getValue().getPath();
-                biome = toPascalCase(rawBiome);
+                Stat<Identifier> stat = playTimeStat;
+                if (stat == null) {
+                    stat = Stats.CUSTOM.getOrCreateStat(Stats.PLAY_TIME);
+                    playTimeStat = stat;
+                }
+                playTicks = player.getStatHandler().getStat(stat);
             } catch (Exception ignored) {
             }
+            // The name is a text component of the entity, so it is resolved
+            // to a string here rather than on the writer thread
+            playerName = player.getName().getString();
         }
 
-        return new MetadataHandler.ScreenshotMetadata(
-                worldName,
-                dimension,
-                coordinates,
-                daysPlayed,
-                playerName,
-                difficulty,
-                gameMode,
-                minecraftVersion,
-                biome,
-                worldAge);
+        RawMetadata raw = new RawMetadata(worldName, dimension, biome, x, y, z,
+                world != null ? world.getTimeOfDay() : 0, playTicks, playerName,
+                world != null ? world.getDifficulty() : null,
+                client.interactionManager != null ? client.interactionManager.getCurrentGameMode() : null);
+        LOGGER.debug("Captured screenshot metadata in {} ns on the render thread", System.nanoTime() - start);
+        return raw;
     }
 
     /**
-     * Formats player coordinates as a labeled string.
-     *
-     * @param player The player entity, or null if unavailable
-     * @return Formatted coordinates string (e.g., "x: 70, y: 87, z: 159")
+     * Metadata as copied on the Render thread: nothing but primitives,
+     * identifier paths that already exist as strings, the player name and
+     * enums.
      */
-    private static String formatCoordinates(ClientPlayerEntity player) {
-        if (player == null) {
-            return "x: 0, y: 0, z: 0";
+    private record RawMetadata(String worldName, String dimension, String biome, int x, int y, int z,
+            long timeOfDay, int playTicks, String playerName, Difficulty difficulty, GameMode gameMode)
+            implements PendingMetadata {
+
+        @Override
+        public MetadataHandler.ScreenshotMetadata format() {
+            // Real-Time World Age (player's total play time in this world)
+            double realDays = playTicks / 20.0 / 60.0 / 60.0 / 24.0;
+            return new MetadataHandler.ScreenshotMetadata(
+                    worldName,
+                    displayName(dimension),
+                    "x: " + x + ", y: " + y + ", z: " + z,
+                    String.format("%.2f d", timeOfDay / 24000.0),
+                    playerName != null ? playerName : "Unknown",
+                    difficulty != null ? Language.getInstance().get(difficultyKey(difficulty)) : "Unknown",
+                    gameMode != null ? gameMode.asString() : "Unknown",
+                    getMinecraftVersionName(),
+                    displayName(biome),
+                    String.format("%.2f d", realDays));
         }
-        BlockPos pos = player.getBlockPos();
-        return String.format("x: %d, y: %d, z: %d", pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    private static String difficultyKey(Difficulty difficulty) {
+        return DIFFICULTY_KEYS.computeIfAbsent(difficulty,
+                d -> d.getTranslatableName().getContent() instanceof TranslatableTextContent content
+                        ? content.getKey()
+                        : d.asString());
+    }
+
+    private static String displayName(String path) {
+        return path != null ? DISPLAY_NAMES.computeIfAbsent(path, ScreenshotMetadataCollector::toPascalCase)
+                : "Unknown";
     }
 
     /**
@@ -175,13 +227,23 @@ public class ScreenshotMetadataCollector {
      * 
      * <p>
      * This method tries both approaches via reflection to maintain
-     * compatibility across multiple Minecraft versions.
+     * compatibility across multiple Minecraft versions. The result is looked
+     * up once and cached.
      * </p>
      *
      * @return The Minecraft version string (e.g., "1.21.8"), or "Unknown" if
      *         retrieval fails
      */
     private static String getMinecraftVersionName() {
+        String name = versionName;
+        if (name == null) {
+            name = lookUpMinecraftVersionName();
+            versionName = name;
+        }
+        return name;
+    }
+
+    private static String lookUpMinecraftVersionName() {
         try {
             Object gameVersion = SharedConstants.getGameVersion();
 
@@ -1,69 +1,133 @@
 package com.milezerosoftware.mc.screenshotmanagerenhanced.client.util;
 
 import net.minecraft.client.MinecraftClient;
-
+import net.minecraft.client.network.ServerInfo;
+import net.minecraft.client.world.ClientWorld;
 import net.minecraft.server.integrated.IntegratedServer;
 import net.minecraft.util.WorldSavePath;
 import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.File;
 import java.net.InetSocketAddress;
 
 public class WorldUtils {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
     private static final MinecraftClient client = MinecraftClient.getInstance();
 
+    private static volatile WorldSession session;
+
     /**
-     * Gets a unique identifier for the current game world.
+     * Resolves the identity of a newly joined world or server. Called from the
+     * connection join event, on the client thread.
+     */
+    public static void onJoin() {
+        WorldSession resolved = resolveSession();
+        session = resolved;
+        LOGGER.debug("Joined world: {}", resolved);
+    }
+
+    /**
+     * Tracks dimension changes within the session. Called from the world
+     * change event, on the client thread.
      *
-     * <ul>
-     * <li>For single-player worlds, this is the folder name of the world save.</li>
-     * <li>For multiplayer servers, this is the server name, or the IP address if
-     * the name is unavailable.</li>
-     * <li>If the client is not in a world (e.g., on the main menu), it returns
-     * "MENU".</li>
-     * </ul>
+     * @param world The new world
+     */
+    public static void onWorldChange(ClientWorld world) {
+        WorldSession current = session;
+        if (current != null && world != null) {
+            session = current.withDimension(dimensionOf(world));
+        }
+    }
+
+    /**
+     * Forgets the session. Called from the disconnect event.
+     */
+    public static void onDisconnect() {
+        session = null;
+    }
+
+    /**
+     * Gets the identity of the current world, as resolved on join.
      *
-     * @return A {@link String} representing the world's unique identifier.
+     * <p>
+     * This is a field read. Only if the join event was missed, e.g. because
+     * another mod joined the world in an unusual way, is the session resolved
+     * here once.
+     * </p>
+     *
+     * @return The session, or {@code null} outside a world
      */
-    @NotNull
-    public static String getWorldId() {
-        if (client.world == null) {
-            return "MENU";
+    public static WorldSession getSession() {
+        WorldSession current = session;
+        if (current == null && client.world != null && client.getNetworkHandler() != null) {
+            current = resolveSession();
+            session = current;
+            LOGGER.debug("Resolved world late: {}", current);
         }
+        return current;
+    }
+
+    private static WorldSession resolveSession() {
+        String dimension = client.world != null ? dimensionOf(client.world) : "UNKNOWN";
 
         if (client.isInSingleplayer()) {
-            System.out.println("Client is in singleplayer");
             IntegratedServer server = client.getServer();
             if (server != null) {
+                String levelName = server.getSaveProperties().getLevelName();
+                String folderName;
                 try {
                     // Get the actual folder name by resolving the canonical path
-                    String folderName = server.getSavePath(WorldSavePath.ROOT).toFile().getCanonicalFile().getName();
-                    System.out.println("Unique Level folder name: " + folderName);
-                    return folderName;
+                    folderName = server.getSavePath(WorldSavePath.ROOT).toFile().getCanonicalFile().getName();
                 } catch (Exception e) {
-                    System.out.println("Failed to resolve unique folder name: " + e.getMessage());
                     // Fallback to the level name if canonical path resolution fails
-                    System.out.println("World Save Path: " + WorldSavePath.ROOT.toString());
-                    System.out.println("World Save Path: " + WorldSavePath.ROOT.getRelativePath());
-                    return server.getSaveProperties().getLevelName();
+                    LOGGER.debug("Failed to resolve world folder name: {}", e.getMessage());
+                    folderName = levelName;
                 }
+                return new WorldSession(WorldSession.Kind.SINGLEPLAYER, folderName, levelName, null, dimension);
             }
-        } else if (!client.isInSingleplayer()) {
-            System.out.println("Client is in multiplayer");
-            if (client.getCurrentServerEntry() != null) {
-                return client.getCurrentServerEntry().name;
+        } else {
+            ServerInfo entry = client.getCurrentServerEntry();
+            if (entry != null) {
+                return new WorldSession(WorldSession.Kind.MULTIPLAYER, entry.name, entry.name, entry.address,
+                        dimension);
             }
             // Fallback to IP address if joined via Direct Connect
-            if (client.getNetworkHandler() != null && client.getNetworkHandler().getConnection() != null) {
-                InetSocketAddress address = (InetSocketAddress) client.getNetworkHandler().getConnection().getAddress();
-                if (address != null) {
-                    return address.getHostString();
-                }
+            if (client.getNetworkHandler() != null && client.getNetworkHandler().getConnection() != null
+                    && client.getNetworkHandler().getConnection().getAddress() instanceof InetSocketAddress address) {
+                String host = address.getHostString();
+                return new WorldSession(WorldSession.Kind.DIRECT_CONNECT, host, host, host, dimension);
             }
         }
+        return new WorldSession(WorldSession.Kind.DIRECT_CONNECT, "UNKNOWN", "UNKNOWN", null, dimension);
+    }
 
-        return "UNKNOWN";
+    private static String dimensionOf(ClientWorld world) {
+        String dimension = world.getRegistryKey().getValue().toString();
+        return dimension.replace("minecraft:", "").replace("minecraft_", "");
+    }
+
+    /**
+     * Gets a unique identifier for the current game world.
+     *
+     * <ul>
+     * <li>For single-player worlds, this is the folder name of the world save.</li>
+     * <li>For multiplayer servers, this is the server name, or the IP address if
+     * the name is unavailable.</li>
+     * <li>If the client is not in a world (e.g., on the main menu), it returns
+     * "MENU".</li>
+     * </ul>
+     *
+     * @return A {@link String} representing the world's unique identifier.
+     */
+    @NotNull
+    public static String getWorldId() {
+        if (client.world == null) {
+            return "MENU";
+        }
+        WorldSession current = getSession();
+        return current != null ? current.getRawWorldId() : "UNKNOWN";
     }
 
     /**
@@ -106,15 +170,54 @@ public class WorldUtils {
         if (client.world == null) {
             return "MENU";
         }
+        WorldSession current = getSession();
+        return current != null ? current.getDisplayName() : "UNKNOWN";
+    }
 
-        if (client.isInSingleplayer() && client.getServer() != null) {
-            return client.getServer().getSaveProperties().getLevelName();
+    /**
+     * Gets the address of the current server.
+     *
+     * @return The server address, "singleplayer", or "UNKNOWN".
+     */
+    @NotNull
+    public static String getServerAddress() {
+        WorldSession current = getSession();
+        if (current == null) {
+            return "UNKNOWN";
         }
-
-        if (!client.isInSingleplayer() && client.getCurrentServerEntry() != null) {
-            return client.getCurrentServerEntry().name;
+        if (current.getKind() == WorldSession.Kind.SINGLEPLAYER) {
+            return "singleplayer";
         }
+        return current.getHost() != null ? current.getHost() : "UNKNOWN";
+    }
+
+    /**
+     * Gets an identifier for the current play session: the time the current
+     * world or server was joined, as {@code yyyy-MM-dd_HH.mm.ss}. Dimension
+     * changes keep the session.
+     *
+     * @return The session identifier, or "UNKNOWN" outside a world.
+     */
+    @NotNull
+    public static String getSessionId() {
+        WorldSession current = getSession();
+        return current != null ? current.getSessionId() : "UNKNOWN";
+    }
 
+    /**
+     * Gets the identifier of the biome at the player, such as
+     * "birch_forest".
+     *
+     * @return The biome path, or "UNKNOWN".
+     */
+    @NotNull
+    public static String getBiomeId() {
+        if (client.world != null && client.player != null) {
+            try {
+                return client.world.getBiome(client.player.getBlockPos()).getKey().get().getValue().getPath();
+            } catch (Exception ignored) {
+            }
+        }
         return "UNKNOWN";
     }
 
@@ -126,8 +229,8 @@ public class WorldUtils {
     @NotNull
     public static String getDimension() {
         if (client.world != null) {
-            String dimension = client.world.getRegistryKey().getValue().toString();
-            return dimension.replace("minecraft:", "").replace("minecraft_", "");
+            WorldSession current = getSession();
+            return current != null ? current.getDimension() : dimensionOf(client.world);
         }
         return "UNKNOWN";
     }
@@ -0,0 +1,29 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.gallery;
+
+import net.minecraft.client.gui.screen.Screen;
+
+/**
+ * Stand-in for versions before 1.21.6, which lack the GUI render pipelines
+ * the gallery screen draws with. It has the same methods as the real
+ * {@code GalleryButton} in {@code src/gallery}, and adds no button.
+ */
+public final class GalleryButton {
+
+    private GalleryButton() {
+    }
+
+    /**
+     * @return {@code false}: this build has no gallery
+     */
+    public static boolean isAvailable() {
+        return false;
+    }
+
+    /**
+     * Does nothing.
+     *
+     * @param screen The screen
+     */
+    public static void add(Screen screen) {
+    }
+}
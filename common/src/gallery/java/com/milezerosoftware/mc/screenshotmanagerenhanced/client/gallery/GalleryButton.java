@@ -0,0 +1,41 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.gallery;
+
+import net.fabricmc.fabric.api.client.screen.v1.Screens;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gui.screen.Screen;
+import net.minecraft.client.gui.widget.ButtonWidget;
+import net.minecraft.text.Text;
+
+/**
+ * Opens the {@link GalleryScreen} from other screens.
+ *
+ * <p>
+ * This is the variant for versions with the gallery; versions without it
+ * build the stand-in in {@code src/gallery-stub}, which has the same methods.
+ * </p>
+ */
+public final class GalleryButton {
+
+    private GalleryButton() {
+    }
+
+    /**
+     * @return {@code true} if this build has the gallery
+     */
+    public static boolean isAvailable() {
+        return true;
+    }
+
+    /**
+     * Adds a button that opens the gallery to a screen, such as the pause
+     * menu.
+     *
+     * @param screen The screen
+     */
+    public static void add(Screen screen) {
+        Screens.getButtons(screen).add(ButtonWidget.builder(Text.literal("Screenshots"),
+                button -> MinecraftClient.getInstance().setScreen(new GalleryScreen(screen)))
+                .dimensions(4, 4, 90, 20)
+                .build());
+    }
+}
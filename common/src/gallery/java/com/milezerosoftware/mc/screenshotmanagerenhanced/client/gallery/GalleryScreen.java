@@ -0,0 +1,371 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.gallery;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog.CatalogEntry;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog.CatalogQuery;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog.ScreenshotCatalog;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.thumbnail.Thumbnail;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.thumbnail.ThumbnailService;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.WorldSession;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.WorldUtils;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gl.RenderPipelines;
+import net.minecraft.client.gui.DrawContext;
+import net.minecraft.client.gui.screen.Screen;
+import net.minecraft.client.gui.widget.ButtonWidget;
+import net.minecraft.client.texture.NativeImage;
+import net.minecraft.client.texture.NativeImageBackedTexture;
+import net.minecraft.screen.ScreenTexts;
+import net.minecraft.text.Text;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * In-game gallery of the current world's screenshots, in the sections its
+ * folders are grouped into.
+ *
+ * <p>
+ * The screen is built to stay smooth with thousands of screenshots:
+ * </p>
+ * <ul>
+ * <li>The list comes from the {@link ScreenshotCatalog}, queried off the
+ * render thread when the screen opens.</li>
+ * <li>Only the rows in view are drawn, found through the precomputed
+ * {@link GalleryLayout}.</li>
+ * <li>Thumbnails of the rows in view, and of a few rows around them, are
+ * loaded and decoded by a {@link ThumbnailLoader}. Rows scrolled past before
+ * their turn are dropped. At most {@value #UPLOADS_PER_FRAME} textures are
+ * uploaded per frame.</li>
+ * <li>Textures are kept in a {@link ThumbnailCache} of
+ * {@value #CACHE_MEGABYTES} MB and destroyed when evicted, and all of them
+ * when the screen closes.</li>
+ * </ul>
+ *
+ * <p>
+ * The screen draws with the GUI render pipelines of 1.21.6 and later, so it
+ * is only compiled for those versions; see {@link GalleryButton}.
+ * </p>
+ */
+public class GalleryScreen extends Screen {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+
+    private static final int CACHE_MEGABYTES = 64;
+    private static final int UPLOADS_PER_FRAME = 4;
+    private static final int LOADER_THREADS = 2;
+    private static final int PREFETCH_ROWS = 2;
+
+    private static final int TILE_WIDTH = 128;
+    private static final int TILE_HEIGHT = 72;
+    private static final int GAP = 6;
+    private static final int HEADER_HEIGHT = 20;
+    private static final int MARGIN = 12;
+    private static final int TOP = 34;
+    private static final int BOTTOM = 36;
+    private static final int SCROLL_STEP = (TILE_HEIGHT + GAP) / 2;
+
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int GRAY = 0xFFA0A0A0;
+    private static final int TILE_BACKGROUND = 0xFF202020;
+
+    private static long nextTextureId;
+
+    private final Screen parent;
+    private final Path screenshotsDir;
+    private final WorldSession session;
+    private final ThumbnailLoader<String, NativeImage> loader;
+    private final ThumbnailCache<String, GalleryTexture> cache;
+    /** Screenshots without a thumbnail, so they are not requested again. */
+    private final Set<String> missing = new HashSet<>();
+    private final CompletableFuture<GalleryModel> pendingModel;
+    private GalleryModel model;
+    private GalleryLayout layout;
+    private String error;
+    private double scroll;
+    private int requestedFrom = -1;
+    private int requestedTo = -1;
+
+    /**
+     * A thumbnail uploaded as a texture.
+     */
+    private record GalleryTexture(Identifier id, int width, int height) {
+    }
+
+    /**
+     * Creates the gallery of the current world.
+     *
+     * @param parent The screen to return to
+     */
+    public GalleryScreen(Screen parent) {
+        super(Text.literal("Screenshots"));
+        this.parent = parent;
+        this.screenshotsDir = MinecraftClient.getInstance().runDirectory.toPath().resolve("screenshots");
+        this.session = WorldUtils.getSession();
+        this.loader = new ThumbnailLoader<>(LOADER_THREADS, this::loadImage, NativeImage::close);
+        this.cache = new ThumbnailCache<>(CACHE_MEGABYTES * 1024L * 1024L, this::destroyTexture);
+        this.pendingModel = CompletableFuture.supplyAsync(this::buildModel);
+    }
+
+    @Override
+    protected void init() {
+        addDrawableChild(ButtonWidget.builder(Text.literal("Open Folder"),
+                button -> Util.getOperatingSystem().open(screenshotsDir.toFile()))
+                .dimensions(width / 2 - 154, height - 28, 150, 20)
+                .build());
+        addDrawableChild(ButtonWidget.builder(ScreenTexts.DONE, button -> close())
+                .dimensions(width / 2 + 4, height - 28, 150, 20)
+                .build());
+        if (model != null) {
+            relayout();
+        }
+    }
+
+    @Override
+    public void render(DrawContext context, int mouseX, int mouseY, float deltaTicks) {
+        super.render(context, mouseX, mouseY, deltaTicks);
+        Text heading = session != null ? Text.literal(session.getDisplayName()) : title;
+        context.drawCenteredTextWithShadow(textRenderer, heading, width / 2, 12, WHITE);
+
+        if (model == null && !pollModel()) {
+            String message = error != null ? error : "Loading...";
+            context.drawCenteredTextWithShadow(textRenderer, Text.literal(message), width / 2, height / 2, GRAY);
+            return;
+        }
+        if (model.size() == 0) {
+            context.drawCenteredTextWithShadow(textRenderer, Text.literal("No screenshots of this world yet"),
+                    width / 2, height / 2, GRAY);
+            return;
+        }
+
+        loader.drain(UPLOADS_PER_FRAME, this::upload);
+
+        int viewTop = TOP;
+        int viewBottom = height - BOTTOM;
+        int left = (width - gridWidth(layout.columns())) / 2;
+        int offset = (int) scroll;
+        int first = layout.rowAt(offset);
+        int last = first;
+        CatalogEntry hovered = null;
+
+        context.enableScissor(0, viewTop, width, viewBottom);
+        for (int row = first; row < layout.rowCount() && layout.rowTop(row) < offset + viewBottom - viewTop; row++) {
+            int y = viewTop + layout.rowTop(row) - offset;
+            last = row;
+            if (layout.isHeader(row)) {
+                String folder = layout.section(row).title();
+                context.drawTextWithShadow(textRenderer, folder.isEmpty() ? "/" : folder.replace("/", " / "),
+                        left, y + HEADER_HEIGHT - 13, GRAY);
+                continue;
+            }
+            List<CatalogEntry> entries = layout.entries(row);
+            for (int column = 0; column < entries.size(); column++) {
+                int x = left + column * (TILE_WIDTH + GAP);
+                boolean over = mouseY >= viewTop && mouseY < viewBottom && mouseX >= x && mouseX < x + TILE_WIDTH
+                        && mouseY >= y && mouseY < y + TILE_HEIGHT;
+                drawTile(context, entries.get(column), x, y, over);
+                if (over) {
+                    hovered = entries.get(column);
+                }
+            }
+        }
+        context.disableScissor();
+        drawScrollbar(context, viewTop, viewBottom);
+
+        String status = hovered != null ? hovered.path().substring(hovered.path().lastIndexOf('/') + 1)
+                : model.size() + " screenshots";
+        context.drawCenteredTextWithShadow(textRenderer, Text.literal(status), width / 2, 22, GRAY);
+
+        requestThumbnails(first, last);
+    }
+
+    @Override
+    public boolean mouseScrolled(double mouseX, double mouseY, double horizontalAmount, double verticalAmount) {
+        if (layout == null) {
+            return false;
+        }
+        scroll = clampScroll(scroll - verticalAmount * SCROLL_STEP);
+        return true;
+    }
+
+    @Override
+    public void close() {
+        client.setScreen(parent);
+    }
+
+    @Override
+    public void removed() {
+        loader.close();
+        cache.clear();
+        pendingModel.cancel(false);
+    }
+
+    // ---------------------------------------------------------------------
+    // Model
+    // ---------------------------------------------------------------------
+
+    private GalleryModel buildModel() {
+        ScreenshotCatalog catalog = ScreenshotCatalog.getInstance();
+        if (catalog == null || session == null) {
+            return GalleryModel.of(List.of(), null, null);
+        }
+        try {
+            return GalleryModel.of(catalog.query(CatalogQuery.ALL), session.getSafeWorldId(),
+                    session.getRawWorldId());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return {@code true} once the model is ready
+     */
+    private boolean pollModel() {
+        if (!pendingModel.isDone() || error != null) {
+            return false;
+        }
+        try {
+            model = pendingModel.join();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not list screenshots: {}", e.getMessage());
+            error = "Could not list screenshots";
+            return false;
+        }
+        relayout();
+        return true;
+    }
+
+    private void relayout() {
+        int columns = Math.max(1, (width - 2 * MARGIN + GAP) / (TILE_WIDTH + GAP));
+        layout = new GalleryLayout(model, columns, HEADER_HEIGHT, TILE_HEIGHT + GAP);
+        scroll = clampScroll(scroll);
+        requestedFrom = -1;
+        requestedTo = -1;
+    }
+
+    private double clampScroll(double value) {
+        int max = Math.max(0, layout.height() - (height - BOTTOM - TOP));
+        return Math.max(0, Math.min(value, max));
+    }
+
+    private static int gridWidth(int columns) {
+        return columns * (TILE_WIDTH + GAP) - GAP;
+    }
+
+    // ---------------------------------------------------------------------
+    // Drawing
+    // ---------------------------------------------------------------------
+
+    private void drawTile(DrawContext context, CatalogEntry entry, int x, int y, boolean hovered) {
+        context.fill(x, y, x + TILE_WIDTH, y + TILE_HEIGHT, TILE_BACKGROUND);
+        GalleryTexture texture = cache.get(entry.path());
+        if (texture != null) {
+            // Fit the thumbnail into the tile, keeping its aspect ratio
+            float scale = Math.min((float) TILE_WIDTH / texture.width, (float) TILE_HEIGHT / texture.height);
+            int w = Math.max(1, Math.round(texture.width * scale));
+            int h = Math.max(1, Math.round(texture.height * scale));
+            context.drawTexture(RenderPipelines.GUI_TEXTURED, texture.id, x + (TILE_WIDTH - w) / 2,
+                    y + (TILE_HEIGHT - h) / 2, 0, 0, w, h, texture.width, texture.height, texture.width,
+                    texture.height);
+        } else {
+            String label = missing.contains(entry.path()) ? "No preview" : "...";
+            context.drawCenteredTextWithShadow(textRenderer, Text.literal(label), x + TILE_WIDTH / 2,
+                    y + TILE_HEIGHT / 2 - 4, GRAY);
+        }
+        if (hovered) {
+            context.fill(x - 1, y - 1, x + TILE_WIDTH + 1, y, WHITE);
+            context.fill(x - 1, y + TILE_HEIGHT, x + TILE_WIDTH + 1, y + TILE_HEIGHT + 1, WHITE);
+            context.fill(x - 1, y, x, y + TILE_HEIGHT, WHITE);
+            context.fill(x + TILE_WIDTH, y, x + TILE_WIDTH + 1, y + TILE_HEIGHT, WHITE);
+        }
+    }
+
+    private void drawScrollbar(DrawContext context, int viewTop, int viewBottom) {
+        int view = viewBottom - viewTop;
+        if (layout.height() <= view) {
+            return;
+        }
+        int x = width - 6;
+        int thumb = Math.max(16, (int) ((long) view * view / layout.height()));
+        int y = viewTop + (int) ((view - thumb) * scroll / (layout.height() - view));
+        context.fill(x, viewTop, x + 4, viewBottom, 0x80000000);
+        context.fill(x, y, x + 4, y + thumb, GRAY);
+    }
+
+    // ---------------------------------------------------------------------
+    // Thumbnails
+    // ---------------------------------------------------------------------
+
+    /**
+     * Requests the thumbnails of the rows in view and a few around them. The
+     * rows in view are requested last, so they load first.
+     */
+    private void requestThumbnails(int first, int last) {
+        int from = Math.max(0, first - PREFETCH_ROWS);
+        int to = Math.min(layout.rowCount() - 1, last + PREFETCH_ROWS);
+        if (from != requestedFrom || to != requestedTo) {
+            Set<String> wanted = new HashSet<>();
+            for (int row = from; row <= to; row++) {
+                for (CatalogEntry entry : layout.entries(row)) {
+                    wanted.add(entry.path());
+                }
+            }
+            loader.retain(wanted::contains);
+            requestedFrom = from;
+            requestedTo = to;
+        }
+        for (int row = from; row < first; row++) {
+            requestRow(row);
+        }
+        for (int row = to; row > last; row--) {
+            requestRow(row);
+        }
+        for (int row = first; row <= last; row++) {
+            requestRow(row);
+        }
+    }
+
+    private void requestRow(int row) {
+        for (CatalogEntry entry : layout.entries(row)) {
+            if (!cache.contains(entry.path()) && !missing.contains(entry.path())) {
+                loader.request(entry.path());
+            }
+        }
+    }
+
+    /**
+     * Reads and decodes a thumbnail. Runs on a loader thread.
+     */
+    private NativeImage loadImage(String path) throws IOException {
+        ThumbnailService thumbnails = ThumbnailService.getInstance();
+        if (thumbnails == null || session == null) {
+            return null;
+        }
+        Thumbnail thumbnail = thumbnails.getOrCreate(session.getSafeWorldId(), screenshotsDir.resolve(path));
+        return thumbnail != null ? NativeImage.read(thumbnail.png()) : null;
+    }
+
+    private void upload(String path, NativeImage image) {
+        if (image == null) {
+            missing.add(path);
+            return;
+        }
+        Identifier id = Identifier.of("screenshot-manager-enhanced", "gallery/" + nextTextureId++);
+        client.getTextureManager().registerTexture(id, new NativeImageBackedTexture(id::toString, image));
+        // The pixels are held twice, by the image and on the GPU
+        cache.put(path, new GalleryTexture(id, image.getWidth(), image.getHeight()),
+                2L * image.getWidth() * image.getHeight() * 4);
+    }
+
+    private void destroyTexture(GalleryTexture texture) {
+        client.getTextureManager().destroyTexture(texture.id);
+    }
+}
@@ -0,0 +1,355 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Picks the time-based shard a screenshot goes into when the folder layout is
+ * {@linkplain PathTemplate#isSharded() sharded}.
+ *
+ * <p>
+ * A folder is split into month shards ({@code yyyy-MM}) once it holds the
+ * threshold number of screenshots. A month shard is split into day shards
+ * ({@code dd}), and a day shard into hour shards ({@code HH}), the same way;
+ * hour shards are never split. Once a folder is split it stays split, and new
+ * screenshots go into its shards.
+ * </p>
+ *
+ * <p>
+ * The number of screenshots in each folder is kept in memory. A folder is
+ * listed once, the first time a screenshot is headed for it; after that, the
+ * count follows the screenshots {@linkplain #added added to},
+ * {@linkplain #removed removed from} and {@linkplain #moved moved out of} it.
+ * Choosing a shard does not count anything by itself. With a {@linkplain #setCounter
+ * counter} set, the listing runs there instead of on the thread taking the
+ * screenshot, which may be the render thread, and screenshots go into the
+ * folder itself until it is counted. Each split is reported to the
+ * {@linkplain #setSplitListener listener}, which moves the screenshots
+ * already in the folder into shards.
+ * </p>
+ */
+public final class AdaptiveShards {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+
+    /** The number of shard levels below a base folder: month, day and hour. */
+    public static final int LEVELS = 3;
+
+    private static final AdaptiveShards INSTANCE = new AdaptiveShards();
+
+    private static final PathTemplate[] NAMES = { PathTemplate.compile("{yyyy}-{MM}"), PathTemplate.compile("{dd}"),
+            PathTemplate.compile("{HH}") };
+    private static final PathTemplate.Values NO_VALUES = new PathTemplate.Values(null, null, null, null, null);
+
+    private final Map<Path, Occupancy> directories = new ConcurrentHashMap<>();
+    private volatile ObjIntConsumer<Path> splitListener;
+    private volatile Executor counter;
+
+    private static final class Occupancy {
+        int screenshots;
+        boolean split;
+        /** Whether the folder is still being listed on the counter. */
+        boolean counting;
+    }
+
+    /**
+     * Creates a tracker of its own; the mod shares {@link #getInstance()}.
+     */
+    public AdaptiveShards() {
+    }
+
+    /**
+     * Gets the tracker shared by all screenshots of this game instance.
+     *
+     * @return The shared tracker
+     */
+    public static AdaptiveShards getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sets what happens when a folder is split: the folder and its level,
+     * {@code 0} for a base folder, are passed on. Called on the thread that
+     * chose the shard or on the {@linkplain #setCounter counter}, so the
+     * listener should only queue work.
+     *
+     * @param listener The listener, or {@code null} for none
+     */
+    public void setSplitListener(ObjIntConsumer<Path> listener) {
+        this.splitListener = listener;
+    }
+
+    /**
+     * Sets where folders are listed the first time a screenshot is headed
+     * for them. Until a folder is listed, screenshots go into it and it is
+     * not split.
+     *
+     * @param counter The executor, or {@code null} to list folders on the
+     *                thread choosing the shard
+     */
+    public void setCounter(Executor counter) {
+        this.counter = counter;
+    }
+
+    /**
+     * Picks the folder for a new screenshot. The screenshot is only counted
+     * there once it is {@linkplain #added added}, so this may be called any
+     * number of times.
+     *
+     * @param base        The folder the template rendered
+     * @param epochMillis The capture time
+     * @param threshold   The number of screenshots a folder holds before it is
+     *                    split
+     * @return {@code base}, or a shard below it
+     */
+    public Path shardFor(Path base, long epochMillis, int threshold) {
+        Path directory = base;
+        for (int level = 0;; level++) {
+            Occupancy occupancy = occupancy(directory, level);
+            boolean splitNow;
+            synchronized (occupancy) {
+                splitNow = !occupancy.split && !occupancy.counting && level < LEVELS
+                        && occupancy.screenshots >= threshold;
+                if (splitNow) {
+                    occupancy.split = true;
+                }
+                if (!occupancy.split) {
+                    return directory;
+                }
+            }
+            if (splitNow) {
+                ObjIntConsumer<Path> listener = splitListener;
+                if (listener != null) {
+                    listener.accept(directory, level);
+                }
+            }
+            directory = directory.resolve(shardName(level, epochMillis));
+        }
+    }
+
+    /**
+     * Sets what a caller that just listed a folder found in it, so the first
+     * screenshot headed there does not list it again.
+     *
+     * @param directory   The folder
+     * @param screenshots The number of screenshots in it
+     * @param split       Whether it has shards
+     */
+    public void seed(Path directory, int screenshots, boolean split) {
+        Occupancy occupancy = directories.computeIfAbsent(key(directory), key -> new Occupancy());
+        synchronized (occupancy) {
+            occupancy.screenshots = screenshots;
+            occupancy.split |= split;
+            occupancy.counting = false;
+        }
+    }
+
+    /**
+     * Marks a folder as split, so new screenshots skip it.
+     *
+     * @param directory The folder
+     */
+    public void split(Path directory) {
+        Occupancy occupancy = directories.computeIfAbsent(key(directory), key -> new Occupancy());
+        synchronized (occupancy) {
+            occupancy.split = true;
+        }
+    }
+
+    /**
+     * Moves a screenshot's count along with the file, for folders that are
+     * being counted.
+     *
+     * @param from The folder the screenshot left
+     * @param to   The folder it moved into
+     */
+    public void moved(Path from, Path to) {
+        adjust(from, -1);
+        adjust(to, 1);
+    }
+
+    /**
+     * Counts screenshots created in a folder, for example the file reserved
+     * for a new screenshot in the folder {@link #shardFor} picked.
+     *
+     * @param directory   The folder
+     * @param screenshots The number of screenshots added
+     */
+    public void added(Path directory, int screenshots) {
+        adjust(directory, screenshots);
+    }
+
+    /**
+     * Stops counting screenshots that were deleted or packed away, so the
+     * folder is not split on their account.
+     *
+     * @param directory   The folder
+     * @param screenshots The number of screenshots removed
+     */
+    public void removed(Path directory, int screenshots) {
+        adjust(directory, -screenshots);
+    }
+
+    private void adjust(Path directory, int delta) {
+        Occupancy occupancy = directories.get(key(directory));
+        if (occupancy != null) {
+            synchronized (occupancy) {
+                occupancy.screenshots = Math.max(0, occupancy.screenshots + delta);
+            }
+        }
+    }
+
+    private Occupancy occupancy(Path directory, int level) {
+        Path key = key(directory);
+        Occupancy occupancy = directories.get(key);
+        if (occupancy != null) {
+            return occupancy;
+        }
+        Executor executor = counter;
+        if (executor == null) {
+            return directories.computeIfAbsent(key, k -> count(directory, level));
+        }
+        Occupancy provisional = new Occupancy();
+        provisional.counting = true;
+        Occupancy existing = directories.putIfAbsent(key, provisional);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            executor.execute(() -> finishCount(directory, level, provisional));
+        } catch (RejectedExecutionException e) {
+            synchronized (provisional) {
+                provisional.counting = false; // Shutting down; counted from here on
+            }
+        }
+        return provisional;
+    }
+
+    /**
+     * Adds what a listing found to a folder's provisional count. Screenshots
+     * that went into a folder that turns out to be split are handed to the
+     * listener, like those of a folder split just now.
+     */
+    private void finishCount(Path directory, int level, Occupancy provisional) {
+        Occupancy listed = count(directory, level);
+        boolean misplaced;
+        synchronized (provisional) {
+            if (!provisional.counting) {
+                return; // Seeded meanwhile
+            }
+            misplaced = listed.split && !provisional.split && provisional.screenshots > 0;
+            provisional.screenshots = Math.max(provisional.screenshots, listed.screenshots);
+            provisional.split |= listed.split;
+            provisional.counting = false;
+        }
+        ObjIntConsumer<Path> listener = splitListener;
+        if (misplaced && listener != null) {
+            listener.accept(directory, level);
+        }
+    }
+
+    /**
+     * The same folder may be named relative to the game directory or by its
+     * absolute path, depending on who reports it.
+     */
+    private static Path key(Path directory) {
+        return directory.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Counts the screenshots in a folder and checks it for shards, listing it
+     * once without reading any file attributes but those of shard folders.
+     */
+    private static Occupancy count(Path directory, int level) {
+        Occupancy occupancy = new Occupancy();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path entry : stream) {
+                String name = entry.getFileName().toString();
+                if (isScreenshot(name)) {
+                    occupancy.screenshots++;
+                } else if (isShardName(level, name) && Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                    occupancy.split = true;
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // A new folder
+        } catch (IOException e) {
+            LOGGER.debug("Failed to list {}: {}", directory, e.getMessage());
+        }
+        return occupancy;
+    }
+
+    /**
+     * @param name A file name
+     * @return {@code true} for a visible {@code .png} or {@code .qoi} file
+     */
+    public static boolean isScreenshot(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        return !name.startsWith(".") && (lower.endsWith(".png") || lower.endsWith(".qoi"));
+    }
+
+    /**
+     * Gets the name of the shard a screenshot goes into one level below a
+     * split folder.
+     *
+     * @param level       The level of the split folder, {@code 0} for a base
+     *                    folder
+     * @param epochMillis The capture time
+     * @return {@code yyyy-MM}, {@code dd} or {@code HH} in local time
+     */
+    public static String shardName(int level, long epochMillis) {
+        StringBuilder name = new StringBuilder(7);
+        NAMES[level].appendTo(name, NO_VALUES, epochMillis);
+        return name.toString();
+    }
+
+    /**
+     * @param level The level of the folder the name is in, {@code 0} for a
+     *              base folder
+     * @param name  A folder name
+     * @return {@code true} if the name is a shard of that level
+     */
+    public static boolean isShardName(int level, String name) {
+        return level < LEVELS && matchShard(level, name, null);
+    }
+
+    /**
+     * Matches a shard name and adds its date fields to {@code values}, if
+     * given.
+     */
+    static boolean matchShard(int level, String name, Map<PathTemplate.Variable, String> values) {
+        Map<PathTemplate.Variable, String> fields = NAMES[level].match(name);
+        if (fields == null) {
+            return false;
+        }
+        for (Map.Entry<PathTemplate.Variable, String> field : fields.entrySet()) {
+            int value = Integer.parseInt(field.getValue());
+            boolean valid = switch (field.getKey()) {
+                case MONTH -> value >= 1 && value <= 12;
+                case DAY -> value >= 1 && value <= 31;
+                case HOUR -> value <= 23;
+                default -> true;
+            };
+            if (!valid) {
+                return false;
+            }
+        }
+        if (values != null) {
+            values.putAll(fields);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,554 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.util;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.GroupingMode;
+
+import java.io.File;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneOffsetTransition;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A compiled screenshot folder template such as
+ * {@code {world}/{dim}/{yyyy}/{MM}-{dd}}.
+ *
+ * <p>
+ * A template is parsed once into a flat program of literal and variable
+ * segments. Rendering walks that program and appends into a caller-supplied
+ * {@link StringBuilder}: no regex, no formatter and no intermediate strings.
+ * Date fields come from a per-hour cache that is refreshed with cached
+ * {@link DateTimeFormatter} pieces when the hour rolls over, while minutes and
+ * seconds are derived arithmetically.
+ * </p>
+ *
+ * <p>
+ * Each {@code /}-separated component becomes one folder level. Variable values
+ * are sanitized while they are appended, in the same way as
+ * {@link #sanitize}, so a value can never add folder levels or climb out of
+ * the screenshots directory. Components that render empty are dropped.
+ * </p>
+ *
+ * <p>
+ * A {@linkplain #isSharded() sharded} template renders its base folder only;
+ * {@link AdaptiveShards} picks the time-based shard below it.
+ * </p>
+ */
+public final class PathTemplate {
+
+    /**
+     * Variables that can appear in a template, written as {@code {name}}.
+     */
+    public enum Variable {
+        /** The sanitized world or server name. */
+        WORLD("world"),
+        /** The dimension, e.g. {@code minecraft_the_nether}. */
+        DIM("dim"),
+        /** The server address, or {@code singleplayer}. */
+        SERVER("server"),
+        /** The time the current world was joined, {@code yyyy-MM-dd_HH.mm.ss}. */
+        SESSION("session"),
+        /** The biome at the player, e.g. {@code birch_forest}. */
+        BIOME("biome"),
+        /** {@code yyyy-MM-dd}. */
+        DATE("date"),
+        YEAR("yyyy"),
+        YEAR_SHORT("yy"),
+        MONTH("MM"),
+        DAY("dd"),
+        HOUR("HH"),
+        MINUTE("mm"),
+        SECOND("ss");
+
+        private final String token;
+
+        Variable(String token) {
+            this.token = token;
+        }
+
+        /**
+         * @return The name used between braces in a template
+         */
+        public String getToken() {
+            return token;
+        }
+
+        static Variable forToken(String token) {
+            for (Variable variable : values()) {
+                if (variable.token.equals(token)) {
+                    return variable;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The non-date values a template is rendered with. Missing values render
+     * as {@code UNKNOWN}.
+     *
+     * @param world     The world or server name
+     * @param dimension The dimension identifier
+     * @param server    The server address, or {@code singleplayer}
+     * @param session   The session identifier
+     * @param biome     The biome identifier
+     */
+    public record Values(String world, String dimension, String server, String session, String biome) {
+    }
+
+    private static final String UNKNOWN = "UNKNOWN";
+    private static final Map<GroupingMode, PathTemplate> PREDEFINED = new EnumMap<>(GroupingMode.class);
+
+    static {
+        for (GroupingMode mode : GroupingMode.values()) {
+            if (mode.getTemplate() != null) {
+                PathTemplate template = compile(mode.getTemplate());
+                PREDEFINED.put(mode, mode.isSharded() ? template.sharded() : template);
+            }
+        }
+    }
+
+    private static volatile DateFields dateFields;
+
+    private final String source;
+    /** One entry per segment: a {@link String} literal or a {@link Variable}. */
+    private final Object[] segments;
+    /** Index of the first segment of each component, plus a final end index. */
+    private final int[] componentStarts;
+    private final Set<Variable> variables;
+    private final boolean sharded;
+
+    private PathTemplate(String source, Object[] segments, int[] componentStarts, Set<Variable> variables,
+            boolean sharded) {
+        this.source = source;
+        this.segments = segments;
+        this.componentStarts = componentStarts;
+        this.variables = variables;
+        this.sharded = sharded;
+    }
+
+    /**
+     * Compiles a template.
+     *
+     * <p>
+     * An empty template puts screenshots straight into the screenshots
+     * directory. Literal text may not contain characters that are invalid in
+     * file names, and no component may be {@code .} or {@code ..}.
+     * </p>
+     *
+     * @param template The template, e.g. {@code {world}/{yyyy}-{MM}}
+     * @return The compiled template
+     * @throws IllegalArgumentException If the template is malformed or uses an
+     *                                  unknown variable
+     */
+    public static PathTemplate compile(String template) {
+        if (template == null) {
+            throw new IllegalArgumentException("Template is null");
+        }
+
+        List<Object> segments = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>();
+        Set<Variable> variables = EnumSet.noneOf(Variable.class);
+
+        for (String component : template.split("/", -1)) {
+            if (component.isEmpty()) {
+                continue; // Leading, trailing or doubled separators
+            }
+            if (component.equals(".") || component.equals("..")) {
+                throw new IllegalArgumentException("Template may not contain '" + component + "' folders");
+            }
+
+            starts.add(segments.size());
+            int pos = 0;
+            while (pos < component.length()) {
+                int open = component.indexOf('{', pos);
+                int close = component.indexOf('}', pos);
+                if (close >= 0 && (open < 0 || close < open)) {
+                    throw new IllegalArgumentException("Unmatched '}' in template: " + template);
+                }
+                if (open < 0) {
+                    segments.add(checkLiteral(component.substring(pos), template));
+                    break;
+                }
+                if (open > pos) {
+                    segments.add(checkLiteral(component.substring(pos, open), template));
+                }
+                if (close < 0) {
+                    throw new IllegalArgumentException("Unclosed '{' in template: " + template);
+                }
+                String token = component.substring(open + 1, close);
+                Variable variable = Variable.forToken(token);
+                if (variable == null) {
+                    throw new IllegalArgumentException("Unknown template variable {" + token + "}");
+                }
+                segments.add(variable);
+                variables.add(variable);
+                pos = close + 1;
+            }
+        }
+
+        int[] componentStarts = new int[starts.size() + 1];
+        for (int i = 0; i < starts.size(); i++) {
+            componentStarts[i] = starts.get(i);
+        }
+        componentStarts[starts.size()] = segments.size();
+        return new PathTemplate(template, segments.toArray(), componentStarts, variables, false);
+    }
+
+    /**
+     * The same template with its folders split into shards. The source gets a
+     * {@code /*} suffix, which no compiled template can have, so switching
+     * between the plain and the sharded layout counts as a layout change.
+     */
+    private PathTemplate sharded() {
+        return new PathTemplate(source + "/*", segments, componentStarts, variables, true);
+    }
+
+    /**
+     * Gets the compiled template of a predefined grouping mode.
+     *
+     * @param mode A grouping mode other than {@link GroupingMode#CUSTOM}
+     * @return The compiled template
+     * @throws IllegalArgumentException For {@link GroupingMode#CUSTOM}
+     */
+    public static PathTemplate of(GroupingMode mode) {
+        PathTemplate template = PREDEFINED.get(mode);
+        if (template == null) {
+            throw new IllegalArgumentException(mode + " has no predefined template");
+        }
+        return template;
+    }
+
+    private static String checkLiteral(String literal, String template) {
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if (c < 0x20 || "\\<>:\"|?*".indexOf(c) >= 0) {
+                throw new IllegalArgumentException("Invalid character '" + c + "' in template: " + template);
+            }
+        }
+        return literal;
+    }
+
+    /**
+     * @return The template text this was compiled from
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Checks whether rendering needs a value, so callers can skip collecting
+     * values that are expensive to look up.
+     *
+     * @param variable The variable
+     * @return {@code true} if the template contains it
+     */
+    public boolean uses(Variable variable) {
+        return variables.contains(variable);
+    }
+
+    /**
+     * Checks whether the folders this template renders are split into
+     * time-based shards once they fill up. {@link #resolve} and
+     * {@link #appendTo} render the base folder without a shard.
+     *
+     * @return {@code true} for {@link GroupingMode#ADAPTIVE}
+     */
+    public boolean isSharded() {
+        return sharded;
+    }
+
+    /**
+     * Resolves the folder for a screenshot.
+     *
+     * @param root        The screenshots directory
+     * @param values      The non-date values
+     * @param epochMillis The capture time
+     * @return {@code root} itself if the template renders no folders
+     */
+    public File resolve(File root, Values values, long epochMillis) {
+        StringBuilder path = new StringBuilder(64);
+        appendTo(path, values, epochMillis);
+        return path.isEmpty() ? root : new File(root, path.toString());
+    }
+
+    /**
+     * Renders the template as a relative path with {@code /} separators.
+     *
+     * @param out         The builder to append to
+     * @param values      The non-date values
+     * @param epochMillis The capture time
+     */
+    public void appendTo(StringBuilder out, Values values, long epochMillis) {
+        DateFields date = dateFields(epochMillis);
+        for (int c = 0; c < componentStarts.length - 1; c++) {
+            int mark = out.length();
+            if (mark > 0 && out.charAt(mark - 1) != '/') {
+                out.append('/');
+            }
+            int componentStart = out.length();
+            for (int s = componentStarts[c]; s < componentStarts[c + 1]; s++) {
+                Object segment = segments[s];
+                if (segment instanceof String literal) {
+                    out.append(literal);
+                } else {
+                    appendVariable(out, (Variable) segment, values, date, epochMillis);
+                }
+            }
+            if (out.length() == componentStart || isDots(out, componentStart)) {
+                out.setLength(mark);
+            }
+        }
+    }
+
+    /**
+     * Reads the values back from a folder this template rendered, for moving
+     * screenshots when the template changes.
+     *
+     * <p>
+     * Each component must match one folder level. Date variables match their
+     * fixed number of digits; other variables match the longest run of
+     * characters that {@link #sanitize} keeps, backing off until the rest of
+     * the component matches. A variable used more than once must have the
+     * same value everywhere. Values come back sanitized, since the original
+     * text cannot be recovered. A sharded template also matches its shard
+     * folders below the base folder, which give the year, month, day and
+     * hour.
+     * </p>
+     *
+     * @param relativeDirectory The folder relative to the screenshots
+     *                          directory, with {@code /} separators; empty for
+     *                          the screenshots directory itself
+     * @return The value of every variable in the template, or {@code null} if
+     *         the folder does not match
+     */
+    public Map<Variable, String> match(String relativeDirectory) {
+        String[] parts = relativeDirectory.isEmpty() ? new String[0] : relativeDirectory.split("/", -1);
+        int components = componentStarts.length - 1;
+        if (parts.length != components
+                && !(sharded && parts.length > components && parts.length <= components + AdaptiveShards.LEVELS)) {
+            return null;
+        }
+        Map<Variable, String> values = new EnumMap<>(Variable.class);
+        for (int level = 0; level < parts.length - components; level++) {
+            if (!AdaptiveShards.matchShard(level, parts[components + level], values)) {
+                return null;
+            }
+        }
+        for (int c = 0; c < components; c++) {
+            if (!matchSegments(parts[c], 0, componentStarts[c], componentStarts[c + 1], values)) {
+                return null;
+            }
+        }
+        return values;
+    }
+
+    private boolean matchSegments(String text, int pos, int segment, int end, Map<Variable, String> values) {
+        if (segment == end) {
+            return pos == text.length();
+        }
+        if (segments[segment] instanceof String literal) {
+            return text.startsWith(literal, pos)
+                    && matchSegments(text, pos + literal.length(), segment + 1, end, values);
+        }
+
+        Variable variable = (Variable) segments[segment];
+        String bound = values.get(variable);
+        if (bound != null) {
+            return text.startsWith(bound, pos) && matchSegments(text, pos + bound.length(), segment + 1, end, values);
+        }
+
+        int width = width(variable);
+        int stop;
+        if (width > 0) {
+            if (pos + width > text.length() || !isDateValue(variable, text, pos, pos + width)) {
+                return false;
+            }
+            stop = pos + width;
+        } else {
+            stop = pos;
+            while (stop < text.length() && isSafe(text.charAt(stop))) {
+                stop++;
+            }
+        }
+        for (; stop > pos; stop--) {
+            values.put(variable, text.substring(pos, stop));
+            if (matchSegments(text, stop, segment + 1, end, values)) {
+                return true;
+            }
+            if (width > 0) {
+                break;
+            }
+        }
+        values.remove(variable);
+        return false;
+    }
+
+    /**
+     * @return The number of characters a date variable renders, or {@code 0}
+     *         for a free-text variable
+     */
+    private static int width(Variable variable) {
+        return switch (variable) {
+            case DATE -> 10;
+            case YEAR -> 4;
+            case YEAR_SHORT, MONTH, DAY, HOUR, MINUTE, SECOND -> 2;
+            default -> 0;
+        };
+    }
+
+    private static boolean isDateValue(Variable variable, String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            boolean separator = variable == Variable.DATE && (i - from == 4 || i - from == 7);
+            if (separator ? c != '-' : c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSafe(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '.' || c == '-' || c == '(' || c == ')' || c == '_';
+    }
+
+    private static void appendVariable(StringBuilder out, Variable variable, Values values, DateFields date,
+            long epochMillis) {
+        switch (variable) {
+            case WORLD -> appendSanitized(out, values.world());
+            case DIM -> appendSanitized(out, values.dimension());
+            case SERVER -> appendSanitized(out, values.server());
+            case SESSION -> appendSanitized(out, values.session());
+            case BIOME -> appendSanitized(out, values.biome());
+            case DATE -> out.append(date.date);
+            case YEAR -> out.append(date.year);
+            case YEAR_SHORT -> out.append(date.year, date.year.length() - 2, date.year.length());
+            case MONTH -> out.append(date.month);
+            case DAY -> out.append(date.day);
+            case HOUR -> out.append(date.hour);
+            case MINUTE -> appendTwoDigits(out, (int) ((epochMillis - date.hourBase) / 60_000L));
+            case SECOND -> appendTwoDigits(out, (int) ((epochMillis - date.hourBase) / 1000L % 60));
+        }
+    }
+
+    private static void appendSanitized(StringBuilder out, String value) {
+        if (value == null || value.isEmpty()) {
+            out.append(UNKNOWN);
+            return;
+        }
+        // By code point, so a character outside the BMP such as an emoji
+        // becomes one underscore, not one per surrogate
+        for (int i = 0; i < value.length();) {
+            char c = value.charAt(i);
+            if (isSafe(c)) {
+                out.append(c);
+                i++;
+            } else {
+                out.append('_');
+                i += Character.charCount(value.codePointAt(i));
+            }
+        }
+    }
+
+    private static void appendTwoDigits(StringBuilder out, int value) {
+        out.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    private static boolean isDots(StringBuilder out, int from) {
+        for (int i = from; i < out.length(); i++) {
+            if (out.charAt(i) != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sanitizes a value the same way templates do, replacing every character
+     * other than letters, digits, {@code . - ( )} with an underscore.
+     *
+     * @param value The value
+     * @return The sanitized value
+     */
+    public static String sanitize(String value) {
+        StringBuilder out = new StringBuilder(value == null ? 7 : value.length());
+        appendSanitized(out, value);
+        return out.toString();
+    }
+
+    private static DateFields dateFields(long epochMillis) {
+        DateFields fields = dateFields;
+        if (fields == null || epochMillis < fields.validFrom || epochMillis >= fields.validUntil) {
+            fields = DateFields.forInstant(epochMillis);
+            dateFields = fields;
+        }
+        return fields;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    /**
+     * Formatted date fields for one hour of local time, or less if the zone
+     * offset changes within it. Within that window minutes and seconds are a
+     * plain offset from {@link #hourBase}, the instant the hour started at the
+     * window's offset.
+     */
+    private static final class DateFields {
+        private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        private static final DateTimeFormatter YEAR = DateTimeFormatter.ofPattern("yyyy");
+        private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("MM");
+        private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("dd");
+        private static final DateTimeFormatter HOUR = DateTimeFormatter.ofPattern("HH");
+
+        final long hourBase;
+        final long validFrom;
+        final long validUntil;
+        final String date;
+        final String year;
+        final String month;
+        final String day;
+        final String hour;
+
+        private DateFields(long hourBase, long validFrom, long validUntil, ZonedDateTime time) {
+            this.hourBase = hourBase;
+            this.validFrom = validFrom;
+            this.validUntil = validUntil;
+            this.date = DATE.format(time);
+            this.year = YEAR.format(time);
+            this.month = MONTH.format(time);
+            this.day = DAY.format(time);
+            this.hour = HOUR.format(time);
+        }
+
+        static DateFields forInstant(long epochMillis) {
+            ZoneId zone = ZoneId.systemDefault();
+            Instant instant = Instant.ofEpochMilli(epochMillis);
+            ZonedDateTime time = instant.atZone(zone);
+            long base = time.withMinute(0).withSecond(0).withNano(0).toInstant().toEpochMilli();
+            long start = base;
+            long end = base + 3_600_000L;
+
+            // Keep the minute arithmetic valid across offset changes that do
+            // not fall on an hour boundary
+            ZoneOffsetTransition previous = zone.getRules().previousTransition(instant.plusMillis(1));
+            if (previous != null && previous.toEpochSecond() * 1000 > start) {
+                start = previous.toEpochSecond() * 1000;
+            }
+            ZoneOffsetTransition next = zone.getRules().nextTransition(instant);
+            if (next != null && next.toEpochSecond() * 1000 < end) {
+                end = next.toEpochSecond() * 1000;
+            }
+            return new DateFields(base, start, end, time);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.util;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.FilenameSuffix;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reserves unique screenshot file names.
+ *
+ * <p>
+ * A name is reserved by creating the file with {@code CREATE_NEW}, which the
+ * file system performs atomically: two threads, or two game instances sharing
+ * a folder, can never be handed the same file. In the common case this is
+ * the only file system call; no name is probed with {@code exists()}.
+ * </p>
+ *
+ * <p>
+ * On the first collision in a directory, the directory is listed once to
+ * learn the highest sequence suffix per base name. From then on the next free
+ * suffix is known in memory, so bursts within the same second cost one
+ * create per screenshot instead of a growing series of probes.
+ * </p>
+ */
+public class ScreenshotFileAllocator {
+
+    private static final ScreenshotFileAllocator INSTANCE = new ScreenshotFileAllocator();
+
+    private final Map<Path, DirectoryState> directories = new ConcurrentHashMap<>();
+
+    ScreenshotFileAllocator() {
+    }
+
+    /**
+     * Gets the allocator shared by all screenshots of this game instance.
+     *
+     * @return The shared allocator
+     */
+    public static ScreenshotFileAllocator getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Reserves a timestamped screenshot name.
+     *
+     * @param directory The target directory; created if missing
+     * @param time      The capture time
+     * @param suffix    How names are made unique
+     * @param extension The file extension without dot
+     * @return The reserved file, created empty
+     * @throws UncheckedIOException If the file cannot be created
+     */
+    public Path reserve(Path directory, Date time, FilenameSuffix suffix, String extension) {
+        String pattern = suffix == FilenameSuffix.MILLISECONDS ? "yyyy-MM-dd_HH.mm.ss.SSS" : "yyyy-MM-dd_HH.mm.ss";
+        return reserve(directory, new SimpleDateFormat(pattern).format(time), extension);
+    }
+
+    /**
+     * Reads the capture time back from a timestamped screenshot name, as
+     * produced by {@link #reserve(Path, Date, FilenameSuffix, String)} with
+     * either suffix, in the system time zone.
+     *
+     * @param fileName The file name
+     * @return The capture time in epoch milliseconds, or {@code -1} if the name
+     *         does not start with a timestamp
+     */
+    public static long parseTimestamp(String fileName) {
+        // yyyy-MM-dd_HH.mm.ss[.SSS]
+        if (fileName.length() < 19 || fileName.charAt(4) != '-' || fileName.charAt(7) != '-'
+                || fileName.charAt(10) != '_' || fileName.charAt(13) != '.' || fileName.charAt(16) != '.') {
+            return -1;
+        }
+        int year = digits(fileName, 0, 4);
+        int month = digits(fileName, 5, 2);
+        int day = digits(fileName, 8, 2);
+        int hour = digits(fileName, 11, 2);
+        int minute = digits(fileName, 14, 2);
+        int second = digits(fileName, 17, 2);
+        int millis = fileName.length() >= 23 && fileName.charAt(19) == '.' ? digits(fileName, 20, 3) : 0;
+        if ((year | month | day | hour | minute | second) < 0) {
+            return -1;
+        }
+        try {
+            LocalDateTime time = LocalDateTime.of(year, month, day, hour, minute, second);
+            return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() + Math.max(millis, 0);
+        } catch (DateTimeException e) {
+            return -1;
+        }
+    }
+
+    private static int digits(String s, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Reserves {@code base.extension}, or {@code base_N.extension} with the
+     * lowest free {@code N} if that is taken.
+     *
+     * @param directory The target directory; created if missing
+     * @param base      The file name without extension
+     * @param extension The file extension without dot
+     * @return The reserved file, created empty
+     * @throws UncheckedIOException If the file cannot be created
+     */
+    public Path reserve(Path directory, String base, String extension) {
+        Path dir = directory.toAbsolutePath().normalize();
+        DirectoryState state = directories.computeIfAbsent(dir, DirectoryState::new);
+        String ext = "." + extension;
+        try {
+            synchronized (state) {
+                int next = state.nextSuffix(base, ext);
+                while (true) {
+                    Path candidate = dir.resolve(next == 0 ? base + ext : base + "_" + next + ext);
+                    try {
+                        createNew(candidate);
+                        state.reserved(base, ext, next);
+                        return candidate;
+                    } catch (FileAlreadyExistsException e) {
+                        // Taken by another instance, or by a file we have not seen yet
+                        next = state.seeded ? next + 1 : state.seed(base, ext, next);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not reserve a screenshot name in " + dir, e);
+        }
+    }
+
+    /**
+     * Gives up a reservation whose screenshot was never written, removing the
+     * empty placeholder and its count in {@link AdaptiveShards}.
+     *
+     * @param file A file returned by {@code reserve}
+     */
+    public void release(Path file) {
+        try {
+            if (Files.size(file) == 0 && Files.deleteIfExists(file)) {
+                AdaptiveShards.getInstance().removed(file.getParent(), 1);
+            }
+        } catch (IOException ignored) {
+            // Already gone or written in the meantime
+        }
+    }
+
+    private static void createNew(Path file) throws IOException {
+        try {
+            Files.createFile(file);
+        } catch (NoSuchFileException e) {
+            Files.createDirectories(file.getParent());
+            Files.createFile(file);
+        }
+    }
+
+    /**
+     * Next free suffix per base name in one directory. Entries for older
+     * timestamps are pruned, as capture times only move forward.
+     */
+    private static final class DirectoryState {
+        private final Path dir;
+        private final TreeMap<String, Integer> nextByName = new TreeMap<>();
+        private boolean seeded;
+
+        DirectoryState(Path dir) {
+            this.dir = dir;
+        }
+
+        int nextSuffix(String base, String ext) {
+            nextByName.headMap(base).clear();
+            return nextByName.getOrDefault(base + ext, 0);
+        }
+
+        void reserved(String base, String ext, int suffix) {
+            nextByName.put(base + ext, suffix + 1);
+        }
+
+        /**
+         * Lists the directory once and records the next free suffix for every
+         * base name at or after {@code base}.
+         *
+         * @return The next suffix to try for {@code base}
+         */
+        int seed(String base, String ext, int attempted) throws IOException {
+            seeded = true;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path path : stream) {
+                    String name = path.getFileName().toString();
+                    int dot = name.lastIndexOf('.');
+                    if (dot <= 0) {
+                        continue;
+                    }
+                    String stem = name.substring(0, dot);
+                    String fileExt = name.substring(dot);
+                    int next = 1;
+                    int underscore = stem.lastIndexOf('_');
+                    if (underscore > 0 && isDigits(stem, underscore + 1)) {
+                        next = Integer.parseInt(stem.substring(underscore + 1)) + 1;
+                        stem = stem.substring(0, underscore);
+                    }
+                    if (stem.compareTo(base) >= 0) {
+                        nextByName.merge(stem + fileExt, next, Math::max);
+                    }
+                }
+            }
+            return Math.max(attempted + 1, nextByName.getOrDefault(base + ext, 0));
+        }
+
+        private static boolean isDigits(String s, int from) {
+            if (from >= s.length() || s.length() - from > 9) {
+                return false;
+            }
+            for (int i = from; i < s.length(); i++) {
+                if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
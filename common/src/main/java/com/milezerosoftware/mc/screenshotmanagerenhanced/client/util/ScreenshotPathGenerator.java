@@ -3,13 +3,19 @@ package com.milezerosoftware.mc.screenshotmanagerenhanced.client.util;
 import com.milezerosoftware.mc.screenshotmanagerenhanced.config.GroupingMode;
 import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ModConfig;
 import com.milezerosoftware.mc.screenshotmanagerenhanced.config.WorldConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 
 public class ScreenshotPathGenerator {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+
+    /** The last compiled custom template; recompiled only when the text changes. */
+    private static volatile PathTemplate customTemplate;
+
     /**
      * resolving the screenshot file path based on the grouping mode and per-world
      * configuration.
@@ -24,36 +30,71 @@ public class ScreenshotPathGenerator {
      */
     public static File getScreenshotDirectory(File screenshotsDir, ModConfig config,
             String rawWorldId, String safeWorldId, String dimension, Date date) {
-        // 1. Check for Per-World Config
-        WorldConfig worldConfig = config.worldRules.get(rawWorldId);
+        return getScreenshotDirectory(screenshotsDir, config, rawWorldId,
+                new PathTemplate.Values(safeWorldId, dimension, null, null, null), date.getTime());
+    }
 
-        // Default to global settings
-        GroupingMode mode = config.groupingMode;
+    /**
+     * Resolves the screenshot directory with all template values available.
+     *
+     * <p>
+     * For a sharded layout the folder is picked by {@link AdaptiveShards}, but
+     * nothing is counted; call {@link AdaptiveShards#added} once a file is
+     * created there.
+     * </p>
+     *
+     * @param screenshotsDir The screenshots directory (e.g. run/screenshots).
+     * @param config         The mod configuration.
+     * @param rawWorldId     The raw world ID (for config lookup).
+     * @param values         The values to render the folder template with.
+     * @param epochMillis    The capture time.
+     * @return The target directory for the screenshot.
+     */
+    public static File getScreenshotDirectory(File screenshotsDir, ModConfig config, String rawWorldId,
+            PathTemplate.Values values, long epochMillis) {
+        WorldConfig worldConfig = config.worldRules.get(rawWorldId);
+        if (worldConfig != null && !worldConfig.active) {
+            // The mod is disabled for this world: use vanilla behavior
+            return screenshotsDir;
+        }
+        PathTemplate template = getTemplate(config);
+        File directory = template.resolve(screenshotsDir, values, epochMillis);
+        if (template.isSharded()) {
+            // Only picks the shard; the caller counts the screenshot once its
+            // file is reserved
+            directory = AdaptiveShards.getInstance()
+                    .shardFor(directory.toPath(), epochMillis, config.adaptiveShardThreshold).toFile();
+        }
+        return directory;
+    }
 
-        if (worldConfig != null) {
-            // If the mod is disabled for this world, use vanilla behavior (return the input
-            // dir directly)
-            if (!worldConfig.active) {
-                return screenshotsDir;
-            }
+    /**
+     * Gets the compiled folder template for a configuration. Predefined modes
+     * are compiled once; a custom template is compiled when it is first used
+     * and again only after it changes. An invalid custom template falls back to
+     * {@link GroupingMode#WORLD}.
+     *
+     * @param config The mod configuration.
+     * @return The compiled template.
+     */
+    public static PathTemplate getTemplate(ModConfig config) {
+        GroupingMode mode = config.groupingMode != null ? config.groupingMode : GroupingMode.WORLD;
+        if (mode != GroupingMode.CUSTOM) {
+            return PathTemplate.of(mode);
         }
 
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-        String dateStr = dateFormat.format(date);
-
-        // Sanitize dimension if needed, usually passed as "minecraft:overworld"
-        String safeDimension = dimension.replace(":", "_");
-
-        return switch (mode) {
-            case DATE -> new File(screenshotsDir, dateStr);
-            case WORLD -> new File(screenshotsDir, safeWorldId);
-            case WORLD_DIMENSION -> new File(new File(screenshotsDir, safeWorldId), safeDimension);
-            case WORLD_DATE -> new File(new File(screenshotsDir, safeWorldId), dateStr);
-            case WORLD_DIMENSION_DATE ->
-                new File(new File(new File(screenshotsDir, safeWorldId), safeDimension), dateStr);
-            case WORLD_DATE_DIMENSION ->
-                new File(new File(new File(screenshotsDir, safeWorldId), dateStr), safeDimension);
-            case NONE -> screenshotsDir;
-        };
+        String source = config.customPathTemplate;
+        PathTemplate cached = customTemplate;
+        if (cached != null && cached.getSource().equals(source)) {
+            return cached;
+        }
+        try {
+            cached = PathTemplate.compile(source);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Invalid custom path template, grouping by world: {}", e.getMessage());
+            return PathTemplate.of(GroupingMode.WORLD);
+        }
+        customTemplate = cached;
+        return cached;
     }
 }
@@ -0,0 +1,136 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.util;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * The identity of the world or server the player is connected to, resolved
+ * once when it is joined.
+ *
+ * <p>
+ * Instances are immutable. A dimension change produces a new instance through
+ * {@link #withDimension}, which keeps everything else, including the
+ * precomputed {@link PathTemplate.Values}. Reading any field at screenshot
+ * time is therefore a plain field load.
+ * </p>
+ */
+public final class WorldSession {
+
+    /**
+     * How the world was joined.
+     */
+    public enum Kind {
+        /** An integrated server, i.e. a local save. */
+        SINGLEPLAYER,
+        /** A server from the multiplayer server list. */
+        MULTIPLAYER,
+        /** A server joined by address, without a server list entry. */
+        DIRECT_CONNECT
+    }
+
+    private final Kind kind;
+    private final String rawWorldId;
+    private final String safeWorldId;
+    private final String displayName;
+    private final String host;
+    private final String sessionId;
+    private final String dimension;
+    private final PathTemplate.Values pathValues;
+
+    /**
+     * Creates a session that started now.
+     *
+     * @param kind        How the world was joined
+     * @param rawWorldId  The world identifier used for per-world rules: the
+     *                    save folder name, or the server name or address
+     * @param displayName The name shown to the player
+     * @param host        The server address, or {@code null} in singleplayer
+     * @param dimension   The current dimension
+     */
+    public WorldSession(Kind kind, String rawWorldId, String displayName, String host, String dimension) {
+        this(kind, rawWorldId, PathTemplate.sanitize(rawWorldId), displayName, host,
+                new SimpleDateFormat("yyyy-MM-dd_HH.mm.ss").format(new Date()), dimension);
+    }
+
+    private WorldSession(Kind kind, String rawWorldId, String safeWorldId, String displayName, String host,
+            String sessionId, String dimension) {
+        this.kind = kind;
+        this.rawWorldId = rawWorldId;
+        this.safeWorldId = safeWorldId;
+        this.displayName = displayName;
+        this.host = host;
+        this.sessionId = sessionId;
+        this.dimension = dimension;
+        this.pathValues = new PathTemplate.Values(safeWorldId, dimension,
+                kind == Kind.SINGLEPLAYER ? "singleplayer" : host, sessionId, null);
+    }
+
+    /**
+     * Gets a copy of this session in another dimension.
+     *
+     * @param dimension The new dimension
+     * @return This session if the dimension is unchanged, otherwise a copy
+     */
+    public WorldSession withDimension(String dimension) {
+        if (dimension.equals(this.dimension)) {
+            return this;
+        }
+        return new WorldSession(kind, rawWorldId, safeWorldId, displayName, host, sessionId, dimension);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return The world identifier used for per-world rules
+     */
+    public String getRawWorldId() {
+        return rawWorldId;
+    }
+
+    /**
+     * @return The world identifier sanitized for use as a folder name
+     */
+    public String getSafeWorldId() {
+        return safeWorldId;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * @return The server address, or {@code null} in singleplayer
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return When the session started, as {@code yyyy-MM-dd_HH.mm.ss}
+     */
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Gets the folder template values of this session. The biome is not
+     * included, since it changes as the player moves.
+     *
+     * @return The template values
+     */
+    public PathTemplate.Values getPathValues() {
+        return pathValues;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " \"" + rawWorldId + "\"" + (host != null ? " at " + host : "") + " in " + dimension
+                + ", session " + sessionId;
+    }
+}
@@ -0,0 +1,22 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.config;
+
+/**
+ * Defines what the screenshot key does.
+ */
+public enum CaptureMode {
+    /**
+     * One screenshot per key press, as in vanilla.
+     */
+    SINGLE,
+
+    /**
+     * A burst of several frames per key press, one every few ticks.
+     */
+    BURST,
+
+    /**
+     * The key starts and stops a timelapse that captures one frame every few
+     * ticks.
+     */
+    TIMELAPSE
+}
@@ -2,14 +2,20 @@ package com.milezerosoftware.mc.screenshotmanagerenhanced.config;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonSyntaxException;
+import com.google.gson.JsonParseException;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.PathTemplate;
 import net.fabricmc.loader.api.FabricLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Manages the persistence of the {@link ModConfig}.
@@ -21,10 +27,12 @@ import java.nio.file.Path;
  * {
  *   "enableMetadata": true,
  *   "groupingMode": "WORLD",
+ *   "encoderProfile": "STANDARD_PNG",
  *   "worldRules": {
  *     "My Multiplayer Server": {
  *       "customPath": "",
- *       "active": true
+ *       "active": true,
+ *       "encoderProfile": "FAST_PNG"
  *     },
  *     "Singleplayer World": {
  *       "active": false
@@ -32,12 +40,22 @@ import java.nio.file.Path;
  *   }
  * }
  * </pre>
+ *
+ * <p>
+ * The loaded configuration is validated and published as a snapshot through
+ * a volatile field, so {@link #getInstance()} is a plain memory read with no
+ * lock and no file system access. Published snapshots are treated as
+ * read-only: to change settings, edit a {@link #copy()} and pass it to
+ * {@link #update(ModConfig)}. Edits made in a text editor are picked up by a
+ * {@link ConfigWatcher} and swapped in atomically.
+ * </p>
  */
 public class ConfigManager {
 
     private static final String CONFIG_FILE_NAME = "screenshot-manager-enhanced.json";
-    private static ModConfig instance;
-    private static long lastModified = -1;
+    private static volatile ModConfig instance;
+    private static volatile String lastKnownJson;
+    private static ConfigWatcher watcher;
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
     private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
 
@@ -46,34 +64,45 @@ public class ConfigManager {
     }
 
     /**
-     * Gets the current configuration instance.
+     * Gets the current configuration snapshot.
      * If not loaded, it attempts to load from disk.
      *
-     * @return The active ModConfig.
+     * @return The active ModConfig. Do not modify it; see {@link #update}.
      */
-    public static synchronized ModConfig getInstance() {
-        if (instance == null || hasConfigChangedOnDisk()) {
-            load();
+    public static ModConfig getInstance() {
+        ModConfig config = instance;
+        if (config == null) {
+            synchronized (ConfigManager.class) {
+                if (instance == null) {
+                    load();
+                }
+                config = instance;
+            }
         }
-        return instance;
+        return config;
     }
 
-    private static Path getDefaultConfigPath() {
-        return FabricLoader.getInstance().getConfigDir().resolve(CONFIG_FILE_NAME);
+    /**
+     * Creates an editable deep copy of the current configuration.
+     *
+     * @return A copy that is not shared with any reader
+     */
+    public static ModConfig copy() {
+        return GSON.fromJson(GSON.toJson(getInstance()), ModConfig.class);
     }
 
-    private static boolean hasConfigChangedOnDisk() {
-        try {
-            Path path = getDefaultConfigPath();
-            if (Files.exists(path)) {
-                long currentModified = Files.getLastModifiedTime(path).toMillis();
-                return currentModified > lastModified;
-            }
-        } catch (Exception e) {
-            // If we can't check (e.g. FabricLoader not available in tests), assume no
-            // change
-        }
-        return false;
+    /**
+     * Validates an edited configuration, publishes it and saves it to disk.
+     *
+     * @param edited A configuration obtained from {@link #copy()}
+     */
+    public static synchronized void update(ModConfig edited) {
+        instance = validate(edited);
+        save();
+    }
+
+    private static Path getDefaultConfigPath() {
+        return FabricLoader.getInstance().getConfigDir().resolve(CONFIG_FILE_NAME);
     }
 
     /**
@@ -93,17 +122,19 @@ public class ConfigManager {
     public static synchronized void load(Path configFile) {
         if (Files.exists(configFile)) {
             try {
-                String json = Files.readString(configFile);
-                instance = GSON.fromJson(json, ModConfig.class);
-                lastModified = Files.getLastModifiedTime(configFile).toMillis();
+                String json = Files.readString(configFile, StandardCharsets.UTF_8);
+                ModConfig loaded = GSON.fromJson(json, ModConfig.class);
 
                 // Fix for infinite recursion on empty file
-                if (instance == null) {
+                if (loaded == null) {
                     LOGGER.warn("Configuration file was empty. Resetting to defaults.");
                     instance = new ModConfig();
                     save(configFile);
+                } else {
+                    instance = validate(loaded);
+                    lastKnownJson = json;
                 }
-            } catch (IOException | JsonSyntaxException e) {
+            } catch (IOException | JsonParseException e) {
                 LOGGER.error("Failed to load Screenshot Manager config: {}", e.getMessage());
                 // Backup broken file to prevent data loss
                 try {
@@ -113,16 +144,45 @@ public class ConfigManager {
                     LOGGER.error("Failed to backup broken config", copyEx);
                 }
                 instance = new ModConfig();
-                lastModified = System.currentTimeMillis(); // Prevent constant reloading of broken file
             }
         } else {
             instance = new ModConfig();
             save(configFile);
-            try {
-                lastModified = Files.getLastModifiedTime(configFile).toMillis();
-            } catch (IOException e) {
-                lastModified = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Re-reads the file after an external edit and swaps in the new snapshot.
+     * Unlike {@link #load(Path)}, a file that cannot be parsed (e.g. because
+     * an editor is still writing it) keeps the current snapshot and is left
+     * untouched.
+     *
+     * @param configFile The full path to the configuration file.
+     * @return {@code true} if a new snapshot was published
+     */
+    static synchronized boolean reload(Path configFile) {
+        String json;
+        try {
+            json = Files.readString(configFile, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return false; // Deleted or being replaced; wait for the next event
+        }
+        if (json.equals(lastKnownJson)) {
+            return false; // Our own save, or a touch without changes
+        }
+
+        try {
+            ModConfig loaded = GSON.fromJson(json, ModConfig.class);
+            if (loaded == null) {
+                return false;
             }
+            instance = validate(loaded);
+            lastKnownJson = json;
+            LOGGER.info("Reloaded Screenshot Manager config after external edit");
+            return true;
+        } catch (JsonParseException e) {
+            LOGGER.warn("Ignoring invalid edit to Screenshot Manager config: {}", e.getMessage());
+            return false;
         }
     }
 
@@ -135,6 +195,12 @@ public class ConfigManager {
 
     /**
      * Internal save method for testing or specific paths.
+     *
+     * <p>
+     * The file is written to a temporary sibling and renamed over the
+     * original, so readers never see a half-written file. The watcher
+     * recognises the result as its own write and does not reload it.
+     * </p>
      * 
      * @param configFile The full path to the configuration file.
      */
@@ -142,12 +208,140 @@ public class ConfigManager {
         if (instance == null)
             return;
 
+        Path tempFile = configFile.resolveSibling(configFile.getFileName() + ".tmp");
         try {
             String json = GSON.toJson(instance);
-            Files.writeString(configFile, json);
-            lastModified = Files.getLastModifiedTime(configFile).toMillis();
+            lastKnownJson = json;
+            Files.writeString(tempFile, json, StandardCharsets.UTF_8);
+            try {
+                Files.move(tempFile, configFile, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, configFile, StandardCopyOption.REPLACE_EXISTING);
+            }
         } catch (IOException e) {
             LOGGER.error("Failed to save Screenshot Manager config: {}", e.getMessage());
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException ignored) {
+                // Nothing more to clean up
+            }
+        }
+    }
+
+    /**
+     * Starts watching the configuration file for external edits.
+     */
+    public static void startWatching() {
+        startWatching(getDefaultConfigPath());
+    }
+
+    /**
+     * Starts watching a configuration file for external edits, replacing any
+     * previous watch.
+     *
+     * @param configFile The full path to the configuration file.
+     */
+    public static synchronized void startWatching(Path configFile) {
+        stopWatching();
+        try {
+            watcher = new ConfigWatcher(configFile, () -> reload(configFile));
+        } catch (IOException e) {
+            LOGGER.warn("Config hot reload unavailable: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Stops watching for external edits.
+     */
+    public static synchronized void stopWatching() {
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
         }
     }
+
+    /**
+     * Replaces missing and out-of-range values with their defaults, so
+     * readers never have to check them.
+     *
+     * @param config A freshly parsed or edited configuration
+     * @return The same configuration, validated
+     */
+    static ModConfig validate(ModConfig config) {
+        ModConfig defaults = new ModConfig();
+        if (config.metadataEmbedMode == null)
+            config.metadataEmbedMode = defaults.metadataEmbedMode;
+        if (config.groupingMode == null)
+            config.groupingMode = defaults.groupingMode;
+        if (config.customPathTemplate == null || !isValidTemplate(config.customPathTemplate)) {
+            LOGGER.warn("Invalid custom path template \"{}\", using the default", config.customPathTemplate);
+            config.customPathTemplate = defaults.customPathTemplate;
+        }
+        if (config.migrationPolicy == null)
+            config.migrationPolicy = defaults.migrationPolicy;
+        if (config.filenameSuffix == null)
+            config.filenameSuffix = defaults.filenameSuffix;
+        if (config.encoderProfile == null)
+            config.encoderProfile = defaults.encoderProfile;
+        if (config.metadataOverflowPolicy == null)
+            config.metadataOverflowPolicy = defaults.metadataOverflowPolicy;
+        if (config.duplicateHandling == null)
+            config.duplicateHandling = defaults.duplicateHandling;
+        if (config.captureMode == null)
+            config.captureMode = defaults.captureMode;
+        if (config.captureDropPolicy == null)
+            config.captureDropPolicy = defaults.captureDropPolicy;
+
+        config.metadataWorkerThreads = clamp(config.metadataWorkerThreads, 1, 8);
+        config.metadataQueueCapacity = clamp(config.metadataQueueCapacity, 1, 256);
+        config.burstFrameCount = clamp(config.burstFrameCount, 1, 1000);
+        config.burstIntervalTicks = clamp(config.burstIntervalTicks, 1, 200);
+        config.timelapseIntervalTicks = clamp(config.timelapseIntervalTicks, 1, 72000);
+        config.captureBufferCount = clamp(config.captureBufferCount, 1, 32);
+        config.captureEncoderThreads = clamp(config.captureEncoderThreads, 1, 16);
+        config.optimizerCpuBudgetPercent = clamp(config.optimizerCpuBudgetPercent, 1, 100);
+        config.duplicateMaxDistance = clamp(config.duplicateMaxDistance, 0, 32);
+        config.duplicateWindowSeconds = clamp(config.duplicateWindowSeconds, 1, 3600);
+        config.adaptiveShardThreshold = clamp(config.adaptiveShardThreshold, 10, 1000000);
+        config.storageMaxMegabytes = Math.max(0, config.storageMaxMegabytes);
+        config.storageMaxFiles = Math.max(0, config.storageMaxFiles);
+        config.retentionMaxAgeDays = Math.max(0, config.retentionMaxAgeDays);
+        config.retentionKeepPerDay = Math.max(0, config.retentionKeepPerDay);
+        config.archiveAfterDays = Math.max(0, config.archiveAfterDays);
+
+        Map<String, WorldConfig> rules = new HashMap<>();
+        if (config.worldRules != null) {
+            config.worldRules.forEach((world, rule) -> {
+                if (world != null && rule != null) {
+                    if (rule.customPath == null)
+                        rule.customPath = "";
+                    rule.storageMaxMegabytes = nonNegative(rule.storageMaxMegabytes);
+                    rule.storageMaxFiles = nonNegative(rule.storageMaxFiles);
+                    rule.retentionMaxAgeDays = nonNegative(rule.retentionMaxAgeDays);
+                    rule.retentionKeepPerDay = nonNegative(rule.retentionKeepPerDay);
+                    rules.put(world, rule);
+                }
+            });
+        }
+        config.worldRules = rules;
+        return config;
+    }
+
+    private static boolean isValidTemplate(String template) {
+        try {
+            PathTemplate.compile(template);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static Integer nonNegative(Integer value) {
+        return value != null && value < 0 ? Integer.valueOf(0) : value;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
 }
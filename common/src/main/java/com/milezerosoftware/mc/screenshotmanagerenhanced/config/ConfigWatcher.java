@@ -0,0 +1,101 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background watcher that reloads the configuration when its file changes.
+ *
+ * <p>
+ * A {@link WatchService} on the config directory wakes a daemon thread on
+ * changes to the config file only. Editors often save in bursts (truncate,
+ * write, rename, touch), so the reload runs once the file has been quiet for
+ * {@value #DEBOUNCE_MS} ms.
+ * </p>
+ */
+class ConfigWatcher implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("screenshot-manager-enhanced");
+    static final long DEBOUNCE_MS = 250;
+
+    private final WatchService service;
+    private final Path fileName;
+    private final Runnable onChange;
+    private final Thread thread;
+
+    /**
+     * @param configFile The file to watch
+     * @param onChange   Called on the watcher thread after the file changed
+     * @throws IOException If the directory cannot be watched
+     */
+    ConfigWatcher(Path configFile, Runnable onChange) throws IOException {
+        Path dir = configFile.toAbsolutePath().getParent();
+        this.fileName = configFile.getFileName();
+        this.onChange = onChange;
+        this.service = dir.getFileSystem().newWatchService();
+        dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        this.thread = new Thread(this::run, "ScreenshotManagerConfigWatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                if (!drain(service.take())) {
+                    continue;
+                }
+                // Debounce: wait until the file has been quiet for a while
+                long quietUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DEBOUNCE_MS);
+                long remaining;
+                while ((remaining = quietUntil - System.nanoTime()) > 0) {
+                    WatchKey next = service.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next != null && drain(next)) {
+                        quietUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DEBOUNCE_MS);
+                    }
+                }
+                try {
+                    onChange.run();
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Config reload failed: {}", e.getMessage());
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+
+    /**
+     * @return {@code true} if the key reported a change to the config file
+     */
+    private boolean drain(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                relevant = true;
+            }
+        }
+        key.reset();
+        return relevant;
+    }
+
+    @Override
+    public void close() {
+        try {
+            service.close();
+        } catch (IOException ignored) {
+            // Closing anyway
+        }
+        thread.interrupt();
+    }
+}
@@ -0,0 +1,25 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.config;
+
+/**
+ * Defines what happens to a screenshot that looks nearly the same as one
+ * taken shortly before it in the same world, e.g. after pressing the
+ * screenshot key several times at the same spot.
+ */
+public enum DuplicateHandling {
+    /**
+     * Do not look for near-duplicates.
+     */
+    OFF,
+
+    /**
+     * Record the perceptual hash in the metadata and name the earlier
+     * screenshot in {@code mc:DuplicateOf}.
+     */
+    FLAG,
+
+    /**
+     * Flag near-duplicates and move them into a {@code duplicates} folder
+     * next to where they were saved.
+     */
+    FOLD
+}
@@ -0,0 +1,18 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.config;
+
+/**
+ * Defines when XMP metadata is written into a screenshot.
+ */
+public enum EmbedMode {
+    /**
+     * Encode the PNG ourselves with the metadata chunk included, so each
+     * screenshot is written to disk exactly once.
+     */
+    ENCODE_TIME,
+
+    /**
+     * Let vanilla write the PNG, then splice the metadata chunk into a copy
+     * and replace the original.
+     */
+    POST_WRITE
+}
@@ -0,0 +1,53 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.config;
+
+/**
+ * Defines how screenshots are encoded on disk.
+ */
+public enum EncoderProfile {
+    /**
+     * PNG at the default deflate level with adaptive filtering. Vanilla's
+     * writer is kept unless encode-time embedding or parallel encoding needs
+     * this mod's encoder.
+     */
+    STANDARD_PNG("png", true),
+
+    /**
+     * PNG at the lowest deflate level without filtering, for rapid capture.
+     */
+    FAST_PNG("png", true),
+
+    /**
+     * PNG at the highest deflate level with per-row filter selection, for
+     * archival.
+     */
+    COMPACT_PNG("png", true),
+
+    /**
+     * QOI ("Quite OK Image"), lossless and several times faster to write than
+     * PNG but larger. The format has no metadata chunks, so metadata goes to
+     * an {@code .xmp} sidecar.
+     */
+    QOI("qoi", false);
+
+    private final String fileExtension;
+    private final boolean embeddedMetadata;
+
+    EncoderProfile(String fileExtension, boolean embeddedMetadata) {
+        this.fileExtension = fileExtension;
+        this.embeddedMetadata = embeddedMetadata;
+    }
+
+    /**
+     * @return The file extension, without the dot
+     */
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    /**
+     * @return {@code true} if XMP metadata can be embedded in the file itself
+     */
+    public boolean supportsEmbeddedMetadata() {
+        return embeddedMetadata;
+    }
+}
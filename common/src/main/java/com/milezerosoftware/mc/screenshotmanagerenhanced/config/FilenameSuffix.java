@@ -0,0 +1,20 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.config;
+
+/**
+ * Defines how screenshot file names are made unique.
+ */
+public enum FilenameSuffix {
+    /**
+     * Vanilla naming: {@code 2025-01-30_12.00.00.png}, then
+     * {@code 2025-01-30_12.00.00_1.png}, {@code _2}, ... for further
+     * screenshots within the same second.
+     */
+    SEQUENCE,
+
+    /**
+     * Adds milliseconds to the timestamp, e.g.
+     * {@code 2025-01-30_12.00.00.123.png}, so rapid screenshots sort by time
+     * and rarely need a sequence number.
+     */
+    MILLISECONDS
+}
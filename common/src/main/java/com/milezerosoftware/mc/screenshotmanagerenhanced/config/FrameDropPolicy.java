@@ -0,0 +1,26 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.config;
+
+/**
+ * Defines what burst and timelapse capture do when every frame buffer is
+ * still waiting to be encoded. The render thread never waits for the
+ * encoders.
+ */
+public enum FrameDropPolicy {
+    /**
+     * Skip the frame. Bursts end on time with fewer frames; timelapses keep
+     * their interval.
+     */
+    SKIP,
+
+    /**
+     * Postpone the frame to the next tick. Bursts keep their frame count but
+     * stretch out over time.
+     */
+    DEFER,
+
+    /**
+     * Discard the oldest frame that has not started encoding to make room for
+     * the new one, favouring the most recent frames.
+     */
+    DROP_OLDEST
+}
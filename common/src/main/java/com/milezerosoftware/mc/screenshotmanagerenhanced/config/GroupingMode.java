@@ -2,12 +2,16 @@ package com.milezerosoftware.mc.screenshotmanagerenhanced.config;
 
 /**
  * Defines the strategy for grouping screenshots in the file system.
+ * <p>
+ * Every mode except {@link #CUSTOM} is a predefined folder template; see
+ * {@link #getTemplate()}. A {@linkplain #isSharded() sharded} mode splits its
+ * folders into time-based subfolders once they fill up.
  */
 public enum GroupingMode {
     /**
      * Group screenshots by date (e.g., yyyy-MM-dd).
      */
-    DATE,
+    DATE("{date}"),
 
     /**
      * Group screenshots by project/world name.
@@ -15,30 +19,75 @@ public enum GroupingMode {
     /**
      * Group screenshots by world name.
      */
-    WORLD,
+    WORLD("{world}"),
 
     /**
      * Group screenshots by world name, then by dimension.
      */
-    WORLD_DIMENSION,
+    WORLD_DIMENSION("{world}/{dim}"),
 
     /**
      * Group screenshots by world name, then by date.
      */
-    WORLD_DATE,
+    WORLD_DATE("{world}/{date}"),
 
     /**
      * Group screenshots by world name, then by dimension, then by date.
      */
-    WORLD_DIMENSION_DATE,
+    WORLD_DIMENSION_DATE("{world}/{dim}/{date}"),
 
     /**
      * Group screenshots by world name, then by date, then by dimension.
      */
-    WORLD_DATE_DIMENSION,
+    WORLD_DATE_DIMENSION("{world}/{date}/{dim}"),
 
     /**
      * Do not group screenshots; store them in the root of the configured path.
      */
-    NONE
+    NONE(""),
+
+    /**
+     * Group screenshots by world name, and split a world folder into month,
+     * then day, then hour subfolders once it holds
+     * {@link ModConfig#adaptiveShardThreshold} screenshots.
+     */
+    ADAPTIVE("{world}", true),
+
+    /**
+     * Group screenshots with the user-defined
+     * {@link ModConfig#customPathTemplate}.
+     */
+    CUSTOM(null);
+
+    private final String template;
+    private final boolean sharded;
+
+    GroupingMode(String template) {
+        this(template, false);
+    }
+
+    GroupingMode(String template, boolean sharded) {
+        this.template = template;
+        this.sharded = sharded;
+    }
+
+    /**
+     * Gets the folder template this mode stands for, such as
+     * {@code {world}/{dim}}.
+     *
+     * @return The template, or {@code null} for {@link #CUSTOM}
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Checks whether folders of this mode are split into time-based shards
+     * once they fill up.
+     *
+     * @return {@code true} for {@link #ADAPTIVE}
+     */
+    public boolean isSharded() {
+        return sharded;
+    }
 }
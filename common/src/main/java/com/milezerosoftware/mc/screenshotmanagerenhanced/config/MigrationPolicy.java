@@ -0,0 +1,25 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.config;
+
+/**
+ * Defines what happens to existing screenshots when the grouping mode or
+ * custom path template changes.
+ */
+public enum MigrationPolicy {
+    /**
+     * Leave existing screenshots where they are. Only new screenshots use the
+     * new layout.
+     */
+    KEEP,
+
+    /**
+     * Work out where every existing screenshot would go and write the plan
+     * to {@code .sme/migration-report.txt}, without moving anything.
+     */
+    REPORT,
+
+    /**
+     * Move existing screenshots into the new layout. An interrupted move is
+     * finished the next time the game starts.
+     */
+    MOVE
+}
@@ -6,12 +6,86 @@ import java.util.Map;
 public class ModConfig {
     // Global Settings
     public boolean embedMetadata = false; // Default to disabled
+    public EmbedMode metadataEmbedMode = EmbedMode.ENCODE_TIME; // Single write per screenshot
     public boolean displayRelativePath = true; // Default to enabled
     public GroupingMode groupingMode = GroupingMode.WORLD; // Default to WORLD
+    public String customPathTemplate = "{world}/{dim}/{yyyy}/{MM}-{dd}"; // Used by GroupingMode.CUSTOM
+    public int adaptiveShardThreshold = 1000; // Screenshots per folder before GroupingMode.ADAPTIVE splits it
+    public MigrationPolicy migrationPolicy = MigrationPolicy.KEEP; // Existing files when the layout changes
+    public FilenameSuffix filenameSuffix = FilenameSuffix.SEQUENCE; // Vanilla-style _1, _2 suffixes
+    public EncoderProfile encoderProfile = EncoderProfile.STANDARD_PNG; // Vanilla-compatible PNG
+    public boolean parallelEncoding = false; // Encode large PNG screenshots on all cores
+    public boolean captureThumbnails = true; // Store a small preview of each screenshot for browsing
+    public DuplicateHandling duplicateHandling = DuplicateHandling.OFF; // Near-identical screenshots in a row
+    public int duplicateMaxDistance = 6; // Differing perceptual hash bits that still count as a duplicate
+    public int duplicateWindowSeconds = 30; // How far back a duplicate's original may have been taken
+
+    // Metadata Writer (applied on next game start)
+    public int metadataWorkerThreads = 1;
+    public int metadataQueueCapacity = 16;
+    public OverflowPolicy metadataOverflowPolicy = OverflowPolicy.SIDECAR;
+
+    // Burst and Timelapse Capture
+    public CaptureMode captureMode = CaptureMode.SINGLE; // What the screenshot key does
+    public int burstFrameCount = 10; // Frames per key press in BURST mode
+    public int burstIntervalTicks = 2; // Ticks between burst frames
+    public int timelapseIntervalTicks = 100; // Ticks between timelapse frames (5 seconds)
+    public FrameDropPolicy captureDropPolicy = FrameDropPolicy.SKIP; // When encoders fall behind
+    public int captureBufferCount = 4; // Preallocated frame buffers (applied on next game start)
+    public int captureEncoderThreads = 2; // Frame encoder threads (applied on next game start)
+
+    // Background Optimization (applied on next game start)
+    public boolean backgroundOptimization = false; // Recompress saved PNGs while idle
+    public int optimizerCpuBudgetPercent = 25; // Share of one core while running
+
+    // Storage Limits per world (0 = no limit; worldRules can override each one)
+    public int storageMaxMegabytes = 0; // Size of a world's screenshots
+    public int storageMaxFiles = 0; // Number of a world's screenshots
+    public int retentionMaxAgeDays = 0; // Days a screenshot is kept
+    public int retentionKeepPerDay = 0; // Most recent screenshots kept of each day
+    public boolean retentionUseTrash = true; // Move removed screenshots to screenshots/.trash instead of deleting
+
+    // Archiving: date folders at least this many days old are packed into one uncompressed ZIP each (0 = off)
+    public int archiveAfterDays = 0;
 
     // Per-World Rules: Key = WorldName/IP, Value = Configuration
     public Map<String, WorldConfig> worldRules = new HashMap<>();
 
     public ModConfig() {
     }
-}
\ No newline at end of file
+
+    /**
+     * Resolves the encoder profile for a world, honouring its per-world
+     * override.
+     *
+     * @param rawWorldId The raw world ID (for config lookup)
+     * @return The profile to encode the world's screenshots with
+     */
+    public EncoderProfile getEncoderProfile(String rawWorldId) {
+        WorldConfig worldConfig = worldRules.get(rawWorldId);
+        if (worldConfig != null && worldConfig.active && worldConfig.encoderProfile != null) {
+            return worldConfig.encoderProfile;
+        }
+        return encoderProfile != null ? encoderProfile : EncoderProfile.STANDARD_PNG;
+    }
+
+    /**
+     * Resolves the storage limits for a world, honouring its per-world
+     * overrides.
+     *
+     * @param rawWorldId The raw world ID (for config lookup)
+     * @return The limits the world's screenshots are kept within
+     */
+    public RetentionPolicy getRetentionPolicy(String rawWorldId) {
+        WorldConfig worldConfig = rawWorldId != null ? worldRules.get(rawWorldId) : null;
+        if (worldConfig == null || !worldConfig.active) {
+            worldConfig = new WorldConfig();
+        }
+        int megabytes = worldConfig.storageMaxMegabytes != null ? worldConfig.storageMaxMegabytes
+                : storageMaxMegabytes;
+        return new RetentionPolicy(megabytes * 1024L * 1024L,
+                worldConfig.storageMaxFiles != null ? worldConfig.storageMaxFiles : storageMaxFiles,
+                worldConfig.retentionMaxAgeDays != null ? worldConfig.retentionMaxAgeDays : retentionMaxAgeDays,
+                worldConfig.retentionKeepPerDay != null ? worldConfig.retentionKeepPerDay : retentionKeepPerDay);
+    }
+}
@@ -0,0 +1,23 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.config;
+
+/**
+ * Defines what the metadata writer does when its queue is full.
+ */
+public enum OverflowPolicy {
+    /**
+     * Wait for a free queue slot. No metadata is ever lost, but the caller
+     * stalls until a worker catches up.
+     */
+    BLOCK,
+
+    /**
+     * Discard the oldest queued task to make room for the new one.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Skip embedding and write the metadata to an XMP sidecar file
+     * (e.g. {@code 2025-01-30_12.00.00.xmp}) next to the screenshot instead.
+     */
+    SIDECAR
+}
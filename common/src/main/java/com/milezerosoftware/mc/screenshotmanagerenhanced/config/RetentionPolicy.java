@@ -0,0 +1,24 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.config;
+
+/**
+ * The storage limits of one world's screenshots. A limit of 0 means there
+ * is none.
+ *
+ * @param maxBytes   The most bytes the world's screenshots may take up
+ * @param maxFiles   The most screenshots the world may have
+ * @param maxAgeDays How many days a screenshot is kept
+ * @param keepPerDay How many of each day's screenshots are kept, the most
+ *                   recent ones
+ */
+public record RetentionPolicy(long maxBytes, int maxFiles, int maxAgeDays, int keepPerDay) {
+
+    /** No limits at all. */
+    public static final RetentionPolicy NONE = new RetentionPolicy(0, 0, 0, 0);
+
+    /**
+     * @return {@code true} if any limit is set
+     */
+    public boolean isLimited() {
+        return maxBytes > 0 || maxFiles > 0 || maxAgeDays > 0 || keepPerDay > 0;
+    }
+}
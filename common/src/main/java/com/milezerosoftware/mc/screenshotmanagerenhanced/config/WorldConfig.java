@@ -6,6 +6,12 @@ package com.milezerosoftware.mc.screenshotmanagerenhanced.config;
 public class WorldConfig {
     public String customPath = "";
     public boolean active = true;
+    public EncoderProfile encoderProfile = null; // null = use the global profile
+    // Storage limits; null = use the global limit, 0 = no limit for this world
+    public Integer storageMaxMegabytes = null;
+    public Integer storageMaxFiles = null;
+    public Integer retentionMaxAgeDays = null;
+    public Integer retentionKeepPerDay = null;
 
     public WorldConfig() {
     }
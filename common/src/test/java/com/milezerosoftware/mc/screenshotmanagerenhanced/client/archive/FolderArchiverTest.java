@@ -0,0 +1,145 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.archive;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.PathTemplate;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.GroupingMode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FolderArchiverTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2025, 3, 1);
+    private static final FileTime MODIFIED = FileTime.fromMillis(1_738_238_400_000L);
+    private static final PathTemplate TEMPLATE = PathTemplate.of(GroupingMode.WORLD_DATE);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testOldDateFoldersArePackedAndUnpackedAgain() throws Exception {
+        write("World/2025-01-30/2025-01-30_12.00.00.png", 100);
+        write("World/2025-01-30/2025-01-30_12.00.00.xmp", 10);
+        write("World/2025-01-30/duplicates/2025-01-30_12.00.05.png", 100);
+        write("World/2025-02-25/2025-02-25_12.00.00.png", 100);
+        write("World/notes/readme.txt", 10);
+
+        FolderArchiver.Result packed = new FolderArchiver(tempDir).run(TEMPLATE, 7, TODAY);
+
+        assertEquals(1, packed.packedFolders());
+        assertEquals(2, packed.packedFiles());
+        assertTrue(Files.exists(tempDir.resolve("World/2025-01-30.zip")));
+        assertFalse(Files.exists(tempDir.resolve("World/2025-01-30/2025-01-30_12.00.00.png")));
+        assertTrue(Files.exists(tempDir.resolve("World/2025-01-30/duplicates/2025-01-30_12.00.05.png")),
+                "Subfolders stay");
+        assertTrue(Files.exists(tempDir.resolve("World/2025-02-25/2025-02-25_12.00.00.png")), "Too recent");
+        assertTrue(Files.exists(tempDir.resolve("World/notes/readme.txt")), "Not a date folder");
+        assertTrue(new FolderArchiver(tempDir).mayHaveArchives());
+
+        FolderArchiver.Result unpacked = new FolderArchiver(tempDir).run(TEMPLATE, 0, TODAY);
+
+        assertEquals(2, unpacked.unpackedFiles());
+        assertFalse(Files.exists(tempDir.resolve("World/2025-01-30.zip")));
+        Path restored = tempDir.resolve("World/2025-01-30/2025-01-30_12.00.00.png");
+        assertArrayEquals(content(100), Files.readAllBytes(restored));
+        assertEquals(MODIFIED, Files.getLastModifiedTime(restored));
+        assertFalse(new FolderArchiver(tempDir).mayHaveArchives());
+    }
+
+    @Test
+    void testEmptiedFolderIsRemovedAndRaisedCutoffUnpacks() throws Exception {
+        write("2025-02-20/2025-02-20_12.00.00.png", 50);
+        PathTemplate template = PathTemplate.of(GroupingMode.DATE);
+
+        new FolderArchiver(tempDir).run(template, 7, TODAY);
+        assertFalse(Files.exists(tempDir.resolve("2025-02-20")));
+        assertTrue(Files.exists(tempDir.resolve("2025-02-20.zip")));
+
+        new FolderArchiver(tempDir).run(template, 30, TODAY);
+        assertTrue(Files.exists(tempDir.resolve("2025-02-20/2025-02-20_12.00.00.png")), "No longer old enough");
+        assertFalse(Files.exists(tempDir.resolve("2025-02-20.zip")));
+    }
+
+    @Test
+    void testInterruptedPackIsFinishedAndNewFilesAreAdded() throws Exception {
+        Path folder = tempDir.resolve("World/2025-01-30");
+        write("World/2025-01-30/a.png", 100);
+        FolderArchiver archiver = new FolderArchiver(tempDir);
+        assertEquals(1, archiver.pack(folder));
+        Path archive = tempDir.resolve("World/2025-01-30.zip");
+        FileTime packedAt = Files.getLastModifiedTime(archive);
+
+        // As if the game stopped after the archive was renamed into place
+        write("World/2025-01-30/a.png", 100);
+        Files.write(tempDir.resolve("World/.2025-01-30.zip.tmp"), new byte[] { 1 });
+        assertEquals(1, archiver.pack(folder));
+        assertEquals(packedAt, Files.getLastModifiedTime(archive), "Already packed, so not rewritten");
+
+        write("World/2025-01-30/b.png", 200);
+        assertEquals(1, archiver.pack(folder));
+        try (ScreenshotArchive opened = ScreenshotArchive.open(archive)) {
+            assertEquals(2, opened.entries().size());
+            assertArrayEquals(content(100), opened.read("a.png"));
+            assertArrayEquals(content(200), opened.read("b.png"));
+        }
+
+        new FolderArchiver(tempDir).run(TEMPLATE, 7, TODAY);
+        assertFalse(Files.exists(tempDir.resolve("World/.2025-01-30.zip.tmp")), "Left over from a crash");
+    }
+
+    @Test
+    void testUnpackKeepsArchiveWhenAFileIsInTheWay() throws Exception {
+        Path folder = tempDir.resolve("World/2025-01-30");
+        write("World/2025-01-30/a.png", 100);
+        write("World/2025-01-30/b.png", 100);
+        FolderArchiver archiver = new FolderArchiver(tempDir);
+        archiver.pack(folder);
+        Path archive = ScreenshotArchive.archiveFor(folder);
+
+        Files.createDirectories(folder);
+        Files.write(folder.resolve("a.png"), new byte[] { 9 });
+        assertThrows(IOException.class, () -> archiver.unpack(archive));
+        assertTrue(Files.exists(archive));
+        assertArrayEquals(new byte[] { 9 }, Files.readAllBytes(folder.resolve("a.png")));
+        assertArrayEquals(content(100), Files.readAllBytes(folder.resolve("b.png")), "The rest is unpacked");
+
+        Files.delete(folder.resolve("a.png"));
+        assertEquals(1, archiver.unpack(archive));
+        assertFalse(Files.exists(archive));
+    }
+
+    @Test
+    void testPlayerZipFilesAreLeftAlone() throws Exception {
+        write("World/2025-01-30/a.png", 100);
+        new FolderArchiver(tempDir).run(TEMPLATE, 7, TODAY);
+        Path foreign = write("World/2025-01-29.zip", 100);
+
+        FolderArchiver.Result result = new FolderArchiver(tempDir).run(TEMPLATE, 0, TODAY);
+
+        assertEquals(0, result.failed());
+        assertEquals(1, result.unpackedFolders());
+        assertArrayEquals(content(100), Files.readAllBytes(foreign));
+    }
+
+    private Path write(String relativePath, int size) throws IOException {
+        Path file = tempDir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content(size));
+        Files.setLastModifiedTime(file, MODIFIED);
+        return file;
+    }
+
+    private static byte[] content(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31 + size);
+        }
+        return data;
+    }
+}
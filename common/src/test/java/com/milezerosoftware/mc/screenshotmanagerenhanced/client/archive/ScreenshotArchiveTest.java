@@ -0,0 +1,155 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.archive;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.ByteArrayPixelSource;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PngEncoder;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScreenshotArchiveTest {
+
+    private static final long MODIFIED = 1_738_238_400_000L;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testEntriesAreStoredAndReadableByAnyZipReader() throws Exception {
+        byte[] png = png("Archived World");
+        Path shot = file("2025-01-30_12.00.00.png", png);
+        Path sidecar = file("2025-01-30_12.00.01.xmp", "<x:xmpmeta/>".getBytes(StandardCharsets.UTF_8));
+        Path archive = tempDir.resolve("2025-01-30.zip");
+        write(archive, shot, sidecar);
+
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            ZipEntry entry = zip.getEntry("2025-01-30_12.00.00.png");
+            assertEquals(ZipEntry.STORED, entry.getMethod());
+            assertEquals(png.length, entry.getCompressedSize());
+            assertArrayEquals(png, zip.getInputStream(entry).readAllBytes());
+            assertEquals(MODIFIED / 1000, entry.getLastModifiedTime().toMillis() / 1000);
+            assertEquals(2, zip.size());
+        }
+
+        try (ScreenshotArchive opened = ScreenshotArchive.open(archive)) {
+            assertEquals(2, opened.entries().size());
+            assertEquals(MODIFIED / 1000, opened.entry("2025-01-30_12.00.00.png").modified());
+            assertArrayEquals(png, opened.read("2025-01-30_12.00.00.png"));
+            assertNull(opened.read("missing.png"));
+
+            ByteArrayOutputStream copy = new ByteArrayOutputStream();
+            assertTrue(opened.transferTo("2025-01-30_12.00.01.xmp", Channels.newChannel(copy)));
+            assertEquals("<x:xmpmeta/>", copy.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testMetadataIsReadWithoutUnpacking() throws Exception {
+        Path png = file("a.png", png("Archived World"));
+        Path qoi = file("b.qoi", new byte[] { 'q', 'o', 'i', 'f' });
+        MetadataHandler.writeSidecar(qoi.toFile(), sample("Sidecar World"));
+        Path archive = tempDir.resolve("day.zip");
+        write(archive, png, qoi, MetadataHandler.sidecarFor(qoi));
+
+        try (ScreenshotArchive opened = ScreenshotArchive.open(archive)) {
+            assertEquals("Archived World", opened.readMetadata("a.png").worldName);
+            assertEquals("Sidecar World", opened.readMetadata("b.qoi").worldName);
+            assertNull(opened.readMetadata("c.png"));
+        }
+    }
+
+    @Test
+    void testManyEntriesUseZip64() throws Exception {
+        Path shot = file("shot.png", new byte[] { 1, 2, 3 });
+        Path archive = tempDir.resolve("big.zip");
+        int count = 70_000;
+        try (ArchiveWriter writer = new ArchiveWriter(archive);
+                FileChannel source = FileChannel.open(shot, StandardOpenOption.READ)) {
+            for (int i = 0; i < count; i++) {
+                writer.add("shot" + i + ".png", source, MODIFIED);
+            }
+            writer.finish();
+        }
+
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            assertEquals(count, zip.size());
+        }
+        try (ScreenshotArchive opened = ScreenshotArchive.open(archive)) {
+            assertEquals(count, opened.entries().size());
+            assertArrayEquals(new byte[] { 1, 2, 3 }, opened.read("shot" + (count - 1) + ".png"));
+        }
+    }
+
+    @Test
+    void testOtherZipFilesAreRefused() throws Exception {
+        Path archive = tempDir.resolve("holiday.zip");
+        try (OutputStream out = Files.newOutputStream(archive); ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("photo.png"));
+            zip.write(new byte[] { 1, 2, 3 });
+            zip.closeEntry();
+        }
+        Path text = file("notes.zip", "not a zip".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IOException.class, () -> ScreenshotArchive.open(archive));
+        assertThrows(IOException.class, () -> ScreenshotArchive.open(text));
+        assertFalse(ScreenshotArchive.isOurs(archive));
+    }
+
+    @Test
+    void testArchiveAndFolderNames() {
+        Path folder = tempDir.resolve("World").resolve("2025-01-30");
+        assertEquals(tempDir.resolve("World").resolve("2025-01-30.zip"), ScreenshotArchive.archiveFor(folder));
+        assertEquals(folder, ScreenshotArchive.folderFor(ScreenshotArchive.archiveFor(folder)));
+        assertFalse(ScreenshotArchive.isSafeName("../escape.png"));
+        assertFalse(ScreenshotArchive.isSafeName("sub/shot.png"));
+        assertTrue(ScreenshotArchive.isSafeName("2025-01-30_12.00.00.png"));
+    }
+
+    private void write(Path archive, Path... files) throws IOException {
+        try (ArchiveWriter writer = new ArchiveWriter(archive)) {
+            for (Path file : files) {
+                try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+                    writer.add(file.getFileName().toString(), source, MODIFIED);
+                }
+            }
+            writer.finish();
+        }
+    }
+
+    private Path file(String name, byte[] data) throws IOException {
+        Path file = tempDir.resolve("src").resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, data);
+        return file;
+    }
+
+    private static byte[] png(String world) throws IOException {
+        byte[] pixels = new byte[16 * 8 * 3];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) (i * 7);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PngEncoder().encode(new ByteArrayPixelSource(pixels, 16, 8, 3), out,
+                MetadataHandler.createXmpChunk(sample(world)));
+        return out.toByteArray();
+    }
+
+    private static MetadataHandler.ScreenshotMetadata sample(String world) {
+        return new MetadataHandler.ScreenshotMetadata(world, "overworld", "0, 64, 0", "1", "P", "Normal",
+                "Survival", "1.21.10", "minecraft:plains", "20");
+    }
+}
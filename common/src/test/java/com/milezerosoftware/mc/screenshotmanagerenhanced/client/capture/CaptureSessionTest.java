@@ -0,0 +1,90 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.capture;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.CaptureMode;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.FrameDropPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CaptureSessionTest {
+
+    @Test
+    void testBurstCapturesFramesAtInterval() {
+        CaptureSession session = new CaptureSession(CaptureMode.BURST, 3, 2, FrameDropPolicy.SKIP, "base");
+
+        List<Integer> captureTicks = new ArrayList<>();
+        for (int tick = 0; tick < 10; tick++) {
+            if (session.tick(() -> true)) {
+                captureTicks.add(tick);
+            }
+        }
+
+        assertEquals(List.of(0, 2, 4), captureTicks);
+        assertTrue(session.isFinished());
+        assertEquals(3, session.getCapturedFrames());
+    }
+
+    @Test
+    void testSkipPolicyKeepsScheduleButLosesFrames() {
+        CaptureSession session = new CaptureSession(CaptureMode.BURST, 3, 1, FrameDropPolicy.SKIP, "base");
+        boolean[] free = { true, false, true };
+        int[] call = { 0 };
+
+        int captured = 0;
+        for (int tick = 0; tick < 5; tick++) {
+            if (session.tick(() -> free[call[0]++])) {
+                captured++;
+            }
+        }
+
+        assertEquals(2, captured);
+        assertEquals(1, session.getSkippedFrames());
+        assertTrue(session.isFinished(), "Burst ends on time despite the skipped frame");
+    }
+
+    @Test
+    void testDeferPolicyRetriesNextTick() {
+        CaptureSession session = new CaptureSession(CaptureMode.BURST, 2, 5, FrameDropPolicy.DEFER, "base");
+        boolean[] free = { false, false, true, true };
+        int[] call = { 0 };
+
+        List<Integer> captureTicks = new ArrayList<>();
+        for (int tick = 0; tick < 20; tick++) {
+            if (session.tick(() -> free[Math.min(call[0]++, free.length - 1)])) {
+                captureTicks.add(tick);
+            }
+        }
+
+        assertEquals(List.of(2, 7), captureTicks);
+        assertEquals(0, session.getSkippedFrames());
+    }
+
+    @Test
+    void testTimelapseRunsUntilFinished() {
+        CaptureSession session = new CaptureSession(CaptureMode.TIMELAPSE, 1, 100, FrameDropPolicy.SKIP, "base");
+
+        int captured = 0;
+        for (int tick = 0; tick < 1000; tick++) {
+            if (session.tick(() -> true)) {
+                captured++;
+            }
+        }
+        assertEquals(10, captured);
+        assertFalse(session.isFinished());
+
+        session.finish();
+        assertFalse(session.tick(() -> true));
+    }
+
+    @Test
+    void testFrameNamesAreSequenceNumbered() {
+        CaptureSession session = new CaptureSession(CaptureMode.TIMELAPSE, 1, 1, FrameDropPolicy.SKIP,
+                "2025-01-30_12.00.00");
+
+        assertEquals("2025-01-30_12.00.00_timelapse_0001", session.nextFrameName());
+        assertEquals("2025-01-30_12.00.00_timelapse_0002", session.nextFrameName());
+    }
+}
@@ -0,0 +1,132 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.capture;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.EncoderProfile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FrameEncoderServiceTest {
+
+    @Test
+    void testBuffersAreRecycled() throws Exception {
+        FrameBufferPool pool = new FrameBufferPool(2);
+        pool.preallocate(16);
+        Set<ByteBuffer> preallocated = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < 2; i++) {
+            pool.tryReserve();
+            preallocated.add(pool.acquire(16));
+        }
+        preallocated.forEach(pool::release);
+        Set<ByteBuffer> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Path> written = new CopyOnWriteArrayList<>();
+        FrameEncoderService service = new FrameEncoderService(1, pool, frame -> seen.add(frame.getPixels()),
+                written::add, path -> fail("No frame may be discarded"));
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(waitForReservation(pool), "A buffer must be released after each encode");
+            service.submit(frame(pool, "f" + i));
+        }
+        assertTrue(service.drainAndStop(5, TimeUnit.SECONDS));
+
+        assertEquals(10, written.size());
+        assertTrue(preallocated.containsAll(seen), "Only the preallocated buffers may be used");
+        assertEquals(2, pool.available());
+    }
+
+    @Test
+    void testPoolRefusesReservationWhenFull() {
+        FrameBufferPool pool = new FrameBufferPool(2);
+
+        assertTrue(pool.tryReserve());
+        assertTrue(pool.tryReserve());
+        assertFalse(pool.tryReserve(), "The render thread must not wait for a buffer");
+
+        pool.cancelReservation();
+        assertTrue(pool.tryReserve());
+    }
+
+    @Test
+    void testDropOldestFreesQueuedFrame() throws Exception {
+        FrameBufferPool pool = new FrameBufferPool(3);
+        CountDownLatch encoding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Path> written = new CopyOnWriteArrayList<>();
+        List<Path> discarded = new CopyOnWriteArrayList<>();
+        FrameEncoderService service = new FrameEncoderService(1, pool, frame -> {
+            encoding.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, written::add, discarded::add);
+
+        pool.tryReserve();
+        service.submit(frame(pool, "busy"));
+        assertTrue(encoding.await(5, TimeUnit.SECONDS));
+        pool.tryReserve();
+        service.submit(frame(pool, "oldest"));
+        pool.tryReserve();
+        service.submit(frame(pool, "newest"));
+        assertFalse(pool.tryReserve());
+
+        assertTrue(service.dropOldest());
+        assertTrue(pool.tryReserve(), "Dropping must return the buffer");
+        pool.cancelReservation();
+
+        release.countDown();
+        assertTrue(service.drainAndStop(5, TimeUnit.SECONDS));
+        assertEquals(List.of(Path.of("busy"), Path.of("newest")), written);
+        assertEquals(1, service.getDroppedFrames());
+        assertEquals(List.of(Path.of("oldest")), discarded, "The dropped frame's name must be released");
+    }
+
+    @Test
+    void testFailedFrameStillReturnsBuffer() throws Exception {
+        FrameBufferPool pool = new FrameBufferPool(1);
+        List<Path> discarded = new CopyOnWriteArrayList<>();
+        FrameEncoderService service = new FrameEncoderService(1, pool, frame -> {
+            throw new IOException("disk full");
+        }, path -> fail("Failed frames are not reported as written"), discarded::add);
+
+        pool.tryReserve();
+        service.submit(frame(pool, "broken"));
+        service.drainAndStop(5, TimeUnit.SECONDS);
+
+        assertEquals(1, service.getFailedFrames());
+        assertEquals(1, pool.available());
+        assertEquals(List.of(Path.of("broken")), discarded);
+    }
+
+    // =====================================================
+    // Helper Methods
+    // =====================================================
+
+    private static CapturedFrame frame(FrameBufferPool pool, String name) {
+        CapturedFrame frame = new CapturedFrame(Path.of(name), EncoderProfile.FAST_PNG, null);
+        frame.attach(pool.acquire(16), 2, 2, 4);
+        return frame;
+    }
+
+    private static boolean waitForReservation(FrameBufferPool pool) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!pool.tryReserve()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,175 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.optimizer.ScreenshotOptimizer;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler.ScreenshotMetadata;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.ScreenshotFileAllocator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScreenshotCatalogTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRecordedEntriesSurviveRestartAndCompaction() throws Exception {
+        Path nether = write("Server/2025-01-30_12.00.00.png", 10);
+        Path overworld = write("Server/2025-01-30_13.00.00.png", 20);
+        Path other = write("Other/2025-02-01_09.30.00.png", 30);
+
+        try (ScreenshotCatalog catalog = new ScreenshotCatalog(tempDir)) {
+            catalog.record(nether, metadata("Server X", "The Nether", "Badlands"));
+            catalog.record(overworld, metadata("Server X", "Overworld", "Plains"));
+            catalog.record(other, metadata("Other", "The Nether", "Badlands"));
+            catalog.record(Path.of("elsewhere.png").toAbsolutePath(), metadata("x", "x", "x"));
+            assertEquals(3, catalog.size());
+        }
+
+        // Replayed from the journal
+        try (ScreenshotCatalog catalog = new ScreenshotCatalog(tempDir)) {
+            assertQueries(catalog);
+            catalog.compact();
+        }
+
+        // Read from the snapshot
+        try (ScreenshotCatalog catalog = new ScreenshotCatalog(tempDir)) {
+            assertQueries(catalog);
+            CatalogEntry entry = catalog.get("Server/2025-01-30_12.00.00.png");
+            assertEquals(10, entry.size());
+            assertEquals(ScreenshotFileAllocator.parseTimestamp("2025-01-30_12.00.00.png"), entry.timestamp());
+            assertEquals("The Nether", entry.metadata().dimension);
+            assertEquals("Player", entry.metadata().playerName);
+        }
+        try (var files = Files.list(tempDir.resolve(ScreenshotOptimizer.STATE_DIR))) {
+            assertEquals(List.of("catalog-1.bin"), files.map(p -> p.getFileName().toString())
+                    .filter(name -> !name.endsWith(ScreenshotCatalog.JOURNAL_SUFFIX)).toList(),
+                    "Older generations are deleted");
+        }
+    }
+
+    private void assertQueries(ScreenshotCatalog catalog) throws Exception {
+        assertEquals(3, catalog.query(CatalogQuery.ALL).size());
+        assertEquals(List.of("Server/2025-01-30_12.00.00.png"),
+                paths(catalog.query(CatalogQuery.ALL.withWorld("server x").withDimension("The Nether")
+                        .withBiome("BADLANDS"))));
+        assertEquals(List.of("Server/2025-01-30_12.00.00.png", "Other/2025-02-01_09.30.00.png"),
+                paths(catalog.query(CatalogQuery.ALL.withBiome("Badlands"))), "Oldest first");
+
+        long from = ScreenshotFileAllocator.parseTimestamp("2025-01-30_12.30.00");
+        long to = ScreenshotFileAllocator.parseTimestamp("2025-02-01_09.30.00");
+        assertEquals(List.of("Server/2025-01-30_13.00.00.png"),
+                paths(catalog.query(CatalogQuery.ALL.between(from, to))));
+        assertTrue(catalog.query(CatalogQuery.ALL.withWorld("Unknown")).isEmpty());
+    }
+
+    @Test
+    void testReconcileFindsAddedReplacedAndRemovedFiles() throws Exception {
+        write("World/2025-01-30_12.00.00.png", 10);
+        Path replaced = write("World/2025-01-30_12.00.01.png", 10);
+        Path removed = write("World/Old/2025-01-30_12.00.02.png", 10);
+        write("World/notes.txt", 10);
+        write(".sme/hidden.png", 10);
+
+        try (ScreenshotCatalog catalog = new ScreenshotCatalog(tempDir)) {
+            assertEquals(3, catalog.reconcile());
+            catalog.record(replaced, metadata("World", "Overworld", "Plains"));
+            assertEquals(0, catalog.reconcile(), "Nothing changed since the last walk");
+        }
+
+        // Replaced through a rename, as the embedder and optimizer do
+        Path temp = write("World/.tmp", 99);
+        Files.move(temp, replaced, StandardCopyOption.REPLACE_EXISTING);
+        Files.setLastModifiedTime(replaced, FileTime.fromMillis(1_600_000_000_000L));
+        Files.delete(removed);
+        Files.delete(removed.getParent());
+        write("World/New/2025-01-31_08.00.00.png", 5);
+
+        try (ScreenshotCatalog catalog = new ScreenshotCatalog(tempDir)) {
+            assertEquals(3, catalog.reconcile());
+            assertEquals(3, catalog.size());
+            assertNotNull(catalog.get("World/2025-01-30_12.00.00.png"));
+            assertNull(catalog.get("World/Old/2025-01-30_12.00.02.png"));
+            assertNotNull(catalog.get("World/New/2025-01-31_08.00.00.png"));
+
+            CatalogEntry entry = catalog.get("World/2025-01-30_12.00.01.png");
+            assertEquals(99, entry.size());
+            assertEquals("Plains", entry.metadata().biome, "Metadata is kept when a file is re-indexed");
+        }
+    }
+
+    @Test
+    void testTornJournalRecordIsDropped() throws Exception {
+        Path a = write("2025-01-30_12.00.00.png", 1);
+        Path b = write("2025-01-30_12.00.01.png", 1);
+        try (ScreenshotCatalog catalog = new ScreenshotCatalog(tempDir)) {
+            catalog.record(a, metadata("W", "Overworld", "Plains"));
+            catalog.record(b, metadata("W", "Overworld", "Plains"));
+        }
+        Path journal = tempDir.resolve(ScreenshotOptimizer.STATE_DIR).resolve("catalog-0.log");
+        long intact = Files.size(journal);
+        Files.write(journal, new byte[] { 0, 0, 0, 40, 1, 2, 3 }, StandardOpenOption.APPEND);
+
+        try (ScreenshotCatalog catalog = new ScreenshotCatalog(tempDir)) {
+            assertEquals(2, catalog.size());
+            assertEquals(intact, Files.size(journal));
+            catalog.record(b, metadata("W", "The End", "The End"));
+        }
+        try (ScreenshotCatalog catalog = new ScreenshotCatalog(tempDir)) {
+            assertEquals("The End", catalog.get("2025-01-30_12.00.01.png").metadata().dimension);
+        }
+    }
+
+    @Test
+    void testQueryOverLargeSnapshot() throws Exception {
+        String[] worlds = { "Survival", "Creative", "Server X", "Hardcore" };
+        String[] dimensions = { "Overworld", "The Nether", "The End" };
+        String[] biomes = { "Plains", "Badlands", "Forest", "Desert", "Jungle", "Taiga", "Ocean" };
+        long start = 1_700_000_000_000L;
+        List<CatalogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            entries.add(new CatalogEntry("w/" + i + ".png", 1000 + i, start + i, start + i * 60_000L,
+                    new ScreenshotMetadata(worlds[i % 4], dimensions[i % 3], "x", "1", "P", "Normal", "Survival",
+                            "1.21.10", biomes[i % 7], "1")));
+        }
+        Path stateDir = Files.createDirectories(tempDir.resolve(ScreenshotOptimizer.STATE_DIR));
+        CatalogFile.write(stateDir.resolve("catalog-1.bin"), entries, new HashMap<>());
+
+        try (ScreenshotCatalog catalog = new ScreenshotCatalog(tempDir)) {
+            List<CatalogEntry> results = catalog.query(CatalogQuery.ALL.withWorld("Server X")
+                    .withDimension("The Nether").withBiome("Badlands"));
+            // i % 4 == 2, i % 3 == 1, i % 7 == 1: one in every 84
+            assertEquals(1191, results.size());
+            assertEquals("w/22.png", results.get(0).path());
+
+            long from = start + 50_000 * 60_000L;
+            assertEquals(1000, catalog.query(CatalogQuery.ALL.between(from, from + 1000 * 60_000L)).size());
+        }
+    }
+
+    private Path write(String relativePath, int size) throws Exception {
+        Path file = tempDir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[size]);
+        return file;
+    }
+
+    private static ScreenshotMetadata metadata(String world, String dimension, String biome) {
+        return new ScreenshotMetadata(world, dimension, "x: 0, y: 64, z: 0", "1.00 d", "Player", "Normal",
+                "Survival", "1.21.10", biome, "0.10 d");
+    }
+
+    private static List<String> paths(List<CatalogEntry> entries) {
+        return entries.stream().map(CatalogEntry::path).toList();
+    }
+}
@@ -0,0 +1,86 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.duplicate;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.ByteArrayPixelSource;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DuplicateDetectorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRepeatedScreenshotOfTheSameWorldIsFlagged() {
+        DuplicateDetector detector = new DuplicateDetector(tempDir);
+        Path first = tempDir.resolve("World/2025-01-30_12.00.00.png");
+        Path second = tempDir.resolve("World/2025-01-30_12.00.05.png");
+        Path elsewhere = tempDir.resolve("Other/2025-01-30_12.00.06.png");
+
+        assertNull(detector.captureFile(image(0), first, 6, 30_000), "Not expected");
+
+        detector.expectFile(first, "World", 1_000);
+        DuplicateDetector.Match original = detector.captureFile(image(0), first, 6, 30_000);
+        assertNull(original.duplicateOf());
+        assertNull(detector.captureFile(image(0), first, 6, 30_000), "Only hashed once");
+
+        detector.expectFile(second, "World", 6_000);
+        DuplicateDetector.Match repeat = detector.captureFile(image(0), second, 6, 30_000);
+        assertEquals(original.hash(), repeat.hash());
+        assertEquals("World/2025-01-30_12.00.00.png", repeat.duplicateOf());
+
+        detector.expectFile(elsewhere, "Other", 7_000);
+        assertNull(detector.captureFile(image(0), elsewhere, 6, 30_000).duplicateOf(), "Other worlds don't count");
+    }
+
+    @Test
+    void testDifferentScreenshotIsNotFlagged() {
+        DuplicateDetector detector = new DuplicateDetector(tempDir);
+        Path first = tempDir.resolve("World/a.png");
+        Path second = tempDir.resolve("World/b.png");
+
+        detector.expectFile(first, "World", 1_000);
+        detector.captureFile(image(0), first, 6, 30_000);
+        detector.expectFile(second, "World", 2_000);
+        assertNull(detector.captureFile(image(1), second, 6, 30_000).duplicateOf());
+    }
+
+    @Test
+    void testFoldMovesScreenshotAndSidecar() throws Exception {
+        Path qoi = tempDir.resolve("World/2025-01-30_12.00.05.qoi");
+        Files.createDirectories(qoi.getParent());
+        Files.write(qoi, new byte[] { 'q', 'o', 'i', 'f' });
+        Files.writeString(MetadataHandler.sidecarFor(qoi), "<x:xmpmeta/>");
+
+        Path folded = DuplicateDetector.fold(qoi);
+
+        assertEquals(tempDir.resolve("World").resolve(DuplicateDetector.FOLDER).resolve(qoi.getFileName()), folded);
+        assertTrue(Files.exists(folded));
+        assertTrue(Files.exists(MetadataHandler.sidecarFor(folded)));
+        assertFalse(Files.exists(qoi));
+        assertFalse(Files.exists(MetadataHandler.sidecarFor(qoi)));
+    }
+
+    /**
+     * A 64x36 image: vertical bands when {@code kind} is 0, horizontal ones
+     * otherwise.
+     */
+    private static ByteArrayPixelSource image(int kind) {
+        int width = 64;
+        int height = 36;
+        byte[] pixels = new byte[width * height * 3];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int value = ((kind == 0 ? x / 5 : y / 3) % 2) * 200;
+                int i = (y * width + x) * 3;
+                pixels[i] = pixels[i + 1] = pixels[i + 2] = (byte) value;
+            }
+        }
+        return new ByteArrayPixelSource(pixels, width, height, 3);
+    }
+}
@@ -0,0 +1,48 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.duplicate;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DuplicateIndexTest {
+
+    private static final long WINDOW = 30_000;
+
+    @Test
+    void testFindsExactAndNearMatchesInsideTheWindow() {
+        DuplicateIndex index = new DuplicateIndex();
+        index.add(0xF0F0L, 1_000, "a.png", WINDOW);
+
+        assertEquals("a.png", index.findNear(0xF0F0L, 2_000, 0, WINDOW));
+        assertEquals("a.png", index.findNear(0xF0F3L, 2_000, 2, WINDOW));
+        assertNull(index.findNear(0xF0F7L, 2_000, 2, WINDOW), "Three bits apart");
+        assertNull(index.findNear(0xF0F0L, 1_000 + WINDOW + 1, 0, WINDOW), "Too long ago");
+        assertNull(index.findNear(0xF0F0L, 500, 0, WINDOW), "Taken afterwards");
+    }
+
+    @Test
+    void testPrefersTheClosestThenTheMostRecent() {
+        DuplicateIndex index = new DuplicateIndex();
+        index.add(0b0011L, 1_000, "two-bits.png", WINDOW);
+        index.add(0b0100L, 2_000, "one-bit.png", WINDOW);
+        index.add(0b1000L, 3_000, "one-bit-later.png", WINDOW);
+
+        assertEquals("one-bit-later.png", index.findNear(0L, 4_000, 4, WINDOW));
+        index.add(0b0100L, 5_000, "retaken.png", WINDOW);
+        assertEquals(3, index.size(), "Same hash replaces the entry");
+        assertEquals("retaken.png", index.findNear(0L, 6_000, 4, WINDOW));
+    }
+
+    @Test
+    void testOldEntriesAreDroppedInsteadOfGrowing() {
+        DuplicateIndex index = new DuplicateIndex();
+        long time = 0;
+        for (int i = 0; i < 10_000; i++) {
+            time += 1_000;
+            index.add(i * 0x9E3779B97F4A7C15L, time, "shot" + i + ".png", WINDOW);
+        }
+        assertTrue(index.size() <= 64, "Only about one window of entries is kept: " + index.size());
+        assertEquals("shot9999.png", index.findNear(9999 * 0x9E3779B97F4A7C15L, time, 0, WINDOW));
+        assertEquals("shot9990.png", index.findNear(9990 * 0x9E3779B97F4A7C15L, time, 0, WINDOW));
+    }
+}
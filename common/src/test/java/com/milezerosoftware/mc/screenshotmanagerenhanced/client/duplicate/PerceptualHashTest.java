@@ -0,0 +1,78 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.duplicate;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.ByteArrayPixelSource;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PerceptualHashTest {
+
+    @Test
+    void testSimilarImagesHaveCloseHashes() {
+        long hash = PerceptualHash.of(scene(1920, 1080, 4, 0, 0));
+
+        assertEquals(hash, PerceptualHash.of(scene(1920, 1080, 4, 0, 0)));
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.of(scene(960, 540, 3, 0, 0))) <= 2,
+                "Independent of size and channels");
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.of(scene(1920, 1080, 4, 12, 0))) <= 6,
+                "Noise barely changes the hash");
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.of(scene(1920, 1080, 4, 0, 3))) > 16,
+                "A different scene does");
+    }
+
+    @Test
+    void testTinyAndSolidImages() {
+        assertEquals(0, PerceptualHash.of(new ByteArrayPixelSource(new byte[4 * 4 * 4], 4, 4, 4)));
+        byte[] pixels = { 10, 20, 30, 40, 50, 60, 70, 80, 90 };
+        assertEquals(PerceptualHash.of(new ByteArrayPixelSource(pixels, 9, 1, 1)),
+                PerceptualHash.of(new ByteArrayPixelSource(pixels, 9, 1, 1)));
+        assertEquals(0, PerceptualHash.of(new ByteArrayPixelSource(pixels, 9, 1, 1)),
+                "Brightness rises to the right");
+    }
+
+    @Test
+    void testFormatAndParse() {
+        assertEquals("0000000000000001", PerceptualHash.format(1));
+        assertEquals("ffffffffffffffff", PerceptualHash.format(-1));
+        assertEquals(-1, PerceptualHash.parse("ffffffffffffffff"));
+        assertEquals(0x0123456789abcdefL, PerceptualHash.parse(PerceptualHash.format(0x0123456789abcdefL)));
+        assertThrows(NumberFormatException.class, () -> PerceptualHash.parse("123"));
+        assertEquals(64, PerceptualHash.distance(0, -1));
+    }
+
+    @Test
+    void test4kFrameIsHashedQuickly() {
+        ByteArrayPixelSource frame = scene(3840, 2160, 4, 0, 0);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 50; i++) {
+            long start = System.nanoTime();
+            PerceptualHash.of(frame);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        assertTrue(best < 5_000_000, "Took " + best / 1000 + " us");
+    }
+
+    /**
+     * A smooth pattern that depends on {@code seed}, with up to
+     * {@code noise} added to every channel.
+     */
+    private static ByteArrayPixelSource scene(int width, int height, int channels, int noise, int seed) {
+        Random random = new Random(seed);
+        byte[] pixels = new byte[width * height * channels];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double u = (double) x / width;
+                double v = (double) y / height;
+                double value = 127 + 100 * Math.sin((u * 3 + seed) * (1 + seed) + v * 5) * Math.cos(v * 4 - u * seed);
+                int i = (y * width + x) * channels;
+                for (int c = 0; c < channels; c++) {
+                    int n = noise > 0 ? random.nextInt(2 * noise + 1) - noise : 0;
+                    pixels[i + c] = (byte) Math.max(0, Math.min(255, (int) value + n + c * 7));
+                }
+            }
+        }
+        return new ByteArrayPixelSource(pixels, width, height, channels);
+    }
+}
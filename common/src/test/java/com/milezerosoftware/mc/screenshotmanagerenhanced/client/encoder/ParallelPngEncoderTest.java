@@ -0,0 +1,149 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PngEncoderTest.assertPixelsMatch;
+import static com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PngEncoderTest.randomSource;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelPngEncoderTest {
+
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void testManyBandsRoundTripMatchesSourcePixels() throws Exception {
+        // ~4 KB bands over a 120x90 RGBA image gives 9 rows per band, 10 bands
+        ByteArrayPixelSource source = randomSource(120, 90, 4, 11);
+
+        byte[] png = encode(new ParallelPngEncoder(Deflater.DEFAULT_COMPRESSION, true, pool, 4096), source);
+
+        assertPixelsMatch(source, ImageIO.read(new ByteArrayInputStream(png)));
+    }
+
+    @Test
+    void testSingleRowBandsWithoutFiltering() throws Exception {
+        ByteArrayPixelSource source = randomSource(33, 17, 3, 12);
+
+        byte[] png = encode(new ParallelPngEncoder(Deflater.BEST_SPEED, false, pool, 1), source);
+
+        assertPixelsMatch(source, ImageIO.read(new ByteArrayInputStream(png)));
+    }
+
+    @Test
+    void testZlibStreamMatchesSingleThreadedEncoder() throws Exception {
+        // Same filters, so the inflated scanlines must be identical; Inflater
+        // also verifies the combined Adler-32 trailer
+        ByteArrayPixelSource source = randomSource(200, 150, 4, 13);
+
+        byte[] parallel = encode(new ParallelPngEncoder(Deflater.DEFAULT_COMPRESSION, true, pool, 8192), source);
+        ByteArrayOutputStream single = new ByteArrayOutputStream();
+        new PngEncoder().encode(source, single);
+
+        assertArrayEquals(inflateIdat(single.toByteArray()), inflateIdat(parallel));
+    }
+
+    @Test
+    void testPresetDictionaryKeepsSizeCloseToSingleThreaded() throws Exception {
+        // Rows drawn from a small set of random patterns: without the previous
+        // band's tail every band would have to re-emit the patterns as literals
+        int width = 256;
+        int height = 256;
+        int rowBytes = width * 4;
+        Random random = new Random(14);
+        byte[][] patterns = new byte[8][rowBytes];
+        for (byte[] pattern : patterns) {
+            random.nextBytes(pattern);
+        }
+        byte[] pixels = new byte[height * rowBytes];
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(patterns[random.nextInt(patterns.length)], 0, pixels, y * rowBytes, rowBytes);
+        }
+        ByteArrayPixelSource source = new ByteArrayPixelSource(pixels, width, height, 4);
+
+        int bandBytes = 16 * 1024;
+        int bands = height / (bandBytes / (rowBytes + 1));
+        byte[] parallel = encode(new ParallelPngEncoder(Deflater.DEFAULT_COMPRESSION, true, pool, bandBytes), source);
+        ByteArrayOutputStream single = new ByteArrayOutputStream();
+        new PngEncoder().encode(source, single);
+
+        // Only the flush markers and per-band block headers may be added
+        assertTrue(parallel.length - single.size() < bands * 64,
+                "parallel " + parallel.length + " vs single " + single.size() + " over " + bands + " bands");
+    }
+
+    @Test
+    void testAdler32Combine() {
+        byte[] data = new byte[100_000];
+        new Random(15).nextBytes(data);
+        int split = 37_123;
+
+        Adler32 whole = new Adler32();
+        whole.update(data);
+        Adler32 first = new Adler32();
+        first.update(data, 0, split);
+        Adler32 second = new Adler32();
+        second.update(data, split, data.length - split);
+
+        assertEquals(whole.getValue(),
+                ParallelPngEncoder.adler32Combine(first.getValue(), second.getValue(), data.length - split));
+    }
+
+    // =====================================================
+    // Helper Methods
+    // =====================================================
+
+    private static byte[] encode(ParallelPngEncoder encoder, PixelSource source) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode(source, out);
+        return out.toByteArray();
+    }
+
+    private static byte[] inflateIdat(byte[] png) throws Exception {
+        ByteArrayOutputStream zlib = new ByteArrayOutputStream();
+        int pos = 8;
+        while (pos + 8 <= png.length) {
+            int length = ((png[pos] & 0xFF) << 24) | ((png[pos + 1] & 0xFF) << 16)
+                    | ((png[pos + 2] & 0xFF) << 8) | (png[pos + 3] & 0xFF);
+            if (new String(png, pos + 4, 4, StandardCharsets.ISO_8859_1).equals("IDAT")) {
+                zlib.write(png, pos + 8, length);
+            }
+            pos += 12 + length;
+        }
+
+        Inflater inflater = new Inflater();
+        inflater.setInput(zlib.toByteArray());
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        while (!inflater.finished()) {
+            int n = inflater.inflate(buffer);
+            if (n == 0 && inflater.needsInput()) {
+                fail("Truncated zlib stream");
+            }
+            raw.write(buffer, 0, n);
+        }
+        inflater.end();
+        return raw.toByteArray();
+    }
+}
@@ -0,0 +1,146 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PngEncoderTest {
+
+    @Test
+    void testRgbaRoundTripMatchesSourcePixels() throws Exception {
+        ByteArrayPixelSource source = randomSource(37, 23, 4, 1);
+
+        BufferedImage decoded = decode(new PngEncoder(), source);
+
+        assertPixelsMatch(source, decoded);
+        assertTrue(decoded.getColorModel().hasAlpha());
+    }
+
+    @Test
+    void testRgbRoundTripWithoutFiltering() throws Exception {
+        ByteArrayPixelSource source = randomSource(16, 9, 3, 2);
+
+        BufferedImage decoded = decode(new PngEncoder(Deflater.BEST_SPEED, false), source);
+
+        assertPixelsMatch(source, decoded);
+    }
+
+    @Test
+    void testLargeImageSpansMultipleIdatChunks() throws Exception {
+        // Noise does not compress, so 300x300 RGBA (~360 KB) needs several 64 KB IDATs
+        ByteArrayPixelSource source = randomSource(300, 300, 4, 3);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PngEncoder().encode(source, out);
+
+        byte[] png = out.toByteArray();
+        assertTrue(countChunks(png, "IDAT") > 1);
+        assertPixelsMatch(source, ImageIO.read(new ByteArrayInputStream(png)));
+    }
+
+    @Test
+    void testAncillaryChunkIsWrittenBetweenIhdrAndIdat() throws Exception {
+        MetadataHandler.ScreenshotMetadata metadata = new MetadataHandler.ScreenshotMetadata("Encode World",
+                "Overworld", "x: 1, y: 2, z: 3", "1.00 d", "Tester", "Normal", "survival", "1.21.10", "Plains",
+                "0.10 d");
+        ByteArrayPixelSource source = randomSource(8, 8, 4, 4);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PngEncoder().encode(source, out, MetadataHandler.createXmpChunk(metadata));
+        byte[] png = out.toByteArray();
+
+        int ihdr = indexOf(png, "IHDR");
+        int itxt = indexOf(png, "iTXt");
+        int idat = indexOf(png, "IDAT");
+        assertTrue(ihdr < itxt && itxt < idat, "iTXt should sit between IHDR and IDAT");
+        assertTrue(new String(png, StandardCharsets.UTF_8).contains("<mc:WorldTitle>Encode World</mc:WorldTitle>"));
+
+        // Still a valid image
+        assertPixelsMatch(source, ImageIO.read(new ByteArrayInputStream(png)));
+    }
+
+    @Test
+    void testPaethPredictor() {
+        assertEquals(10, PngFilters.paethPredictor(10, 20, 20));
+        assertEquals(20, PngFilters.paethPredictor(10, 20, 10));
+        assertEquals(5, PngFilters.paethPredictor(5, 5, 5));
+    }
+
+    // =====================================================
+    // Helper Methods
+    // =====================================================
+
+    static ByteArrayPixelSource randomSource(int width, int height, int channels, long seed) {
+        byte[] pixels = new byte[width * height * channels];
+        Random random = new Random(seed);
+        // Mix of flat and noisy rows so every filter type gets exercised
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width * channels; x++) {
+                int i = y * width * channels + x;
+                pixels[i] = (byte) (y % 3 == 0 ? x * 7 + y : random.nextInt(256));
+            }
+        }
+        return new ByteArrayPixelSource(pixels, width, height, channels);
+    }
+
+    static BufferedImage decode(PngEncoder encoder, PixelSource source) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode(source, out);
+        return ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    static void assertPixelsMatch(PixelSource source, BufferedImage image) {
+        assertEquals(source.getWidth(), image.getWidth());
+        assertEquals(source.getHeight(), image.getHeight());
+        int channels = source.getChannels();
+        byte[] row = new byte[source.getRowBytes()];
+        for (int y = 0; y < source.getHeight(); y++) {
+            source.readRow(y, row, 0);
+            for (int x = 0; x < source.getWidth(); x++) {
+                int argb = image.getRGB(x, y);
+                int i = x * channels;
+                assertEquals(row[i] & 0xFF, (argb >> 16) & 0xFF, "red at " + x + "," + y);
+                assertEquals(row[i + 1] & 0xFF, (argb >> 8) & 0xFF, "green at " + x + "," + y);
+                assertEquals(row[i + 2] & 0xFF, argb & 0xFF, "blue at " + x + "," + y);
+                if (channels == 4) {
+                    assertEquals(row[i + 3] & 0xFF, (argb >>> 24) & 0xFF, "alpha at " + x + "," + y);
+                }
+            }
+        }
+    }
+
+    private static int indexOf(byte[] data, String type) {
+        byte[] needle = type.getBytes(StandardCharsets.ISO_8859_1);
+        outer: for (int i = 0; i <= data.length - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (data[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static int countChunks(byte[] png, String type) {
+        int count = 0;
+        int pos = 8;
+        while (pos + 8 <= png.length) {
+            int length = ((png[pos] & 0xFF) << 24) | ((png[pos + 1] & 0xFF) << 16)
+                    | ((png[pos + 2] & 0xFF) << 8) | (png[pos + 3] & 0xFF);
+            if (new String(png, pos + 4, 4, StandardCharsets.ISO_8859_1).equals(type)) {
+                count++;
+            }
+            pos += 12 + length;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,125 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PngReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testReadsBackEncodedPixels() throws Exception {
+        for (int channels = 1; channels <= 4; channels++) {
+            ByteArrayPixelSource source = PngEncoderTest.randomSource(41, 17, channels, channels);
+            Path file = tempDir.resolve("rt" + channels + ".png");
+            try (OutputStream out = Files.newOutputStream(file)) {
+                new PngEncoder().encode(source, out);
+            }
+
+            try (PngReader reader = new PngReader(file)) {
+                assertTrue(reader.isSupported());
+                assertEquals(channels, reader.getChannels());
+                assertRowsMatch(source, reader);
+            }
+        }
+    }
+
+    @Test
+    void testAncillaryChunksAreKeptInOrder() throws Exception {
+        byte[] text = PngChunks.toChunk("tEXt".getBytes(StandardCharsets.ISO_8859_1),
+                "Comment\0hello".getBytes(StandardCharsets.ISO_8859_1));
+        byte[] time = PngChunks.toChunk("tIME".getBytes(StandardCharsets.ISO_8859_1), new byte[7]);
+        Path file = tempDir.resolve("chunks.png");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            new PngEncoder(Deflater.BEST_SPEED, false).encode(PngEncoderTest.randomSource(4, 4, 3, 1), out, text,
+                    time);
+        }
+
+        try (PngReader reader = new PngReader(file)) {
+            assertEquals(2, reader.getAncillaryChunks().size());
+            assertArrayEquals(text, reader.getAncillaryChunks().get(0));
+            assertEquals("tIME", PngChunks.typeOf(reader.getAncillaryChunks().get(1)));
+        }
+    }
+
+    @Test
+    void testPaletteImageIsExpanded() throws Exception {
+        byte[] r = { 0, (byte) 255, 10 };
+        byte[] g = { 0, 0, 20 };
+        byte[] b = { 0, 0, 30 };
+        byte[] a = { (byte) 255, (byte) 128, 0 };
+        BufferedImage image = new BufferedImage(5, 3, BufferedImage.TYPE_BYTE_INDEXED,
+                new IndexColorModel(8, 3, r, g, b, a));
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 5; x++) {
+                image.getRaster().setSample(x, y, 0, (x + y) % 3);
+            }
+        }
+        Path file = tempDir.resolve("palette.png");
+        ImageIO.write(image, "png", file.toFile());
+
+        try (PngReader reader = new PngReader(file)) {
+            assertEquals(3, reader.getColorType());
+            assertEquals(4, reader.getChannels());
+            byte[] row = new byte[reader.getRowBytes()];
+            for (int y = 0; y < 3; y++) {
+                reader.readRow(y, row, 0);
+                for (int x = 0; x < 5; x++) {
+                    int index = (x + y) % 3;
+                    assertEquals(r[index], row[x * 4]);
+                    assertEquals(b[index], row[x * 4 + 2]);
+                    assertEquals(a[index], row[x * 4 + 3]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testRowsMustBeReadInOrder() throws Exception {
+        Path file = tempDir.resolve("order.png");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            new PngEncoder().encode(PngEncoderTest.randomSource(4, 4, 4, 2), out);
+        }
+
+        try (PngReader reader = new PngReader(file)) {
+            assertThrows(IllegalStateException.class, () -> reader.readRow(2, new byte[16], 0));
+        }
+    }
+
+    @Test
+    void testRejectsNonPng() throws Exception {
+        Path file = tempDir.resolve("fake.png");
+        Files.writeString(file, "definitely not a png");
+
+        assertThrows(IOException.class, () -> new PngReader(file));
+    }
+
+    // =====================================================
+    // Helper Methods
+    // =====================================================
+
+    static void assertRowsMatch(PixelSource expected, PixelSource actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        byte[] want = new byte[expected.getRowBytes()];
+        byte[] got = new byte[actual.getRowBytes()];
+        for (int y = 0; y < expected.getHeight(); y++) {
+            expected.readRow(y, want, 0);
+            actual.readRow(y, got, 0);
+            assertArrayEquals(want, got, "row " + y);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.EncoderProfile;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PngEncoderTest.randomSource;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QoiEncoderTest {
+
+    @Test
+    void testRgbaRoundTrip() throws Exception {
+        ByteArrayPixelSource source = randomSource(41, 29, 4, 21);
+
+        byte[] qoi = encode(source);
+
+        assertEquals("qoif", new String(qoi, 0, 4, StandardCharsets.ISO_8859_1));
+        assertEquals(4, qoi[12]);
+        assertArrayEquals(pixels(source), decode(qoi, 41, 29, 4));
+    }
+
+    @Test
+    void testRgbRoundTrip() throws Exception {
+        ByteArrayPixelSource source = randomSource(17, 13, 3, 22);
+
+        byte[] qoi = encode(source);
+
+        assertEquals(3, qoi[12]);
+        assertArrayEquals(pixels(source), decode(qoi, 17, 13, 3));
+    }
+
+    @Test
+    void testLongRunsAreSplitAt62Pixels() throws Exception {
+        // 200 identical pixels: 62 + 62 + 62 + 14, plus one leading RGB op
+        byte[] pixels = new byte[200 * 3];
+        for (int i = 0; i < pixels.length; i += 3) {
+            pixels[i] = 10;
+            pixels[i + 1] = 20;
+            pixels[i + 2] = 30;
+        }
+        ByteArrayPixelSource source = new ByteArrayPixelSource(pixels, 200, 1, 3);
+
+        byte[] qoi = encode(source);
+
+        assertEquals(14 + 4 + 4 + 8, qoi.length);
+        assertArrayEquals(pixels, decode(qoi, 200, 1, 3));
+    }
+
+    @Test
+    void testGrayIsExpandedToRgb() throws Exception {
+        byte[] gray = { 0, 50, 100, (byte) 200 };
+        ByteArrayPixelSource source = new ByteArrayPixelSource(gray, 2, 2, 1);
+
+        byte[] decoded = decode(encode(source), 2, 2, 3);
+
+        for (int i = 0; i < gray.length; i++) {
+            assertEquals(gray[i], decoded[i * 3]);
+            assertEquals(gray[i], decoded[i * 3 + 1]);
+            assertEquals(gray[i], decoded[i * 3 + 2]);
+        }
+    }
+
+    @Test
+    void testProfilesMapToMatchingEncoders() {
+        for (EncoderProfile profile : EncoderProfile.values()) {
+            ScreenshotEncoder encoder = ScreenshotEncoders.create(profile, false, 100);
+            assertEquals(profile.getFileExtension(), encoder.getFileExtension(), profile.name());
+            assertEquals(profile.supportsEmbeddedMetadata(), encoder.supportsEmbeddedMetadata(), profile.name());
+        }
+        assertInstanceOf(ParallelPngEncoder.class,
+                ScreenshotEncoders.create(EncoderProfile.FAST_PNG, true, ParallelPngEncoder.MIN_PARALLEL_PIXELS));
+        assertInstanceOf(PngEncoder.class, ScreenshotEncoders.create(EncoderProfile.FAST_PNG, true, 100));
+    }
+
+    // =====================================================
+    // Helper Methods
+    // =====================================================
+
+    private static byte[] encode(PixelSource source) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new QoiEncoder().encode(source, out);
+        return out.toByteArray();
+    }
+
+    private static byte[] pixels(PixelSource source) {
+        byte[] pixels = new byte[source.getRowBytes() * source.getHeight()];
+        for (int y = 0; y < source.getHeight(); y++) {
+            source.readRow(y, pixels, y * source.getRowBytes());
+        }
+        return pixels;
+    }
+
+    /**
+     * Reference decoder following the QOI specification.
+     */
+    private static byte[] decode(byte[] qoi, int width, int height, int channels) {
+        byte[] out = new byte[width * height * channels];
+        int[] index = new int[64 * 4];
+        int r = 0;
+        int g = 0;
+        int b = 0;
+        int a = 255;
+        int run = 0;
+        int p = 14;
+        for (int o = 0; o < out.length; o += channels) {
+            if (run > 0) {
+                run--;
+            } else {
+                int op = qoi[p++] & 0xFF;
+                if (op == 0xFE) {
+                    r = qoi[p++] & 0xFF;
+                    g = qoi[p++] & 0xFF;
+                    b = qoi[p++] & 0xFF;
+                } else if (op == 0xFF) {
+                    r = qoi[p++] & 0xFF;
+                    g = qoi[p++] & 0xFF;
+                    b = qoi[p++] & 0xFF;
+                    a = qoi[p++] & 0xFF;
+                } else if ((op & 0xC0) == 0x00) {
+                    r = index[op * 4];
+                    g = index[op * 4 + 1];
+                    b = index[op * 4 + 2];
+                    a = index[op * 4 + 3];
+                } else if ((op & 0xC0) == 0x40) {
+                    r = (r + ((op >> 4) & 3) - 2) & 0xFF;
+                    g = (g + ((op >> 2) & 3) - 2) & 0xFF;
+                    b = (b + (op & 3) - 2) & 0xFF;
+                } else if ((op & 0xC0) == 0x80) {
+                    int second = qoi[p++] & 0xFF;
+                    int vg = (op & 0x3F) - 32;
+                    r = (r + vg - 8 + ((second >> 4) & 0x0F)) & 0xFF;
+                    g = (g + vg) & 0xFF;
+                    b = (b + vg - 8 + (second & 0x0F)) & 0xFF;
+                } else {
+                    run = op & 0x3F;
+                }
+                int hash = ((r * 3 + g * 5 + b * 7 + a * 11) & 63) * 4;
+                index[hash] = r;
+                index[hash + 1] = g;
+                index[hash + 2] = b;
+                index[hash + 3] = a;
+            }
+            out[o] = (byte) r;
+            out[o + 1] = (byte) g;
+            out[o + 2] = (byte) b;
+            if (channels == 4) {
+                out[o + 3] = (byte) a;
+            }
+        }
+        for (int i = 0; i < 8; i++) {
+            assertEquals(i == 7 ? 1 : 0, qoi[p + i], "end marker");
+        }
+        assertEquals(qoi.length, p + 8);
+        return out;
+    }
+}
@@ -0,0 +1,67 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.gallery;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog.CatalogEntry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GalleryLayoutTest {
+
+    @Test
+    void testRowsPerSection() {
+        List<CatalogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            entries.add(GalleryModelTest.entry("W/new/" + i + ".png", 100 + i, null));
+        }
+        for (int i = 0; i < 3; i++) {
+            entries.add(GalleryModelTest.entry("W/old/" + i + ".png", i, null));
+        }
+        GalleryLayout layout = new GalleryLayout(GalleryModel.of(entries, "W", null), 3, 20, 50);
+
+        // new: header + 3 rows (3, 3, 1); old: header + 1 row
+        assertEquals(6, layout.rowCount());
+        assertEquals(20 + 3 * 50 + 20 + 50, layout.height());
+        assertTrue(layout.isHeader(0));
+        assertEquals("new", layout.section(0).title());
+        assertEquals(List.of(), layout.entries(0));
+        assertEquals(3, layout.entries(1).size());
+        assertEquals(List.of("W/new/0.png"), layout.entries(3).stream().map(CatalogEntry::path).toList());
+        assertTrue(layout.isHeader(4));
+        assertEquals(170, layout.rowTop(4));
+        assertEquals(20, layout.rowHeight(4));
+        assertEquals("old", layout.section(5).title());
+    }
+
+    @Test
+    void testRowAtHeight() {
+        List<CatalogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            entries.add(GalleryModelTest.entry("W/" + (i / 100) + "/" + i + ".png", i, null));
+        }
+        GalleryLayout layout = new GalleryLayout(GalleryModel.of(entries, "W", null), 4, 20, 78);
+
+        assertEquals(100 + 100 * 25, layout.rowCount());
+        assertEquals(0, layout.rowAt(-5));
+        assertEquals(0, layout.rowAt(0));
+        assertEquals(0, layout.rowAt(19));
+        assertEquals(1, layout.rowAt(20));
+        assertEquals(1, layout.rowAt(97));
+        assertEquals(2, layout.rowAt(98));
+        assertEquals(layout.rowCount() - 1, layout.rowAt(layout.height() + 100));
+        for (int row = 0; row < layout.rowCount(); row += 37) {
+            assertEquals(row, layout.rowAt(layout.rowTop(row) + layout.rowHeight(row) - 1));
+        }
+    }
+
+    @Test
+    void testEmptyLayout() {
+        GalleryLayout layout = new GalleryLayout(GalleryModel.of(List.of(), "W", null), 0, 20, 50);
+        assertEquals(0, layout.rowCount());
+        assertEquals(0, layout.height());
+        assertEquals(0, layout.rowAt(10));
+        assertEquals(1, layout.columns());
+    }
+}
@@ -0,0 +1,76 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.gallery;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog.CatalogEntry;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler.ScreenshotMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GalleryModelTest {
+
+    @Test
+    void testSectionsFollowFoldersBelowTheWorld() {
+        GalleryModel model = GalleryModel.of(List.of(
+                entry("My_World/overworld/2025-01-30/a.png", 1, null),
+                entry("My_World/overworld/2025-01-30/b.png", 3, null),
+                entry("My_World/the_nether/2025-01-31/c.png", 2, null),
+                entry("My_World/d.png", 0, null),
+                entry("Other/overworld/2025-01-30/e.png", 4, null)), "My_World", "My World");
+
+        assertEquals(4, model.size());
+        assertEquals(List.of("overworld/2025-01-30", "the_nether/2025-01-31", ""), titles(model),
+                "Newest section first");
+        assertEquals(List.of("My_World/overworld/2025-01-30/b.png", "My_World/overworld/2025-01-30/a.png"),
+                paths(model.sections().get(0)), "Newest screenshot first");
+    }
+
+    @Test
+    void testWorldFolderAnywhereInThePath() {
+        GalleryModel model = GalleryModel.of(List.of(
+                entry("2025-01-30/My_World/a.png", 1, null),
+                entry("2025-01-31/My_World/b.png", 2, null),
+                entry("2025-01-31/My_World_2/c.png", 3, null),
+                entry("2025-01-31/x_My_World/d.png", 4, null)), "My_World", null);
+
+        assertEquals(List.of("2025-01-31", "2025-01-30"), titles(model));
+        assertEquals(2, model.size(), "Only whole folder names match");
+    }
+
+    @Test
+    void testMetadataPlacesScreenshotsOutsideTheWorldFolder() {
+        GalleryModel model = GalleryModel.of(List.of(
+                entry("2025-01-30/a.png", 1, metadata("my world")),
+                entry("2025-01-30/b.png", 2, metadata("Other")),
+                entry("c.png", 3, metadata("My World")),
+                entry("2025-01-31/d.png", 4, null)), "My_World", "My World");
+
+        assertEquals(List.of("", "2025-01-30"), titles(model), "Grouped by date only");
+        assertEquals(List.of("2025-01-30/a.png"), paths(model.sections().get(1)));
+    }
+
+    @Test
+    void testEmptyGallery() {
+        GalleryModel model = GalleryModel.of(List.of(entry("World/a.png", 1, null)), null, null);
+        assertEquals(0, model.size());
+        assertTrue(model.sections().isEmpty());
+    }
+
+    static CatalogEntry entry(String path, long timestamp, ScreenshotMetadata metadata) {
+        return new CatalogEntry(path, 100, timestamp, timestamp, metadata);
+    }
+
+    private static ScreenshotMetadata metadata(String world) {
+        return new ScreenshotMetadata(world, "Overworld", "x: 0, y: 64, z: 0", "1.00 d", "Player", "Normal",
+                "Survival", "1.21.10", "Plains", "0.10 d");
+    }
+
+    private static List<String> titles(GalleryModel model) {
+        return model.sections().stream().map(GalleryModel.Section::title).toList();
+    }
+
+    private static List<String> paths(GalleryModel.Section section) {
+        return section.entries().stream().map(CatalogEntry::path).toList();
+    }
+}
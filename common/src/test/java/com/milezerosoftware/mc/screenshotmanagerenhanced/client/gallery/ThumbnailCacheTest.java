@@ -0,0 +1,89 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.gallery;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ThumbnailCacheTest {
+
+    private final List<String> released = new ArrayList<>();
+    private final ThumbnailCache<String, String> cache = new ThumbnailCache<>(100, released::add);
+
+    @Test
+    void testEvictsLeastRecentlyUsedBySize() {
+        cache.put("a", "A", 40);
+        cache.put("b", "B", 40);
+        assertEquals("A", cache.get("a"), "Touches a");
+        cache.put("c", "C", 40);
+
+        assertEquals(List.of("B"), released, "b was used least recently");
+        assertFalse(cache.contains("b"));
+        assertEquals(80, cache.bytes());
+        assertEquals(2, cache.size());
+
+        cache.put("d", "D", 90);
+        assertEquals(List.of("B", "A", "C"), released, "Evicts until within size");
+        assertEquals(90, cache.bytes());
+    }
+
+    @Test
+    void testContainsDoesNotCountAsUse() {
+        cache.put("a", "A", 50);
+        cache.put("b", "B", 50);
+        assertTrue(cache.contains("a"));
+        cache.put("c", "C", 50);
+        assertEquals(List.of("A"), released);
+    }
+
+    @Test
+    void testOversizedValueIsKeptAlone() {
+        cache.put("a", "A", 10);
+        cache.put("huge", "H", 500);
+        assertEquals(List.of("A"), released);
+        assertEquals("H", cache.get("huge"));
+        assertEquals(500, cache.bytes());
+
+        cache.put("b", "B", 10);
+        assertEquals(List.of("A", "H"), released);
+        assertEquals(10, cache.bytes());
+    }
+
+    @Test
+    void testReplacingReleasesOldValue() {
+        cache.put("a", "A1", 30);
+        cache.put("a", "A2", 50);
+        assertEquals(List.of("A1"), released);
+        assertEquals(50, cache.bytes());
+        assertEquals("A2", cache.get("a"));
+
+        cache.put("a", "A2", 20);
+        assertEquals(List.of("A1"), released, "The same value is not released");
+        assertEquals(20, cache.bytes());
+    }
+
+    @Test
+    void testRemoveAndClearRelease() {
+        cache.put("a", "A", 10);
+        cache.put("b", "B", 10);
+        cache.put("c", "C", 10);
+
+        assertTrue(cache.remove("b"));
+        assertFalse(cache.remove("b"));
+        assertEquals(List.of("B"), released);
+
+        cache.clear();
+        assertEquals(List.of("B", "A", "C"), released);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.bytes());
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    void testRejectsNonPositiveSize() {
+        assertThrows(IllegalArgumentException.class, () -> new ThumbnailCache<String, String>(0, value -> {
+        }));
+    }
+}
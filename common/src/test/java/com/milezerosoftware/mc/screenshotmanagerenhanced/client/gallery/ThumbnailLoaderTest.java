@@ -0,0 +1,137 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.gallery;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ThumbnailLoaderTest {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private final List<String> loaded = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> discarded = Collections.synchronizedList(new ArrayList<>());
+    private ThumbnailLoader<String, String> loader;
+
+    @AfterEach
+    void tearDown() {
+        gate.countDown();
+        if (loader != null) {
+            loader.close();
+        }
+    }
+
+    @Test
+    void testLoadsAndDrainsInBatches() throws Exception {
+        loader = new ThumbnailLoader<>(2, this::load, discarded::add);
+        for (String key : List.of("a", "b", "c", "d", "e")) {
+            assertTrue(loader.request(key));
+        }
+
+        Map<String, String> results = drain(5);
+        assertEquals(Map.of("a", "A", "b", "B", "c", "C", "d", "D", "e", "E"), results);
+        assertTrue(loader.isIdle());
+        assertEquals(0, loader.drain(10, (key, value) -> fail("Nothing left")));
+    }
+
+    @Test
+    void testNewestRequestLoadsFirst() throws Exception {
+        loader = new ThumbnailLoader<>(1, this::load, discarded::add);
+        loader.request("block");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        loader.request("a");
+        loader.request("b");
+        loader.request("c");
+        assertFalse(loader.request("a"), "Already pending");
+        gate.countDown();
+
+        drain(4);
+        assertEquals(List.of("block", "a", "c", "b"), loaded, "a moved to the front when requested again");
+    }
+
+    @Test
+    void testRetainDropsRequestsOutOfView() throws Exception {
+        loader = new ThumbnailLoader<>(1, this::load, discarded::add);
+        loader.request("block");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        loader.request("a");
+        loader.request("b");
+        loader.request("c");
+
+        assertEquals(2, loader.retain(key -> key.equals("b")));
+        assertEquals(1, loader.pending());
+        assertFalse(loader.request("block"), "Still loading");
+        assertTrue(loader.request("a"), "Dropped requests can be made again");
+        gate.countDown();
+
+        assertEquals(Map.of("block", "BLOCK", "a", "A", "b", "B"), drain(3));
+        assertEquals(List.of("block", "a", "b"), loaded);
+        assertTrue(loader.request("block"), "Drained keys can be requested again");
+    }
+
+    @Test
+    void testFailedLoadDrainsWithoutValue() throws Exception {
+        loader = new ThumbnailLoader<>(1, key -> {
+            throw new IOException("unreadable");
+        }, discarded::add);
+        loader.request("a");
+
+        Map<String, String> results = drain(1);
+        assertTrue(results.containsKey("a"));
+        assertNull(results.get("a"));
+    }
+
+    @Test
+    void testCloseDiscardsUndrainedValues() throws Exception {
+        loader = new ThumbnailLoader<>(1, this::load, discarded::add);
+        loader.request("done");
+        while (loaded.isEmpty()) {
+            Thread.sleep(1);
+        }
+        loader.request("block");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        loader.request("never");
+
+        loader.close();
+        assertEquals(List.of("DONE"), discarded, "Waiting result");
+        assertFalse(loader.request("again"));
+
+        gate.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (discarded.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(List.of("DONE", "BLOCK"), discarded, "Result finished after closing");
+        assertFalse(loaded.contains("never"));
+    }
+
+    private String load(String key) throws InterruptedException {
+        if (key.equals("block")) {
+            started.countDown();
+            assertTrue(gate.await(5, TimeUnit.SECONDS));
+        }
+        loaded.add(key);
+        return key.toUpperCase();
+    }
+
+    private Map<String, String> drain(int count) throws InterruptedException {
+        Map<String, String> results = new LinkedHashMap<>();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (results.size() < count && System.nanoTime() < deadline) {
+            if (loader.drain(2, results::put) == 0) {
+                Thread.sleep(1);
+            }
+        }
+        assertEquals(count, results.size(), "Results drained in time");
+        return results;
+    }
+}
@@ -0,0 +1,96 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.migration;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.optimizer.ScreenshotOptimizer;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.PathTemplate;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.GroupingMode;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.MigrationPolicy;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ModConfig;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.WorldConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LibraryMigrationServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void tearDown() {
+        LibraryMigrationService.shutdown();
+    }
+
+    @Test
+    void testLayoutChangeMovesScreenshots() throws Exception {
+        Path file = write("World/2025-01-30_12.00.00.png");
+        ModConfig config = new ModConfig();
+        LibraryMigrationService.start(tempDir, config);
+
+        config.groupingMode = GroupingMode.WORLD_DATE;
+        config.migrationPolicy = MigrationPolicy.MOVE;
+        LibraryMigrationService.onLayoutChanged(PathTemplate.of(GroupingMode.WORLD), config);
+
+        Path moved = tempDir.resolve("World/2025-01-30/2025-01-30_12.00.00.png");
+        awaitExists(moved);
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void testReportPolicyOnlyWritesThePlan() throws Exception {
+        Path file = write("World/2025-01-30_12.00.00.png");
+        ModConfig config = new ModConfig();
+        LibraryMigrationService.start(tempDir, config);
+
+        config.groupingMode = GroupingMode.DATE;
+        config.migrationPolicy = MigrationPolicy.REPORT;
+        LibraryMigrationService.onLayoutChanged(PathTemplate.of(GroupingMode.WORLD), config);
+
+        awaitExists(tempDir.resolve(ScreenshotOptimizer.STATE_DIR).resolve(LibraryMigrationService.REPORT_FILE));
+        assertTrue(Files.exists(file));
+    }
+
+    @Test
+    void testPendingMigrationIsResumedOnStart() throws Exception {
+        write("World/2025-01-30_12.00.00.png");
+        LibraryMigration migration = new LibraryMigration(tempDir, 1);
+        LibraryMigration.Plan plan = migration.plan(PathTemplate.of(GroupingMode.WORLD),
+                PathTemplate.of(GroupingMode.DATE), world -> false);
+        migration.cancel();
+        migration.run(plan);
+
+        ModConfig config = new ModConfig();
+        config.groupingMode = GroupingMode.DATE;
+        LibraryMigrationService.start(tempDir, config);
+        awaitExists(tempDir.resolve("2025-01-30/2025-01-30_12.00.00.png"));
+    }
+
+    @Test
+    void testDisabledWorldsAreKept() {
+        Predicate<String> kept = LibraryMigrationService.inactiveWorlds(Map.of(
+                "My World", new WorldConfig("", false), "Other", new WorldConfig("", true)));
+        assertTrue(kept.test("My World"));
+        assertTrue(kept.test("My_World"));
+        assertFalse(kept.test("Other"));
+    }
+
+    private Path write(String relativePath) throws Exception {
+        Path file = tempDir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[] { 1, 2, 3 });
+        return file;
+    }
+
+    private static void awaitExists(Path file) throws InterruptedException {
+        for (int i = 0; i < 200 && !Files.exists(file); i++) {
+            Thread.sleep(25);
+        }
+        assertTrue(Files.exists(file), file + " should exist");
+    }
+}
@@ -0,0 +1,199 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.migration;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.optimizer.ScreenshotOptimizer;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler.ScreenshotMetadata;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.PathTemplate;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.GroupingMode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LibraryMigrationTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testDryRunPlansWithoutMovingAnything() throws Exception {
+        write("World/2025-01-30_12.00.00.png");
+        write("World/2025-01-31_08.15.00.png");
+        write("loose.png");
+
+        LibraryMigration migration = new LibraryMigration(tempDir, 2);
+        LibraryMigration.Plan plan = migration.plan(PathTemplate.of(GroupingMode.WORLD),
+                PathTemplate.of(GroupingMode.WORLD_DATE), world -> false);
+
+        assertEquals(List.of(
+                new LibraryMigration.Move("World/2025-01-30_12.00.00.png", "World/2025-01-30/2025-01-30_12.00.00.png"),
+                new LibraryMigration.Move("World/2025-01-31_08.15.00.png", "World/2025-01-31/2025-01-31_08.15.00.png")),
+                plan.moves());
+        assertEquals(3, plan.scanned());
+        assertEquals(2, plan.moving());
+        assertEquals(1, plan.unmatched(), "Screenshots outside the old layout stay put");
+
+        Path report = tempDir.resolve(ScreenshotOptimizer.STATE_DIR).resolve("migration-report.txt");
+        plan.writeReport(report);
+        assertTrue(Files.readString(report).contains(
+                "World/2025-01-30_12.00.00.png -> World/2025-01-30/2025-01-30_12.00.00.png"));
+        assertTrue(Files.exists(tempDir.resolve("World/2025-01-30_12.00.00.png")));
+        assertFalse(migration.isPending());
+    }
+
+    @Test
+    void testRunMovesFilesAndTheirSidecars() throws Exception {
+        Path tagged = write("2025-01-30/2025-01-30_12.00.00.qoi");
+        MetadataHandler.writeSidecar(tagged.toFile(), metadata("My World", "The Nether"));
+        write("2025-01-30/2025-01-30_13.00.00.png");
+
+        LibraryMigration migration = new LibraryMigration(tempDir, 2);
+        LibraryMigration.Plan plan = migration.plan(PathTemplate.of(GroupingMode.DATE),
+                PathTemplate.of(GroupingMode.WORLD_DIMENSION), world -> false);
+        assertEquals(1, plan.moving());
+        assertEquals(1, plan.unresolved(), "An untagged file has no world to move to");
+
+        LibraryMigration.Result result = migration.run(plan);
+        assertEquals(2, result.moved());
+        assertFalse(result.cancelled());
+        assertTrue(Files.exists(tempDir.resolve("My_World/the_nether/2025-01-30_12.00.00.qoi")));
+        assertTrue(Files.exists(tempDir.resolve("My_World/the_nether/2025-01-30_12.00.00.xmp")));
+        assertTrue(Files.exists(tempDir.resolve("2025-01-30/2025-01-30_13.00.00.png")));
+        assertFalse(migration.isPending(), "The journal is deleted once done");
+    }
+
+    @Test
+    void testEmptiedFoldersAreRemovedAndNamesNeverCollide() throws Exception {
+        write("A/2025-01-30_12.00.00.png");
+        write("B/2025-01-30_12.00.00.png");
+        write("B/2025-01-30_12.00.00_2.png");
+
+        LibraryMigration migration = new LibraryMigration(tempDir, 2);
+        LibraryMigration.Plan plan = migration.plan(PathTemplate.of(GroupingMode.WORLD),
+                PathTemplate.of(GroupingMode.NONE), world -> world.equals("C"));
+        migration.run(plan);
+
+        assertEquals(List.of("2025-01-30_12.00.00.png", "2025-01-30_12.00.00_2.png", "2025-01-30_12.00.00_2_2.png"),
+                list(tempDir));
+        assertFalse(Files.exists(tempDir.resolve("A")));
+        assertFalse(Files.exists(tempDir.resolve("B")));
+    }
+
+    @Test
+    void testScreenshotsOfKeptWorldsStay() throws Exception {
+        write("Kept/2025-01-30_12.00.00.png");
+        write("Moved/2025-01-30_12.00.00.png");
+
+        LibraryMigration.Plan plan = new LibraryMigration(tempDir, 1).plan(PathTemplate.of(GroupingMode.WORLD),
+                PathTemplate.of(GroupingMode.WORLD_DATE), world -> world.equals("Kept"));
+        assertEquals(1, plan.kept());
+        assertEquals(List.of(new LibraryMigration.Move("Moved/2025-01-30_12.00.00.png",
+                "Moved/2025-01-30/2025-01-30_12.00.00.png")), plan.moves());
+    }
+
+    @Test
+    void testInterruptedMigrationResumes() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            write("World/2025-01-30_12.00.0" + i + ".png");
+        }
+        LibraryMigration migration = new LibraryMigration(tempDir, 2);
+        LibraryMigration.Plan plan = migration.plan(PathTemplate.of(GroupingMode.WORLD),
+                PathTemplate.of(GroupingMode.WORLD_DATE), world -> false);
+        migration.cancel();
+        assertTrue(migration.run(plan).cancelled());
+        assertTrue(migration.isPending());
+
+        // Some files made it before the game exited, one was deleted since
+        Files.createDirectories(tempDir.resolve("World/2025-01-30"));
+        for (int i = 0; i < 3; i++) {
+            Files.move(tempDir.resolve("World/2025-01-30_12.00.0" + i + ".png"),
+                    tempDir.resolve("World/2025-01-30/2025-01-30_12.00.0" + i + ".png"));
+        }
+        Files.delete(tempDir.resolve("World/2025-01-30_12.00.09.png"));
+
+        LibraryMigration restarted = new LibraryMigration(tempDir, 2);
+        LibraryMigration.Plan pending = restarted.pending();
+        assertEquals(GroupingMode.WORLD_DATE.getTemplate(), pending.toTemplate());
+        assertEquals(LibraryMigration.Direction.FORWARD, restarted.pendingDirection());
+
+        LibraryMigration.Result result = restarted.resume();
+        assertEquals(6, result.moved());
+        assertEquals(3, result.alreadyMoved());
+        assertEquals(1, result.missing());
+        assertEquals(9, list(tempDir.resolve("World/2025-01-30")).size());
+        assertEquals(List.of("2025-01-30"), list(tempDir.resolve("World")));
+        assertFalse(restarted.isPending());
+        assertNull(restarted.resume());
+    }
+
+    @Test
+    void testInterruptedMigrationRollsBack() throws Exception {
+        write("World/2025-01-30_12.00.00.png");
+        write("World/2025-01-31_12.00.00.png");
+        LibraryMigration migration = new LibraryMigration(tempDir, 1);
+        LibraryMigration.Plan plan = migration.plan(PathTemplate.of(GroupingMode.WORLD),
+                PathTemplate.of(GroupingMode.DATE), world -> false);
+        migration.cancel();
+        migration.run(plan);
+        Files.createDirectories(tempDir.resolve("2025-01-30"));
+        Files.move(tempDir.resolve("World/2025-01-30_12.00.00.png"),
+                tempDir.resolve("2025-01-30/2025-01-30_12.00.00.png"));
+
+        LibraryMigration restarted = new LibraryMigration(tempDir, 1);
+        LibraryMigration.Result result = restarted.rollback();
+        assertEquals(1, result.moved());
+        assertEquals(1, result.alreadyMoved());
+        assertEquals(List.of("2025-01-30_12.00.00.png", "2025-01-31_12.00.00.png"), list(tempDir.resolve("World")));
+        assertFalse(Files.exists(tempDir.resolve("2025-01-30")), "Folders the migration created are removed");
+        assertFalse(restarted.isPending());
+    }
+
+    @Test
+    void testDamagedJournalIsReported() throws Exception {
+        Path journal = tempDir.resolve(ScreenshotOptimizer.STATE_DIR).resolve(LibraryMigration.JOURNAL_FILE);
+        Files.createDirectories(journal.getParent());
+        Files.writeString(journal, "sme-migration 1\nFORWARD\n{world}\n{date}\n2\na.png\tb/a.png\n");
+
+        LibraryMigration migration = new LibraryMigration(tempDir, 1);
+        assertTrue(migration.isPending());
+        assertThrows(java.io.IOException.class, migration::resume);
+        assertThrows(IllegalStateException.class, () -> migration.run(new LibraryMigration.Plan("", "{world}",
+                List.of(new LibraryMigration.Move("a.png", "b/a.png")), 1, 1, 0, 0, 0, 0)));
+    }
+
+    @Test
+    void testFolderValuesGiveTheTimeWhenTheNameDoesNot() {
+        long time = LibraryMigration.folderTime(Map.of(PathTemplate.Variable.YEAR, "2025",
+                PathTemplate.Variable.MONTH, "01", PathTemplate.Variable.DAY, "30"));
+        StringBuilder out = new StringBuilder();
+        PathTemplate.of(GroupingMode.DATE).appendTo(out, new PathTemplate.Values(null, null, null, null, null), time);
+        assertEquals("2025-01-30", out.toString());
+        assertEquals(-1, LibraryMigration.folderTime(Map.of(PathTemplate.Variable.YEAR, "2025")));
+        assertEquals("the_nether", LibraryMigration.identifier("The Nether"));
+    }
+
+    private Path write(String relativePath) throws Exception {
+        Path file = tempDir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[] { 1, 2, 3 });
+        return file;
+    }
+
+    private static List<String> list(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).filter(name -> !name.startsWith("."))
+                    .sorted().toList();
+        }
+    }
+
+    private static ScreenshotMetadata metadata(String world, String dimension) {
+        return new ScreenshotMetadata(world, dimension, "x: 0, y: 64, z: 0", "1.00 d", "Player", "Normal",
+                "Survival", "1.21.10", "Plains", "0.10 d");
+    }
+}
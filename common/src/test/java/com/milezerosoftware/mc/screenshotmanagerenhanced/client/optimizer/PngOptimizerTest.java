@@ -0,0 +1,195 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.optimizer;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.ByteArrayPixelSource;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PixelSource;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PngChunks;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PngEncoder;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PngReader;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PngOptimizerTest {
+
+    private static final Runnable NO_THROTTLE = () -> {
+    };
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testFewColorsBecomeIndexedAndKeepMetadata() throws Exception {
+        // A flat UI-like screenshot: 6 colors, one of them translucent
+        ByteArrayPixelSource source = fewColors(160, 90, 6);
+        byte[] xmp = MetadataHandler.createXmpChunk(new MetadataHandler.ScreenshotMetadata("Optimizer World",
+                "Overworld", "x: 1, y: 2, z: 3", "1.00 d", "Tester", "Normal", "survival", "1.21.10", "Plains",
+                "0.10 d"));
+        Path file = write("flat.png", source, Deflater.BEST_SPEED, false, xmp);
+        FileTime mtime = FileTime.fromMillis(1_700_000_000_000L);
+        Files.setLastModifiedTime(file, mtime);
+
+        PngOptimizer.Result result = PngOptimizer.optimize(file, NO_THROTTLE);
+
+        assertEquals(PngOptimizer.Outcome.OPTIMIZED, result.outcome());
+        assertTrue(result.finalBytes() < result.originalBytes());
+        assertEquals(result.finalBytes(), Files.size(file));
+        assertEquals(mtime, Files.getLastModifiedTime(file));
+        try (PngReader reader = new PngReader(file)) {
+            assertEquals(3, reader.getColorType());
+            assertEquals(1, reader.getAncillaryChunks().size());
+            assertArrayEquals(xmp, reader.getAncillaryChunks().get(0));
+            assertPixelsEqual(source, reader);
+        }
+        assertNoTempFiles();
+    }
+
+    @Test
+    void testOpaqueRgbaPaletteDropsAlpha() throws Exception {
+        ByteArrayPixelSource source = fewColors(64, 64, 0);
+        Path file = write("opaque.png", source, Deflater.BEST_SPEED, false);
+
+        assertEquals(PngOptimizer.Outcome.OPTIMIZED, PngOptimizer.optimize(file, NO_THROTTLE).outcome());
+
+        try (PngReader reader = new PngReader(file)) {
+            assertEquals(3, reader.getChannels(), "No tRNS chunk needed for an opaque palette");
+            byte[] row = new byte[reader.getRowBytes()];
+            byte[] expected = new byte[source.getRowBytes()];
+            for (int y = 0; y < 64; y++) {
+                reader.readRow(y, row, 0);
+                source.readRow(y, expected, 0);
+                for (int x = 0; x < 64; x++) {
+                    assertEquals(expected[x * 4], row[x * 3]);
+                    assertEquals(expected[x * 4 + 2], row[x * 3 + 2]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testTrueColorIsRecompressed() throws Exception {
+        ByteArrayPixelSource source = gradient(200, 120);
+        Path file = write("gradient.png", source, Deflater.BEST_SPEED, false);
+
+        PngOptimizer.Result result = PngOptimizer.optimize(file, NO_THROTTLE);
+
+        assertEquals(PngOptimizer.Outcome.OPTIMIZED, result.outcome());
+        try (PngReader reader = new PngReader(file)) {
+            assertEquals(6, reader.getColorType());
+            assertPixelsEqual(source, reader);
+        }
+    }
+
+    @Test
+    void testAlreadyOptimalFileIsLeftAlone() throws Exception {
+        // Noise cannot be compressed further
+        byte[] pixels = new byte[64 * 64 * 4];
+        new Random(7).nextBytes(pixels);
+        Path file = write("noise.png", new ByteArrayPixelSource(pixels, 64, 64, 4), Deflater.BEST_COMPRESSION,
+                false);
+        byte[] before = Files.readAllBytes(file);
+
+        PngOptimizer.Result result = PngOptimizer.optimize(file, NO_THROTTLE);
+
+        assertEquals(PngOptimizer.Outcome.NOT_SMALLER, result.outcome());
+        assertArrayEquals(before, Files.readAllBytes(file));
+        assertNoTempFiles();
+    }
+
+    @Test
+    void testColorDependentChunkIsUnsupported() throws Exception {
+        byte[] bkgd = PngChunks.toChunk("bKGD".getBytes(StandardCharsets.ISO_8859_1), new byte[6]);
+        Path file = write("bkgd.png", fewColors(16, 16, 2), Deflater.BEST_SPEED, false, bkgd);
+
+        assertEquals(PngOptimizer.Outcome.UNSUPPORTED, PngOptimizer.optimize(file, NO_THROTTLE).outcome());
+    }
+
+    @Test
+    void testAbortLeavesOriginalAndNoTempFile() throws Exception {
+        Path file = write("abort.png", gradient(64, 64), Deflater.BEST_SPEED, false);
+        byte[] before = Files.readAllBytes(file);
+        int[] rows = { 0 };
+
+        assertThrows(IllegalStateException.class, () -> PngOptimizer.optimize(file, () -> {
+            if (++rows[0] > 100) {
+                throw new IllegalStateException("stop");
+            }
+        }));
+
+        assertArrayEquals(before, Files.readAllBytes(file));
+        assertNoTempFiles();
+    }
+
+    // =====================================================
+    // Helper Methods
+    // =====================================================
+
+    static ByteArrayPixelSource fewColors(int width, int height, int translucent) {
+        int[] colors = { 0x202020FF, 0x3C8DBCFF, 0xFFFFFFFF, 0xE04040FF, 0x40E040FF, 0x808080FF };
+        for (int i = 0; i < translucent && i < colors.length; i++) {
+            colors[i] = colors[i] & 0xFFFFFF00 | 0x80;
+        }
+        byte[] pixels = new byte[width * height * 4];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int color = colors[(x / 7 + y / 5) % colors.length];
+                int i = (y * width + x) * 4;
+                pixels[i] = (byte) (color >>> 24);
+                pixels[i + 1] = (byte) (color >>> 16);
+                pixels[i + 2] = (byte) (color >>> 8);
+                pixels[i + 3] = (byte) color;
+            }
+        }
+        return new ByteArrayPixelSource(pixels, width, height, 4);
+    }
+
+    static ByteArrayPixelSource gradient(int width, int height) {
+        byte[] pixels = new byte[width * height * 4];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = (y * width + x) * 4;
+                pixels[i] = (byte) x;
+                pixels[i + 1] = (byte) y;
+                pixels[i + 2] = (byte) (x + y);
+                pixels[i + 3] = (byte) 255;
+            }
+        }
+        return new ByteArrayPixelSource(pixels, width, height, 4);
+    }
+
+    private Path write(String name, PixelSource source, int level, boolean adaptive, byte[]... chunks)
+            throws Exception {
+        Path file = tempDir.resolve(name);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            new PngEncoder(level, adaptive).encode(source, out, chunks);
+        }
+        return file;
+    }
+
+    private static void assertPixelsEqual(PixelSource expected, PixelSource actual) {
+        byte[] want = new byte[expected.getRowBytes()];
+        byte[] got = new byte[actual.getRowBytes()];
+        assertEquals(want.length, got.length);
+        for (int y = 0; y < expected.getHeight(); y++) {
+            expected.readRow(y, want, 0);
+            actual.readRow(y, got, 0);
+            assertArrayEquals(want, got, "row " + y);
+        }
+    }
+
+    private void assertNoTempFiles() throws Exception {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertTrue(files.noneMatch(p -> p.toString().endsWith(PngOptimizer.TEMP_SUFFIX)));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.optimizer;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PngEncoder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScreenshotOptimizerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testFilesAreProcessedOnlyOnceAcrossRuns() throws Exception {
+        write(tempDir.resolve("a.png"));
+        Files.createDirectories(tempDir.resolve("World/2024"));
+        write(tempDir.resolve("World/2024/b.png"));
+
+        assertEquals(2, newOptimizer(0).runOnce());
+        assertEquals(0, newOptimizer(0).runOnce(), "Progress must survive a restart");
+        assertTrue(Files.exists(tempDir.resolve(ScreenshotOptimizer.STATE_DIR).resolve(OptimizerProgress.FILE_NAME)));
+    }
+
+    @Test
+    void testReplacedFileIsProcessedAgain() throws Exception {
+        Path file = tempDir.resolve("c.png");
+        write(file);
+        assertEquals(1, newOptimizer(0).runOnce());
+
+        write(file);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_600_000_000_000L));
+        assertEquals(1, newOptimizer(0).runOnce());
+    }
+
+    @Test
+    void testRecentFilesAndStateDirectoryAreSkipped() throws Exception {
+        write(tempDir.resolve("fresh.png"));
+        Files.createDirectories(tempDir.resolve(ScreenshotOptimizer.STATE_DIR));
+        write(tempDir.resolve(ScreenshotOptimizer.STATE_DIR).resolve("internal.png"));
+
+        assertEquals(0, newOptimizer(60_000).runOnce());
+    }
+
+    @Test
+    void testStaleTempFilesAreRemoved() throws Exception {
+        Path stale = tempDir.resolve(".d.png123" + PngOptimizer.TEMP_SUFFIX);
+        Files.write(stale, new byte[] { 1, 2, 3 });
+
+        newOptimizer(0).runOnce();
+
+        assertFalse(Files.exists(stale));
+    }
+
+    @Test
+    void testProgressCompactionKeepsLatestEntry() throws Exception {
+        Path stateDir = tempDir.resolve("state");
+        try (OptimizerProgress progress = OptimizerProgress.load(stateDir)) {
+            progress.markDone("x.png", 10, 1);
+            progress.markDone("x.png", 8, 1);
+        }
+        // Simulate a line torn by a crash
+        Files.writeString(stateDir.resolve(OptimizerProgress.FILE_NAME), "y.png\t5",
+                StandardOpenOption.APPEND);
+
+        try (OptimizerProgress progress = OptimizerProgress.load(stateDir)) {
+            assertEquals(1, progress.size());
+            assertTrue(progress.isDone("x.png", 8, 1));
+            assertFalse(progress.isDone("x.png", 10, 1));
+            progress.markDone("z.png", 1, 1);
+        }
+        try (OptimizerProgress progress = OptimizerProgress.load(stateDir)) {
+            assertTrue(progress.isDone("z.png", 1, 1));
+        }
+    }
+
+    // =====================================================
+    // Helper Methods
+    // =====================================================
+
+    private ScreenshotOptimizer newOptimizer(long minAgeMillis) {
+        return new ScreenshotOptimizer(tempDir, 100, minAgeMillis, () -> true);
+    }
+
+    private static void write(Path file) throws Exception {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            new PngEncoder(Deflater.BEST_SPEED, false).encode(PngOptimizerTest.gradient(48, 32), out);
+        }
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 1000));
+    }
+}
@@ -0,0 +1,153 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.quota;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.catalog.ScreenshotCatalog;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.duplicate.DuplicateDetector;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler.ScreenshotMetadata;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.PathTemplate;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ConfigManager;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.DuplicateHandling;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.GroupingMode;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.ModConfig;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.WorldConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StorageQuotaServiceTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testOldestScreenshotsAreMovedToTrash() throws Exception {
+        ModConfig config = new ModConfig();
+        config.storageMaxFiles = 2;
+        StorageQuotaService service = new StorageQuotaService(tempDir);
+        try {
+            assertEquals(0, service.record("World", write("World/a.png", 10), START, config));
+            assertEquals(0, service.record("World", write("World/b.png", 20), START + 1, config));
+            assertEquals(1, service.record("World", write("World/c.png", 30), START + 2, config));
+            assertEquals(0, service.record("Other", write("Other/d.png", 40), START, config),
+                    "Worlds are limited separately");
+
+            assertFalse(Files.exists(tempDir.resolve("World/a.png")));
+            assertTrue(Files.exists(tempDir.resolve(StorageQuotaService.TRASH_DIR).resolve("World/a.png")));
+            assertEquals(new UsageLedger.Usage(50, 2), service.usage("World"));
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    void testWorldRuleLimitsAndDeletesWithSidecar() throws Exception {
+        ModConfig config = new ModConfig();
+        config.retentionUseTrash = false;
+        WorldConfig rule = new WorldConfig();
+        rule.storageMaxMegabytes = 1;
+        config.worldRules.put("My World!", rule);
+        Path qoi = write("My_World_/old.qoi", 700_000);
+        Files.writeString(MetadataHandler.sidecarFor(qoi), "<x:xmpmeta/>");
+
+        StorageQuotaService service = new StorageQuotaService(tempDir);
+        try {
+            service.record("My_World_", qoi, START, config);
+            assertEquals(1, service.record("My_World_", write("My_World_/new.png", 700_000), START + 1, config));
+
+            assertFalse(Files.exists(qoi));
+            assertFalse(Files.exists(MetadataHandler.sidecarFor(qoi)));
+            assertFalse(Files.exists(tempDir.resolve(StorageQuotaService.TRASH_DIR)));
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    void testLedgerIsFilledFromCatalogAndReconciledOnStart() throws Exception {
+        write("World/2025-01-30_12.00.00.png", 100);
+        write("World/2025-01-30_12.00.01.png", 200);
+        write("loose.png", 300);
+        ModConfig config = new ModConfig();
+        PathTemplate template = PathTemplate.of(GroupingMode.WORLD);
+
+        ScreenshotCatalog catalog = new ScreenshotCatalog(tempDir);
+        StorageQuotaService service = new StorageQuotaService(tempDir);
+        try {
+            service.reconcile(config, catalog, template);
+            assertEquals(new UsageLedger.Usage(300, 2), service.usage("World"), "Only files in a world folder");
+        } finally {
+            service.close();
+            catalog.close();
+        }
+
+        Files.delete(tempDir.resolve("World/2025-01-30_12.00.00.png"));
+        Files.write(tempDir.resolve("World/2025-01-30_12.00.01.png"), new byte[250]);
+        config.storageMaxFiles = 1;
+        service = new StorageQuotaService(tempDir);
+        try {
+            service.reconcile(config, null, template);
+            assertEquals(new UsageLedger.Usage(250, 1), service.usage("World"), "Corrected from the folder");
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    void testFoldedDuplicateStaysCountedAndIsRemovedInTurn() throws Exception {
+        ConfigManager.load(tempDir.resolve("config.json"));
+        ModConfig config = ConfigManager.getInstance();
+        config.storageMaxFiles = 2;
+        config.duplicateHandling = DuplicateHandling.FOLD;
+        StorageQuotaService.start(tempDir);
+        DuplicateDetector.start(tempDir);
+        Path folded;
+        try {
+            StorageQuotaService service = StorageQuotaService.getInstance();
+            take(service, "World/a.png", START, null);
+            folded = take(service, "World/b.png", START + 1, "World/a.png");
+            assertEquals(tempDir.resolve("World").resolve(DuplicateDetector.FOLDER).resolve("b.png"), folded);
+            take(service, "World/c.png", START + 2, null);
+            take(service, "World/d.png", START + 3, null);
+        } finally {
+            DuplicateDetector.shutdown();
+            StorageQuotaService.shutdown();
+            ConfigManager.load(tempDir.resolve("defaults.json"));
+        }
+
+        Path trash = tempDir.resolve(StorageQuotaService.TRASH_DIR);
+        assertTrue(Files.exists(trash.resolve("World/a.png")));
+        assertFalse(Files.exists(folded), "Removed from where it was folded to");
+        assertTrue(Files.exists(trash.resolve(tempDir.relativize(folded))));
+        assertTrue(Files.exists(tempDir.resolve("World/c.png")));
+        assertTrue(Files.exists(tempDir.resolve("World/d.png")));
+    }
+
+    /**
+     * Takes a screenshot through the write hook and metadata listener steps.
+     *
+     * @return Where the screenshot is now
+     */
+    private Path take(StorageQuotaService service, String relativePath, long captureMillis, String duplicateOf)
+            throws Exception {
+        Path file = tempDir.resolve(relativePath);
+        service.expectFile(file, "World", captureMillis);
+        write(relativePath, 10);
+        StorageQuotaService.onWritten(file);
+        ScreenshotMetadata metadata = new ScreenshotMetadata("World", "Overworld", "x", "1", "Player", "Normal",
+                "Survival", "1.21", "Plains", "1", "0000000000000000", duplicateOf);
+        return DuplicateDetector.onWritten(file.toFile(), metadata).toPath();
+    }
+
+    private Path write(String relativePath, int size) throws Exception {
+        Path file = tempDir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[size]);
+        return file;
+    }
+}
@@ -0,0 +1,144 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.quota;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.RetentionPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UsageLedgerTest {
+
+    private static final long HOUR = 3_600_000L;
+    private static final long DAY = 24 * HOUR;
+    /** Noon, local time, so a few hours either way stay on the same day. */
+    private static final long NOON = UsageLedger.dayOf(1_700_000_000_000L) * DAY + 12 * HOUR
+            - TimeZone.getDefault().getOffset(1_700_000_000_000L);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testCountersFollowEveryChange() throws Exception {
+        try (UsageLedger ledger = new UsageLedger(tempDir.resolve(UsageLedger.FILE_NAME))) {
+            assertFalse(ledger.load(), "New ledger");
+            ledger.put(tracked("A", "A/1.png", 100, NOON));
+            ledger.put(tracked("A", "A/2.png", 200, NOON + 1));
+            ledger.put(tracked("B", "B/1.png", 50, NOON));
+            ledger.put(tracked("A", "A/2.png", 250, NOON + 1));
+
+            assertEquals(new UsageLedger.Usage(350, 2), ledger.usage("A"));
+            assertEquals(new UsageLedger.Usage(50, 1), ledger.usage("B"));
+            assertTrue(ledger.remove("B/1.png"));
+            assertFalse(ledger.remove("B/1.png"));
+            assertEquals(new UsageLedger.Usage(0, 0), ledger.usage("B"));
+            assertEquals(Set.of("A"), ledger.worlds());
+        }
+    }
+
+    @Test
+    void testMovedScreenshotKeepsItsPlace() throws Exception {
+        Path file = tempDir.resolve(UsageLedger.FILE_NAME);
+        try (UsageLedger ledger = new UsageLedger(file)) {
+            ledger.put(tracked("A", "A/1.png", 100, NOON));
+            assertTrue(ledger.move("A/1.png", "A/2025-01/1.png"));
+            assertFalse(ledger.move("A/1.png", "A/2025-01/1.png"));
+        }
+        try (UsageLedger ledger = new UsageLedger(file)) {
+            assertTrue(ledger.load());
+            assertEquals(List.of(tracked("A", "A/2025-01/1.png", 100, NOON)), ledger.entries());
+            assertEquals(new UsageLedger.Usage(100, 1), ledger.usage("A"));
+        }
+    }
+
+    @Test
+    void testJournalSurvivesRestartAndTornRecord() throws Exception {
+        Path file = tempDir.resolve(UsageLedger.FILE_NAME);
+        try (UsageLedger ledger = new UsageLedger(file)) {
+            ledger.put(tracked("A", "A/1.png", 100, NOON));
+            ledger.put(tracked("A", "A/2.png", 200, NOON + 1));
+            ledger.remove("A/1.png");
+        }
+        Files.write(file, new byte[] { 0, 0, 0, 40, 1, 2, 3 }, StandardOpenOption.APPEND);
+
+        try (UsageLedger ledger = new UsageLedger(file)) {
+            assertTrue(ledger.load());
+            assertEquals(new UsageLedger.Usage(200, 1), ledger.usage("A"));
+            ledger.put(tracked("A", "A/3.png", 300, NOON + 2));
+        }
+        try (UsageLedger ledger = new UsageLedger(file)) {
+            ledger.load();
+            assertEquals(new UsageLedger.Usage(500, 2), ledger.usage("A"));
+        }
+    }
+
+    @Test
+    void testJournalIsCompactedOnceMostlySuperseded() throws Exception {
+        Path file = tempDir.resolve(UsageLedger.FILE_NAME);
+        try (UsageLedger ledger = new UsageLedger(file)) {
+            for (int i = 0; i < 3000; i++) {
+                ledger.put(tracked("A", "A/shot.png", i + 1, NOON));
+            }
+        }
+        assertTrue(Files.size(file) < 1024 * 40, "Rewritten rather than holding 3000 records");
+        try (UsageLedger ledger = new UsageLedger(file)) {
+            ledger.load();
+            assertEquals(new UsageLedger.Usage(3000, 1), ledger.usage("A"));
+        }
+    }
+
+    @Test
+    void testSizeAndCountLimitsRemoveOldestButNeverNewest() throws Exception {
+        try (UsageLedger ledger = new UsageLedger(tempDir.resolve(UsageLedger.FILE_NAME))) {
+            for (int i = 0; i < 5; i++) {
+                ledger.put(tracked("A", "A/" + i + ".png", 100, NOON + i));
+            }
+            ledger.put(tracked("B", "B/big.png", 10_000, NOON));
+
+            assertEquals(List.of("A/0.png", "A/1.png"),
+                    ledger.selectEvictions("A", new RetentionPolicy(300, 0, 0, 0), NOON));
+            assertEquals(List.of("A/0.png"), ledger.selectEvictions("A", new RetentionPolicy(0, 4, 0, 0), NOON));
+            assertEquals(List.of(), ledger.selectEvictions("B", new RetentionPolicy(1, 0, 0, 0), NOON),
+                    "The newest screenshot stays even if it alone is over the limit");
+            assertEquals(List.of(), ledger.selectEvictions("A", RetentionPolicy.NONE, NOON));
+            assertEquals(5, ledger.usage("A").files(), "Selecting removes nothing");
+        }
+    }
+
+    @Test
+    void testAgeAndPerDayLimits() throws Exception {
+        try (UsageLedger ledger = new UsageLedger(tempDir.resolve(UsageLedger.FILE_NAME))) {
+            ledger.put(tracked("A", "A/old.png", 1, NOON - 10 * DAY));
+            for (int i = 0; i < 4; i++) {
+                ledger.put(tracked("A", "A/yesterday" + i + ".png", 1, NOON - DAY + i));
+            }
+            for (int i = 0; i < 3; i++) {
+                ledger.put(tracked("A", "A/today" + i + ".png", 1, NOON + i));
+            }
+
+            assertEquals(List.of("A/old.png"), ledger.selectEvictions("A", new RetentionPolicy(0, 0, 7, 0), NOON));
+            assertEquals(List.of("A/yesterday0.png", "A/yesterday1.png", "A/today0.png"),
+                    ledger.selectEvictions("A", new RetentionPolicy(0, 0, 0, 2), NOON));
+            for (String key : List.of("A/yesterday0.png", "A/yesterday1.png", "A/today0.png")) {
+                ledger.remove(key);
+            }
+
+            // Only the day that gained a screenshot is checked again
+            ledger.put(tracked("A", "A/today3.png", 1, NOON + 3));
+            assertEquals(List.of("A/today1.png"), ledger.selectEvictions("A", new RetentionPolicy(0, 0, 0, 2), NOON));
+            ledger.remove("A/today1.png");
+            assertEquals(List.of(), ledger.selectEvictions("A", new RetentionPolicy(0, 0, 0, 2), NOON));
+            assertEquals(new UsageLedger.Usage(5, 5), ledger.usage("A"));
+        }
+    }
+
+    private static UsageLedger.Tracked tracked(String world, String key, long size, long timestamp) {
+        return new UsageLedger.Tracked(world, key, size, timestamp);
+    }
+}
@@ -0,0 +1,112 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.shard;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.AdaptiveShards;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardRebalancerTest {
+
+    private static final long MODIFIED = LocalDateTime.of(2025, 3, 1, 12, 0)
+            .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    private static final long NOW = MODIFIED + 3_600_000L;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testFullFolderIsSplitByTime() throws Exception {
+        write("World/2025-01-30_12.00.00.png");
+        write("World/2025-01-30_12.00.00.xmp");
+        write("World/2025-01-31_09.00.00.png");
+        write("World/2025-02-01_10.00.00.qoi");
+        write("World/notes.txt");
+        write("World/duplicates/2025-01-30_12.00.05.png");
+        List<String> moves = new ArrayList<>();
+        AdaptiveShards shards = new AdaptiveShards();
+
+        ShardRebalancer.Result result = new ShardRebalancer(tempDir, shards,
+                (from, to) -> moves.add(relative(from) + " -> " + relative(to)))
+                .rebalance(tempDir.resolve("World"), 0, 2, NOW);
+
+        assertEquals(3, result.moved(), "Each straight into its final shard");
+        assertEquals(0, result.failed());
+        assertEquals(2, result.folders(), "The world folder and the January shard");
+        assertTrue(Files.exists(tempDir.resolve("World/2025-01/30/2025-01-30_12.00.00.png")));
+        assertTrue(Files.exists(tempDir.resolve("World/2025-01/30/2025-01-30_12.00.00.xmp")), "Sidecar follows");
+        assertTrue(Files.exists(tempDir.resolve("World/2025-01/31/2025-01-31_09.00.00.png")));
+        assertTrue(Files.exists(tempDir.resolve("World/2025-02/2025-02-01_10.00.00.qoi")));
+        assertTrue(Files.exists(tempDir.resolve("World/notes.txt")));
+        assertTrue(Files.exists(tempDir.resolve("World/duplicates/2025-01-30_12.00.05.png")));
+        assertEquals(3, moves.size());
+        assertTrue(moves.contains("World/2025-01-30_12.00.00.png -> World/2025-01/30/2025-01-30_12.00.00.png"));
+
+        // New screenshots skip the split folders
+        long time = LocalDateTime.of(2025, 1, 30, 18, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        assertEquals(tempDir.resolve("World/2025-01/30"), shards.shardFor(tempDir.resolve("World"), time, 2));
+    }
+
+    @Test
+    void testSmallFolderIsLeftAlone() throws Exception {
+        write("World/2025-01-30_12.00.00.png");
+        write("World/2025-01-31_12.00.00.png");
+
+        ShardRebalancer.Result result = new ShardRebalancer(tempDir, new AdaptiveShards(), (from, to) -> {
+        }).rebalanceAll(3, NOW);
+
+        assertEquals(0, result.moved());
+        assertEquals(0, result.folders());
+        assertTrue(Files.exists(tempDir.resolve("World/2025-01-30_12.00.00.png")));
+    }
+
+    @Test
+    void testRecentAndTakenNamesAreHandled() throws Exception {
+        write("World/2025-01-30_12.00.00.png");
+        write("World/2025-01/2025-01-30_12.00.00.png"); // Already a shard, with the same name in it
+        Path recent = write("World/2025-03-01_12.59.00.png");
+        Files.setLastModifiedTime(recent, FileTime.fromMillis(NOW - 1000));
+
+        ShardRebalancer.Result result = new ShardRebalancer(tempDir, new AdaptiveShards(), (from, to) -> {
+        }).rebalanceAll(1000, NOW);
+
+        assertEquals(1, result.moved());
+        assertTrue(Files.exists(tempDir.resolve("World/2025-01/2025-01-30_12.00.00_2.png")));
+        assertTrue(Files.exists(recent), "May still be written");
+    }
+
+    @Test
+    void testSidecarLeftByAnInterruptedRunFollows() throws Exception {
+        write("World/2025-01/30/2025-01-30_12.00.00.qoi");
+        write("World/2025-01-30_12.00.00.xmp");
+        write(".sme/2025-01-30_12.00.00.png");
+
+        new ShardRebalancer(tempDir, new AdaptiveShards(), (from, to) -> {
+        }).rebalanceAll(1000, NOW);
+
+        assertTrue(Files.exists(tempDir.resolve("World/2025-01/30/2025-01-30_12.00.00.xmp")));
+        assertFalse(Files.exists(tempDir.resolve("World/2025-01-30_12.00.00.xmp")));
+        assertTrue(Files.exists(tempDir.resolve(".sme/2025-01-30_12.00.00.png")), "The mod's own folder");
+    }
+
+    private Path write(String relativePath) throws IOException {
+        Path file = tempDir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[] { 1, 2, 3 });
+        Files.setLastModifiedTime(file, FileTime.fromMillis(MODIFIED));
+        return file;
+    }
+
+    private String relative(Path path) {
+        return tempDir.relativize(path).toString().replace('\\', '/');
+    }
+}
@@ -0,0 +1,167 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.thumbnail;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ThumbnailPackTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testStoredThumbnailsSurviveReopen() throws Exception {
+        try (ThumbnailPack pack = new ThumbnailPack(tempDir)) {
+            pack.put("World/a.png", 256, 144, bytes(1000, 1));
+            pack.put("World/b.png", 144, 256, bytes(500, 2));
+            assertThumbnail(pack.get("World/a.png"), 256, 144, bytes(1000, 1));
+            assertNull(pack.get("World/missing.png"));
+        }
+
+        try (ThumbnailPack pack = new ThumbnailPack(tempDir)) {
+            assertEquals(Set.of("World/a.png", "World/b.png"), pack.keys());
+            assertThumbnail(pack.get("World/a.png"), 256, 144, bytes(1000, 1));
+            assertThumbnail(pack.get("World/b.png"), 144, 256, bytes(500, 2));
+
+            // Appended after the pack was mapped
+            pack.put("World/c.png", 10, 10, bytes(20, 3));
+            assertThumbnail(pack.get("World/c.png"), 10, 10, bytes(20, 3));
+        }
+    }
+
+    @Test
+    void testNewRecordSupersedesOld() throws Exception {
+        try (ThumbnailPack pack = new ThumbnailPack(tempDir)) {
+            pack.put("a.png", 1, 1, bytes(100, 1));
+            pack.put("a.png", 2, 2, bytes(50, 2));
+            assertEquals(1, pack.size());
+            assertThumbnail(pack.get("a.png"), 2, 2, bytes(50, 2));
+            assertEquals(100 + 4 + 2 + 5 + 4 + 4, pack.reclaimableBytes(key -> true), "Superseded record");
+        }
+        try (ThumbnailPack pack = new ThumbnailPack(tempDir)) {
+            assertThumbnail(pack.get("a.png"), 2, 2, bytes(50, 2));
+        }
+    }
+
+    @Test
+    void testTornTailIsCutOff() throws Exception {
+        long intact;
+        try (ThumbnailPack pack = new ThumbnailPack(tempDir)) {
+            pack.put("a.png", 1, 1, bytes(100, 1));
+            intact = pack.fileSize();
+            pack.put("b.png", 1, 1, bytes(100, 2));
+        }
+        Path file = tempDir.resolve("0" + ThumbnailPack.SUFFIX);
+
+        // Half-written record
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(intact + 60);
+        }
+        try (ThumbnailPack pack = new ThumbnailPack(tempDir)) {
+            assertEquals(Set.of("a.png"), pack.keys());
+            assertEquals(intact, pack.fileSize());
+            pack.put("c.png", 1, 1, bytes(10, 3));
+        }
+        try (ThumbnailPack pack = new ThumbnailPack(tempDir)) {
+            assertEquals(Set.of("a.png", "c.png"), pack.keys());
+            assertThumbnail(pack.get("c.png"), 1, 1, bytes(10, 3));
+        }
+
+        // Complete record with a wrong CRC
+        long size = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0x55 }), size - 6);
+        }
+        try (ThumbnailPack pack = new ThumbnailPack(tempDir)) {
+            assertEquals(Set.of("a.png"), pack.keys());
+        }
+    }
+
+    @Test
+    void testDamagedRecordIsNotReturned() throws Exception {
+        try (ThumbnailPack pack = new ThumbnailPack(tempDir)) {
+            pack.put("a.png", 1, 1, bytes(100, 1));
+            pack.put("b.png", 1, 1, bytes(100, 2));
+        }
+        try (FileChannel channel = FileChannel.open(tempDir.resolve("0" + ThumbnailPack.SUFFIX),
+                StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0x55 }), ThumbnailPack.HEADER_SIZE + 30);
+        }
+        try (ThumbnailPack pack = new ThumbnailPack(tempDir)) {
+            assertNull(pack.get("a.png"));
+            assertThumbnail(pack.get("b.png"), 1, 1, bytes(100, 2));
+        }
+    }
+
+    @Test
+    void testUnreadablePackIsReset() throws Exception {
+        Files.write(tempDir.resolve("0" + ThumbnailPack.SUFFIX), bytes(64, 9));
+        try (ThumbnailPack pack = new ThumbnailPack(tempDir)) {
+            assertEquals(0, pack.size());
+            pack.put("a.png", 1, 1, bytes(10, 1));
+        }
+        try (ThumbnailPack pack = new ThumbnailPack(tempDir)) {
+            assertThumbnail(pack.get("a.png"), 1, 1, bytes(10, 1));
+        }
+    }
+
+    @Test
+    void testCompactionDropsUnwantedRecords() throws Exception {
+        try (ThumbnailPack pack = new ThumbnailPack(tempDir)) {
+            for (int i = 0; i < 10; i++) {
+                pack.put(i + ".png", i, i, bytes(200, i));
+            }
+            pack.put("3.png", 3, 3, bytes(50, 33));
+            Thumbnail before = pack.get("1.png");
+            long size = pack.fileSize();
+            long reclaimable = pack.reclaimableBytes(key -> !key.startsWith("5"));
+
+            assertEquals(1, pack.compact(key -> !key.startsWith("5")));
+
+            assertEquals(size - reclaimable, pack.fileSize());
+            assertEquals(0, pack.reclaimableBytes(key -> true));
+            assertEquals(9, pack.size());
+            assertFalse(pack.contains("5.png"));
+            assertThumbnail(pack.get("3.png"), 3, 3, bytes(50, 33));
+            assertThumbnail(before, 1, 1, bytes(200, 1));
+            pack.put("10.png", 10, 10, bytes(20, 10));
+        }
+
+        try (ThumbnailPack pack = new ThumbnailPack(tempDir)) {
+            assertEquals(10, pack.size());
+            assertThumbnail(pack.get("9.png"), 9, 9, bytes(200, 9));
+            assertThumbnail(pack.get("10.png"), 10, 10, bytes(20, 10));
+        }
+        try (var files = Files.list(tempDir)) {
+            assertEquals(List.of("1" + ThumbnailPack.SUFFIX),
+                    files.map(p -> p.getFileName().toString()).toList(), "Older generations are deleted");
+        }
+    }
+
+    static byte[] bytes(int length, int seed) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31 + seed * 7);
+        }
+        return bytes;
+    }
+
+    static void assertThumbnail(Thumbnail thumbnail, int width, int height, byte[] png) {
+        assertNotNull(thumbnail);
+        assertEquals(width, thumbnail.width());
+        assertEquals(height, thumbnail.height());
+        assertTrue(thumbnail.png().isReadOnly());
+        byte[] actual = new byte[thumbnail.png().remaining()];
+        thumbnail.png().duplicate().get(actual);
+        assertArrayEquals(png, actual);
+    }
+}
@@ -0,0 +1,89 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.thumbnail;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.ByteArrayPixelSource;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ThumbnailScalerTest {
+
+    @Test
+    void testKeepsAspectRatio() {
+        assertSize(256, 144, ThumbnailScaler.downscale(solid(1920, 1080, 4), 256));
+        assertSize(144, 256, ThumbnailScaler.downscale(solid(1080, 1920, 3), 256));
+        assertSize(256, 1, ThumbnailScaler.downscale(solid(4000, 3, 4), 256));
+        assertSize(100, 50, ThumbnailScaler.downscale(solid(100, 50, 4), 256), "Small images keep their size");
+    }
+
+    @Test
+    void testAveragesEachBlock() {
+        // 4x2 RGBA image to 2x1: each output pixel averages a 2x2 block
+        byte[] pixels = new byte[4 * 2 * 4];
+        int[][] colors = {
+                { 10, 20, 30 }, { 30, 40, 50 }, { 200, 0, 0 }, { 100, 0, 1 },
+                { 10, 20, 30 }, { 30, 40, 51 }, { 200, 255, 0 }, { 100, 255, 2 } };
+        for (int i = 0; i < colors.length; i++) {
+            pixels[i * 4] = (byte) colors[i][0];
+            pixels[i * 4 + 1] = (byte) colors[i][1];
+            pixels[i * 4 + 2] = (byte) colors[i][2];
+            pixels[i * 4 + 3] = (byte) 255;
+        }
+
+        ByteArrayPixelSource thumbnail = ThumbnailScaler.downscale(new ByteArrayPixelSource(pixels, 4, 2, 4), 2);
+
+        assertSize(2, 1, thumbnail);
+        assertEquals(3, thumbnail.getChannels(), "Alpha is dropped");
+        assertArrayEquals(new int[] { 20, 30, 40, 150, 128, 1 }, row(thumbnail, 0), "Rounded block averages");
+    }
+
+    @Test
+    void testUnevenBlocksCoverEveryPixel() {
+        // 5 columns to 2: columns 0-2 land in the first pixel, 3-4 in the second
+        byte[] pixels = { 0, 0, 90, 100, 100 };
+        ByteArrayPixelSource thumbnail = ThumbnailScaler.downscale(new ByteArrayPixelSource(pixels, 5, 1, 1), 2);
+
+        assertSize(2, 1, thumbnail);
+        assertArrayEquals(new int[] { 30, 30, 30, 100, 100, 100 }, row(thumbnail, 0), "Gray is replicated");
+    }
+
+    @Test
+    void testSolidColorIsPreserved() {
+        ByteArrayPixelSource thumbnail = ThumbnailScaler.downscale(solid(3840, 2160, 4), 256);
+        for (int y = 0; y < thumbnail.getHeight(); y++) {
+            int[] row = row(thumbnail, y);
+            for (int x = 0; x < row.length; x += 3) {
+                assertEquals(17, row[x]);
+                assertEquals(99, row[x + 1]);
+                assertEquals(250, row[x + 2]);
+            }
+        }
+    }
+
+    private static ByteArrayPixelSource solid(int width, int height, int channels) {
+        byte[] pixels = new byte[width * height * channels];
+        byte[] color = { 17, 99, (byte) 250, (byte) 255 };
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = color[i % channels];
+        }
+        return new ByteArrayPixelSource(pixels, width, height, channels);
+    }
+
+    private static int[] row(ByteArrayPixelSource source, int y) {
+        byte[] row = new byte[source.getRowBytes()];
+        source.readRow(y, row, 0);
+        int[] values = new int[row.length];
+        for (int i = 0; i < row.length; i++) {
+            values[i] = row[i] & 0xFF;
+        }
+        return values;
+    }
+
+    private static void assertSize(int width, int height, ByteArrayPixelSource source) {
+        assertSize(width, height, source, null);
+    }
+
+    private static void assertSize(int width, int height, ByteArrayPixelSource source, String message) {
+        assertEquals(width, source.getWidth(), message);
+        assertEquals(height, source.getHeight(), message);
+    }
+}
@@ -0,0 +1,183 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.thumbnail;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.ByteArrayPixelSource;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.encoder.PngEncoder;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.optimizer.ScreenshotOptimizer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ThumbnailServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testExpectedScreenshotIsStoredInItsWorldPack() throws Exception {
+        Path file = tempDir.resolve("My_World/2025-01-30_12.00.00.png");
+        ThumbnailService service = new ThumbnailService(tempDir);
+        try {
+            assertFalse(service.captureFile(image(1280, 720), file), "Not expected");
+
+            service.expectFile(file, "My_World");
+            assertTrue(service.captureFile(image(1280, 720), file));
+            assertFalse(service.captureFile(image(1280, 720), file), "Only taken once");
+        } finally {
+            service.close();
+        }
+
+        Path packDir = tempDir.resolve(ScreenshotOptimizer.STATE_DIR).resolve(ThumbnailService.DIRECTORY)
+                .resolve("My_World");
+        try (ThumbnailPack pack = new ThumbnailPack(packDir)) {
+            Thumbnail thumbnail = pack.get("My_World/2025-01-30_12.00.00.png");
+            assertNotNull(thumbnail);
+            assertEquals(ThumbnailService.MAX_SIZE, thumbnail.width());
+            assertEquals(144, thumbnail.height());
+
+            byte[] png = new byte[thumbnail.png().remaining()];
+            thumbnail.png().get(png);
+            BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(png));
+            assertEquals(256, decoded.getWidth());
+            assertEquals(0x336699, decoded.getRGB(100, 100) & 0xFFFFFF);
+        }
+
+        ThumbnailService reopened = new ThumbnailService(tempDir);
+        try {
+            assertNotNull(reopened.get("My_World", file));
+            assertNull(reopened.get("Other", file));
+            assertNull(reopened.get("My_World", tempDir.getParent().resolve("outside.png")));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void testMovedScreenshotKeepsItsThumbnail() throws Exception {
+        Path file = tempDir.resolve("World/2025-01-30_12.00.00.png");
+        Path folded = tempDir.resolve("World/duplicates/2025-01-30_12.00.00.png");
+        Path early = tempDir.resolve("World/2025-01-30_12.00.05.png");
+        Path earlyFolded = tempDir.resolve("World/duplicates/2025-01-30_12.00.05.png");
+        ThumbnailService service = new ThumbnailService(tempDir);
+        try {
+            service.expectFile(file, "World");
+            assertTrue(service.captureFile(image(64, 36), file));
+            assertTrue(service.movedFile(file, folded), "Queued behind the thumbnail");
+
+            service.expectFile(early, "World");
+            service.movedFile(early, earlyFolded);
+            assertTrue(service.captureFile(image(64, 36), earlyFolded), "Moved before it was written");
+        } finally {
+            service.close();
+        }
+
+        ThumbnailService reopened = new ThumbnailService(tempDir);
+        try {
+            assertNotNull(reopened.get("World", folded));
+            assertNotNull(reopened.get("World", earlyFolded));
+            assertNull(reopened.get("World", early));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void testMissingThumbnailIsTakenFromTheFile() throws Exception {
+        Path file = Files.createDirectories(tempDir.resolve("World")).resolve("old.png");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            new PngEncoder().encode(image(640, 480), out);
+        }
+        Files.write(tempDir.resolve("World/old.qoi"), new byte[16]);
+
+        ThumbnailService service = new ThumbnailService(tempDir);
+        try {
+            assertNull(service.get("World", file));
+            Thumbnail thumbnail = service.getOrCreate("World", file);
+            assertNotNull(thumbnail);
+            assertEquals(256, thumbnail.width());
+            assertEquals(192, thumbnail.height());
+            assertTrue(service.getPack("World").contains("World/old.png"), "Stored for next time");
+            assertNotNull(service.get("World", file));
+
+            assertNull(service.getOrCreate("World", tempDir.resolve("World/old.qoi")), "Not a PNG");
+            assertNull(service.getOrCreate("World", tempDir.resolve("World/gone.png")), "No file");
+            assertEquals(1, service.getPack("World").size());
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    void testWorldNamesStayInsideThumbnailDirectory() throws Exception {
+        ThumbnailService service = new ThumbnailService(tempDir);
+        try {
+            for (String world : new String[] { "..", "", "../escape", ".sme" }) {
+                Path file = tempDir.resolve("shot" + world.length() + ".png");
+                service.expectFile(file, world);
+                assertTrue(service.captureFile(image(8, 8), file));
+            }
+        } finally {
+            service.close();
+        }
+        Path thumbnails = tempDir.resolve(ScreenshotOptimizer.STATE_DIR).resolve(ThumbnailService.DIRECTORY);
+        try (var dirs = Files.list(thumbnails)) {
+            assertTrue(dirs.allMatch(dir -> dir.getParent().equals(thumbnails)
+                    && !dir.getFileName().toString().startsWith(".")));
+        }
+        assertFalse(Files.exists(tempDir.resolve(ScreenshotOptimizer.STATE_DIR).resolve("escape")));
+    }
+
+    @Test
+    void testCompactionDropsThumbnailsOfDeletedScreenshots() throws Exception {
+        Path packDir = tempDir.resolve(ScreenshotOptimizer.STATE_DIR).resolve(ThumbnailService.DIRECTORY)
+                .resolve("World");
+        byte[] png = ThumbnailPackTest.bytes(64 * 1024, 1);
+        try (ThumbnailPack pack = new ThumbnailPack(packDir)) {
+            for (int i = 0; i < 40; i++) {
+                Path file = Files.createDirectories(tempDir.resolve("World")).resolve(i + ".png");
+                Files.write(file, new byte[1]);
+                pack.put("World/" + i + ".png", 1, 1, png);
+            }
+        }
+
+        ThumbnailService service = new ThumbnailService(tempDir);
+        try {
+            assertEquals(0, service.compactAll(), "Nothing deleted");
+            for (int i = 0; i < 5; i++) {
+                Files.delete(tempDir.resolve("World/" + i + ".png"));
+            }
+            assertEquals(0, service.compactAll(), "Too little to reclaim");
+            for (int i = 5; i < 20; i++) {
+                Files.delete(tempDir.resolve("World/" + i + ".png"));
+            }
+            assertEquals(20, service.compactAll());
+            assertEquals(20, service.getPack("World").size());
+            assertFalse(service.getPack("World").keys().contains("World/0.png"));
+        } finally {
+            service.close();
+        }
+        try (ThumbnailPack pack = new ThumbnailPack(packDir)) {
+            assertEquals(20, pack.size());
+            assertTrue(pack.keys().containsAll(Set.of("World/20.png", "World/39.png")));
+        }
+    }
+
+    private static ByteArrayPixelSource image(int width, int height) {
+        byte[] pixels = new byte[width * height * 4];
+        for (int i = 0; i < pixels.length; i += 4) {
+            pixels[i] = 0x33;
+            pixels[i + 1] = 0x66;
+            pixels[i + 2] = (byte) 0x99;
+            pixels[i + 3] = (byte) 0xFF;
+        }
+        return new ByteArrayPixelSource(pixels, width, height, 4);
+    }
+}
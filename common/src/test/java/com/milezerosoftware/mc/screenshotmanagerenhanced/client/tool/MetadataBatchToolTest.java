@@ -0,0 +1,152 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.tool;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.MetadataHandler.ScreenshotMetadata;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.client.util.PathTemplate;
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.GroupingMode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetadataBatchToolTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testUntaggedScreenshotsGetValuesFromTheirFolders() throws Exception {
+        Path png = write("My_World/the_nether/2025-01-30_12.00.00.png", png(null));
+        FileTime modified = FileTime.fromMillis(1_700_000_000_000L);
+        Files.setLastModifiedTime(png, modified);
+        Path qoi = write("My_World/overworld/2025-01-30_12.00.01.qoi", new byte[] { 'q', 'o', 'i', 'f' });
+        write("loose.png", png(null));
+
+        MetadataBatchTool.Summary summary = tool(GroupingMode.WORLD_DIMENSION, false).run();
+
+        assertEquals(3, summary.scanned());
+        assertEquals(2, summary.tagged());
+        assertEquals(1, summary.skipped(), "Nothing is known about a file outside the layout");
+        ScreenshotMetadata read = MetadataHandler.readMetadata(png);
+        assertEquals("My_World", read.worldName);
+        assertEquals("The Nether", read.dimension);
+        assertEquals(modified, Files.getLastModifiedTime(png), "The capture time is kept");
+        assertEquals("Overworld", MetadataHandler.readMetadata(qoi).dimension);
+        assertTrue(Files.exists(MetadataHandler.sidecarFor(qoi)));
+    }
+
+    @Test
+    void testSecondRunFindsEverythingUpToDate() throws Exception {
+        write("World/2025-01-30_12.00.00.png", png(null));
+        write("World/2025-01-30_12.00.01.png", png(metadata("My World", "The End", null)));
+
+        assertEquals(1, tool(GroupingMode.WORLD, false).run().tagged());
+        MetadataBatchTool.Summary again = tool(GroupingMode.WORLD, false).run();
+        assertEquals(2, again.upToDate());
+        assertEquals(2, again.scanned());
+        assertTrue(again.filesPerSecond() > 0);
+    }
+
+    @Test
+    void testExistingMetadataIsCompletedNotOverwritten() throws Exception {
+        Path png = write("Folder_Name/birch_forest/2025-01-30_12.00.00.png",
+                png(metadata("Real Name", null, null)));
+        MetadataBatchTool tool = new MetadataBatchTool(tempDir, PathTemplate.compile("{world}/{biome}"), 1, false);
+
+        assertEquals(MetadataBatchTool.Outcome.UPGRADED, tool.process(png));
+        ScreenshotMetadata read = MetadataHandler.readMetadata(png);
+        assertEquals("Real Name", read.worldName, "The metadata wins over the sanitized folder name");
+        assertEquals("Birch Forest", read.biome);
+        assertEquals("1.21.10", read.minecraftVersion);
+        String text = new String(Files.readAllBytes(png), StandardCharsets.ISO_8859_1);
+        assertEquals(text.indexOf("XML:com.adobe.xmp"), text.lastIndexOf("XML:com.adobe.xmp"));
+    }
+
+    @Test
+    void testDryRunAndForeignPacketsChangeNothing() throws Exception {
+        byte[] untagged = png(null);
+        Path png = write("World/2025-01-30_12.00.00.png", untagged);
+        write("World/2025-01-30_12.00.01.png",
+                pngWithXmp("<x:xmpmeta><dc:creator>Someone</dc:creator></x:xmpmeta>"));
+
+        MetadataBatchTool.Summary summary = tool(GroupingMode.WORLD, true).run();
+        assertEquals(1, summary.tagged());
+        assertEquals(1, summary.skipped());
+        assertArrayEquals(untagged, Files.readAllBytes(png));
+    }
+
+    @Test
+    void testMergeAndDisplayNames() {
+        assertNull(MetadataBatchTool.merge(null, Map.of()));
+        assertNull(MetadataBatchTool.merge(null, Map.of(PathTemplate.Variable.WORLD, "UNKNOWN")));
+        assertEquals("The Nether", MetadataBatchTool.displayName("the_nether"));
+        assertEquals("Birch Forest", MetadataBatchTool.displayName("BIRCH__forest"));
+        assertNull(MetadataBatchTool.displayName("_"));
+    }
+
+    private MetadataBatchTool tool(GroupingMode mode, boolean dryRun) {
+        return new MetadataBatchTool(tempDir, PathTemplate.of(mode), 2, dryRun);
+    }
+
+    private Path write(String relativePath, byte[] data) throws Exception {
+        Path file = tempDir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, data);
+        return file;
+    }
+
+    private static ScreenshotMetadata metadata(String world, String dimension, String biome) {
+        return new ScreenshotMetadata(world, dimension, "x: 0, y: 64, z: 0", "1.00 d", null, "Normal", null,
+                "1.21.10", biome, "0.10 d");
+    }
+
+    private static byte[] png(ScreenshotMetadata metadata) throws Exception {
+        return pngWithXmp(metadata != null ? MetadataHandler.buildXmp(metadata) : null);
+    }
+
+    /**
+     * A 1x1 PNG, with an XMP chunk after IHDR if {@code xmp} is given.
+     */
+    private static byte[] pngWithXmp(String xmp) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[] { (byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A });
+        chunk(out, "IHDR", new byte[] { 0, 0, 0, 1, 0, 0, 0, 1, 8, 2, 0, 0, 0 });
+        if (xmp != null) {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            data.writeBytes("XML:com.adobe.xmp".getBytes(StandardCharsets.ISO_8859_1));
+            data.writeBytes(new byte[] { 0, 0, 0, 0, 0 });
+            data.writeBytes(xmp.getBytes(StandardCharsets.UTF_8));
+            chunk(out, "iTXt", data.toByteArray());
+        }
+        chunk(out, "IDAT", new byte[] { 0x78, (byte) 0x9C, 0x62, (byte) 0xF8, (byte) 0xFF, (byte) 0xFF,
+                (byte) 0xFF, 0x00, 0x05, (byte) 0xFE, 0x02, (byte) 0xFE });
+        chunk(out, "IEND", new byte[0]);
+        return out.toByteArray();
+    }
+
+    private static void chunk(ByteArrayOutputStream out, String type, byte[] data) {
+        byte[] typeBytes = type.getBytes(StandardCharsets.ISO_8859_1);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        writeInt(out, data.length);
+        out.writeBytes(typeBytes);
+        out.writeBytes(data);
+        writeInt(out, (int) crc.getValue());
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+}
@@ -0,0 +1,164 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveShardsTest {
+
+    private static final long TIME = LocalDateTime.of(2025, 1, 30, 13, 45, 10)
+            .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testFolderIsSplitOnceFull() {
+        AdaptiveShards shards = new AdaptiveShards();
+        List<String> splits = new ArrayList<>();
+        shards.setSplitListener((directory, level) -> splits.add(tempDir.relativize(directory) + "@" + level));
+        Path base = tempDir.resolve("World");
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(base, add(shards, base, 3));
+        }
+        assertEquals(base.resolve("2025-01"), add(shards, base, 3));
+        assertEquals(base.resolve("2025-01"), add(shards, base, 3));
+        assertEquals(List.of("World@0"), splits);
+    }
+
+    @Test
+    void testShardsSplitDownToHours() {
+        AdaptiveShards shards = new AdaptiveShards();
+        Path base = tempDir.resolve("World");
+
+        assertEquals(base, add(shards, base, 1));
+        assertEquals(base.resolve("2025-01"), add(shards, base, 1));
+        assertEquals(base.resolve("2025-01/30"), add(shards, base, 1));
+        assertEquals(base.resolve("2025-01/30/13"), add(shards, base, 1));
+        assertEquals(base.resolve("2025-01/30/13"), add(shards, base, 1), "Hours are never split");
+    }
+
+    @Test
+    void testExistingFolderIsCountedOnce() throws Exception {
+        Path full = Files.createDirectories(tempDir.resolve("Full"));
+        for (int i = 0; i < 3; i++) {
+            Files.createFile(full.resolve("shot" + i + ".png"));
+        }
+        Files.createFile(full.resolve("shot0.xmp"));
+        Files.createDirectories(full.resolve("duplicates"));
+        Path split = Files.createDirectories(tempDir.resolve("Split").resolve("2024-12"));
+
+        AdaptiveShards shards = new AdaptiveShards();
+        assertEquals(full.resolve("2025-01"), shards.shardFor(full, TIME, 3));
+        assertEquals(split.resolveSibling("2025-01"), shards.shardFor(split.getParent(), TIME, 1000),
+                "Already has shards");
+
+        Path fresh = tempDir.resolve("Fresh");
+        shards.seed(fresh, 2, false);
+        Files.createDirectories(fresh.resolve("2024-12")); // Not listed again
+        assertEquals(fresh, add(shards, fresh, 3));
+        assertEquals(fresh.resolve("2025-01"), add(shards, fresh, 3));
+    }
+
+    @Test
+    void testNewFolderIsCountedOnTheCounter() throws Exception {
+        Path full = Files.createDirectories(tempDir.resolve("Full"));
+        for (int i = 0; i < 3; i++) {
+            Files.createFile(full.resolve("shot" + i + ".png"));
+        }
+        Path split = Files.createDirectories(tempDir.resolve("Split").resolve("2024-12"));
+        List<Runnable> queued = new ArrayList<>();
+        List<String> splits = new ArrayList<>();
+        AdaptiveShards shards = new AdaptiveShards();
+        shards.setCounter(queued::add);
+        shards.setSplitListener((directory, level) -> splits.add(tempDir.relativize(directory) + "@" + level));
+
+        assertEquals(full, add(shards, full, 3), "Not listed yet");
+        assertEquals(split.getParent(), add(shards, split.getParent(), 3));
+        assertEquals(2, queued.size());
+        queued.forEach(Runnable::run);
+
+        assertEquals(full.resolve("2025-01"), shards.shardFor(full, TIME, 3));
+        assertEquals(split.resolveSibling("2025-01"), shards.shardFor(split.getParent(), TIME, 3));
+        assertEquals(List.of("Split@0", "Full@0"), splits, "The screenshot that went into Split is moved on");
+    }
+
+    @Test
+    void testMovedScreenshotsAreCountedInTheirShard() {
+        AdaptiveShards shards = new AdaptiveShards();
+        Path base = tempDir.resolve("World");
+        Path month = base.resolve("2025-01");
+        shards.split(base);
+        shards.seed(month, 1, false);
+        shards.moved(base, month);
+
+        assertEquals(month.resolve("30"), shards.shardFor(base, TIME, 2));
+    }
+
+    @Test
+    void testPickingAShardCountsNothing() {
+        AdaptiveShards shards = new AdaptiveShards();
+        Path base = tempDir.resolve("World");
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(base, shards.shardFor(base, TIME, 1), "Only added screenshots are counted");
+        }
+        shards.added(base, 1);
+        assertEquals(base.resolve("2025-01"), shards.shardFor(base, TIME, 1));
+    }
+
+    @Test
+    void testRemovedScreenshotsAreNotCounted() {
+        AdaptiveShards shards = new AdaptiveShards();
+        Path base = tempDir.resolve("World");
+        shards.seed(base, 3, false);
+
+        shards.removed(base, 2);
+        assertEquals(base, add(shards, base, 3));
+        assertEquals(base, add(shards, base, 3));
+        assertEquals(base.resolve("2025-01"), shards.shardFor(base, TIME, 3));
+    }
+
+    @Test
+    void testRelativeAndAbsoluteFoldersMatch() {
+        AdaptiveShards shards = new AdaptiveShards();
+        Path relative = Path.of("run/screenshots/World");
+        shards.seed(relative.toAbsolutePath(), 1, false);
+
+        shards.added(relative, 1);
+        assertEquals(relative.resolve("2025-01"), shards.shardFor(relative, TIME, 2));
+    }
+
+    @Test
+    void testShardNames() {
+        assertEquals("2025-01", AdaptiveShards.shardName(0, TIME));
+        assertEquals("30", AdaptiveShards.shardName(1, TIME));
+        assertEquals("13", AdaptiveShards.shardName(2, TIME));
+        assertTrue(AdaptiveShards.isShardName(0, "2025-12"));
+        assertFalse(AdaptiveShards.isShardName(0, "2025-00"));
+        assertFalse(AdaptiveShards.isShardName(1, "00"));
+        assertTrue(AdaptiveShards.isShardName(2, "00"));
+        assertFalse(AdaptiveShards.isShardName(3, "00"));
+        assertFalse(AdaptiveShards.isShardName(1, "2025-01"));
+    }
+
+    // =====================================================
+    // Helper Methods
+    // =====================================================
+
+    /** Picks a shard and counts a screenshot there, as a reservation does. */
+    private static Path add(AdaptiveShards shards, Path base, int threshold) {
+        Path directory = shards.shardFor(base, TIME, threshold);
+        shards.added(directory, 1);
+        return directory;
+    }
+}
@@ -0,0 +1,118 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.util;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that metadata embedding streams the file instead of buffering it.
+ * 
+ * <p>
+ * Runs in the {@code constantMemoryTest} task, whose heap is far smaller than
+ * the synthetic screenshot, so loading the file into memory fails the test.
+ * </p>
+ */
+@Tag("constant-memory")
+public class MetadataHandlerLargeFileTest {
+
+    private static final int IDAT_CHUNK_SIZE = 1024 * 1024;
+    private static final int IDAT_CHUNK_COUNT = 100;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testEmbedMetadataInto100MbPng() throws Exception {
+        assertTrue(Runtime.getRuntime().maxMemory() < (long) IDAT_CHUNK_SIZE * IDAT_CHUNK_COUNT,
+                "Heap must be smaller than the test file for this test to be meaningful");
+
+        File png = tempDir.resolve("huge.png").toFile();
+        long originalSize = writeSyntheticPng(png.toPath());
+
+        MetadataHandler.ScreenshotMetadata metadata = new MetadataHandler.ScreenshotMetadata(
+                "Huge World", "Overworld", "x: 0, y: 64, z: 0", "1.00 d", "Tester", "Normal", "survival",
+                "1.21.10", "Plains", "0.10 d");
+        MetadataHandler.embedMetadata(png, metadata);
+
+        long newSize = png.length();
+        assertTrue(newSize > originalSize, "File should grow by the iTXt chunk");
+
+        try (FileChannel channel = FileChannel.open(png.toPath(), StandardOpenOption.READ)) {
+            // IHDR is untouched and the iTXt chunk follows it directly
+            assertEquals("IHDR", chunkType(channel, 8));
+            long itxtPos = 8 + 12 + 13;
+            assertEquals("iTXt", chunkType(channel, itxtPos));
+            long itxtLength = readInt(channel, itxtPos) & 0xFFFFFFFFL;
+            assertEquals(newSize - originalSize, itxtLength + 12);
+
+            // Pixel data and IEND are copied verbatim after the new chunk
+            long idatPos = itxtPos + itxtLength + 12;
+            assertEquals("IDAT", chunkType(channel, idatPos));
+            assertEquals("IEND", chunkType(channel, newSize - 12));
+        }
+
+        assertFalse(new File(png.getParentFile(), png.getName() + ".tmp").exists(), "Temp file should be gone");
+    }
+
+    /**
+     * Writes a structurally valid PNG with 100 one-megabyte IDAT chunks using a
+     * single reusable buffer.
+     */
+    private long writeSyntheticPng(Path path) throws Exception {
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(ByteBuffer.wrap(new byte[] { (byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A }));
+
+            ByteBuffer ihdr = ByteBuffer.allocate(13).putInt(8192).putInt(3200)
+                    .put((byte) 8).put((byte) 6).put((byte) 0).put((byte) 0).put((byte) 0);
+            writeChunk(out, "IHDR", ihdr.array());
+
+            byte[] idat = new byte[IDAT_CHUNK_SIZE];
+            for (int i = 0; i < IDAT_CHUNK_COUNT; i++) {
+                writeChunk(out, "IDAT", idat);
+            }
+
+            writeChunk(out, "IEND", new byte[0]);
+            return out.size();
+        }
+    }
+
+    private void writeChunk(FileChannel out, String type, byte[] data) throws Exception {
+        byte[] typeBytes = type.getBytes(StandardCharsets.ISO_8859_1);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+
+        writeFully(out, ByteBuffer.allocate(8).putInt(data.length).put(typeBytes).flip());
+        writeFully(out, ByteBuffer.wrap(data));
+        writeFully(out, ByteBuffer.allocate(4).putInt((int) crc.getValue()).flip());
+    }
+
+    private void writeFully(FileChannel out, ByteBuffer buffer) throws Exception {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private int readInt(FileChannel channel, long pos) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        channel.read(buffer, pos);
+        return buffer.getInt(0);
+    }
+
+    private String chunkType(FileChannel channel, long pos) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        channel.read(buffer, pos + 4);
+        return new String(buffer.array(), StandardCharsets.ISO_8859_1);
+    }
+}
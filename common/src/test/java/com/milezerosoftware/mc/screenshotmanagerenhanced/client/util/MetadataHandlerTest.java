@@ -5,10 +5,14 @@ import org.junit.jupiter.api.io.TempDir;
 
 import java.io.*;
 import java.lang.reflect.Method;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
 import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -171,59 +175,49 @@ public class MetadataHandlerTest {
     }
 
     // =====================================================
-    // findChunkPosition Tests (via reflection)
+    // findChunkPosition Tests
     // =====================================================
 
     @Test
     void testFindChunkPositionWithValidPng() throws Exception {
         // Create a minimal valid PNG structure
-        byte[] pngData = createMinimalPng();
+        Path png = Files.write(tempDir.resolve("minimal.png"), createMinimalPng());
 
-        Method findChunkPosition = MetadataHandler.class.getDeclaredMethod(
-                "findChunkPosition", byte[].class, String.class);
-        findChunkPosition.setAccessible(true);
+        try (FileChannel channel = FileChannel.open(png, StandardOpenOption.READ)) {
+            // Find IHDR (should be at position 8, right after signature)
+            assertEquals(8, MetadataHandler.findChunkPosition(channel, "IHDR"));
 
-        // Find IHDR (should be at position 8, right after signature)
-        int ihdrPos = (int) findChunkPosition.invoke(null, pngData, "IHDR");
-        assertEquals(8, ihdrPos);
+            // Find IDAT
+            long idatPos = MetadataHandler.findChunkPosition(channel, "IDAT");
+            assertTrue(idatPos > 8, "IDAT should come after IHDR");
 
-        // Find IDAT
-        int idatPos = (int) findChunkPosition.invoke(null, pngData, "IDAT");
-        assertTrue(idatPos > 8, "IDAT should come after IHDR");
-
-        // Find IEND
-        int iendPos = (int) findChunkPosition.invoke(null, pngData, "IEND");
-        assertTrue(iendPos > idatPos, "IEND should come after IDAT");
+            // Scanning stops at the image data
+            assertEquals(-1, MetadataHandler.findChunkPosition(channel, "IEND"));
+        }
     }
 
     @Test
     void testFindChunkPositionNotFound() throws Exception {
-        byte[] pngData = createMinimalPng();
-
-        Method findChunkPosition = MetadataHandler.class.getDeclaredMethod(
-                "findChunkPosition", byte[].class, String.class);
-        findChunkPosition.setAccessible(true);
+        Path png = Files.write(tempDir.resolve("minimal.png"), createMinimalPng());
 
-        // Try to find a chunk that doesn't exist
-        int pos = (int) findChunkPosition.invoke(null, pngData, "tEXt");
-        assertEquals(-1, pos);
+        try (FileChannel channel = FileChannel.open(png, StandardOpenOption.READ)) {
+            // Try to find a chunk that doesn't exist
+            assertEquals(-1, MetadataHandler.findChunkPosition(channel, "tEXt"));
+        }
     }
 
     // =====================================================
-    // writePngWithXmp Tests (via reflection)
+    // writePngWithXmp Tests
     // =====================================================
 
     @Test
     void testWritePngWithXmpCreatesValidOutput() throws Exception {
         byte[] originalPng = createMinimalPng();
+        Path source = Files.write(tempDir.resolve("input.png"), originalPng);
         File outputFile = tempDir.resolve("output.png").toFile();
         String xmpXml = "<x:xmpmeta>test</x:xmpmeta>";
 
-        Method writePngWithXmp = MetadataHandler.class.getDeclaredMethod(
-                "writePngWithXmp", byte[].class, File.class, String.class);
-        writePngWithXmp.setAccessible(true);
-
-        writePngWithXmp.invoke(null, originalPng, outputFile, xmpXml);
+        MetadataHandler.writePngWithXmp(source, outputFile, itxtChunk(xmpXml));
 
         assertTrue(outputFile.exists());
         assertTrue(outputFile.length() > originalPng.length,
@@ -236,46 +230,34 @@ public class MetadataHandlerTest {
 
     @Test
     void testWritePngWithXmpContainsItxtChunk() throws Exception {
-        byte[] originalPng = createMinimalPng();
+        Path source = Files.write(tempDir.resolve("input.png"), createMinimalPng());
         File outputFile = tempDir.resolve("output_with_itxt.png").toFile();
         String xmpXml = "<x:xmpmeta>test content</x:xmpmeta>";
 
-        Method writePngWithXmp = MetadataHandler.class.getDeclaredMethod(
-                "writePngWithXmp", byte[].class, File.class, String.class);
-        writePngWithXmp.setAccessible(true);
+        MetadataHandler.writePngWithXmp(source, outputFile, itxtChunk(xmpXml));
 
-        writePngWithXmp.invoke(null, originalPng, outputFile, xmpXml);
+        try (FileChannel channel = FileChannel.open(outputFile.toPath(), StandardOpenOption.READ)) {
+            // Find iTXt chunk
+            long itxtPos = MetadataHandler.findChunkPosition(channel, "iTXt");
+            assertTrue(itxtPos > 0, "iTXt chunk should exist in output");
 
-        byte[] outputData = Files.readAllBytes(outputFile.toPath());
-
-        // Find iTXt chunk
-        Method findChunkPosition = MetadataHandler.class.getDeclaredMethod(
-                "findChunkPosition", byte[].class, String.class);
-        findChunkPosition.setAccessible(true);
-
-        int itxtPos = (int) findChunkPosition.invoke(null, outputData, "iTXt");
-        assertTrue(itxtPos > 0, "iTXt chunk should exist in output");
-
-        // Verify iTXt comes before IDAT
-        int idatPos = (int) findChunkPosition.invoke(null, outputData, "IDAT");
-        assertTrue(itxtPos < idatPos, "iTXt should be placed before IDAT");
+            // Verify iTXt comes before IDAT
+            long idatPos = MetadataHandler.findChunkPosition(channel, "IDAT");
+            assertTrue(itxtPos < idatPos, "iTXt should be placed before IDAT");
+        }
+        assertEquals(xmpXml, MetadataHandler.readEmbeddedXmp(outputFile.toPath()));
     }
 
     // =====================================================
-    // writeItxtChunk Tests (via reflection)
+    // iTXt chunk format Tests
     // =====================================================
 
     @Test
     void testWriteItxtChunkFormat() throws Exception {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        String keyword = "XML:com.adobe.xmp";
         String text = "<test>content</test>";
 
-        Method writeItxtChunk = MetadataHandler.class.getDeclaredMethod(
-                "writeItxtChunk", OutputStream.class, String.class, String.class);
-        writeItxtChunk.setAccessible(true);
-
-        writeItxtChunk.invoke(null, baos, keyword, text);
+        itxtChunk(text).writeTo(baos);
 
         byte[] chunk = baos.toByteArray();
 
@@ -395,18 +377,305 @@ public class MetadataHandlerTest {
         assertPngSignature(modifiedPng);
 
         // Verify iTXt chunk exists
-        Method findChunkPosition = MetadataHandler.class.getDeclaredMethod(
-                "findChunkPosition", byte[].class, String.class);
-        findChunkPosition.setAccessible(true);
+        try (FileChannel channel = FileChannel.open(pngFile.toPath(), StandardOpenOption.READ)) {
+            assertTrue(MetadataHandler.findChunkPosition(channel, "iTXt") > 0, "iTXt chunk should exist");
+        }
+
+        MetadataHandler.ScreenshotMetadata read = MetadataHandler.readMetadata(pngFile.toPath());
+        assertEquals("Integration Test World", read.worldName);
+        assertEquals("minecraft:forest", read.biome);
+        assertEquals("86400000", read.worldAge);
+    }
+
+    // =====================================================
+    // Read-back Tests
+    // =====================================================
+
+    @Test
+    void testReadMetadataRoundTripsEscapedAndUnicodeValues() throws Exception {
+        MetadataHandler.ScreenshotMetadata metadata = new MetadataHandler.ScreenshotMetadata(
+                "Tom & Jerry's <\"World\">", "the_nether", "1, 2, 3", "4.00 d", "Ignored", "Hard", "Ignored",
+                "1.21.10", "Welt \u00fcber M\u00fcnchen \u4e16\u754c \uD83C\uDF32", null);
+        Path png = tempDir.resolve("escaped.png");
+        Files.write(png, pngWith(MetadataHandler.createXmpChunk(metadata)));
+
+        MetadataHandler.ScreenshotMetadata read = MetadataHandler.readMetadata(png);
+        assertEquals(metadata.worldName, read.worldName);
+        assertEquals(metadata.dimension, read.dimension);
+        assertEquals(metadata.coordinates, read.coordinates);
+        assertEquals(metadata.daysPlayed, read.daysPlayed);
+        assertEquals(metadata.difficulty, read.difficulty);
+        assertEquals(metadata.minecraftVersion, read.minecraftVersion);
+        assertEquals(metadata.biome, read.biome);
+        assertNull(read.worldAge, "Empty properties read back as null");
+        assertNull(read.playerName, "Not part of the XMP packet");
+        assertNull(read.gameMode, "Not part of the XMP packet");
+    }
+
+    @Test
+    void testReadMetadataStopsAtImageData() throws Exception {
+        // A large chunk pushes the XMP chunk past the first read, and the
+        // image data claims 2 GiB that the file does not have
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        byte[] minimal = createMinimalPng();
+        png.write(minimal, 0, 33);
+        writeChunk(png, "tEXt", new byte[10_000]);
+        png.write(MetadataHandler.createXmpChunk(sampleMetadata()));
+        png.write(new byte[] { 0x7F, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 'I', 'D', 'A', 'T', 1, 2, 3 });
+        Path file = tempDir.resolve("truncated.png");
+        Files.write(file, png.toByteArray());
+
+        assertEquals("Read World", MetadataHandler.readMetadata(file).worldName);
+
+        Path without = tempDir.resolve("plain.png");
+        Files.write(without, createMinimalPng());
+        assertNull(MetadataHandler.readMetadata(without));
+        Files.write(without, new byte[0]);
+        assertNull(MetadataHandler.readMetadata(without));
+    }
+
+    @Test
+    void testReadMetadataFromCompressedChunkAndAttributes() throws Exception {
+        String xmp = "<x:xmpmeta xmlns:x='adobe:ns:meta/'><rdf:RDF><rdf:Description"
+                + " mc:WorldTitle=\"A &amp; B\" mc:Biome='&#x1F332; Forest'/></rdf:RDF></x:xmpmeta>";
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        data.writeBytes("XML:com.adobe.xmp".getBytes(StandardCharsets.ISO_8859_1));
+        data.writeBytes(new byte[] { 0, 1, 0, 0, 0 });
+        DeflaterOutputStream deflater = new DeflaterOutputStream(data);
+        deflater.write(xmp.getBytes(StandardCharsets.UTF_8));
+        deflater.finish();
+
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        writeChunk(chunk, "iTXt", data.toByteArray());
+        Path file = tempDir.resolve("compressed.png");
+        Files.write(file, pngWith(chunk.toByteArray()));
+
+        MetadataHandler.ScreenshotMetadata read = MetadataHandler.readMetadata(file);
+        assertEquals("A & B", read.worldName);
+        assertEquals("\uD83C\uDF32 Forest", read.biome);
+        assertNull(read.dimension);
+    }
+
+    @Test
+    void testReadMetadataFallsBackToSidecar() throws Exception {
+        File qoi = tempDir.resolve("2025-01-30_12.00.00.qoi").toFile();
+        Files.write(qoi.toPath(), new byte[] { 'q', 'o', 'i', 'f' });
+        assertNull(MetadataHandler.readMetadata(qoi.toPath()));
+
+        MetadataHandler.writeSidecar(qoi, sampleMetadata());
+        assertEquals("Read World", MetadataHandler.readMetadata(qoi.toPath()).worldName);
+    }
+
+    @Test
+    void testEmbedMetadataReplacesExistingPacket() throws Exception {
+        Path png = tempDir.resolve("retagged.png");
+        Files.write(png, pngWith(MetadataHandler.createXmpChunk(sampleMetadata())));
+        MetadataHandler.ScreenshotMetadata updated = new MetadataHandler.ScreenshotMetadata("New World", "The End",
+                null, null, null, null, null, null, null, null);
+
+        MetadataHandler.embedMetadata(png.toFile(), updated);
+
+        byte[] data = Files.readAllBytes(png);
+        String text = new String(data, StandardCharsets.ISO_8859_1);
+        assertEquals(text.indexOf("XML:com.adobe.xmp"), text.lastIndexOf("XML:com.adobe.xmp"),
+                "The old packet is replaced, not kept next to the new one");
+        assertEquals(MetadataHandler.buildXmp(updated), MetadataHandler.readEmbeddedXmp(png));
+        byte[] minimal = createMinimalPng();
+        assertArrayEquals(java.util.Arrays.copyOfRange(minimal, 33, minimal.length),
+                java.util.Arrays.copyOfRange(data, data.length - (minimal.length - 33), data.length),
+                "The image data is copied unchanged");
+    }
+
+    @Test
+    void testPerceptualHashRoundTrips() throws Exception {
+        MetadataHandler.ScreenshotMetadata metadata = sampleMetadata()
+                .withPerceptualHash("00ff00ff00ff00ff", "World/2025-01-30_12.00.00.png");
+        Path png = tempDir.resolve("hashed.png");
+        Files.write(png, pngWith(MetadataHandler.createXmpChunk(metadata)));
+
+        MetadataHandler.ScreenshotMetadata read = MetadataHandler.readMetadata(png);
+        assertEquals("00ff00ff00ff00ff", read.perceptualHash);
+        assertEquals("World/2025-01-30_12.00.00.png", read.duplicateOf);
+        assertEquals(MetadataHandler.buildXmp(metadata), MetadataHandler.readEmbeddedXmp(png),
+                "Both serializers write the hash the same way");
+
+        MetadataHandler.ScreenshotMetadata unique = sampleMetadata().withPerceptualHash("0000000000000001", null);
+        assertFalse(MetadataHandler.buildXmp(unique).contains("DuplicateOf"));
+        assertFalse(MetadataHandler.buildXmp(sampleMetadata()).contains("PerceptualHash"),
+                "Screenshots without a hash keep their packet as before");
+    }
 
-        int itxtPos = (int) findChunkPosition.invoke(null, modifiedPng, "iTXt");
-        assertTrue(itxtPos > 0, "iTXt chunk should exist");
+    @Test
+    void testReadAllScansWholeTree() throws Exception {
+        byte[] png = pngWith(MetadataHandler.createXmpChunk(sampleMetadata()));
+        for (int dir = 0; dir < 5; dir++) {
+            for (int i = 0; i < 40; i++) {
+                Path file = tempDir.resolve("World " + dir).resolve("2025-01-" + (10 + dir))
+                        .resolve("shot" + i + ".png");
+                Files.createDirectories(file.getParent());
+                Files.write(file, png);
+            }
+        }
+        Files.write(tempDir.resolve("plain.png"), createMinimalPng());
+        Files.write(tempDir.resolve("notes.txt"), png);
+        Files.createDirectories(tempDir.resolve(".sme"));
+        Files.write(tempDir.resolve(".sme").resolve("hidden.png"), png);
+
+        Map<Path, MetadataHandler.ScreenshotMetadata> all = MetadataHandler.readAll(tempDir);
+        assertEquals(200, all.size());
+        assertEquals("Read World", all.get(tempDir.resolve("World 3/2025-01-13/shot7.png")).worldName);
+        assertTrue(MetadataHandler.readAll(tempDir.resolve("missing")).isEmpty());
+    }
+
+    private static MetadataHandler.ScreenshotMetadata sampleMetadata() {
+        return new MetadataHandler.ScreenshotMetadata("Read World", "overworld", "0, 64, 0", "1", "P", "Normal",
+                "Survival", "1.21.10", "minecraft:plains", "20");
+    }
+
+    /**
+     * Inserts a chunk into {@link #createMinimalPng()} after IHDR.
+     */
+    private byte[] pngWith(byte[] chunk) throws IOException {
+        byte[] minimal = createMinimalPng();
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        png.write(minimal, 0, 33);
+        png.write(chunk);
+        png.write(minimal, 33, minimal.length - 33);
+        return png.toByteArray();
+    }
+
+    // =====================================================
+    // Serializer byte-identity Tests
+    // =====================================================
+
+    @Test
+    void testXmpChunkMatchesStringFormatSerializer() throws Exception {
+        MetadataHandler.ScreenshotMetadata[] cases = {
+                new MetadataHandler.ScreenshotMetadata("Test World", "overworld", "100, 64, -200", "42",
+                        "TestPlayer", "Normal", "Survival", "1.21.10", "minecraft:plains", "1234567890"),
+                new MetadataHandler.ScreenshotMetadata("Tom & Jerry's <\"World\">", "the_nether", "0, 64, 0",
+                        "1", "P", "Hard", "Creative", "1.21.10", "a&b<c>d\"e'f", "0"),
+                new MetadataHandler.ScreenshotMetadata("Welt \u00fcber M\u00fcnchen \u4e16\u754c \uD83C\uDF32",
+                        "\u00e9t\u00e9", "\uD83D\uDE00 1, 2, 3", "\uDC00 lone \uD800", null, null, null,
+                        "\u0000\u007f\u0080\u07ff\u0800\uffff", null, "\uDBFF\uDFFF"),
+                new MetadataHandler.ScreenshotMetadata(null, null, null, null, null, null, null, null, null, null)
+        };
+
+        Method buildXmp = MetadataHandler.class.getDeclaredMethod("buildXmp",
+                MetadataHandler.ScreenshotMetadata.class);
+        buildXmp.setAccessible(true);
+
+        for (MetadataHandler.ScreenshotMetadata metadata : cases) {
+            String expectedXmp = legacyXmp(metadata);
+            byte[] expectedChunk = legacyItxtChunk("XML:com.adobe.xmp", expectedXmp);
+
+            // Compared as bytes: unpaired surrogates come back as '?', as they are written
+            assertArrayEquals(expectedXmp.getBytes(StandardCharsets.UTF_8),
+                    ((String) buildXmp.invoke(null, metadata)).getBytes(StandardCharsets.UTF_8));
+            assertArrayEquals(expectedChunk, MetadataHandler.createXmpChunk(metadata));
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            itxtChunk(expectedXmp).writeTo(baos);
+            assertArrayEquals(expectedChunk, baos.toByteArray());
+        }
+    }
+
+    @Test
+    void testXmpChunkBufferIsReusedAcrossSizes() {
+        // A large value grows the per-thread buffer; the next, smaller chunk
+        // must not carry over any of its bytes
+        String large = "x".repeat(100_000) + "&";
+        MetadataHandler.ScreenshotMetadata big = new MetadataHandler.ScreenshotMetadata(large, "overworld",
+                "0, 0, 0", "1", "P", "Easy", "Survival", "1.21.10", "minecraft:plains", "1");
+        MetadataHandler.ScreenshotMetadata small = new MetadataHandler.ScreenshotMetadata("Small", "overworld",
+                "0, 0, 0", "1", "P", "Easy", "Survival", "1.21.10", "minecraft:plains", "1");
+
+        assertArrayEquals(legacyItxtChunk("XML:com.adobe.xmp", legacyXmp(big)), MetadataHandler.createXmpChunk(big));
+        assertArrayEquals(legacyItxtChunk("XML:com.adobe.xmp", legacyXmp(small)),
+                MetadataHandler.createXmpChunk(small));
+        assertArrayEquals(legacyItxtChunk("XML:com.adobe.xmp", legacyXmp(small)),
+                MetadataHandler.createXmpChunk(small));
     }
 
     // =====================================================
     // Helper Methods
     // =====================================================
 
+    /**
+     * The original String.format based XMP serializer, kept as the reference
+     * for byte-identical output.
+     */
+    private static String legacyXmp(MetadataHandler.ScreenshotMetadata metadata) {
+        String summary = String.format("World: %s | Dim: %s | Loc: %s | Days Played: %s",
+                metadata.worldName, metadata.dimension, metadata.coordinates, metadata.daysPlayed);
+        String[][] properties = {
+                { "WorldTitle", metadata.worldName },
+                { "Difficulty", metadata.difficulty },
+                { "Version", metadata.minecraftVersion },
+                { "Dimension", metadata.dimension },
+                { "Biome", metadata.biome },
+                { "Coordinates", metadata.coordinates },
+                { "Days", metadata.daysPlayed },
+                { "WorldAge", metadata.worldAge } };
+        StringBuilder custom = new StringBuilder();
+        for (String[] property : properties) {
+            custom.append(String.format("      <%s:%s>%s</%s:%s>\n",
+                    "mc", property[0], legacyEscape(property[1]), "mc", property[0]));
+        }
+        return String.format(
+                "<x:xmpmeta xmlns:x='adobe:ns:meta/' >\n" +
+                        "  <rdf:RDF xmlns:rdf='http://www.w3.org/1999/02/22-rdf-syntax-ns#'>\n" +
+                        "    <rdf:Description rdf:about=''\n" +
+                        "        xmlns:dc='http://purl.org/dc/elements/1.1/'\n" +
+                        "        xmlns:mc='http://milezerosoftware.com/mc/1.0/'>\n" +
+                        "      <dc:title>\n" +
+                        "        <rdf:Alt>\n" +
+                        "          <rdf:li xml:lang='x-default'>%s</rdf:li>\n" +
+                        "        </rdf:Alt>\n" +
+                        "      </dc:title>\n" +
+                        "      <dc:description>\n" +
+                        "        <rdf:Alt>\n" +
+                        "          <rdf:li xml:lang='x-default'>%s</rdf:li>\n" +
+                        "        </rdf:Alt>\n" +
+                        "      </dc:description>\n" +
+                        "%s" +
+                        "    </rdf:Description>\n" +
+                        "  </rdf:RDF>\n" +
+                        "</x:xmpmeta>",
+                legacyEscape("Screenshot Manager Enhanced"), legacyEscape(summary), custom);
+    }
+
+    private static String legacyEscape(String input) {
+        if (input == null)
+            return "";
+        return input.replace("&", "&amp;")
+                .replace("<", "&lt;")
+                .replace(">", "&gt;")
+                .replace("\"", "&quot;")
+                .replace("'", "&apos;");
+    }
+
+    private static byte[] legacyItxtChunk(String keyword, String text) {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        data.writeBytes(keyword.getBytes(StandardCharsets.ISO_8859_1));
+        data.writeBytes(new byte[5]);
+        data.writeBytes(text.getBytes(StandardCharsets.UTF_8));
+        byte[] bytes = data.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update("iTXt".getBytes(StandardCharsets.ISO_8859_1));
+        crc.update(bytes);
+
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        chunk.writeBytes(new byte[] { (byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16),
+                (byte) (bytes.length >>> 8), (byte) bytes.length });
+        chunk.writeBytes("iTXt".getBytes(StandardCharsets.ISO_8859_1));
+        chunk.writeBytes(bytes);
+        int c = (int) crc.getValue();
+        chunk.writeBytes(new byte[] { (byte) (c >>> 24), (byte) (c >>> 16), (byte) (c >>> 8), (byte) c });
+        return chunk.toByteArray();
+    }
+
     /**
      * Creates a minimal valid PNG file structure.
      * This is a 1x1 white pixel PNG.
@@ -469,6 +738,10 @@ public class MetadataHandlerTest {
         baos.write((int) (crcValue & 0xFF));
     }
 
+    private static ItxtChunkWriter itxtChunk(String xmp) {
+        return ItxtChunkWriter.acquire().startChunk("XML:com.adobe.xmp").text(xmp).finishChunk();
+    }
+
     private void assertPngSignature(byte[] data) {
         assertTrue(data.length >= 8, "Data too short for PNG signature");
         assertEquals((byte) 0x89, data[0]);
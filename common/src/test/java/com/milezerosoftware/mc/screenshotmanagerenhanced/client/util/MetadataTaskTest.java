@@ -0,0 +1,56 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.util;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.EncoderProfile;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetadataTaskTest {
+
+    private static MetadataHandler.ScreenshotMetadata metadata() {
+        return new MetadataHandler.ScreenshotMetadata("World", "Overworld", "x: 1, y: 2, z: 3", "0.50 d",
+                "Steve", "Normal", "survival", "1.21.10", "Plains", "0.01 d");
+    }
+
+    @Test
+    void testMetadataIsFormattedOnceOnFirstUse() {
+        AtomicInteger formats = new AtomicInteger();
+        PendingMetadata pending = () -> {
+            formats.incrementAndGet();
+            return metadata();
+        };
+        MetadataTask task = new MetadataTask(new File("a.png"), pending, EncoderProfile.STANDARD_PNG);
+
+        assertTrue(task.hasMetadata());
+        assertEquals(0, formats.get(), "Creating the task must not format");
+
+        MetadataHandler.ScreenshotMetadata first = task.getMetadata();
+        assertSame(first, task.getMetadata());
+        assertSame(first, task.confirmed().getMetadata());
+        assertEquals(1, formats.get());
+    }
+
+    @Test
+    void testTaskWithoutMetadata() {
+        MetadataTask task = new MetadataTask(new File("a.png"), (PendingMetadata) null, EncoderProfile.QOI);
+        assertFalse(task.hasMetadata());
+        assertNull(task.getMetadata());
+        assertFalse(new MetadataTask(new File("b.png"), null).hasMetadata());
+    }
+
+    @Test
+    void testPerceptualHashIsAddedToTheMetadata() {
+        MetadataTask task = new MetadataTask(new File("a.png"), MetadataTaskTest::metadata,
+                EncoderProfile.STANDARD_PNG);
+        task.setPerceptualHash("0123456789abcdef", "World/b.png");
+
+        MetadataHandler.ScreenshotMetadata confirmed = task.confirmed().getMetadata();
+        assertEquals("0123456789abcdef", confirmed.perceptualHash);
+        assertEquals("World/b.png", confirmed.duplicateOf);
+        assertEquals("World", confirmed.worldName);
+        assertNull(new MetadataTask(new File("b.png"), metadata()).getMetadata().perceptualHash);
+    }
+}
@@ -0,0 +1,130 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.util;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.OverflowPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetadataWriterServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testProcessesAllTasksWithFixedWorkers() throws Exception {
+        List<String> processed = new CopyOnWriteArrayList<>();
+        MetadataWriterService service = new MetadataWriterService(2, 4, OverflowPolicy.BLOCK,
+                task -> processed.add(task.file.getName()), task -> fail("No sidecar expected"));
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(service.submit(task("shot_" + i + ".png")));
+        }
+
+        assertTrue(service.drainAndStop(5, TimeUnit.SECONDS));
+        assertEquals(2, service.getWorkerCount());
+        assertEquals(50, processed.size());
+    }
+
+    @Test
+    void testDropOldestEvictsHeadOfQueue() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> processed = new CopyOnWriteArrayList<>();
+        MetadataWriterService service = new MetadataWriterService(1, 2, OverflowPolicy.DROP_OLDEST,
+                blockingProcessor(started, release, processed), task -> fail("No sidecar expected"));
+
+        service.submit(task("busy.png"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Worker is busy; queue holds a and b, then c evicts a
+        service.submit(task("a.png"));
+        service.submit(task("b.png"));
+        service.submit(task("c.png"));
+        assertEquals(2, service.getQueuedCount());
+
+        release.countDown();
+        assertTrue(service.drainAndStop(5, TimeUnit.SECONDS));
+        assertEquals(List.of("busy.png", "b.png", "c.png"), processed);
+    }
+
+    @Test
+    void testSidecarPolicyDegradesOverflow() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> sidecars = new CopyOnWriteArrayList<>();
+        MetadataWriterService service = new MetadataWriterService(1, 1, OverflowPolicy.SIDECAR,
+                blockingProcessor(started, release, new CopyOnWriteArrayList<>()),
+                task -> sidecars.add(task.file.getName()));
+
+        service.submit(task("busy.png"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertTrue(service.submit(task("queued.png")));
+        assertFalse(service.submit(task("overflow.png")));
+        assertEquals(List.of("overflow.png"), sidecars);
+
+        release.countDown();
+        assertTrue(service.drainAndStop(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testSubmitAfterShutdownWritesSidecar() {
+        List<String> sidecars = new CopyOnWriteArrayList<>();
+        MetadataWriterService service = new MetadataWriterService(1, 1, OverflowPolicy.BLOCK,
+                task -> {
+                }, task -> sidecars.add(task.file.getName()));
+
+        service.drainAndStop(5, TimeUnit.SECONDS);
+
+        assertFalse(service.submit(task("late.png")));
+        assertEquals(List.of("late.png"), sidecars);
+    }
+
+    @Test
+    void testWriteSidecarCreatesXmpFile() throws Exception {
+        File screenshot = tempDir.resolve("2025-01-01_12.00.00.png").toFile();
+
+        MetadataHandler.writeSidecar(screenshot, metadata());
+
+        Path sidecar = tempDir.resolve("2025-01-01_12.00.00.xmp");
+        assertTrue(Files.exists(sidecar), "Sidecar should be written next to the screenshot");
+        String xmp = Files.readString(sidecar);
+        assertTrue(xmp.contains("<mc:WorldTitle>Sidecar World</mc:WorldTitle>"));
+    }
+
+    // =====================================================
+    // Helper Methods
+    // =====================================================
+
+    private MetadataTask task(String name) {
+        return new MetadataTask(tempDir.resolve(name).toFile(), metadata());
+    }
+
+    private MetadataHandler.ScreenshotMetadata metadata() {
+        return new MetadataHandler.ScreenshotMetadata("Sidecar World", "Overworld", "x: 0, y: 64, z: 0",
+                "1.00 d", "Tester", "Normal", "survival", "1.21.10", "Plains", "0.10 d");
+    }
+
+    private Consumer<MetadataTask> blockingProcessor(CountDownLatch started, CountDownLatch release,
+            List<String> processed) {
+        return task -> {
+            processed.add(task.file.getName());
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+}
@@ -0,0 +1,155 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.util;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.GroupingMode;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PathTemplateTest {
+
+    private final File root = new File("run/screenshots");
+    private final PathTemplate.Values values = new PathTemplate.Values("My World", "minecraft:the_end",
+            "play.example.com", "2025-01-30_14.02.11", "birch_forest");
+    private final long time = new GregorianCalendar(2025, Calendar.JANUARY, 30, 14, 5, 9).getTimeInMillis();
+
+    private String render(String template, long millis) {
+        StringBuilder out = new StringBuilder();
+        PathTemplate.compile(template).appendTo(out, values, millis);
+        return out.toString();
+    }
+
+    @Test
+    void testVariablesAndLiterals() {
+        assertEquals("My_World/minecraft_the_end/2025/01-30", render("{world}/{dim}/{yyyy}/{MM}-{dd}", time));
+        assertEquals("play.example.com/2025-01-30_14.02.11/birch_forest", render("{server}/{session}/{biome}", time));
+        assertEquals("shots-25/2025-01-30/14h05m09s", render("shots-{yy}/{date}/{HH}h{mm}m{ss}s", time));
+    }
+
+    @Test
+    void testDateFieldsFollowTheClock() {
+        PathTemplate template = PathTemplate.compile("{date}/{HH}.{mm}.{ss}");
+        long[] times = {
+                new GregorianCalendar(2025, Calendar.DECEMBER, 31, 23, 59, 59).getTimeInMillis(),
+                new GregorianCalendar(2026, Calendar.JANUARY, 1, 0, 0, 0).getTimeInMillis(),
+                time,
+                new GregorianCalendar(2025, Calendar.JANUARY, 30, 14, 59, 1).getTimeInMillis() };
+        String[] expected = { "2025-12-31/23.59.59", "2026-01-01/00.00.00", "2025-01-30/14.05.09",
+                "2025-01-30/14.59.01" };
+        for (int i = 0; i < times.length; i++) {
+            StringBuilder out = new StringBuilder();
+            template.appendTo(out, values, times[i]);
+            assertEquals(expected[i], out.toString());
+        }
+    }
+
+    @Test
+    void testValuesCannotEscapeTheirFolder() {
+        PathTemplate.Values hostile = new PathTemplate.Values("..", "a/b\\c", null, "", "x:y");
+        StringBuilder out = new StringBuilder();
+        PathTemplate.compile("{world}/{dim}/{server}/{session}/{biome}").appendTo(out, hostile, time);
+        // A value of ".." would name the parent folder, so that level is dropped
+        assertEquals("a_b_c/UNKNOWN/UNKNOWN/x_y", out.toString());
+    }
+
+    @Test
+    void testSanitizeMatchesTheOldRegexForEmoji() {
+        String[] names = { "Base \uD83C\uDFF0 Camp", "\uD83D\uDE00\uD83D\uDE00", "Caf\u00E9 (v2).1",
+                "lone \uD83D surrogate" };
+        for (String name : names) {
+            assertEquals(name.replaceAll("[^a-zA-Z0-9\\.\\-\\(\\)]", "_"), PathTemplate.sanitize(name));
+        }
+        assertEquals("Base___Camp", PathTemplate.sanitize("Base \uD83C\uDFF0 Camp"), "One underscore per emoji");
+    }
+
+    @Test
+    void testSeparatorsAreNormalized() {
+        assertEquals("My_World/2025", render("/{world}//{yyyy}/", time));
+        assertEquals(root, PathTemplate.compile("").resolve(root, values, time));
+    }
+
+    @Test
+    void testInvalidTemplatesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> PathTemplate.compile("{world}/{nope}"));
+        assertThrows(IllegalArgumentException.class, () -> PathTemplate.compile("{world"));
+        assertThrows(IllegalArgumentException.class, () -> PathTemplate.compile("world}"));
+        assertThrows(IllegalArgumentException.class, () -> PathTemplate.compile("{world}/../x"));
+        assertThrows(IllegalArgumentException.class, () -> PathTemplate.compile("a:b"));
+        assertThrows(IllegalArgumentException.class, () -> PathTemplate.compile(null));
+    }
+
+    @Test
+    void testPredefinedModes() {
+        for (GroupingMode mode : GroupingMode.values()) {
+            if (mode == GroupingMode.CUSTOM) {
+                assertThrows(IllegalArgumentException.class, () -> PathTemplate.of(mode));
+            } else {
+                assertEquals(mode.isSharded() ? mode.getTemplate() + "/*" : mode.getTemplate(),
+                        PathTemplate.of(mode).getSource());
+                assertEquals(mode.isSharded(), PathTemplate.of(mode).isSharded());
+            }
+        }
+        assertTrue(PathTemplate.of(GroupingMode.WORLD_DIMENSION).uses(PathTemplate.Variable.DIM));
+        assertFalse(PathTemplate.of(GroupingMode.WORLD).uses(PathTemplate.Variable.BIOME));
+    }
+
+    @Test
+    void testMatchReadsRenderedValuesBack() {
+        PathTemplate template = PathTemplate.compile("{world}/{dim}/{yyyy}/{MM}-{dd}");
+        Map<PathTemplate.Variable, String> values = template.match(render(template.getSource(), time));
+        assertEquals(Map.of(PathTemplate.Variable.WORLD, "My_World", PathTemplate.Variable.DIM,
+                "minecraft_the_end", PathTemplate.Variable.YEAR, "2025", PathTemplate.Variable.MONTH, "01",
+                PathTemplate.Variable.DAY, "30"), values);
+
+        assertEquals(Map.of(), PathTemplate.compile("").match(""));
+        assertEquals(Map.of(PathTemplate.Variable.DATE, "2025-01-30"),
+                PathTemplate.of(GroupingMode.DATE).match("2025-01-30"));
+    }
+
+    @Test
+    void testMatchBacksOffToFitLiterals() {
+        // The world name itself contains the separator literal
+        PathTemplate template = PathTemplate.compile("{world}-{dim}_{date}");
+        assertEquals(Map.of(PathTemplate.Variable.WORLD, "a-b-c", PathTemplate.Variable.DIM, "the_end",
+                PathTemplate.Variable.DATE, "2025-01-30"), template.match("a-b-c-the_end_2025-01-30"));
+    }
+
+    @Test
+    void testMatchRejectsOtherFolders() {
+        PathTemplate template = PathTemplate.of(GroupingMode.WORLD_DATE);
+        assertNull(template.match("World"));
+        assertNull(template.match("World/2025-01-30/overworld"));
+        assertNull(template.match("World/2025-1-30"));
+        assertNull(template.match("World/2025_01_30"));
+        assertNull(template.match("My World/2025-01-30"));
+        assertNull(PathTemplate.of(GroupingMode.NONE).match("World"));
+
+        // A variable used twice must have the same value both times
+        PathTemplate repeated = PathTemplate.compile("{world}/{world}-{yyyy}");
+        assertEquals(Map.of(PathTemplate.Variable.WORLD, "a", PathTemplate.Variable.YEAR, "2025"),
+                repeated.match("a/a-2025"));
+        assertNull(repeated.match("a/b-2025"));
+    }
+
+    @Test
+    void testShardedTemplateMatchesShardFolders() {
+        PathTemplate template = PathTemplate.of(GroupingMode.ADAPTIVE);
+        assertEquals(Map.of(PathTemplate.Variable.WORLD, "World"), template.match("World"));
+        assertEquals(Map.of(PathTemplate.Variable.WORLD, "World", PathTemplate.Variable.YEAR, "2025",
+                PathTemplate.Variable.MONTH, "01"), template.match("World/2025-01"));
+        assertEquals(Map.of(PathTemplate.Variable.WORLD, "World", PathTemplate.Variable.YEAR, "2025",
+                PathTemplate.Variable.MONTH, "01", PathTemplate.Variable.DAY, "30", PathTemplate.Variable.HOUR,
+                "13"), template.match("World/2025-01/30/13"));
+
+        assertNull(template.match("World/2025-13"));
+        assertNull(template.match("World/2025-01/32"));
+        assertNull(template.match("World/2025-01/30/24"));
+        assertNull(template.match("World/duplicates"));
+        assertNull(template.match("World/2025-01/30/13/00"));
+        assertNull(PathTemplate.of(GroupingMode.WORLD).match("World/2025-01"));
+    }
+}
@@ -0,0 +1,119 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScreenshotCompletionTrackerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<MetadataTask> received = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ScreenshotCompletionTracker.setSink(received::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ScreenshotCompletionTracker.setSink(MetadataHandler::submit);
+    }
+
+    @Test
+    void testWriteEventHandsOverConfirmedTask() {
+        File file = tempDir.resolve("event.png").toFile();
+        MetadataTask task = new MetadataTask(file, metadata());
+        ScreenshotCompletionTracker.expect(task);
+
+        assertTrue(ScreenshotCompletionTracker.isExpected(file.toPath()));
+        ScreenshotCompletionTracker.onWritten(file);
+
+        assertEquals(1, received.size());
+        assertTrue(received.get(0).writeConfirmed, "Event path should mark the file as written");
+        assertEquals(task.captureNanos, received.get(0).captureNanos);
+        assertFalse(ScreenshotCompletionTracker.isExpected(file.toPath()));
+    }
+
+    @Test
+    void testRelativeAndAbsolutePathsMatch() {
+        File relative = new File("run/screenshots/relative.png");
+        ScreenshotCompletionTracker.expect(new MetadataTask(relative, metadata()));
+
+        assertTrue(ScreenshotCompletionTracker.isExpected(relative.getAbsoluteFile().toPath()));
+        ScreenshotCompletionTracker.onWritten(relative.getAbsoluteFile());
+
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    void testUnknownFileIsIgnored() {
+        File file = tempDir.resolve("world_icon.png").toFile();
+
+        assertFalse(ScreenshotCompletionTracker.isExpected(file.toPath()));
+        ScreenshotCompletionTracker.onWritten(file);
+
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    void testDuplicateEventIsHandledOnce() {
+        File file = tempDir.resolve("twice.png").toFile();
+        ScreenshotCompletionTracker.expect(new MetadataTask(file, metadata()));
+
+        ScreenshotCompletionTracker.onWritten(file);
+        ScreenshotCompletionTracker.onWritten(file);
+
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    void testTrackingOnlyTaskIsNotHandedOver() {
+        // Registered for parallel encoding without metadata: nothing to embed
+        File file = tempDir.resolve("plain.png").toFile();
+        ScreenshotCompletionTracker.expect(new MetadataTask(file, null));
+
+        assertTrue(ScreenshotCompletionTracker.isExpected(file.toPath()));
+        ScreenshotCompletionTracker.onWritten(file);
+
+        assertTrue(received.isEmpty());
+        assertFalse(ScreenshotCompletionTracker.isExpected(file.toPath()));
+    }
+
+    @Test
+    void testUnwrittenPlaceholderIsReleased() throws Exception {
+        Path failed = ScreenshotFileAllocator.getInstance().reserve(tempDir, "failed", "png");
+        Path written = ScreenshotFileAllocator.getInstance().reserve(tempDir, "written", "png");
+        Files.write(written, new byte[] { 1 });
+
+        ScreenshotCompletionTracker.expirePlaceholder(failed, 0);
+        ScreenshotCompletionTracker.expirePlaceholder(written, 0);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (Files.exists(failed) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(Files.exists(failed), "An empty placeholder must be removed");
+        assertTrue(Files.exists(written), "A written screenshot must be kept");
+    }
+
+    // =====================================================
+    // Helper Methods
+    // =====================================================
+
+    private MetadataHandler.ScreenshotMetadata metadata() {
+        return new MetadataHandler.ScreenshotMetadata("Tracked World", "Overworld", "x: 0, y: 64, z: 0",
+                "1.00 d", "Tester", "Normal", "survival", "1.21.10", "Plains", "0.10 d");
+    }
+}
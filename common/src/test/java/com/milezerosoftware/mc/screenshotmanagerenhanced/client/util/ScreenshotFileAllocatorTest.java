@@ -0,0 +1,143 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.util;
+
+import com.milezerosoftware.mc.screenshotmanagerenhanced.config.FilenameSuffix;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScreenshotFileAllocatorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final Date date = new GregorianCalendar(2025, Calendar.JANUARY, 30, 12, 0, 0).getTime();
+
+    @Test
+    void testVanillaNamingWithSequenceSuffix() {
+        ScreenshotFileAllocator allocator = new ScreenshotFileAllocator();
+
+        assertEquals("2025-01-30_12.00.00.png", reserveName(allocator));
+        assertEquals("2025-01-30_12.00.00_1.png", reserveName(allocator));
+        assertEquals("2025-01-30_12.00.00_2.png", reserveName(allocator));
+        assertTrue(Files.exists(tempDir.resolve("2025-01-30_12.00.00_2.png")), "Reservation creates the file");
+    }
+
+    @Test
+    void testMillisecondSuffix() {
+        Date withMillis = new Date(date.getTime() + 123);
+
+        Path file = new ScreenshotFileAllocator().reserve(tempDir, withMillis, FilenameSuffix.MILLISECONDS, "png");
+
+        assertEquals("2025-01-30_12.00.00.123.png", file.getFileName().toString());
+    }
+
+    @Test
+    void testParseTimestamp() {
+        assertEquals(date.getTime(), ScreenshotFileAllocator.parseTimestamp("2025-01-30_12.00.00.png"));
+        assertEquals(date.getTime(), ScreenshotFileAllocator.parseTimestamp("2025-01-30_12.00.00_2.png"));
+        assertEquals(date.getTime() + 123, ScreenshotFileAllocator.parseTimestamp("2025-01-30_12.00.00.123.png"));
+        assertEquals(-1, ScreenshotFileAllocator.parseTimestamp("Screenshot 1.png"));
+        assertEquals(-1, ScreenshotFileAllocator.parseTimestamp("2025-13-30_12.00.00.png"));
+        assertEquals(-1, ScreenshotFileAllocator.parseTimestamp("2025-01-30_12.00.png"));
+    }
+
+    @Test
+    void testSeedsFromExistingFilesOnce() throws Exception {
+        Files.createFile(tempDir.resolve("2025-01-30_12.00.00.png"));
+        Files.createFile(tempDir.resolve("2025-01-30_12.00.00_1.png"));
+        Files.createFile(tempDir.resolve("2025-01-30_12.00.00_7.png"));
+        Files.createFile(tempDir.resolve("2025-01-30_12.00.00_9.qoi"));
+
+        ScreenshotFileAllocator allocator = new ScreenshotFileAllocator();
+
+        assertEquals("2025-01-30_12.00.00_8.png", reserveName(allocator));
+        assertEquals("2025-01-30_12.00.00_9.png", reserveName(allocator));
+    }
+
+    @Test
+    void testCreatesMissingDirectory() {
+        Path nested = tempDir.resolve("World/the_nether/2025-01-30");
+
+        Path file = new ScreenshotFileAllocator().reserve(nested, "frame", "png");
+
+        assertEquals(nested.resolve("frame.png"), file);
+        assertTrue(Files.isRegularFile(file));
+    }
+
+    @Test
+    void testReleaseRemovesOnlyEmptyPlaceholder() throws Exception {
+        ScreenshotFileAllocator allocator = new ScreenshotFileAllocator();
+        Path unused = allocator.reserve(tempDir, "unused", "png");
+        Path written = allocator.reserve(tempDir, "written", "png");
+        Files.write(written, new byte[] { 1 });
+
+        allocator.release(unused);
+        allocator.release(written);
+
+        assertFalse(Files.exists(unused));
+        assertTrue(Files.exists(written));
+    }
+
+    @Test
+    void testConcurrentReservationsNeverCollide() throws Exception {
+        // Two allocators simulate two game instances sharing the folder
+        ScreenshotFileAllocator first = new ScreenshotFileAllocator();
+        ScreenshotFileAllocator second = new ScreenshotFileAllocator();
+        int threads = 8;
+        int perThread = 500;
+        Set<Path> reserved = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                ScreenshotFileAllocator allocator = t % 2 == 0 ? first : second;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        Path file = allocator.reserve(tempDir, date, FilenameSuffix.SEQUENCE, "png");
+                        assertTrue(reserved.add(file), "Name handed out twice: " + file);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * perThread, reserved.size());
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(threads * perThread, files.count());
+        }
+    }
+
+    // =====================================================
+    // Helper Methods
+    // =====================================================
+
+    private String reserveName(ScreenshotFileAllocator allocator) {
+        return allocator.reserve(tempDir, date, FilenameSuffix.SEQUENCE, "png").getFileName().toString();
+    }
+}
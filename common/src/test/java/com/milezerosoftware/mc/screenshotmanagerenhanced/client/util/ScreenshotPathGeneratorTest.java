@@ -95,4 +95,21 @@ public class ScreenshotPathGeneratorTest {
         // Should fall back to vanilla behavior (return the input dir directly)
         assertEquals(screenshotsDir, result);
     }
+
+    @Test
+    public void testCustomTemplate() {
+        ModConfig config = new ModConfig();
+        config.groupingMode = GroupingMode.CUSTOM;
+        config.customPathTemplate = "{world}/{yyyy}/{MM}-{dd}/{dim}";
+
+        File result = ScreenshotPathGenerator.getScreenshotDirectory(screenshotsDir, config, rawWorldId, safeWorldId,
+                dimension, date);
+        assertEquals(new File(screenshotsDir, "Test_World_1/2025/01-01/minecraft_the_nether"), result);
+
+        // An invalid template falls back to grouping by world
+        config.customPathTemplate = "{world}/{unknown}";
+        result = ScreenshotPathGenerator.getScreenshotDirectory(screenshotsDir, config, rawWorldId, safeWorldId,
+                dimension, date);
+        assertEquals(new File(screenshotsDir, "Test_World_1"), result);
+    }
 }
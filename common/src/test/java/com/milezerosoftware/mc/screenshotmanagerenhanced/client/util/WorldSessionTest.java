@@ -0,0 +1,40 @@
+package com.milezerosoftware.mc.screenshotmanagerenhanced.client.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WorldSessionTest {
+
+    @Test
+    void testIdentityIsResolvedOnce() {
+        WorldSession session = new WorldSession(WorldSession.Kind.MULTIPLAYER, "My Server: EU", "My Server: EU",
+                "play.example.com:25565", "overworld");
+
+        assertEquals("My_Server__EU", session.getSafeWorldId());
+        PathTemplate.Values values = session.getPathValues();
+        assertEquals("My_Server__EU", values.world());
+        assertEquals("overworld", values.dimension());
+        assertEquals("play.example.com:25565", values.server());
+        assertEquals(session.getSessionId(), values.session());
+        assertNull(values.biome());
+        // Reads return the same instances every time
+        assertSame(values, session.getPathValues());
+        assertSame(session.getSafeWorldId(), session.getSafeWorldId());
+    }
+
+    @Test
+    void testDimensionChangeKeepsTheSession() {
+        WorldSession session = new WorldSession(WorldSession.Kind.SINGLEPLAYER, "New World (1)", "New World",
+                null, "overworld");
+        assertSame(session, session.withDimension("overworld"));
+
+        WorldSession nether = session.withDimension("the_nether");
+        assertEquals("the_nether", nether.getDimension());
+        assertEquals("the_nether", nether.getPathValues().dimension());
+        assertEquals(session.getSessionId(), nether.getSessionId());
+        assertEquals("New World (1)", nether.getRawWorldId());
+        assertEquals("singleplayer", nether.getPathValues().server());
+        assertEquals("overworld", session.getDimension());
+    }
+}
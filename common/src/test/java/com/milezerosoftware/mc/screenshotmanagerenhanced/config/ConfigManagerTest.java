@@ -1,5 +1,6 @@
 package com.milezerosoftware.mc.screenshotmanagerenhanced.config;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
@@ -14,6 +15,11 @@ public class ConfigManagerTest {
     @TempDir
     Path tempDir;
 
+    @AfterEach
+    void tearDown() {
+        ConfigManager.stopWatching();
+    }
+
     @Test
     void testSaveAndLoad() throws IOException {
         Path configFile = tempDir.resolve("test_config.json");
@@ -54,6 +60,52 @@ public class ConfigManagerTest {
         assertTrue(Files.exists(configFile), "Config file should be created if missing");
     }
 
+    @Test
+    void testPerWorldEncoderProfileOverridesGlobal() throws IOException {
+        Path configFile = tempDir.resolve("profile_config.json");
+        Files.writeString(configFile, """
+                {
+                  "encoderProfile": "COMPACT_PNG",
+                  "worldRules": {
+                    "Fast World": { "active": true, "encoderProfile": "QOI" },
+                    "Plain World": { "active": true }
+                  }
+                }
+                """);
+
+        ConfigManager.load(configFile);
+        ModConfig config = ConfigManager.getInstance();
+
+        assertEquals(EncoderProfile.QOI, config.getEncoderProfile("Fast World"));
+        assertEquals(EncoderProfile.COMPACT_PNG, config.getEncoderProfile("Plain World"));
+        assertEquals(EncoderProfile.COMPACT_PNG, config.getEncoderProfile("Unknown World"));
+    }
+
+    @Test
+    void testPerWorldStorageLimitsOverrideGlobal() throws IOException {
+        Path configFile = tempDir.resolve("limits_config.json");
+        Files.writeString(configFile, """
+                {
+                  "storageMaxMegabytes": 512,
+                  "retentionKeepPerDay": -3,
+                  "worldRules": {
+                    "Big World": { "active": true, "storageMaxMegabytes": 0, "storageMaxFiles": 100 },
+                    "Old World": { "active": false, "retentionMaxAgeDays": 7 }
+                  }
+                }
+                """);
+
+        ConfigManager.load(configFile);
+        ModConfig config = ConfigManager.getInstance();
+
+        assertEquals(new RetentionPolicy(0, 100, 0, 0), config.getRetentionPolicy("Big World"),
+                "0 turns the global limit off for the world");
+        assertEquals(new RetentionPolicy(512L * 1024 * 1024, 0, 0, 0), config.getRetentionPolicy("Old World"),
+                "Inactive rules are ignored");
+        assertEquals(config.getRetentionPolicy(null), config.getRetentionPolicy("Unknown World"));
+        assertFalse(new ModConfig().getRetentionPolicy(null).isLimited());
+    }
+
     @Test
     void testMalformedJson() throws IOException {
         Path configFile = tempDir.resolve("malformed_config.json");
@@ -85,4 +137,62 @@ public class ConfigManagerTest {
         // Verify recursion didn't happen (if strict timeout logic isn't in place,
         // implicit success is passing this line)
     }
+
+    @Test
+    void testInvalidValuesAreReplacedByDefaults() throws IOException {
+        Path configFile = tempDir.resolve("invalid_config.json");
+        Files.writeString(configFile, """
+                {
+                  "groupingMode": "NOT_A_MODE",
+                  "customPathTemplate": "{world}/../{nope}",
+                  "metadataWorkerThreads": 0,
+                  "optimizerCpuBudgetPercent": 500,
+                  "worldRules": { "Broken World": null }
+                }
+                """);
+
+        ConfigManager.load(configFile);
+        ModConfig config = ConfigManager.getInstance();
+
+        assertEquals(GroupingMode.WORLD, config.groupingMode);
+        assertEquals(new ModConfig().customPathTemplate, config.customPathTemplate);
+        assertEquals(1, config.metadataWorkerThreads);
+        assertEquals(100, config.optimizerCpuBudgetPercent);
+        assertTrue(config.worldRules.isEmpty());
+    }
+
+    @Test
+    void testSaveIsAtomicAndDoesNotReload() throws Exception {
+        Path configFile = tempDir.resolve("atomic_config.json");
+        ConfigManager.load(configFile);
+        ConfigManager.startWatching(configFile);
+        ModConfig config = ConfigManager.getInstance();
+        config.embedMetadata = true;
+
+        ConfigManager.save(configFile);
+        Thread.sleep(ConfigWatcher.DEBOUNCE_MS * 4);
+
+        assertSame(config, ConfigManager.getInstance(), "Our own save must not replace the snapshot");
+        assertFalse(Files.exists(tempDir.resolve("atomic_config.json.tmp")));
+        assertTrue(Files.readString(configFile).contains("\"embedMetadata\": true"));
+    }
+
+    @Test
+    void testExternalEditIsHotReloaded() throws Exception {
+        Path configFile = tempDir.resolve("watched_config.json");
+        ConfigManager.load(configFile);
+        ConfigManager.startWatching(configFile);
+        ModConfig before = ConfigManager.getInstance();
+
+        // An editor saving in several steps
+        Files.writeString(configFile, "{ \"groupingMode\": ");
+        Files.writeString(configFile, "{ \"groupingMode\": \"DATE\" }");
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (ConfigManager.getInstance() == before && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(GroupingMode.DATE, ConfigManager.getInstance().groupingMode);
+        assertEquals(GroupingMode.WORLD, before.groupingMode, "Published snapshots are never modified");
+    }
 }